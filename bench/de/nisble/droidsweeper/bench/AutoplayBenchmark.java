@@ -0,0 +1,305 @@
+package de.nisble.droidsweeper.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.nisble.droidsweeper.config.GameConfig;
+import de.nisble.droidsweeper.config.Level;
+import de.nisble.droidsweeper.game.Position;
+import de.nisble.droidsweeper.game.engine.BitBoardEngine;
+import de.nisble.droidsweeper.game.engine.Board;
+import de.nisble.droidsweeper.game.engine.Engine;
+import de.nisble.droidsweeper.game.engine.EngineType;
+import de.nisble.droidsweeper.game.engine.HintSolver;
+import de.nisble.droidsweeper.game.engine.MineGenerator;
+import de.nisble.droidsweeper.game.engine.PatternCache;
+import de.nisble.droidsweeper.game.engine.Probabilities;
+import de.nisble.droidsweeper.game.engine.ProbabilitySampler;
+import de.nisble.droidsweeper.game.engine.ProbabilitySolver;
+import de.nisble.droidsweeper.game.engine.SplitMix64;
+import de.nisble.droidsweeper.game.jni.FieldStatus;
+
+/** Plays complete games of the standard levels by a bot and measures the
+ * throughput of an {@link Engine}.<br>
+ * The games are played on the {@link Engine} interface, like the
+ * {@link de.nisble.droidsweeper.game.Game Game} does, but without its timer,
+ * so it runs on a plain JVM. The bot is pluggable:
+ * <ul>
+ * <li>random: Reveals a random hidden field that is no bomb. It knows the
+ * bombs, because it places them like the {@link BitBoardEngine} does: By the
+ * {@link MineGenerator} from the seed of the game and the first click. So it
+ * wins each game with the most clicks of a player. The load test of the
+ * engine. Engines that place the bombs otherwise (i.e. the native engine)
+ * can't be played by it.</li>
+ * <li>solver: Reveals the {@link HintSolver hints}, else the safest field of
+ * the {@link ProbabilitySolver} (or the {@link ProbabilitySampler} if the
+ * frontier is too big). Plays like a strong player.</li>
+ * </ul>
+ * The games of a level are spread over the given count of threads. Each
+ * thread has its own engine and bot, the games are taken from a shared
+ * counter. Game g of a level always has the same seed, so runs are
+ * comparable. Per level the games and clicks per second, the won games and
+ * the percentiles of the time of a click in the engine and of a whole game
+ * are printed. The first round warms up.
+ *
+ * <pre>
+ * javac -cp android.jar -sourcepath src -d bin/bench bench/de/nisble/droidsweeper/bench/AutoplayBenchmark.java
+ * java -cp android.jar:bin/bench de.nisble.droidsweeper.bench.AutoplayBenchmark [games] [random|solver] [threads] [JAVA|NATIVE]
+ * </pre>
+ * The native engine needs libmsm on the java.library.path and is only played
+ * by the solver bot.
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class AutoplayBenchmark {
+	private static final Level[] LEVELS = { Level.EASY, Level.NORMAL, Level.HARD };
+	/* Time box of the sampler of the solver bot in milliseconds */
+	private static final long SAMPLER_MILLIS = 5;
+
+	private AutoplayBenchmark() {
+	}
+
+	/* A strategy that chooses the clicks of a game */
+	private interface Bot {
+		/* Called after the engine created a game */
+		void start(Engine engine, GameConfig c, long seed);
+
+		/* The next field to reveal */
+		Position next(Engine engine);
+
+		/* Called after the game ended */
+		void finish(Engine engine);
+	}
+
+	/* Reveals random hidden fields that are no bombs */
+	private static final class RandomBot implements Bot {
+		private final MineGenerator mGenerator = new MineGenerator();
+		private GameConfig mConfig;
+		private long mSeed;
+		private SplitMix64 mRandom;
+		/* Empty until the board is generated by the first click */
+		private long[] mBombSet = new long[0];
+		private boolean mPlaced;
+		private int[] mCandidates = new int[0];
+
+		@Override
+		public void start(Engine engine, GameConfig c, long seed) {
+			mConfig = c;
+			mSeed = seed;
+			mRandom = new SplitMix64(~seed);
+			mPlaced = false;
+			int size = c.X * c.Y;
+			if (mCandidates.length < size) {
+				mCandidates = new int[size];
+				mBombSet = new long[(size + 63) >>> 6];
+			}
+		}
+
+		@Override
+		public Position next(Engine engine) {
+			GameConfig c = mConfig;
+			if (!mPlaced) {
+				// The first click is safe. The bombs are placed like the engine
+				// does from the seed and the first click.
+				int safe = mRandom.nextInt(c.X * c.Y);
+				Arrays.fill(mBombSet, 0);
+				mGenerator.place(mBombSet, c.X, c.Y, c.BOMBS, safe, new SplitMix64(mSeed));
+				mPlaced = true;
+				return new Position(safe % c.X, safe / c.X);
+			}
+
+			Board b = engine.getBoard();
+			int n = 0;
+			for (int i = 0; i < c.X * c.Y; ++i) {
+				if (0 == ((mBombSet[i >>> 6] >>> i) & 1) && FieldStatus.UNHIDDEN != b.getFieldStatus(i))
+					mCandidates[n++] = i;
+			}
+			int i = mCandidates[mRandom.nextInt(n)];
+			return new Position(i % c.X, i / c.X);
+		}
+
+		@Override
+		public void finish(Engine engine) {
+			if (engine.isLost())
+				throw new IllegalStateException("The engine doesn't place the bombs like the MineGenerator");
+		}
+	}
+
+	/* Reveals the hints, else the safest field */
+	private static final class SolverBot implements Bot {
+		private final HintSolver mHints = new HintSolver();
+		private final ProbabilitySolver mExact = new ProbabilitySolver(0);
+		private ProbabilitySampler mSampler;
+		private SplitMix64 mRandom;
+
+		SolverBot() {
+			mHints.setPatterns(new PatternCache());
+		}
+
+		@Override
+		public void start(Engine engine, GameConfig c, long seed) {
+			mRandom = new SplitMix64(seed);
+			mSampler = new ProbabilitySampler(0, seed);
+			engine.addMatrixObserver(mHints);
+			mHints.reset(c.X, c.Y, c.BOMBS);
+		}
+
+		@Override
+		public Position next(Engine engine) {
+			Board b = engine.getBoard();
+			if (!engine.isRunning())
+				return new Position(b.getX() / 2, b.getY() / 2);
+
+			Position p = mHints.hint();
+			if (p != null)
+				return p;
+			Probabilities q = mExact.solve(mHints);
+			if (null == q)
+				q = mSampler.sample(mHints, SAMPLER_MILLIS);
+			if (q != null && (p = q.safest()) != null)
+				return p;
+			return new Position(mRandom.nextInt(b.getX()), mRandom.nextInt(b.getY()));
+		}
+
+		@Override
+		public void finish(Engine engine) {
+			engine.removeObserver(mHints);
+		}
+	}
+
+	/* The results of a thread */
+	private static final class Result {
+		int games = 0;
+		int won = 0;
+		long[] clicks = new long[1024];
+		int clickCount = 0;
+		long[] gameTimes = new long[64];
+
+		void click(long nanos) {
+			if (clickCount == clicks.length)
+				clicks = Arrays.copyOf(clicks, clickCount * 2);
+			clicks[clickCount++] = nanos;
+		}
+
+		void game(long nanos, boolean isWon) {
+			if (games == gameTimes.length)
+				gameTimes = Arrays.copyOf(gameTimes, games * 2);
+			gameTimes[games++] = nanos;
+			won += isWon ? 1 : 0;
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException, ExecutionException {
+		int games = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+		final String bot = (args.length > 1) ? args[1] : "random";
+		int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		final EngineType type = (args.length > 3) ? EngineType.valueOf(args[3]) : EngineType.JAVA;
+		if (!"random".equals(bot) && !"solver".equals(bot))
+			throw new IllegalArgumentException("Unknown bot: " + bot);
+		if ("random".equals(bot) && EngineType.JAVA != type)
+			throw new IllegalArgumentException("The random bot needs the bombs placed from the seed by the "
+					+ "MineGenerator, use the solver bot for the " + type + " engine");
+
+		System.out.println(type + " engine, " + bot + " bot, " + threads + " threads");
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (int round = 0; round < 2; ++round) {
+				for (Level l : LEVELS)
+					run(executor, threads, type, bot, l, (0 == round) ? games / 5 : games, round > 0);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static void run(ExecutorService executor, int threads, final EngineType type, final String bot,
+			Level level, final int games, boolean print) throws InterruptedException, ExecutionException {
+		final GameConfig config = new GameConfig(level);
+		final long seed = level.ordinal() + 1;
+		final AtomicInteger next = new AtomicInteger();
+
+		List<Callable<Result>> tasks = new ArrayList<Callable<Result>>(threads);
+		for (int t = 0; t < threads; ++t) {
+			tasks.add(new Callable<Result>() {
+				@Override
+				public Result call() {
+					Engine engine = type.create();
+					Bot b = "solver".equals(bot) ? new SolverBot() : new RandomBot();
+					Result r = new Result();
+					try {
+						for (int g = next.getAndIncrement(); g < games; g = next.getAndIncrement())
+							play(engine, b, config, SplitMix64.nth(seed, g), r);
+					} finally {
+						engine.close();
+					}
+					return r;
+				}
+			});
+		}
+
+		long start = System.nanoTime();
+		List<Result> results = new ArrayList<Result>(threads);
+		for (Future<Result> f : executor.invokeAll(tasks))
+			results.add(f.get());
+		long wall = System.nanoTime() - start;
+		if (!print)
+			return;
+
+		// Merge the threads
+		int won = 0;
+		int clickCount = 0;
+		for (Result r : results) {
+			won += r.won;
+			clickCount += r.clickCount;
+		}
+		long[] clicks = new long[clickCount];
+		long[] gameTimes = new long[games];
+		int c = 0;
+		int g = 0;
+		for (Result r : results) {
+			System.arraycopy(r.clicks, 0, clicks, c, r.clickCount);
+			System.arraycopy(r.gameTimes, 0, gameTimes, g, r.games);
+			c += r.clickCount;
+			g += r.games;
+		}
+		Arrays.sort(clicks);
+		Arrays.sort(gameTimes);
+
+		double seconds = wall / 1e9;
+		System.out.printf("%-6s %6d games, %9.0f games/s, %10.0f clicks/s, won %5.1f%%%n", level, games, games
+				/ seconds, clickCount / seconds, 100.0 * won / games);
+		System.out.printf("       click us: p50 %7.2f p90 %7.2f p99 %7.2f p99.9 %8.2f max %9.2f%n", percentile(clicks,
+				50) / 1e3, percentile(clicks, 90) / 1e3, percentile(clicks, 99) / 1e3, percentile(clicks, 99.9) / 1e3,
+				clicks[clicks.length - 1] / 1e3);
+		System.out.printf("       game  us: p50 %7.1f p90 %7.1f p99 %7.1f p99.9 %8.1f max %9.1f%n", percentile(gameTimes,
+				50) / 1e3, percentile(gameTimes, 90) / 1e3, percentile(gameTimes, 99) / 1e3, percentile(gameTimes,
+				99.9) / 1e3, gameTimes[gameTimes.length - 1] / 1e3);
+	}
+
+	/* Play a game. The time of a click is the time of the engine and its
+	 * observers (e.g. the hint solver), the time of a game includes the bot. */
+	private static void play(Engine engine, Bot bot, GameConfig config, long seed, Result r) {
+		long start = System.nanoTime();
+		engine.create(config.withSeed(seed));
+		bot.start(engine, config, seed);
+		do {
+			Position p = bot.next(engine);
+			long click = System.nanoTime();
+			engine.reveal(p);
+			r.click(System.nanoTime() - click);
+		} while (engine.isRunning());
+		bot.finish(engine);
+		r.game(System.nanoTime() - start, engine.isWon());
+	}
+
+	/* The nearest rank percentile of sorted values */
+	private static long percentile(long[] sorted, double percent) {
+		int rank = (int) Math.ceil(percent / 100 * sorted.length);
+		return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+	}
+}
@@ -0,0 +1,137 @@
+package de.nisble.droidsweeper.bench;
+
+import java.util.Random;
+
+import de.nisble.droidsweeper.config.GameConfig;
+import de.nisble.droidsweeper.game.Position;
+import de.nisble.droidsweeper.game.engine.BitBoardEngine;
+import de.nisble.droidsweeper.game.engine.Engine;
+import de.nisble.droidsweeper.game.jni.FieldStatus;
+import de.nisble.droidsweeper.game.jni.GameStatus;
+import de.nisble.droidsweeper.game.jni.MatrixObserver;
+import de.nisble.droidsweeper.game.jni.MineSweeperMatrix;
+
+/** Micro-benchmark of the binding layer between the engines and Java.<br>
+ * Measures
+ * <ul>
+ * <li>the mapping of ordinals to {@link FieldStatus} (the old fromInt that
+ * cloned values() inside a try/catch against the cached one),</li>
+ * <li>the nanoseconds per reveal and per reported field (the former upcall)
+ * for growing square boards with a bomb density of 20%.</li>
+ * </ul>
+ * The {@link BitBoardEngine} is always measured. {@link MineSweeperMatrix} is
+ * measured too when libmsm can be loaded (run on a device or with a host build
+ * of libmsm in java.library.path). Otherwise it is skipped.
+ *
+ * <pre>
+ * javac -cp android.jar -sourcepath src -d bin/bench bench/de/nisble/droidsweeper/bench/BindingBenchmark.java
+ * java -cp android.jar:bin/bench de.nisble.droidsweeper.bench.BindingBenchmark [clicks]
+ * </pre>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class BindingBenchmark {
+	private static final int[] SIZES = { 8, 16, 32, 64, 128, 256 };
+
+	private BindingBenchmark() {
+	}
+
+	/* Counts the reported fields */
+	private static final class Counter implements MatrixObserver {
+		long fields;
+
+		@Override
+		public void onGameStatusChanged(GameStatus newStatus) {
+		}
+
+		@Override
+		public void onRemainingBombsChanged(int remainingBombs) {
+		}
+
+		@Override
+		public void afterFieldStatusChanged(Position p, FieldStatus fs, int adjacentBombs) {
+			++fields;
+		}
+	}
+
+	/* The implementation of FieldStatus.fromInt before the values were
+	 * cached. */
+	private static FieldStatus legacyFromInt(int i) {
+		FieldStatus temp;
+		try {
+			temp = FieldStatus.values()[i];
+		} catch (Exception e) {
+			temp = FieldStatus.values()[0];
+		}
+		return temp;
+	}
+
+	private static void enumMapping(int iterations) {
+		int sink = 0;
+		for (int round = 0; round < 3; ++round) {
+			long start = System.nanoTime();
+			for (int i = 0; i < iterations; ++i)
+				sink += legacyFromInt(i % 5).ordinal();
+			long legacy = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < iterations; ++i)
+				sink += FieldStatus.fromInt(i % 5).ordinal();
+			long cached = System.nanoTime() - start;
+
+			if (2 == round) {
+				System.out.printf("FieldStatus.fromInt legacy: %6.2f ns  cached: %6.2f ns  (%d)%n", (double) legacy
+						/ iterations, (double) cached / iterations, sink & 1);
+			}
+		}
+	}
+
+	private static void reveals(String name, Engine engine, int clicks) {
+		Counter counter = new Counter();
+		engine.addMatrixObserver(counter);
+		Random random = new Random(42);
+
+		System.out.println(name + ":");
+		System.out.println("      size   ns/reveal  fields/reveal  ns/field");
+
+		for (int size : SIZES) {
+			int bombs = size * size / 5;
+			long nanos = 0;
+			counter.fields = 0;
+
+			engine.create(new GameConfig(size, size, bombs));
+			for (int c = 0; c < clicks; ++c) {
+				if (!engine.isReady() && !engine.isRunning())
+					engine.create(new GameConfig(size, size, bombs));
+
+				Position p = new Position(random.nextInt(size), random.nextInt(size));
+				long start = System.nanoTime();
+				engine.reveal(p);
+				nanos += System.nanoTime() - start;
+			}
+
+			System.out.printf("%10s %11.0f %14.2f %9.1f%n", size + "x" + size, (double) nanos / clicks,
+					(double) counter.fields / clicks, (counter.fields > 0) ? (double) nanos / counter.fields : 0.0);
+		}
+
+		engine.removeObserver(counter);
+	}
+
+	public static void main(String[] args) {
+		int clicks = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+
+		enumMapping(10000000);
+
+		// Warm up
+		reveals("Warm-up", new BitBoardEngine(), clicks / 4);
+		reveals("BitBoardEngine", new BitBoardEngine(), clicks);
+
+		Engine msm;
+		try {
+			msm = new MineSweeperMatrix();
+		} catch (Throwable t) {
+			System.out.println("MineSweeperMatrix: skipped (" + t + ")");
+			return;
+		}
+		reveals("MineSweeperMatrix", msm, clicks);
+		msm.close();
+	}
+}
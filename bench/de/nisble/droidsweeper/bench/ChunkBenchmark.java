@@ -0,0 +1,58 @@
+package de.nisble.droidsweeper.bench;
+
+import de.nisble.droidsweeper.game.Position;
+import de.nisble.droidsweeper.game.engine.ChunkedEngine;
+import de.nisble.droidsweeper.game.engine.SplitMix64;
+
+/** Measures the {@link ChunkedEngine} while exploring an endless board.<br>
+ * A walker reveals fields along a random walk that leaves the area of the
+ * unpacked chunks again and again. For each step count the mean latency of a
+ * click, the count of unpacked and packed chunks and the used heap are
+ * printed. The heap grows with the explored chunks only.
+ *
+ * <pre>
+ * javac -cp android.jar -sourcepath src -d bin/bench bench/de/nisble/droidsweeper/bench/ChunkBenchmark.java
+ * java -cp android.jar:bin/bench de.nisble.droidsweeper.bench.ChunkBenchmark [steps]
+ * </pre>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class ChunkBenchmark {
+	private static final int CHUNK = 16;
+	private static final int BOMBS = 25;
+
+	private ChunkBenchmark() {
+	}
+
+	private static long usedHeap() {
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 3; ++i)
+			System.gc();
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+	public static void main(String[] args) {
+		int steps = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+		ChunkedEngine engine = new ChunkedEngine();
+		engine.create(CHUNK, CHUNK, BOMBS, 1);
+		SplitMix64 random = new SplitMix64(2);
+
+		long base = usedHeap();
+		int x = 0;
+		int y = 0;
+		long total = 0;
+		for (int s = 1; s <= steps; ++s) {
+			// Step up to one chunk in a random direction
+			x += random.nextInt(2 * CHUNK + 1) - CHUNK;
+			y += random.nextInt(2 * CHUNK + 1) - CHUNK;
+
+			long start = System.nanoTime();
+			engine.reveal(new Position(x, y));
+			total += System.nanoTime() - start;
+
+			if (0 == s % (steps / 10)) {
+				System.out.printf("%7d clicks: %6d ns per click, %3d hot, %6d cold chunks, %6d KiB%n", s, total / s,
+						engine.getHotChunks(), engine.getColdChunks(), (usedHeap() - base) / 1024);
+			}
+		}
+		engine.close();
+	}
+}
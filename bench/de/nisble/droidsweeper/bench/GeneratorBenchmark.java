@@ -0,0 +1,74 @@
+package de.nisble.droidsweeper.bench;
+
+import de.nisble.droidsweeper.game.engine.MineGenerator;
+import de.nisble.droidsweeper.game.engine.SplitMix64;
+
+/** Sweeps the bomb density from 10% to 90% and measures the time of the bomb
+ * placement of {@link MineGenerator} against the rejection sampling that was
+ * used before (draw a random field, retry if it is a bomb already).<br>
+ * The boards are the biggest custom board of the settings (20x20) and a big
+ * board of 200x200. The first click is in the center of the board.
+ *
+ * <pre>
+ * javac -sourcepath src -d bin/bench bench/de/nisble/droidsweeper/bench/GeneratorBenchmark.java
+ * java -cp bin/bench de.nisble.droidsweeper.bench.GeneratorBenchmark [rounds]
+ * </pre>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class GeneratorBenchmark {
+	private static final int[][] BOARDS = { { 20, 20 }, { 200, 200 } };
+
+	private GeneratorBenchmark() {
+	}
+
+	/* Placement before MineGenerator. */
+	private static void rejection(long[] bombSet, int size, int bombs, int safe, SplitMix64 random) {
+		for (int placed = 0; placed < bombs;) {
+			int i = random.nextInt(size);
+			if (i != safe && (bombSet[i >>> 6] & (1L << i)) == 0) {
+				bombSet[i >>> 6] |= 1L << i;
+				++placed;
+			}
+		}
+	}
+
+	private static long run(int x, int y, int bombs, int rounds, boolean legacy) {
+		int size = x * y;
+		int safe = (y / 2) * x + x / 2;
+		long[] set = new long[(size + 63) >>> 6];
+		SplitMix64 random = new SplitMix64(42);
+		MineGenerator generator = new MineGenerator();
+
+		long start = System.nanoTime();
+		for (int r = 0; r < rounds; ++r) {
+			java.util.Arrays.fill(set, 0);
+			if (legacy)
+				rejection(set, size, bombs, safe, random);
+			else
+				generator.place(set, x, y, bombs, safe, random);
+		}
+		return (System.nanoTime() - start) / rounds;
+	}
+
+	public static void main(String[] args) {
+		int rounds = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+
+		for (int[] board : BOARDS) {
+			int x = board[0];
+			int y = board[1];
+
+			// Warm up
+			for (int d = 10; d <= 90; d += 10) {
+				run(x, y, x * y * d / 100, rounds, false);
+				run(x, y, x * y * d / 100, rounds, true);
+			}
+
+			System.out.println("Board " + x + "x" + y + ":");
+			System.out.println("  density    bombs  generator ns  rejection ns");
+			for (int d = 10; d <= 90; d += 10) {
+				int bombs = x * y * d / 100;
+				System.out.printf("  %6d%% %8d %13d %13d%n", d, bombs, run(x, y, bombs, rounds, false),
+						run(x, y, bombs, rounds, true));
+			}
+		}
+	}
+}
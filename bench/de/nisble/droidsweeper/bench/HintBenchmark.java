@@ -0,0 +1,82 @@
+package de.nisble.droidsweeper.bench;
+
+import de.nisble.droidsweeper.game.Position;
+import de.nisble.droidsweeper.game.engine.BitBoardEngine;
+import de.nisble.droidsweeper.game.engine.HintSolver;
+import de.nisble.droidsweeper.game.engine.SplitMix64;
+import de.nisble.droidsweeper.game.jni.FieldStatus;
+
+/** Measures the {@link HintSolver}.<br>
+ * A game on a big custom board is played by the hints. If there is no hint, a
+ * random hidden field is revealed. The game ends with the first loss. The mean
+ * time of a hint after a click is printed together with the mean time of a
+ * hint by a new solver that derives the frontier from the whole board, like a
+ * solver without the change stream would have to do. The latter is measured
+ * on every (size * size / 100)th click only.
+ *
+ * <pre>
+ * javac -cp android.jar -sourcepath src -d bin/bench bench/de/nisble/droidsweeper/bench/HintBenchmark.java
+ * java -cp android.jar:bin/bench de.nisble.droidsweeper.bench.HintBenchmark [size] [games]
+ * </pre>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class HintBenchmark {
+	private HintBenchmark() {
+	}
+
+	public static void main(String[] args) {
+		int size = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+		int games = (args.length > 1) ? Integer.parseInt(args[1]) : 3;
+		int sample = Math.max(1, size * size / 100);
+
+		SplitMix64 random = new SplitMix64(1);
+		long clicks = 0;
+		long hints = 0;
+		long incremental = 0;
+		long samples = 0;
+		long scratch = 0;
+
+		// The first game warms up
+		for (int g = -1; g < games; ++g) {
+			BitBoardEngine engine = new BitBoardEngine(0);
+			HintSolver solver = new HintSolver();
+			engine.addMatrixObserver(solver);
+			engine.create(size, size, size * size / 8, random.nextLong());
+			solver.reset(size, size, size * size / 8);
+			engine.reveal(new Position(size / 2, size / 2));
+
+			for (int k = 1; engine.isRunning(); ++k) {
+				long start = System.nanoTime();
+				Position p = solver.hint();
+				long stop = System.nanoTime();
+
+				if (g >= 0) {
+					++clicks;
+					incremental += stop - start;
+					if (0 == k % sample) {
+						start = System.nanoTime();
+						HintSolver fresh = new HintSolver();
+						fresh.load(engine.getBoard(), size * size / 8);
+						fresh.hint();
+						scratch += System.nanoTime() - start;
+						++samples;
+					}
+				}
+
+				if (p != null) {
+					hints += (g >= 0) ? 1 : 0;
+				} else {
+					int i;
+					do {
+						i = random.nextInt(size * size);
+					} while (engine.getBoard().getFieldStatus(i) != FieldStatus.HIDDEN);
+					p = new Position(i % size, i / size);
+				}
+				engine.reveal(p);
+			}
+			engine.close();
+		}
+
+		System.out.printf("%dx%d: %d clicks (%d hints), hint %.1f us, from scratch %.1f us%n", size, size, clicks,
+				hints, incremental / 1e3 / clicks, scratch / 1e3 / Math.max(1, samples));
+	}
+}
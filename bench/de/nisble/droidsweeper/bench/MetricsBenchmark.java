@@ -0,0 +1,66 @@
+package de.nisble.droidsweeper.bench;
+
+import de.nisble.droidsweeper.game.Position;
+import de.nisble.droidsweeper.game.engine.BitBoardEngine;
+import de.nisble.droidsweeper.game.engine.BoardMetrics;
+import de.nisble.droidsweeper.game.engine.SplitMix64;
+
+/** Measures the generation of a board together with its {@link BoardMetrics
+ * difficulty metrics}.<br>
+ * The {@link BitBoardEngine} places the bombs on the first click, indexes the
+ * openings and measures the board in the same pass. For each size the mean
+ * time of the first click (that also reveals the first field or opening) and
+ * the mean 3BV, openings and islands from {@link BitBoardEngine#getMetrics()}
+ * are printed. The bomb density is 16%, like on the standard levels.
+ *
+ * <pre>
+ * javac -cp android.jar -sourcepath src -d bin/bench bench/de/nisble/droidsweeper/bench/MetricsBenchmark.java
+ * java -cp android.jar:bin/bench de.nisble.droidsweeper.bench.MetricsBenchmark [boards] [workers]
+ * </pre>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class MetricsBenchmark {
+	private static final int[] SIZES = { 9, 16, 30, 100, 300, 1000 };
+
+	private MetricsBenchmark() {
+	}
+
+	public static void main(String[] args) {
+		int boards = (args.length > 0) ? Integer.parseInt(args[0]) : 20;
+		int workers = (args.length > 1) ? Integer.parseInt(args[1]) : 0;
+
+		BitBoardEngine engine = new BitBoardEngine(workers);
+		SplitMix64 random = new SplitMix64(1);
+
+		for (int size : SIZES) {
+			int fields = size * size;
+			Position first = new Position(size / 2, size / 2);
+			// Small boards need more runs for a stable mean
+			int runs = Math.max(boards, 1000000 / fields);
+			long time = 0;
+			long bbbv = 0;
+			long openings = 0;
+			long islands = 0;
+
+			// The first runs warm up
+			for (int r = -runs; r < runs; ++r) {
+				engine.create(size, size, fields * 16 / 100, random.nextLong());
+				long start = System.nanoTime();
+				engine.reveal(first);
+				long end = System.nanoTime();
+
+				if (r >= 0) {
+					BoardMetrics m = engine.getMetrics();
+					time += end - start;
+					bbbv += m.BBBV;
+					openings += m.OPENINGS;
+					islands += m.ISLANDS;
+				}
+			}
+
+			System.out.printf("%4dx%-4d first click %9.1f us (%5.1f ns per field), mean 3BV %d, openings %d, islands %d%n",
+					size, size, time / runs / 1e3, (double) time / runs / fields, bbbv / runs, openings / runs, islands
+							/ runs);
+		}
+		engine.close();
+	}
+}
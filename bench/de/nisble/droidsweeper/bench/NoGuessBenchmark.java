@@ -0,0 +1,77 @@
+package de.nisble.droidsweeper.bench;
+
+import java.util.Arrays;
+
+import de.nisble.droidsweeper.config.Level;
+import de.nisble.droidsweeper.game.engine.MineGenerator;
+import de.nisble.droidsweeper.game.engine.NoGuessGenerator;
+import de.nisble.droidsweeper.game.engine.Solver;
+import de.nisble.droidsweeper.game.engine.SplitMix64;
+
+/** Measures the no-guess board generation for the standard levels.<br>
+ * For each level the acceptance rate of the {@link Solver} on random boards is
+ * printed, followed by the mean time of a search of the
+ * {@link NoGuessGenerator} with 1, 2, 4 and 8 workers. The first click is in
+ * the center of the board. The searches of a level use the same seeds for all
+ * worker counts, so they find the same boards.
+ *
+ * <pre>
+ * javac -cp android.jar -sourcepath src -d bin/bench bench/de/nisble/droidsweeper/bench/NoGuessBenchmark.java
+ * java -cp android.jar:bin/bench de.nisble.droidsweeper.bench.NoGuessBenchmark [boards]
+ * </pre>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class NoGuessBenchmark {
+	private static final Level[] LEVELS = { Level.EASY, Level.NORMAL, Level.HARD };
+	private static final int[] WORKERS = { 1, 2, 4, 8 };
+
+	private NoGuessBenchmark() {
+	}
+
+	private static double acceptance(Level l, int boards) {
+		int safe = (l.Y / 2) * l.X + l.X / 2;
+		long[] set = new long[(l.X * l.Y + 63) >>> 6];
+		MineGenerator generator = new MineGenerator();
+		Solver solver = new Solver();
+		SplitMix64 seeds = new SplitMix64(1);
+
+		int accepted = 0;
+		for (int b = 0; b < boards; ++b) {
+			Arrays.fill(set, 0);
+			generator.place(set, l.X, l.Y, l.BOMBS, safe, new SplitMix64(seeds.nextLong()));
+			if (solver.solve(set, l.X, l.Y, l.BOMBS, safe))
+				++accepted;
+		}
+		return (double) accepted / boards;
+	}
+
+	private static long search(NoGuessGenerator generator, Level l, int boards) {
+		int safe = (l.Y / 2) * l.X + l.X / 2;
+		SplitMix64 seeds = new SplitMix64(2);
+
+		long start = System.nanoTime();
+		for (int b = 0; b < boards; ++b)
+			generator.find(l.X, l.Y, l.BOMBS, safe, seeds.nextLong());
+		return (System.nanoTime() - start) / boards;
+	}
+
+	public static void main(String[] args) {
+		int boards = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+
+		System.out.println(Runtime.getRuntime().availableProcessors() + " processors");
+		for (Level l : LEVELS) {
+			System.out.printf("%s (%dx%d, %d bombs): %.1f%% of the random boards are solvable%n", l, l.X, l.Y,
+					l.BOMBS, 100 * acceptance(l, 20 * boards));
+
+			for (int w : WORKERS) {
+				NoGuessGenerator generator = new NoGuessGenerator(w, NoGuessGenerator.DEFAULT_CANDIDATES);
+				try {
+					// Warm up
+					search(generator, l, boards);
+					System.out.printf("  %d workers: %8d us per board%n", w, search(generator, l, boards) / 1000);
+				} finally {
+					generator.close();
+				}
+			}
+		}
+	}
+}
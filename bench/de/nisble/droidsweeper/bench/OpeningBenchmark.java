@@ -0,0 +1,91 @@
+package de.nisble.droidsweeper.bench;
+
+import de.nisble.droidsweeper.game.Position;
+import de.nisble.droidsweeper.game.engine.BitBoardEngine;
+import de.nisble.droidsweeper.game.engine.SplitMix64;
+import de.nisble.droidsweeper.game.jni.FieldStatus;
+import de.nisble.droidsweeper.game.jni.GameStatus;
+import de.nisble.droidsweeper.game.jni.MatrixObserver;
+
+/** Measures the latency of clicks on big custom boards of the
+ * {@link BitBoardEngine}.<br>
+ * For each board size a game with a bomb density of 10% is played by revealing
+ * random hidden fields until it ends. The first click (that places the bombs
+ * and builds the index of the openings) is printed separately. For all other
+ * clicks the mean and worst latency and the mean time per revealed field are
+ * printed.
+ *
+ * <pre>
+ * javac -cp android.jar -sourcepath src -d bin/bench bench/de/nisble/droidsweeper/bench/OpeningBenchmark.java
+ * java -cp android.jar:bin/bench de.nisble.droidsweeper.bench.OpeningBenchmark [games]
+ * </pre>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class OpeningBenchmark {
+	private static final int[] SIZES = { 100, 300, 1000 };
+
+	private OpeningBenchmark() {
+	}
+
+	/* Counts the reported fields */
+	private static final class Counter implements MatrixObserver {
+		long fields;
+
+		@Override
+		public void onGameStatusChanged(GameStatus newStatus) {
+		}
+
+		@Override
+		public void onRemainingBombsChanged(int remainingBombs) {
+		}
+
+		@Override
+		public void afterFieldStatusChanged(Position p, FieldStatus fs, int adjacentBombs) {
+			++fields;
+		}
+	}
+
+	public static void main(String[] args) {
+		int games = (args.length > 0) ? Integer.parseInt(args[0]) : 20;
+		BitBoardEngine engine = new BitBoardEngine();
+		Counter counter = new Counter();
+		engine.addMatrixObserver(counter);
+
+		for (int size : SIZES) {
+			SplitMix64 random = new SplitMix64(size);
+			long first = 0;
+			long clicks = 0;
+			long total = 0;
+			long worst = 0;
+			long revealed = 0;
+
+			// The first games warm up
+			for (int g = -games; g < games; ++g) {
+				engine.create(size, size, size * size / 10, random.nextLong());
+
+				long start = System.nanoTime();
+				engine.reveal(new Position(size / 2, size / 2));
+				long t = System.nanoTime() - start;
+				if (g >= 0)
+					first += t;
+
+				while (engine.isRunning()) {
+					Position p = new Position(random.nextInt(size), random.nextInt(size));
+					counter.fields = 0;
+					start = System.nanoTime();
+					engine.reveal(p);
+					t = System.nanoTime() - start;
+					if (g >= 0 && counter.fields > 0) {
+						++clicks;
+						total += t;
+						worst = Math.max(worst, t);
+						revealed += counter.fields;
+					}
+				}
+			}
+
+			System.out.printf("%dx%d: first click %d us, %d ns per click, worst %d us, %d ns per field%n", size,
+					size, first / games / 1000, total / clicks, worst / 1000, total / revealed);
+		}
+		engine.close();
+	}
+}
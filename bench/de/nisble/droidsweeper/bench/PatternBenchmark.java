@@ -0,0 +1,111 @@
+package de.nisble.droidsweeper.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import de.nisble.droidsweeper.config.Level;
+import de.nisble.droidsweeper.game.Position;
+import de.nisble.droidsweeper.game.engine.BitBoardEngine;
+import de.nisble.droidsweeper.game.engine.HintSolver;
+import de.nisble.droidsweeper.game.engine.PatternCache;
+import de.nisble.droidsweeper.game.engine.SplitMix64;
+import de.nisble.droidsweeper.game.jni.FieldStatus;
+
+/** Measures the {@link PatternCache}.<br>
+ * The same games are played three times by the hints of a {@link HintSolver}:
+ * Without the pattern rule, with an empty cache and with the cache of the
+ * second run after it was written and read again (like at the next start). If
+ * there is no hint, a random hidden field is revealed. The game ends with the
+ * first loss. The mean time of a hint after a click, the hints and guesses per
+ * game, the won games and the hit rate of the cache are printed per board.
+ *
+ * <pre>
+ * javac -cp android.jar -sourcepath src -d bin/bench bench/de/nisble/droidsweeper/bench/PatternBenchmark.java
+ * java -cp android.jar:bin/bench de.nisble.droidsweeper.bench.PatternBenchmark [games]
+ * </pre>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class PatternBenchmark {
+	private static final int[][] BOARDS = { { Level.NORMAL.X, Level.NORMAL.Y, Level.NORMAL.BOMBS },
+			{ Level.HARD.X, Level.HARD.Y, Level.HARD.BOMBS }, { 30, 16, 99 }, { 60, 60, 720 } };
+
+	private PatternBenchmark() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		int games = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+
+		for (int[] b : BOARDS) {
+			// Warm up
+			play(b, games / 5, null, 0, null);
+
+			play(b, games, null, 1, "none");
+			PatternCache cache = new PatternCache();
+			play(b, games, cache, 1, "empty");
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			cache.write(out);
+			out.close();
+			PatternCache loaded = new PatternCache();
+			loaded.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+			System.out.printf("%3dx%-3d %3d bombs: %d patterns in %d bytes%n", b[0], b[1], b[2], loaded.size(),
+					bytes.size());
+			play(b, games, loaded, 1, "loaded");
+		}
+	}
+
+	/* Play the games of the given seed and print the results with the label,
+	 * unless it is null. */
+	private static void play(int[] b, int games, PatternCache cache, long seed, String label) {
+		SplitMix64 random = new SplitMix64(seed);
+		int size = b[0] * b[1];
+		long clicks = 0;
+		long hints = 0;
+		long time = 0;
+		int won = 0;
+
+		for (int g = 0; g < games; ++g) {
+			BitBoardEngine engine = new BitBoardEngine(0);
+			HintSolver solver = new HintSolver();
+			solver.setPatterns(cache);
+			engine.addMatrixObserver(solver);
+			engine.create(b[0], b[1], b[2], random.nextLong());
+			solver.reset(b[0], b[1], b[2]);
+			engine.reveal(new Position(b[0] / 2, b[1] / 2));
+
+			while (engine.isRunning()) {
+				long start = System.nanoTime();
+				Position p = solver.hint();
+				time += System.nanoTime() - start;
+				++clicks;
+
+				if (p != null) {
+					++hints;
+				} else {
+					int i;
+					do {
+						i = random.nextInt(size);
+					} while (engine.getBoard().getFieldStatus(i) != FieldStatus.HIDDEN
+							|| solver.isMine(new Position(i % b[0], i / b[0])));
+					p = new Position(i % b[0], i / b[0]);
+				}
+				engine.reveal(p);
+			}
+			if (engine.isWon())
+				++won;
+			engine.close();
+		}
+
+		if (null == label)
+			return;
+		System.out.printf("%3dx%-3d %3d bombs, %-7s hint %6.2f us, %6.1f hints and %5.2f guesses per game, won %4d/%d",
+				b[0], b[1], b[2], label + ":", time / 1e3 / clicks, (double) hints / games, (double) (clicks - hints)
+						/ games, won, games);
+		if (cache != null)
+			System.out.printf(", hit rate %.3f", cache.getHitRate());
+		System.out.println();
+	}
+}
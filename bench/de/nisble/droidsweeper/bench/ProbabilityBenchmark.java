@@ -0,0 +1,100 @@
+package de.nisble.droidsweeper.bench;
+
+import de.nisble.droidsweeper.config.Level;
+import de.nisble.droidsweeper.game.Position;
+import de.nisble.droidsweeper.game.engine.BitBoardEngine;
+import de.nisble.droidsweeper.game.engine.HintSolver;
+import de.nisble.droidsweeper.game.engine.Probabilities;
+import de.nisble.droidsweeper.game.engine.ProbabilitySolver;
+import de.nisble.droidsweeper.game.engine.SplitMix64;
+
+/** Measures the {@link ProbabilitySolver}.<br>
+ * Games on the standard levels and on a bigger custom board are played by
+ * the {@link HintSolver}. If there is no hint, the field with the lowest
+ * probability is revealed. The probabilities are solved after each click by
+ * a solver that keeps its components between the clicks and by a solver that
+ * is {@link ProbabilitySolver#clear() cleared} before, so it enumerates all
+ * components again. The mean times of both, the share of
+ * reused components and the count of unsolved (too big) frontiers are printed
+ * per board.
+ *
+ * <pre>
+ * javac -cp android.jar -sourcepath src -d bin/bench bench/de/nisble/droidsweeper/bench/ProbabilityBenchmark.java
+ * java -cp android.jar:bin/bench de.nisble.droidsweeper.bench.ProbabilityBenchmark [games] [workers]
+ * </pre>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class ProbabilityBenchmark {
+	private static final int[][] BOARDS = { { Level.EASY.X, Level.EASY.Y, Level.EASY.BOMBS },
+			{ Level.NORMAL.X, Level.NORMAL.Y, Level.NORMAL.BOMBS }, { Level.HARD.X, Level.HARD.Y, Level.HARD.BOMBS },
+			{ 60, 60, 720 } };
+
+	private ProbabilityBenchmark() {
+	}
+
+	public static void main(String[] args) {
+		int games = (args.length > 0) ? Integer.parseInt(args[0]) : 50;
+		int workers = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+		for (int[] b : BOARDS) {
+			SplitMix64 random = new SplitMix64(1);
+			ProbabilitySolver memo = new ProbabilitySolver(workers);
+			ProbabilitySolver fresh = new ProbabilitySolver(workers);
+			long hits = 0;
+			long misses = 0;
+			long solves = 0;
+			long unsolved = 0;
+			long memoTime = 0;
+			long freshTime = 0;
+			int won = 0;
+
+			// The first games warm up
+			for (int g = -games / 5; g < games; ++g) {
+				BitBoardEngine engine = new BitBoardEngine(0);
+				HintSolver hints = new HintSolver();
+				engine.addMatrixObserver(hints);
+				engine.create(b[0], b[1], b[2], random.nextLong());
+				hints.reset(b[0], b[1], b[2]);
+				engine.reveal(new Position(b[0] / 2, b[1] / 2));
+
+				if (0 == g) {
+					hits = memo.getHits();
+					misses = memo.getMisses();
+				}
+
+				while (engine.isRunning()) {
+					long start = System.nanoTime();
+					Probabilities p = memo.solve(hints);
+					long solved = System.nanoTime();
+					fresh.clear();
+					fresh.solve(hints);
+					long stop = System.nanoTime();
+
+					if (g >= 0) {
+						++solves;
+						unsolved += (null == p) ? 1 : 0;
+						memoTime += solved - start;
+						freshTime += stop - solved;
+					}
+
+					Position next = hints.hint();
+					if (null == next && p != null)
+						next = p.safest();
+					if (null == next)
+						next = new Position(random.nextInt(b[0]), random.nextInt(b[1]));
+					engine.reveal(next);
+				}
+				if (g >= 0 && engine.isWon())
+					++won;
+				engine.close();
+			}
+
+			hits = memo.getHits() - hits;
+			misses = memo.getMisses() - misses;
+			System.out.printf("%3dx%-3d %4d bombs: %6d solves (%d unsolved), memo %7.1f us, fresh %7.1f us, "
+					+ "reused %4.1f%%, won %d/%d%n", b[0], b[1], b[2], solves, unsolved, memoTime / 1e3 / solves,
+					freshTime / 1e3 / solves, 100.0 * hits / Math.max(1, hits + misses), won, games);
+			memo.close();
+			fresh.close();
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package de.nisble.droidsweeper.bench;
+
+import de.nisble.droidsweeper.config.Level;
+import de.nisble.droidsweeper.game.Position;
+import de.nisble.droidsweeper.game.engine.BitBoardEngine;
+import de.nisble.droidsweeper.game.engine.HintSolver;
+import de.nisble.droidsweeper.game.engine.Probabilities;
+import de.nisble.droidsweeper.game.engine.ProbabilitySampler;
+import de.nisble.droidsweeper.game.engine.ProbabilitySolver;
+import de.nisble.droidsweeper.game.engine.SplitMix64;
+
+/** Measures the {@link ProbabilitySampler}.<br>
+ * Games are played like in the {@link ProbabilityBenchmark}. After each click
+ * the probabilities are estimated within the time box and compared to the
+ * exact ones of the {@link ProbabilitySolver}. The mean and the biggest error
+ * of a field are printed per board, together with the count of estimates the
+ * sampler declined for too few {@link ProbabilitySampler#MIN_EFFECTIVE
+ * effective runs}. Then the draws per time box are printed for 1 to the given
+ * count of workers on a big board.
+ *
+ * <pre>
+ * javac -cp android.jar -sourcepath src -d bin/bench bench/de/nisble/droidsweeper/bench/SamplerBenchmark.java
+ * java -cp android.jar:bin/bench de.nisble.droidsweeper.bench.SamplerBenchmark [games] [milliseconds] [workers]
+ * </pre>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class SamplerBenchmark {
+	private static final int[][] BOARDS = { { Level.NORMAL.X, Level.NORMAL.Y, Level.NORMAL.BOMBS },
+			{ Level.HARD.X, Level.HARD.Y, Level.HARD.BOMBS }, { 60, 60, 720 } };
+	/* Board of the scaling of the workers */
+	private static final int[] HUGE = { 400, 400, 32000 };
+
+	private SamplerBenchmark() {
+	}
+
+	public static void main(String[] args) {
+		int games = (args.length > 0) ? Integer.parseInt(args[0]) : 5;
+		long millis = (args.length > 1) ? Long.parseLong(args[1]) : ProbabilitySampler.DEFAULT_MILLIS;
+		int workers = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+		ProbabilitySolver exact = new ProbabilitySolver(0);
+		for (int[] b : BOARDS) {
+			SplitMix64 random = new SplitMix64(1);
+			ProbabilitySampler sampler = new ProbabilitySampler(workers, 1);
+			long compared = 0;
+			long declined = 0;
+			long draws = 0;
+			double mean = 0;
+			double worst = 0;
+
+			for (int g = 0; g < games; ++g) {
+				HintSolver hints = new HintSolver();
+				BitBoardEngine engine = start(b, random.nextLong(), hints);
+				while (engine.isRunning()) {
+					Probabilities p = exact.solve(hints);
+					Probabilities q = sampler.sample(hints, millis);
+					if (p != null && null == q)
+						++declined;
+					if (p != null && q != null) {
+						double error = 0;
+						for (int i = 0; i < b[0] * b[1]; ++i) {
+							double d = Math.abs(p.get(i) - q.get(i));
+							// NaN on revealed fields
+							if (d > error)
+								error = d;
+						}
+						++compared;
+						draws += sampler.getDraws();
+						mean += error;
+						worst = Math.max(worst, error);
+					}
+					click(engine, hints, p, random);
+				}
+				engine.close();
+			}
+
+			System.out.printf(
+					"%3dx%-3d %4d bombs: %6d compared, %5d declined, %9.0f draws, error of the worst field mean %.4f max %.4f%n",
+					b[0], b[1], b[2], compared, declined, (double) draws / Math.max(1, compared),
+					mean / Math.max(1, compared), worst);
+			sampler.close();
+		}
+
+		// The same positions for each count of workers
+		for (int w = 1; w <= Math.max(1, workers); ++w) {
+			SplitMix64 random = new SplitMix64(2);
+			ProbabilitySampler sampler = new ProbabilitySampler(w, 1);
+			HintSolver hints = new HintSolver();
+			BitBoardEngine engine = start(HUGE, random.nextLong(), hints);
+			long samples = 0;
+			long draws = 0;
+			long unsolved = 0;
+			for (int c = 0; c < 200 && engine.isRunning(); ++c) {
+				Probabilities p = sampler.sample(hints, millis);
+				++samples;
+				draws += sampler.getDraws();
+				unsolved += (null == p) ? 1 : 0;
+				click(engine, hints, p, random);
+			}
+			engine.close();
+			System.out.printf("%3dx%-3d %5d bombs, %2d workers: %9.0f draws per %d ms (%d of %d unsolved)%n", HUGE[0],
+					HUGE[1], HUGE[2], w, (double) draws / samples, millis, unsolved, samples);
+			sampler.close();
+		}
+		exact.close();
+	}
+
+	private static BitBoardEngine start(int[] b, long seed, HintSolver hints) {
+		BitBoardEngine engine = new BitBoardEngine(0);
+		engine.addMatrixObserver(hints);
+		engine.create(b[0], b[1], b[2], seed);
+		hints.reset(b[0], b[1], b[2]);
+		engine.reveal(new Position(b[0] / 2, b[1] / 2));
+		return engine;
+	}
+
+	/* Reveal a hint, else the safest field, else a random one */
+	private static void click(BitBoardEngine engine, HintSolver hints, Probabilities p, SplitMix64 random) {
+		Position next = hints.hint();
+		if (null == next && p != null)
+			next = p.safest();
+		if (null == next)
+			next = new Position(random.nextInt(engine.getX()), random.nextInt(engine.getY()));
+		engine.reveal(next);
+	}
+}
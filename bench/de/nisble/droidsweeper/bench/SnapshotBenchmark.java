@@ -0,0 +1,110 @@
+package de.nisble.droidsweeper.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import de.nisble.droidsweeper.game.Position;
+import de.nisble.droidsweeper.game.engine.BitBoardEngine;
+import de.nisble.droidsweeper.game.engine.SplitMix64;
+
+/** Measures the snapshots of the {@link BitBoardEngine}.<br>
+ * A game on a big custom board is played by revealing and marking random
+ * fields (a lost click is undone). Then the mean time to write the snapshot
+ * and to restore it into another engine is printed together with the size of
+ * the snapshot. A restore should take less than a frame (16 ms). The restored
+ * board is compared to the original one and both games are continued with
+ * the same clicks to check that they stay equal (including their hashes).
+ *
+ * <pre>
+ * javac -cp android.jar -sourcepath src -d bin/bench bench/de/nisble/droidsweeper/bench/SnapshotBenchmark.java
+ * java -cp android.jar:bin/bench de.nisble.droidsweeper.bench.SnapshotBenchmark [size] [runs]
+ * </pre>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class SnapshotBenchmark {
+	private SnapshotBenchmark() {
+	}
+
+	private static byte[] write(BitBoardEngine engine) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		engine.writeSnapshot(out);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static void read(BitBoardEngine engine, byte[] snapshot) throws IOException {
+		engine.readSnapshot(new DataInputStream(new ByteArrayInputStream(snapshot)));
+	}
+
+	private static boolean equal(BitBoardEngine a, BitBoardEngine b) {
+		ByteBuffer ba = a.getBoard().getBuffer();
+		ByteBuffer bb = b.getBoard().getBuffer();
+		for (int i = 0; i < a.getX() * a.getY(); ++i) {
+			if (ba.get(32 + i) != bb.get(32 + i))
+				return false;
+		}
+		return a.getCounters().toString().equals(b.getCounters().toString()) && a.boardHash() == b.boardHash()
+				&& a.stateHash() == b.stateHash();
+	}
+
+	public static void main(String[] args) throws IOException {
+		int size = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+		int runs = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+
+		BitBoardEngine engine = new BitBoardEngine(0);
+		SplitMix64 random = new SplitMix64(1);
+		engine.create(size, size, size * size / 6, random.nextLong());
+		engine.reveal(new Position(size / 2, size / 2));
+		for (int k = 0; k < size * 2; ++k) {
+			Position p = new Position(random.nextInt(size), random.nextInt(size));
+			if (0 == k % 3)
+				engine.cycleMark(p);
+			else
+				engine.reveal(p);
+			// Take back a lost click
+			if (!engine.isRunning())
+				engine.undo();
+		}
+
+		BitBoardEngine restored = new BitBoardEngine(0);
+		byte[] snapshot = null;
+		long writing = 0;
+		long reading = 0;
+		// The first runs warm up
+		for (int r = -runs; r < runs; ++r) {
+			long start = System.nanoTime();
+			snapshot = write(engine);
+			if (r >= 0)
+				writing += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			read(restored, snapshot);
+			if (r >= 0)
+				reading += System.nanoTime() - start;
+		}
+
+		System.out.printf("%dx%d: %d bytes, write %.2f ms, restore %.2f ms%n", size, size, snapshot.length,
+				writing / runs / 1e6, reading / runs / 1e6);
+
+		boolean equal = equal(engine, restored);
+		for (int k = 0; k < size && equal && engine.isRunning(); ++k) {
+			Position p = new Position(random.nextInt(size), random.nextInt(size));
+			if (0 == k % 3) {
+				engine.cycleMark(p);
+				restored.cycleMark(p);
+			} else {
+				engine.reveal(p);
+				restored.reveal(p);
+			}
+			equal = equal(engine, restored);
+		}
+		System.out.println(equal ? "Restored game is equal" : "Restored game differs!");
+
+		engine.close();
+		restored.close();
+	}
+}
@@ -0,0 +1,57 @@
+package de.nisble.droidsweeper.bench;
+
+import de.nisble.droidsweeper.game.Position;
+import de.nisble.droidsweeper.game.engine.BitBoardEngine;
+import de.nisble.droidsweeper.game.engine.SplitMix64;
+
+/** Measures the first click on mega boards of the {@link BitBoardEngine}.<br>
+ * The first click places the bombs, counts the adjacent bombs, builds the
+ * index of the openings and reveals the opening under the click. The index is
+ * built on the calling thread (sequential) and on tiles by 1, 2, 4 and 8
+ * workers. The bomb density is 10%.
+ *
+ * <pre>
+ * javac -cp android.jar -sourcepath src -d bin/bench bench/de/nisble/droidsweeper/bench/TileBenchmark.java
+ * java -Xmx1g -cp android.jar:bin/bench de.nisble.droidsweeper.bench.TileBenchmark [games]
+ * </pre>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class TileBenchmark {
+	private static final int[] SIZES = { 1000, 2000, 3000 };
+	private static final int[] WORKERS = { 0, 1, 2, 4, 8 };
+
+	private TileBenchmark() {
+	}
+
+	private static long firstClick(BitBoardEngine engine, int size, int games) {
+		SplitMix64 random = new SplitMix64(size);
+		long total = 0;
+		for (int g = 0; g < games; ++g) {
+			engine.create(size, size, size * size / 10, random.nextLong());
+			long start = System.nanoTime();
+			engine.reveal(new Position(size / 2, size / 2));
+			total += System.nanoTime() - start;
+		}
+		return total / games;
+	}
+
+	public static void main(String[] args) {
+		int games = (args.length > 0) ? Integer.parseInt(args[0]) : 5;
+
+		System.out.println(Runtime.getRuntime().availableProcessors() + " processors");
+		for (int size : SIZES) {
+			System.out.print(size + "x" + size + ":");
+			for (int w : WORKERS) {
+				BitBoardEngine engine = new BitBoardEngine(w);
+				try {
+					// Warm up
+					firstClick(engine, size, games);
+					long t = firstClick(engine, size, games);
+					System.out.print((0 == w ? "  sequential " : "  " + w + " workers ") + t / 1000000 + " ms");
+				} finally {
+					engine.close();
+				}
+			}
+			System.out.println();
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package de.nisble.droidsweeper.bench;
+
+import de.nisble.droidsweeper.game.Position;
+import de.nisble.droidsweeper.game.engine.BitBoardEngine;
+import de.nisble.droidsweeper.game.engine.SplitMix64;
+import de.nisble.droidsweeper.game.engine.Topology;
+
+/** Measures the {@link BitBoardEngine} on boards of different
+ * {@link Topology topologies}.<br>
+ * For each topology the build time of the neighbour table is printed,
+ * followed by the mean time of the first click (that places the bombs and
+ * counts the adjacent bombs) and of the other clicks of games with a bomb
+ * density of 10% that are played by revealing random fields. The plain grid
+ * without a topology (with the index of the openings) is the reference.
+ *
+ * <pre>
+ * javac -cp android.jar -sourcepath src -d bin/bench bench/de/nisble/droidsweeper/bench/TopologyBenchmark.java
+ * java -cp android.jar:bin/bench de.nisble.droidsweeper.bench.TopologyBenchmark [games]
+ * </pre>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class TopologyBenchmark {
+	private static final int SIZE = 300;
+
+	private TopologyBenchmark() {
+	}
+
+	private static void play(String name, Topology t, int games) {
+		BitBoardEngine engine = new BitBoardEngine(0);
+		SplitMix64 random = new SplitMix64(1);
+		int size = (null == t) ? SIZE * SIZE : t.size();
+		long first = 0;
+		long clicks = 0;
+		long total = 0;
+
+		// The first games warm up
+		for (int g = -games; g < games; ++g) {
+			if (null == t)
+				engine.create(SIZE, SIZE, size / 10, random.nextLong());
+			else
+				engine.create(t, size / 10, random.nextLong());
+			int x = engine.getX();
+			int y = engine.getY();
+
+			long start = System.nanoTime();
+			engine.reveal(new Position(x / 2, y / 2));
+			if (g >= 0)
+				first += System.nanoTime() - start;
+
+			while (engine.isRunning()) {
+				Position p = new Position(random.nextInt(x), random.nextInt(y));
+				start = System.nanoTime();
+				engine.reveal(p);
+				if (g >= 0) {
+					total += System.nanoTime() - start;
+					++clicks;
+				}
+			}
+		}
+		engine.close();
+
+		System.out.printf("%-8s first click %6d us, %6d ns per click%n", name, first / games / 1000, total / clicks);
+	}
+
+	public static void main(String[] args) {
+		int games = (args.length > 0) ? Integer.parseInt(args[0]) : 20;
+
+		play("plain", null, games);
+
+		long start = System.nanoTime();
+		Topology grid = Topology.grid(SIZE, SIZE);
+		Topology torus = Topology.torus(SIZE, SIZE);
+		Topology hex = Topology.hex(SIZE, SIZE);
+		Topology layered = Topology.layered(SIZE, SIZE / 10, 10);
+		System.out.printf("%d ms per neighbour table%n", (System.nanoTime() - start) / 4000000);
+
+		play("grid", grid, games);
+		play("torus", torus, games);
+		play("hex", hex, games);
+		play("layered", layered, games);
+	}
+}
@@ -0,0 +1,146 @@
+package de.nisble.droidsweeper.bench;
+
+import java.util.Random;
+
+import de.nisble.droidsweeper.config.GameConfig;
+import de.nisble.droidsweeper.config.Level;
+import de.nisble.droidsweeper.game.Position;
+import de.nisble.droidsweeper.game.engine.BitBoardEngine;
+import de.nisble.droidsweeper.game.engine.Engine;
+import de.nisble.droidsweeper.game.jni.FieldStatus;
+import de.nisble.droidsweeper.game.jni.GameStatus;
+import de.nisble.droidsweeper.game.jni.MatrixObserver;
+import de.nisble.droidsweeper.game.jni.MineSweeperMatrix;
+
+/** Models the JNI transitions per click of the old per-field upcall
+ * protocol of msm-jni.cpp on a {@link Level#HARD} board and measures the
+ * clicks of the batched change list.<br>
+ * The per-field protocol isn't part of the tree anymore, so it can't be
+ * measured. Its transitions are derived from the count of changed fields of
+ * each click:
+ * <ul>
+ * <li>Per-field upcalls (model): 3 per changed field (FieldStatus.fromInt,
+ * FieldListener.onStatusChanged, afterFieldStatusChanged), 2 per change of the
+ * game status (GameStatus.fromInt, onGameStatusChanged), 1 per change of the
+ * remaining bombs. Plus the downcall of the click itself.</li>
+ * <li>Batched: msm-jni.cpp doesn't call back into Java. A click is one
+ * downcall that returns the packed change list. This is a property of the
+ * code, not a measurement.</li>
+ * </ul>
+ * The games are played by random clicks on the {@link BitBoardEngine}, that
+ * follows the same rules as libmsm, and on the {@link MineSweeperMatrix} when
+ * libmsm can be loaded (run on a device or with a host build of libmsm in
+ * java.library.path). Otherwise it is skipped. Per engine the changed fields,
+ * the modelled upcalls of the per-field protocol and the measured time per
+ * click including the fan-out to the observers are printed.
+ *
+ * <pre>
+ * javac -cp android.jar -sourcepath src -d bin/bench bench/de/nisble/droidsweeper/bench/UpcallBenchmark.java
+ * java -cp android.jar:bin/bench de.nisble.droidsweeper.bench.UpcallBenchmark [games]
+ * </pre>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class UpcallBenchmark {
+	private UpcallBenchmark() {
+	}
+
+	/* Counts the events of the current click */
+	private static final class Counter implements MatrixObserver {
+		boolean[] revealed;
+		int fields;
+		int status;
+		int bombs;
+
+		void reset() {
+			fields = 0;
+			status = 0;
+			bombs = 0;
+		}
+
+		@Override
+		public void onGameStatusChanged(GameStatus newStatus) {
+			++status;
+		}
+
+		@Override
+		public void onRemainingBombsChanged(int remainingBombs) {
+			++bombs;
+		}
+
+		@Override
+		public void afterFieldStatusChanged(Position p, FieldStatus fs, int adjacentBombs) {
+			++fields;
+			revealed[p.Y * Level.HARD.X + p.X] = true;
+		}
+	}
+
+	public static void main(String[] args) {
+		int games = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+
+		// Warm up
+		play(null, new BitBoardEngine(), games / 5);
+		play("BitBoardEngine", new BitBoardEngine(), games);
+
+		Engine msm;
+		try {
+			msm = new MineSweeperMatrix();
+		} catch (Throwable t) {
+			System.out.println("MineSweeperMatrix: skipped (" + t + ")");
+			return;
+		}
+		play(null, msm, games / 5);
+		play("MineSweeperMatrix", msm, games);
+	}
+
+	/* Play the games by random clicks on hidden fields and print the results
+	 * with the name, unless it is null. The engine is closed afterwards. */
+	private static void play(String name, Engine engine, int games) {
+		int x = Level.HARD.X;
+		int y = Level.HARD.Y;
+
+		Random random = new Random(42);
+		Counter counter = new Counter();
+		engine.addMatrixObserver(counter);
+
+		long clicks = 0;
+		long fields = 0;
+		long legacyUpcalls = 0;
+		long maxLegacyUpcalls = 0;
+		long nanos = 0;
+
+		for (int g = 0; g < games; ++g) {
+			engine.create(new GameConfig(Level.HARD));
+			counter.revealed = new boolean[x * y];
+
+			while (!engine.isWon() && !engine.isLost()) {
+				int i;
+				do {
+					i = random.nextInt(x * y);
+				} while (counter.revealed[i]);
+
+				counter.reset();
+				long start = System.nanoTime();
+				engine.reveal(new Position(i % x, i / x));
+				nanos += System.nanoTime() - start;
+
+				long upcalls = 3L * counter.fields + 2L * counter.status + counter.bombs;
+				maxLegacyUpcalls = Math.max(maxLegacyUpcalls, upcalls);
+				legacyUpcalls += upcalls;
+				fields += counter.fields;
+				++clicks;
+			}
+		}
+		engine.removeObserver(counter);
+		engine.close();
+		if (null == name)
+			return;
+
+		System.out.println(name + ": HARD " + x + "x" + y + " bombs " + Level.HARD.BOMBS + ", games " + games
+				+ ", clicks " + clicks);
+		System.out.printf("  Changed fields per click:              avg %8.2f%n", (double) fields / clicks);
+		System.out.printf("  Per-field protocol upcalls (model):    avg %8.2f  max %d%n", (double) legacyUpcalls
+				/ clicks, maxLegacyUpcalls);
+		System.out.printf("  Per-field protocol transitions (model) avg %8.2f%n", 1.0 + (double) legacyUpcalls / clicks);
+		System.out.printf("  Batched protocol transitions:              %8d (one downcall, no upcalls)%n", 1);
+		System.out.printf("  Click incl. fan-out (measured):        avg %8.0f ns%n", (double) nanos / clicks);
+	}
+}
@@ -4,12 +4,25 @@ PRAGMA foreign_keys=1;
 -- Create tables
 CREATE TABLE player ("_id" INTEGER PRIMARY KEY, "name" TEXT NOT NULL);
 CREATE TABLE level ("_id" INTEGER PRIMARY KEY, "level" INTEGER UNIQUE NOT NULL, "x" INTEGER NOT NULL, "y" INTEGER NOT NULL, "bombs" INTEGER NOT NULL);
-CREATE TABLE game ("_id" INTEGER PRIMARY KEY, "gameplayer" REFERENCES player("_id"), "gamelevel" REFERENCES level("level"), "time" INTEGER NOT NULL, "date" DATETIME NOT NULL, replay BLOB);
+CREATE TABLE game ("_id" INTEGER PRIMARY KEY, "gameplayer" REFERENCES player("_id"), "gamelevel" REFERENCES level("level"), "time" INTEGER NOT NULL, "date" DATETIME NOT NULL, replay BLOB, seed INTEGER, boardhash INTEGER, bbbv INTEGER, openings INTEGER, islands INTEGER);
 
 -- Create some views
-CREATE VIEW IF NOT EXISTS level4game AS SELECT game._id, level, time, date, gameplayer FROM game JOIN level ON gamelevel=level;
+CREATE VIEW IF NOT EXISTS level4game AS SELECT game._id, level, time, date, gameplayer, bbbv, openings, islands FROM game JOIN level ON gamelevel=level;
 CREATE VIEW IF NOT EXISTS player4game AS SELECT game._id, name FROM game JOIN player ON gameplayer=player._id;
-CREATE VIEW IF NOT EXISTS games AS SELECT l4g._id AS _id, level, name, time, date FROM level4game l4g JOIN player4game p4g ON l4g._id=p4g._id;
+CREATE VIEW IF NOT EXISTS games AS SELECT l4g._id AS _id, level, name, time, date, bbbv, openings, islands FROM level4game l4g JOIN player4game p4g ON l4g._id=p4g._id;
+
+-- Upgrade from version 4 (keeps the games)
+ALTER TABLE game ADD COLUMN seed INTEGER;
+-- Upgrade from version 5
+ALTER TABLE game ADD COLUMN boardhash INTEGER;
+-- Upgrade from version 6
+ALTER TABLE game ADD COLUMN bbbv INTEGER;
+ALTER TABLE game ADD COLUMN openings INTEGER;
+ALTER TABLE game ADD COLUMN islands INTEGER;
+DROP VIEW IF EXISTS games;
+DROP VIEW IF EXISTS level4game;
+CREATE VIEW IF NOT EXISTS level4game AS SELECT game._id, level, time, date, gameplayer, bbbv, openings, islands FROM game JOIN level ON gamelevel=level;
+CREATE VIEW IF NOT EXISTS games AS SELECT l4g._id AS _id, level, name, time, date, bbbv, openings, islands FROM level4game l4g JOIN player4game p4g ON l4g._id=p4g._id;
 
 -- Insert standard difficulty levels
 INSERT INTO level (level, x, y, bombs) VALUES (0, 6, 8, 6);
@@ -1,367 +1,479 @@
-/*
- * msm-jni.cpp
- *
- *  Created on: 19.11.2012
- *      Author: moritz
- */
-
-#include "msm-jni.hpp"
-
-#include <string>
-#include <sstream>
-#include <android/log.h>
-#define  LOG_TAG    "msm-jni"
-#if NDEBUG
-#define  LOGV(...)
-#define  LOGD(...)
-#define  LOGI(...)
-#else
-#define  LOGV(...)  __android_log_print(ANDROID_LOG_VERBOSE,LOG_TAG,__VA_ARGS__)
-#define  LOGD(...)  __android_log_print(ANDROID_LOG_DEBUG,LOG_TAG,__VA_ARGS__)
-#define  LOGI(...)  __android_log_print(ANDROID_LOG_INFO,LOG_TAG,__VA_ARGS__)
-#endif
-#define  LOGW(...)  __android_log_print(ANDROID_LOG_WARNING,LOG_TAG,__VA_ARGS__)
-#define  LOGE(...)  __android_log_print(ANDROID_LOG_ERROR,LOG_TAG,__VA_ARGS__)
-
-#define EX_OOB "java/lang/IndexOutOfBoundsException"
-#define EX_NP "java/lang/NullPointerException"
-
-#define JAVA_EXCEPTION(ex_str, message) java_exception(__FILE__,__LINE__, ex_str, message)
-
-#include "matrix.hpp"
-
-namespace
-{
-
-JavaVM* cached_vm;
-
-// GlobalRef to out of bounds exception
-jclass jcls_oob;
-// GlobalRef to null pointer exception
-jclass jcls_np;
-
-// GlobalRef to the GameStatus enum class
-jclass jcls_GameStatus;
-// MethodID if the fromInt method of GameStatus
-jmethodID method_GameStatus_fromInt;
-
-// GlobalRef to the FieldStatus enum class
-jclass jcls_FieldStatus;
-// MethodID if the fromInt method of FieldStatus
-jmethodID method_FieldStatus_fromInt;
-
-jobject jobj_MineSweeperMatrix;
-jmethodID method_MineSweeperMatrix_onGameStatusChanged;
-jmethodID method_MineSweeperMatrix_onRemainingBombsChanged;
-jmethodID method_MineSweeperMatrix_afterFieldStatusChanged;
-
-msm::Matrix matrix;
-
-void java_exception(const char* file, int line, const char* exception, const char* msg)
-{
-	JNIEnv* env;
-	jclass jcls_ex = 0;
-
-	cached_vm->AttachCurrentThread(&env, NULL);
-	if (0 == env)
-	{
-		LOGE("Unable to attach current thread");
-		return;
-	}
-
-	jcls_ex = env->FindClass(exception);
-	if (0 == jcls_ex)
-	{
-		LOGE("Unable to find exception class: %s", exception);
-		return;
-	}
-
-	std::stringstream ss;
-	ss << "JNIException in " << file << " at " << line << ": " << msg;
-	env->ThrowNew(jcls_ex, ss.str().data());
-	env->DeleteLocalRef(jcls_ex);
-}
-
-struct MatrixHandler: public msm::MatrixObserver
-{
-	void onGameStatusChanged(msm::Matrix const& /* matrix */, msm::GAMESTATUS newStatus)
-	{
-		LOGD("Gamestatus changed to %s", msm::toString(newStatus));
-
-		JNIEnv* env;
-		cached_vm->AttachCurrentThread(&env, NULL);
-		if (0 == env)
-		{
-			LOGE("Unable to attach current thread");
-			return;
-		}
-
-		jobject gamestatus = env->CallStaticObjectMethod(jcls_GameStatus, method_GameStatus_fromInt, (jint) newStatus);
-		if (0 == gamestatus)
-		{
-			LOGE("Unable to create game status object");
-			return;
-		}
-
-		// Call onGameStatusChanged() in the binding
-		env->CallVoidMethod(jobj_MineSweeperMatrix, method_MineSweeperMatrix_onGameStatusChanged, gamestatus);
-	}
-	void onRemainingBombsChanged(msm::Matrix const& /* matrix */, int32_t remainingBombs)
-	{
-		LOGD("Remaining bombs: %d", remainingBombs);
-
-		JNIEnv* env;
-		cached_vm->AttachCurrentThread(&env, NULL);
-		if (0 == env)
-		{
-			LOGE("Unable to attach current thread");
-			return;
-		}
-
-		// Call onRemainingBombsChanged() in the binding
-		env->CallVoidMethod(jobj_MineSweeperMatrix, method_MineSweeperMatrix_onRemainingBombsChanged,
-				(jint) remainingBombs);
-	}
-	void onFieldStatusChanged(msm::Matrix const& /* matrix */, msm::Field const& field, msm::FIELDSTATUS newStatus)
-	{
-		LOGD("Status of X:%d Y:%d changed to %s", field.getPosition().X, field.getPosition().Y,
-				msm::toString(newStatus));
-
-		jobject obj = (jobject) field.getJavaRef();
-		if (0 == obj)
-		{
-			JAVA_EXCEPTION(EX_NP, "No object ref configured for this field");
-			return;
-		}
-
-		jmethodID met = (jmethodID) field.getJavaMethodID();
-		if (0 == met)
-		{
-			JAVA_EXCEPTION(EX_NP, "No method configured for this field");
-			return;
-		}
-
-		JNIEnv* env;
-		cached_vm->AttachCurrentThread(&env, NULL);
-		if (0 == env)
-		{
-			LOGE("Unable to attach current thread");
-			return;
-		}
-
-		jobject fieldstatus = env->CallStaticObjectMethod(jcls_FieldStatus, method_FieldStatus_fromInt,
-				(jint) newStatus);
-		if (0 == fieldstatus)
-		{
-			LOGE("Unable to create field status object");
-			return;
-		}
-
-		// Call the method stored in the field
-		env->CallVoidMethod(obj, met, fieldstatus, field.getAdjacentBombs());
-
-		// Call afterFieldStatusChanged() in the binding
-		env->CallVoidMethod(jobj_MineSweeperMatrix, method_MineSweeperMatrix_afterFieldStatusChanged,
-				field.getPosition().X, field.getPosition().Y, field.getAdjacentBombs(), fieldstatus);
-	}
-
-	void onFieldDelete(msm::Matrix const& /* matrix */, msm::Field const& field)
-	{
-		LOGD("Deleting X:%d Y:%d", field.getPosition().X, field.getPosition().Y);
-
-		JNIEnv* env;
-		cached_vm->AttachCurrentThread(&env, NULL);
-		if (NULL == env)
-		{
-			LOGE("Unable to attach current thread");
-			return;
-		}
-
-		env->DeleteGlobalRef((jobject) (field.getJavaRef()));
-	}
-} matrixHandler;
-
-}
-
-#ifdef __cplusplus
-extern "C"
-{
-#endif
-
-JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *reserved)
-{
-	cached_vm = vm;
-	return JNI_VERSION_1_2;
-}
-
-JNIEXPORT void JNICALL JAVA(init)(JNIEnv* env, jobject thiz)
-{
-	LOGI("Initializing libmsm");
-
-	matrix.addObserver(&matrixHandler);
-
-	// Cache classes
-	jclass tmp;
-
-	tmp = env->FindClass("java/lang/IndexOutOfBoundsException");
-	jcls_oob = (jclass) env->NewGlobalRef(tmp);
-
-	tmp = env->FindClass("java/lang/NullPointerException");
-	jcls_np = (jclass) env->NewGlobalRef(tmp);
-
-	tmp = env->FindClass("de/nisble/droidsweeper/game/jni/GameStatus");
-	if (0 == tmp)
-	{
-		LOGE("Unable to find de/nisble/droidsweeper/game/jni/GameStatus");
-		env->DeleteLocalRef(tmp);
-		return;
-	}
-	jcls_GameStatus = (jclass) env->NewGlobalRef(tmp);
-
-	tmp = env->FindClass("de/nisble/droidsweeper/game/jni/FieldStatus");
-	if (0 == tmp)
-	{
-		LOGE("Unable to find de/nisble/droidsweeper/game/jni/FieldStatus");
-		env->DeleteLocalRef(tmp);
-		return;
-	}
-	jcls_FieldStatus = (jclass) env->NewGlobalRef(tmp);
-
-	method_GameStatus_fromInt = env->GetStaticMethodID(jcls_GameStatus, "fromInt",
-			"(I)Lde/nisble/droidsweeper/game/jni/GameStatus;");
-	if (0 == method_GameStatus_fromInt)
-	{
-		LOGE("Unable to find static getter of de/nisble/droidsweeper/game/jni/GameStatus");
-		env->DeleteLocalRef(tmp);
-		return;
-	}
-
-	method_FieldStatus_fromInt = env->GetStaticMethodID(jcls_FieldStatus, "fromInt",
-			"(I)Lde/nisble/droidsweeper/game/jni/FieldStatus;");
-	if (0 == method_FieldStatus_fromInt)
-	{
-		LOGE("Unable to find static getter of de/nisble/droidsweeper/game/jni/FieldStatus");
-		env->DeleteLocalRef(tmp);
-		return;
-	}
-
-	method_MineSweeperMatrix_onGameStatusChanged = env->GetMethodID(env->GetObjectClass(thiz), "onGameStatusChanged",
-			"(Lde/nisble/droidsweeper/game/jni/GameStatus;)V");
-	if (0 == method_MineSweeperMatrix_onGameStatusChanged)
-	{
-		LOGE("Unable to find onGameStatusChanged() function definition");
-		env->DeleteLocalRef(tmp);
-		return;
-	}
-
-	method_MineSweeperMatrix_onRemainingBombsChanged = env->GetMethodID(env->GetObjectClass(thiz),
-			"onRemainingBombsChanged", "(I)V");
-	if (0 == method_MineSweeperMatrix_onRemainingBombsChanged)
-	{
-		LOGE("Unable to find onRemainingBombsChanged() function definition");
-		env->DeleteLocalRef(tmp);
-		return;
-	}
-
-	method_MineSweeperMatrix_afterFieldStatusChanged = env->GetMethodID(env->GetObjectClass(thiz),
-			"afterFieldStatusChanged", "(IIILde/nisble/droidsweeper/game/jni/FieldStatus;)V");
-	if (0 == method_MineSweeperMatrix_afterFieldStatusChanged)
-	{
-		LOGE("Unable to find afterFieldStatusChanged() function definition");
-		env->DeleteLocalRef(tmp);
-		return;
-	}
-
-	// This should be safe since we can only be called by binding class
-	jobj_MineSweeperMatrix = (jobject) env->NewGlobalRef(thiz);
-
-	env->DeleteLocalRef(tmp);
-}
-
-JNIEXPORT void JNICALL JAVA(free)(JNIEnv* env, jobject thiz)
-{
-	LOGD("Freeing libmsm");
-
-	env->DeleteGlobalRef(jcls_oob);
-	env->DeleteGlobalRef(jcls_np);
-	env->DeleteGlobalRef(jcls_FieldStatus);
-	env->DeleteGlobalRef(jcls_GameStatus);
-	env->DeleteGlobalRef(jobj_MineSweeperMatrix);
-}
-
-JNIEXPORT void JNICALL JAVA(nativeCreate)(JNIEnv* env, jobject thiz, jint size_x, jint size_y, jint bombs)
-{
-	LOGD("Creating new matrix. Dimensions: X:%d Y:%d B:%d", size_x, size_y, bombs);
-
-	matrix.reset(msm::Dimensions(size_x, size_y, bombs));
-}
-
-JNIEXPORT void JNICALL JAVA(nativeSetFieldListener)(JNIEnv* env, jobject thiz, jobject obj, jint x, jint y)
-{
-	LOGV("Registering callback for field X:%d Y:%d", x, y);
-
-	jobject ref = env->NewGlobalRef(obj);
-	if (env->ExceptionCheck())
-		return;
-
-	jclass cls = env->GetObjectClass(obj);
-	jmethodID met = env->GetMethodID(cls, "onStatusChanged", "(Lde/nisble/droidsweeper/game/jni/FieldStatus;I)V");
-	if (env->ExceptionCheck())
-		return;
-
-	try
-	{
-		matrix[x][y].setJavaRef((void*) ref);
-		matrix[x][y].setJavaMethodID((void*) met);
-	} catch (msm::IndexOutOfBoundsException const& ex)
-	{
-		env->DeleteGlobalRef(ref);
-
-		LOGE("IndexOutOfBoundsException: %s", ex.what());
-		JAVA_EXCEPTION(EX_OOB, ex.what());
-	}
-}
-
-JNIEXPORT jint JNICALL JAVA(nativeGameStatus)(JNIEnv*, jobject)
-{
-	return matrix.getStatus();
-}
-
-JNIEXPORT jint JNICALL JAVA(nativeRemainingBombs)(JNIEnv*, jobject)
-{
-	return matrix.getRemainingBombs();
-}
-
-JNIEXPORT jint JNICALL JAVA(nativeReveal)(JNIEnv* env, jobject thiz, jint x, jint y)
-{
-	LOGD("Revealing field X:%d Y:%d", x, y);
-
-	try
-	{
-		return matrix[x][y].reveal();
-	} catch (msm::IndexOutOfBoundsException const& ex)
-	{
-		LOGE("IndexOutOfBoundsException: %s", ex.what());
-		JAVA_EXCEPTION(EX_OOB, ex.what());
-		// Return value is ignored by JVM because of set exception
-		return 0;
-	}
-}
-
-JNIEXPORT void JNICALL JAVA(nativeCycleMark)(JNIEnv* env, jobject thiz, jint x, jint y)
-{
-	LOGD("Cycle field mark X:%d Y:%d", x, y);
-
-	try
-	{
-		matrix[x][y].cycleMark();
-	} catch (msm::IndexOutOfBoundsException const& ex)
-	{
-		LOGE("IndexOutOfBoundsException: %s", ex.what());
-		JAVA_EXCEPTION(EX_OOB, ex.what());
-	}
-}
-
-#ifdef __cplusplus
-}
-#endif
+/*
+ * msm-jni.cpp
+ *
+ *  Created on: 19.11.2012
+ *      Author: moritz
+ */
+
+#include "msm-jni.hpp"
+
+#include <string>
+#include <sstream>
+#include <vector>
+#include <cstring>
+#include <android/log.h>
+#define  LOG_TAG    "msm-jni"
+#if NDEBUG
+#define  LOGV(...)
+#define  LOGD(...)
+#define  LOGI(...)
+#else
+#define  LOGV(...)  __android_log_print(ANDROID_LOG_VERBOSE,LOG_TAG,__VA_ARGS__)
+#define  LOGD(...)  __android_log_print(ANDROID_LOG_DEBUG,LOG_TAG,__VA_ARGS__)
+#define  LOGI(...)  __android_log_print(ANDROID_LOG_INFO,LOG_TAG,__VA_ARGS__)
+#endif
+#define  LOGW(...)  __android_log_print(ANDROID_LOG_WARNING,LOG_TAG,__VA_ARGS__)
+#define  LOGE(...)  __android_log_print(ANDROID_LOG_ERROR,LOG_TAG,__VA_ARGS__)
+
+#define JAVA_EXCEPTION(env, jcls_ex, message) java_exception(env, __FILE__,__LINE__, jcls_ex, message)
+
+#include "matrix.hpp"
+
+// Layout of the packed change list. Keep in sync with
+// de.nisble.droidsweeper.game.engine.ChangeList!
+#define CL_RESULT 0
+#define CL_STATUS 1
+#define CL_BOMBS 2
+#define CL_FLAGS 3
+#define CL_HEADER 4
+#define CL_ENTRY 3
+#define CL_FLAG_STATUS 0x1
+#define CL_FLAG_BOMBS 0x2
+
+// Layout of the board mirror. Keep in sync with
+// de.nisble.droidsweeper.game.engine.Board!
+#define BD_GENERATION 0
+#define BD_STATUS 4
+#define BD_BOMBS 8
+#define BD_SIZE_X 12
+#define BD_SIZE_Y 16
+#define BD_DIRTY_FROM 20
+#define BD_DIRTY_TO 24
+#define BD_HEADER 32
+
+// Values of de.nisble.droidsweeper.game.jni.GameStatus
+#define GS_RUNNING 1
+
+// Ordinals of de.nisble.droidsweeper.game.jni.FieldStatus
+#define FS_HIDDEN 0
+#define FS_UNHIDDEN 1
+#define FS_MARKED 2
+#define FS_QUERIED 3
+
+namespace
+{
+
+// GlobalRef to out of bounds exception
+jclass jcls_oob;
+// GlobalRef to illegal argument exception
+jclass jcls_ia;
+// GlobalRef to illegal state exception
+jclass jcls_is;
+
+/* Throw a Java exception. The JNIEnv of the calling thread is passed down
+ * from the native method, so there is no need to attach the thread. */
+void java_exception(JNIEnv* env, const char* file, int line, jclass jcls_ex, const char* msg)
+{
+	std::stringstream ss;
+	ss << "JNIException in " << file << " at " << line << ": " << msg;
+	env->ThrowNew(jcls_ex, ss.str().data());
+}
+
+/* Create a GlobalRef to a class */
+jclass find_class(JNIEnv* env, const char* name)
+{
+	jclass tmp = env->FindClass(name);
+	if (0 == tmp)
+	{
+		LOGE("Unable to find class: %s", name);
+		return 0;
+	}
+	jclass cls = (jclass) env->NewGlobalRef(tmp);
+	env->DeleteLocalRef(tmp);
+	return cls;
+}
+
+/* The native state of one MineSweeperMatrix instance. Java holds the address
+ * as handle. There is no shared mutable state between instances, so distinct
+ * instances can be used concurrently from different threads.
+ *
+ * Collects all changes of the matrix that are caused by a single call to
+ * reveal() or cycleMark(). Instead of calling back into Java for each changed
+ * field, the changes are returned to Java as packed change list in one go.
+ * Additionally each change is written to the board mirror. */
+struct NativeEngine: public msm::MatrixObserver
+{
+	std::vector<jint> changes;
+	jint dirty_from;
+	jint dirty_to;
+
+	// Dimensions of the current matrix (used to calculate the field index)
+	jint matrix_x;
+	jint matrix_y;
+
+	// GlobalRef to the direct ByteBuffer of the current board
+	jobject board_ref;
+	// Address of the board mirror (owned by the ByteBuffer)
+	jbyte* board;
+
+	// Declared last to be destroyed first (it may notify this observer)
+	msm::Matrix matrix;
+
+	NativeEngine() :
+			changes(CL_HEADER, 0), dirty_from(0), dirty_to(0), matrix_x(0), matrix_y(0), board_ref(0), board(0)
+	{
+		matrix.addObserver(this);
+	}
+
+	void board_put(jint offset, jint value)
+	{
+		if (board)
+			memcpy(board + offset, &value, sizeof(value));
+	}
+
+	jint board_get(jint offset)
+	{
+		jint value = 0;
+		if (board)
+			memcpy(&value, board + offset, sizeof(value));
+		return value;
+	}
+
+	// Status of a field as mirrored on the board
+	jint field_status(jint x, jint y)
+	{
+		return board ? (board[BD_HEADER + y * matrix_x + x] >> 5) & 0x7 : FS_HIDDEN;
+	}
+
+	// Count of adjacent bombs of a field as mirrored on the board
+	jint field_adjacent(jint x, jint y)
+	{
+		return board ? board[BD_HEADER + y * matrix_x + x] & 0x1f : 0;
+	}
+
+	// Replace the board. The old GlobalRef is deleted.
+	void set_board(JNIEnv* env, jobject buffer, jbyte* address)
+	{
+		if (board_ref)
+			env->DeleteGlobalRef(board_ref);
+		board_ref = (0 == buffer) ? 0 : env->NewGlobalRef(buffer);
+		board = address;
+	}
+
+	// Start collecting the changes of a new call
+	void begin()
+	{
+		changes.assign(CL_HEADER, 0);
+		changes[CL_STATUS] = matrix.getStatus();
+		changes[CL_BOMBS] = matrix.getRemainingBombs();
+		dirty_from = 0x7fffffff;
+		dirty_to = 0;
+	}
+
+	// Publish the changes on the board and pack them into a Java int[]
+	jintArray end(JNIEnv* env, jint result)
+	{
+		changes[CL_RESULT] = result;
+
+		board_put(BD_STATUS, changes[CL_STATUS]);
+		board_put(BD_BOMBS, changes[CL_BOMBS]);
+		board_put(BD_DIRTY_FROM, (dirty_from < dirty_to) ? dirty_from : dirty_to);
+		board_put(BD_DIRTY_TO, dirty_to);
+		board_put(BD_GENERATION, board_get(BD_GENERATION) + 1);
+
+		jintArray packed = env->NewIntArray(changes.size());
+		if (0 == packed)
+		{
+			LOGE("Unable to allocate change list of size %d", (int) changes.size());
+			return 0;
+		}
+		env->SetIntArrayRegion(packed, 0, changes.size(), &changes[0]);
+		return packed;
+	}
+
+	void onGameStatusChanged(msm::Matrix const& /* matrix */, msm::GAMESTATUS newStatus)
+	{
+		LOGD("Gamestatus changed to %s", msm::toString(newStatus));
+
+		changes[CL_STATUS] = newStatus;
+		changes[CL_FLAGS] |= CL_FLAG_STATUS;
+	}
+	void onRemainingBombsChanged(msm::Matrix const& /* matrix */, int32_t remainingBombs)
+	{
+		LOGD("Remaining bombs: %d", remainingBombs);
+
+		changes[CL_BOMBS] = remainingBombs;
+		changes[CL_FLAGS] |= CL_FLAG_BOMBS;
+	}
+	void onFieldStatusChanged(msm::Matrix const& /* matrix */, msm::Field const& field, msm::FIELDSTATUS newStatus)
+	{
+		LOGD("Status of X:%d Y:%d changed to %s", field.getPosition().X, field.getPosition().Y,
+				msm::toString(newStatus));
+
+		jint index = field.getPosition().Y * matrix_x + field.getPosition().X;
+		changes.push_back(index);
+		changes.push_back(newStatus);
+		changes.push_back(field.getAdjacentBombs());
+
+		if (board)
+			board[BD_HEADER + index] = (jbyte) ((newStatus << 5) | (field.getAdjacentBombs() & 0x1f));
+		if (index < dirty_from)
+			dirty_from = index;
+		if (index + 1 > dirty_to)
+			dirty_to = index + 1;
+	}
+
+	void onFieldDelete(msm::Matrix const& /* matrix */, msm::Field const& /* field */)
+	{
+		// No Java references are held by the fields anymore
+	}
+};
+
+/* Get the engine of a handle. Throws an IllegalStateException on a released
+ * handle. */
+NativeEngine* from_handle(JNIEnv* env, jlong handle)
+{
+	NativeEngine* engine = reinterpret_cast<NativeEngine*>(handle);
+	if (0 == engine)
+		JAVA_EXCEPTION(env, jcls_is, "Engine is closed");
+	return engine;
+}
+
+/* Native methods of MineSweeperMatrix. They are registered in JNI_OnLoad. */
+
+jlong nativeInit(JNIEnv* env, jclass /* clazz */)
+{
+	LOGI("Initializing libmsm engine");
+
+	return reinterpret_cast<jlong>(new NativeEngine());
+}
+
+void nativeFree(JNIEnv* env, jclass /* clazz */, jlong handle)
+{
+	LOGD("Freeing libmsm engine");
+
+	NativeEngine* engine = reinterpret_cast<NativeEngine*>(handle);
+	if (engine)
+	{
+		engine->set_board(env, 0, 0);
+		delete engine;
+	}
+}
+
+void nativeCreate(JNIEnv* env, jclass /* clazz */, jlong handle, jint size_x, jint size_y, jint bombs,
+		jobject buffer)
+{
+	LOGD("Creating new matrix. Dimensions: X:%d Y:%d B:%d", size_x, size_y, bombs);
+
+	NativeEngine* engine = from_handle(env, handle);
+	if (0 == engine)
+		return;
+
+	// Release the previous board. The memory is owned by the ByteBuffer.
+	engine->set_board(env, 0, 0);
+
+	jbyte* address = (0 == buffer) ? 0 : (jbyte*) env->GetDirectBufferAddress(buffer);
+	if (0 == address || env->GetDirectBufferCapacity(buffer) < BD_HEADER + (jlong) size_x * size_y)
+	{
+		LOGE("Invalid board buffer");
+		JAVA_EXCEPTION(env, jcls_ia, "Board must be a direct buffer of sufficient capacity");
+		return;
+	}
+	engine->set_board(env, buffer, address);
+
+	engine->matrix_x = size_x;
+	engine->matrix_y = size_y;
+	engine->matrix.reset(msm::Dimensions(size_x, size_y, bombs));
+
+	// Events of the reset are no click, so only the header is updated.
+	engine->board_put(BD_STATUS, engine->matrix.getStatus());
+	engine->board_put(BD_BOMBS, engine->matrix.getRemainingBombs());
+	engine->board_put(BD_SIZE_X, size_x);
+	engine->board_put(BD_SIZE_Y, size_y);
+}
+
+jintArray nativeReveal(JNIEnv* env, jclass /* clazz */, jlong handle, jint x, jint y)
+{
+	LOGD("Revealing field X:%d Y:%d", x, y);
+
+	NativeEngine* engine = from_handle(env, handle);
+	if (0 == engine)
+		return 0;
+
+	try
+	{
+		engine->begin();
+		jint adjacentBombs = engine->matrix[x][y].reveal();
+		return engine->end(env, adjacentBombs);
+	} catch (msm::IndexOutOfBoundsException const& ex)
+	{
+		LOGE("IndexOutOfBoundsException: %s", ex.what());
+		JAVA_EXCEPTION(env, jcls_oob, ex.what());
+		// Return value is ignored by JVM because of set exception
+		return 0;
+	}
+}
+
+jintArray nativeRevealAll(JNIEnv* env, jclass /* clazz */, jlong handle)
+{
+	LOGD("Revealing all fields");
+
+	NativeEngine* engine = from_handle(env, handle);
+	if (0 == engine)
+		return 0;
+
+	try
+	{
+		engine->begin();
+		for (jint y = 0; y < engine->matrix_y; ++y)
+		{
+			for (jint x = 0; x < engine->matrix_x; ++x)
+			{
+				engine->matrix[x][y].reveal();
+			}
+		}
+		return engine->end(env, 0);
+	} catch (msm::IndexOutOfBoundsException const& ex)
+	{
+		LOGE("IndexOutOfBoundsException: %s", ex.what());
+		JAVA_EXCEPTION(env, jcls_oob, ex.what());
+		// Return value is ignored by JVM because of set exception
+		return 0;
+	}
+}
+
+jintArray nativeCycleMark(JNIEnv* env, jclass /* clazz */, jlong handle, jint x, jint y)
+{
+	LOGD("Cycle field mark X:%d Y:%d", x, y);
+
+	NativeEngine* engine = from_handle(env, handle);
+	if (0 == engine)
+		return 0;
+
+	try
+	{
+		engine->begin();
+		engine->matrix[x][y].cycleMark();
+		return engine->end(env, 0);
+	} catch (msm::IndexOutOfBoundsException const& ex)
+	{
+		LOGE("IndexOutOfBoundsException: %s", ex.what());
+		JAVA_EXCEPTION(env, jcls_oob, ex.what());
+		// Return value is ignored by JVM because of set exception
+		return 0;
+	}
+}
+
+/* libmsm has no chord operation. The marks are read from the board mirror,
+ * which is updated by each reveal, so fields that were revealed by a previous
+ * opening of the same chord are skipped. */
+jintArray nativeChord(JNIEnv* env, jclass /* clazz */, jlong handle, jint x, jint y)
+{
+	LOGD("Chord field X:%d Y:%d", x, y);
+
+	NativeEngine* engine = from_handle(env, handle);
+	if (0 == engine)
+		return 0;
+
+	if (x < 0 || x >= engine->matrix_x || y < 0 || y >= engine->matrix_y)
+	{
+		JAVA_EXCEPTION(env, jcls_oob, "Position out of bounds");
+		return 0;
+	}
+
+	try
+	{
+		engine->begin();
+
+		if (GS_RUNNING == (jint) engine->matrix.getStatus() && FS_UNHIDDEN == engine->field_status(x, y))
+		{
+			jint x0 = (x > 0) ? x - 1 : 0;
+			jint x1 = (x < engine->matrix_x - 1) ? x + 1 : x;
+			jint y0 = (y > 0) ? y - 1 : 0;
+			jint y1 = (y < engine->matrix_y - 1) ? y + 1 : y;
+
+			jint marked = 0;
+			for (jint ny = y0; ny <= y1; ++ny)
+				for (jint nx = x0; nx <= x1; ++nx)
+					if (FS_MARKED == engine->field_status(nx, ny))
+						++marked;
+
+			if (marked == engine->field_adjacent(x, y))
+			{
+				for (jint ny = y0; ny <= y1; ++ny)
+				{
+					for (jint nx = x0; nx <= x1; ++nx)
+					{
+						jint status = engine->field_status(nx, ny);
+						if (FS_HIDDEN == status || FS_QUERIED == status)
+							engine->matrix[nx][ny].reveal();
+					}
+				}
+			}
+		}
+
+		return engine->end(env, 0);
+	} catch (msm::IndexOutOfBoundsException const& ex)
+	{
+		LOGE("IndexOutOfBoundsException: %s", ex.what());
+		JAVA_EXCEPTION(env, jcls_oob, ex.what());
+		// Return value is ignored by JVM because of set exception
+		return 0;
+	}
+}
+
+// Keep in sync with the native methods of MineSweeperMatrix!
+const JNINativeMethod methods[] =
+{
+{ "nativeInit", "()J", (void*) nativeInit },
+{ "nativeFree", "(J)V", (void*) nativeFree },
+{ "nativeCreate", "(JIIILjava/nio/ByteBuffer;)V", (void*) nativeCreate },
+{ "nativeReveal", "(JII)[I", (void*) nativeReveal },
+{ "nativeRevealAll", "(J)[I", (void*) nativeRevealAll },
+{ "nativeCycleMark", "(JII)[I", (void*) nativeCycleMark },
+{ "nativeChord", "(JII)[I", (void*) nativeChord } };
+
+}
+
+#ifdef __cplusplus
+extern "C"
+{
+#endif
+
+JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *reserved)
+{
+	JNIEnv* env;
+	if (vm->GetEnv((void**) &env, JNI_VERSION_1_6) != JNI_OK)
+	{
+		LOGE("Unable to get JNIEnv");
+		return JNI_ERR;
+	}
+
+	// Cache classes
+	jcls_oob = find_class(env, "java/lang/IndexOutOfBoundsException");
+	jcls_ia = find_class(env, "java/lang/IllegalArgumentException");
+	jcls_is = find_class(env, "java/lang/IllegalStateException");
+	if (0 == jcls_oob || 0 == jcls_ia || 0 == jcls_is)
+		return JNI_ERR;
+
+	// Bind the native methods once instead of resolving them by name on first use
+	jclass cls = env->FindClass(MSM_JNI_CLASS);
+	if (0 == cls)
+	{
+		LOGE("Unable to find class: %s", MSM_JNI_CLASS);
+		return JNI_ERR;
+	}
+	jint result = env->RegisterNatives(cls, methods, sizeof(methods) / sizeof(methods[0]));
+	env->DeleteLocalRef(cls);
+	if (result != JNI_OK)
+	{
+		LOGE("Unable to register native methods");
+		return JNI_ERR;
+	}
+
+	return JNI_VERSION_1_6;
+}
+
+#ifdef __cplusplus
+}
+#endif
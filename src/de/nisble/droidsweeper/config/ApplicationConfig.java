@@ -1,5 +1,6 @@
 package de.nisble.droidsweeper.config;
 
+import de.nisble.droidsweeper.game.engine.EngineType;
 import de.nisble.droidsweeper.utilities.LogDog;
 import android.content.Context;
 import android.content.SharedPreferences;
@@ -21,6 +22,7 @@ public final class ApplicationConfig {
 
 	private boolean mReplayOnLost = false;
 	private boolean mShowInstructions = true;
+	private EngineType mEngineType = EngineType.NATIVE;
 
 	private ApplicationConfig() {
 	}
@@ -56,6 +58,20 @@ public final class ApplicationConfig {
 		mShowInstructions = showInstructions;
 	}
 
+	/** Get the type of the game engine that should be used.
+	 * @return The {@link EngineType}. */
+	public EngineType getEngineType() {
+		return mEngineType;
+	}
+
+	/** Set the type of the game engine.<br>
+	 * <b>Note:</b> The engine is chosen at startup. So the new type takes
+	 * effect on the next start of the application.
+	 * @param engineType The {@link EngineType}. */
+	public void setEngineType(EngineType engineType) {
+		mEngineType = engineType;
+	}
+
 	/** Store given {@link GameConfig} and application settings on disk.
 	 * @param c The {@link GameConfig} to store. */
 	public void store(GameConfig c) {
@@ -65,8 +81,10 @@ public final class ApplicationConfig {
 		editor.putInt("CustomX", c.X);
 		editor.putInt("CustomY", c.Y);
 		editor.putInt("CustomBombs", c.BOMBS);
+		editor.putBoolean("NoGuess", c.NOGUESS);
 		editor.putBoolean("ReplayOnLost", mReplayOnLost);
 		editor.putBoolean("ShowInstructions", false);
+		editor.putInt("Engine", mEngineType.ordinal());
 		editor.commit();
 	}
 
@@ -77,6 +95,7 @@ public final class ApplicationConfig {
 	public GameConfig load() {
 		mReplayOnLost = mShPrefs.getBoolean("ReplayOnLost", mReplayOnLost);
 		mShowInstructions = mShPrefs.getBoolean("ShowInstructions", mShowInstructions);
+		mEngineType = EngineType.fromInt(mShPrefs.getInt("Engine", mEngineType.ordinal()));
 
 		GameConfig c;
 		Level l = Level.fromInt(mShPrefs.getInt("Level", Level.EASY.ordinal()));
@@ -88,6 +107,7 @@ public final class ApplicationConfig {
 		} else {
 			c = new GameConfig(l);
 		}
+		c = c.withNoGuess(mShPrefs.getBoolean("NoGuess", false));
 
 		LogDog.d(CLASSNAME, "GameConfig loaded: " + c.toString());
 
@@ -96,6 +116,7 @@ public final class ApplicationConfig {
 
 	@Override
 	public String toString() {
-		return "ApplicationConfig [mReplayOnLost=" + mReplayOnLost + ", mShowInstructions=" + mShowInstructions + "]";
+		return "ApplicationConfig [mReplayOnLost=" + mReplayOnLost + ", mShowInstructions=" + mShowInstructions
+				+ ", mEngineType=" + mEngineType + "]";
 	}
 }
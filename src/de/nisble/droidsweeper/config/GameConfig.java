@@ -1,5 +1,9 @@
 package de.nisble.droidsweeper.config;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import android.content.Context;
 import android.content.res.Configuration;
 import android.os.Parcel;
@@ -11,10 +15,17 @@ import android.os.Parcelable;
  * accordingly.
  * It is also able to adapt the dimensions of the game grid to the
  * current orientation of the device. This is simply done by switching the sides
- * of the game grid.
+ * of the game grid.<br>
+ * Optionally a config carries a seed for the bomb placement. The same seed
+ * always produces the same board (on engines that support seeding).<br>
+ * A config can request a board that can be cleared without guessing (on
+ * engines that support it).<br>
+ * An {@link #ENDLESS endless} config describes an unbounded board of chunks:
+ * X and Y are the size of a chunk and BOMBS the count of bombs per chunk.
  * <ul>
  * <li>Immutable: Members are public final and capitalized.</li>
  * <li>Parcelable: Can e.g. passed as extra to an intent.</li>
+ * <li>Can be {@link #write(DataOutput) written} to binary snapshots.</li>
  * </ul>
  * @author Moritz Nisblé moritz.nisble@gmx.de */
 public final class GameConfig implements Parcelable {
@@ -22,6 +33,15 @@ public final class GameConfig implements Parcelable {
 	public final int X;
 	public final int Y;
 	public final int BOMBS;
+	/** The seed of the bomb placement. Only valid if {@link #SEEDED}. */
+	public final long SEED;
+	/** True if the config carries a {@link #SEED}. */
+	public final boolean SEEDED;
+	/** True if the board must be solvable from the first click without
+	 * guessing. */
+	public final boolean NOGUESS;
+	/** True if the board is unbounded. X, Y and BOMBS describe a chunk. */
+	public final boolean ENDLESS;
 
 	/** Instantiate from Level.
 	 * <b>Do not call this constructor with Level.CUSTOM</b>
@@ -31,6 +51,10 @@ public final class GameConfig implements Parcelable {
 		X = l.X;
 		Y = l.Y;
 		BOMBS = l.BOMBS;
+		SEED = 0;
+		SEEDED = false;
+		NOGUESS = false;
+		ENDLESS = false;
 	}
 
 	/** Instantiate with custom grid size.
@@ -43,13 +67,50 @@ public final class GameConfig implements Parcelable {
 		X = x;
 		Y = y;
 		BOMBS = bombs;
+		SEED = 0;
+		SEEDED = false;
+		NOGUESS = false;
+		ENDLESS = false;
 	}
 
-	private GameConfig(Level l, int x, int y, int bombs) {
+	private GameConfig(Level l, int x, int y, int bombs, long seed, boolean seeded, boolean noGuess,
+			boolean endless) {
 		LEVEL = l;
 		X = x;
 		Y = y;
 		BOMBS = bombs;
+		SEED = seeded ? seed : 0;
+		SEEDED = seeded;
+		NOGUESS = noGuess;
+		ENDLESS = endless;
+	}
+
+	/** Get a seeded version.
+	 * @param seed The seed.
+	 * @return A copy of the GameConfig with the given seed. */
+	public GameConfig withSeed(long seed) {
+		return new GameConfig(LEVEL, X, Y, BOMBS, seed, true, NOGUESS, ENDLESS);
+	}
+
+	/** Get an unseeded version.
+	 * @return A copy of the GameConfig without seed. */
+	public GameConfig withoutSeed() {
+		return new GameConfig(LEVEL, X, Y, BOMBS, 0, false, NOGUESS, ENDLESS);
+	}
+
+	/** Get a version with or without the no-guess requirement.
+	 * @param noGuess True if the board must be solvable without guessing.
+	 * @return A copy of the GameConfig with the given requirement. */
+	public GameConfig withNoGuess(boolean noGuess) {
+		return new GameConfig(LEVEL, X, Y, BOMBS, SEED, SEEDED, noGuess, ENDLESS);
+	}
+
+	/** Get an endless or bounded version.
+	 * @param endless True for an unbounded board of chunks of X * Y fields with
+	 *            BOMBS bombs each.
+	 * @return A copy of the GameConfig with the given mode. */
+	public GameConfig withEndless(boolean endless) {
+		return new GameConfig(LEVEL, X, Y, BOMBS, SEED, SEEDED, NOGUESS, endless);
 	}
 
 	/** Get an orientation adjusted version.
@@ -74,7 +135,7 @@ public final class GameConfig implements Parcelable {
 	public GameConfig toPortrait() {
 		int max = Math.max(X, Y);
 		int min = (max == X) ? Y : X;
-		return new GameConfig(LEVEL, min, max, BOMBS);
+		return new GameConfig(LEVEL, min, max, BOMBS, SEED, SEEDED, NOGUESS, ENDLESS);
 	}
 
 	/** Get the landscape version.
@@ -82,12 +143,14 @@ public final class GameConfig implements Parcelable {
 	public GameConfig toLandscape() {
 		int max = Math.max(X, Y);
 		int min = (max == X) ? Y : X;
-		return new GameConfig(LEVEL, max, min, BOMBS);
+		return new GameConfig(LEVEL, max, min, BOMBS, SEED, SEEDED, NOGUESS, ENDLESS);
 	}
 
 	@Override
 	public String toString() {
-		return "GameConfig [LEVEL=" + LEVEL.toString() + ", X=" + X + ", Y=" + Y + ", BOMBS=" + BOMBS + "]";
+		return "GameConfig [LEVEL=" + LEVEL.toString() + ", X=" + X + ", Y=" + Y + ", BOMBS=" + BOMBS
+				+ (SEEDED ? ", SEED=" + Long.toHexString(SEED) : "")
+				+ (NOGUESS ? ", NOGUESS" : "") + (ENDLESS ? ", ENDLESS" : "") + "]";
 	}
 
 	@Override
@@ -98,6 +161,10 @@ public final class GameConfig implements Parcelable {
 		result = prime * result + ((LEVEL == null) ? 0 : LEVEL.hashCode());
 		result = prime * result + X;
 		result = prime * result + Y;
+		result = prime * result + (int) (SEED ^ (SEED >>> 32));
+		result = prime * result + (SEEDED ? 1231 : 1237);
+		result = prime * result + (NOGUESS ? 1231 : 1237);
+		result = prime * result + (ENDLESS ? 1231 : 1237);
 		return result;
 	}
 
@@ -118,9 +185,45 @@ public final class GameConfig implements Parcelable {
 			return false;
 		if (Y != other.Y)
 			return false;
+		if (SEED != other.SEED)
+			return false;
+		if (SEEDED != other.SEEDED)
+			return false;
+		if (NOGUESS != other.NOGUESS)
+			return false;
+		if (ENDLESS != other.ENDLESS)
+			return false;
 		return true;
 	}
 
+	/** Read a config that was {@link #write(DataOutput) written} before.
+	 * @param in The source.
+	 * @throws IOException on errors of the source. */
+	public GameConfig(DataInput in) throws IOException {
+		LEVEL = Level.fromInt(in.readInt());
+		X = in.readInt();
+		Y = in.readInt();
+		BOMBS = in.readInt();
+		SEED = in.readLong();
+		SEEDED = in.readBoolean();
+		NOGUESS = in.readBoolean();
+		ENDLESS = in.readBoolean();
+	}
+
+	/** Write the config in a compact binary form.
+	 * @param out The destination.
+	 * @throws IOException on errors of the destination. */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(LEVEL.ordinal());
+		out.writeInt(X);
+		out.writeInt(Y);
+		out.writeInt(BOMBS);
+		out.writeLong(SEED);
+		out.writeBoolean(SEEDED);
+		out.writeBoolean(NOGUESS);
+		out.writeBoolean(ENDLESS);
+	}
+
 	public GameConfig(Parcel in) {
 		int[] data = new int[4];
 
@@ -129,6 +232,10 @@ public final class GameConfig implements Parcelable {
 		X = data[1];
 		Y = data[2];
 		BOMBS = data[3];
+		SEED = in.readLong();
+		SEEDED = (in.readInt() != 0);
+		NOGUESS = (in.readInt() != 0);
+		ENDLESS = (in.readInt() != 0);
 	}
 
 	@Override
@@ -139,6 +246,10 @@ public final class GameConfig implements Parcelable {
 	@Override
 	public void writeToParcel(Parcel dest, int flags) {
 		dest.writeIntArray(new int[] { LEVEL.ordinal(), X, Y, BOMBS });
+		dest.writeLong(SEED);
+		dest.writeInt(SEEDED ? 1 : 0);
+		dest.writeInt(NOGUESS ? 1 : 0);
+		dest.writeInt(ENDLESS ? 1 : 0);
 	}
 
 	public static final Creator<GameConfig> CREATOR = new Creator<GameConfig>() {
@@ -0,0 +1,80 @@
+package de.nisble.droidsweeper.config;
+
+import de.nisble.droidsweeper.game.engine.SplitMix64;
+import de.nisble.droidsweeper.game.jni.FieldStatus;
+
+/** Zobrist hashing of boards and of the states of their fields.<br>
+ * Each field (index y * X + x) has a pseudo random 64 bit key for a bomb and
+ * one for each {@link FieldStatus}. A hash is the XOR of the keys of its parts,
+ * so it is updated in O(1) when a single part changes (XOR the old key out and
+ * the new one in). There are two hashes:
+ * <ul>
+ * <li>The board hash identifies the mine layout together with the dimensions:
+ * The key of the {@link #dimensions(int, int) dimensions} XOR the
+ * {@link #bomb(int) keys of all bombs}. It doesn't depend on the seed, the
+ * engine or the first click that led to the layout.</li>
+ * <li>The state hash identifies the current state of the fields: The XOR of the
+ * {@link #state(int, FieldStatus) keys of the status} of all fields.
+ * {@link FieldStatus#HIDDEN Hidden} fields have the key 0, so a new game has
+ * the state hash 0. The adjacent bombs of a field are defined by the board,
+ * so a state is identified by both hashes together.</li>
+ * </ul>
+ * The keys are not stored in a table but are the values of the
+ * {@link SplitMix64} sequence of a fixed seed per kind of key. So they are
+ * equal on all platforms and for boards of any size. Hashes can be stored
+ * (e.g. in the database) and compared with hashes of later versions.
+ * <ul>
+ * <li>Static: Not instantiable.</li>
+ * </ul>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class Zobrist {
+	private static final long BOMB_SEED = 0x5a6f627269737442L;
+	private static final long STATE_SEED = 0x5a6f627269737453L;
+	private static final long DIMENSIONS_SEED = 0x5a6f627269737444L;
+	private static final int STATES = FieldStatus.values().length;
+
+	private Zobrist() {
+	}
+
+	/** @param x The width of the board.
+	 * @param y The height of the board.
+	 * @return The key of the dimensions. */
+	public static long dimensions(int x, int y) {
+		return SplitMix64.nth(DIMENSIONS_SEED, ((long) x << 32) | (y & 0xffffffffL));
+	}
+
+	/** @param index The index of a field.
+	 * @return The key of a bomb on the field. */
+	public static long bomb(int index) {
+		return SplitMix64.nth(BOMB_SEED, index);
+	}
+
+	/** @param index The index of a field.
+	 * @param status The status of the field.
+	 * @return The key of the status of the field. 0 for
+	 *         {@link FieldStatus#HIDDEN}. */
+	public static long state(int index, FieldStatus status) {
+		if (FieldStatus.HIDDEN == status)
+			return 0;
+		return SplitMix64.nth(STATE_SEED, (long) index * STATES + status.ordinal());
+	}
+
+	/** Update a state hash for a changed field.
+	 * @param hash The state hash.
+	 * @param index The index of the field.
+	 * @param from The previous status of the field.
+	 * @param to The new status of the field.
+	 * @return The updated hash. */
+	public static long update(long hash, int index, FieldStatus from, FieldStatus to) {
+		if (from == to)
+			return hash;
+		return hash ^ state(index, from) ^ state(index, to);
+	}
+
+	/** @param hash A hash.
+	 * @return The hash as fixed length hex string (e.g. for logs and file
+	 *         names). */
+	public static String toString(long hash) {
+		return String.format("%016x", hash);
+	}
+}
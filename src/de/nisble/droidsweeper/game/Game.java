@@ -1,11 +1,26 @@
 package de.nisble.droidsweeper.game;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import de.nisble.droidsweeper.config.GameConfig;
 import de.nisble.droidsweeper.config.Level;
 import de.nisble.droidsweeper.game.database.DSDBAdapter;
+import de.nisble.droidsweeper.game.engine.Board;
+import de.nisble.droidsweeper.game.engine.Counters;
+import de.nisble.droidsweeper.game.engine.Engine;
+import de.nisble.droidsweeper.game.engine.EngineType;
+import de.nisble.droidsweeper.game.engine.HintSolver;
+import de.nisble.droidsweeper.game.engine.PatternCache;
+import de.nisble.droidsweeper.game.engine.Probabilities;
+import de.nisble.droidsweeper.game.engine.ProbabilitySampler;
+import de.nisble.droidsweeper.game.engine.ProbabilitySolver;
 import de.nisble.droidsweeper.game.jni.FieldListener;
 import de.nisble.droidsweeper.game.jni.FieldStatus;
 import de.nisble.droidsweeper.game.jni.GameStatus;
@@ -23,15 +38,27 @@ import static de.nisble.droidsweeper.config.Constants.*;
  * view. View classes should implement the {@link GameObserver observer
  * interface} to get updates on important changes of the internal state of the
  * game. Architectural this class sits between the view and the
- * {@link MineSweeperMatrix interface to the native library libmsm}. It maintains
- * a timer that counts the elapsed playtime and records each game. A view class
- * is responsible for loading and showing a replay.
+ * {@link Engine game engine} (e.g. the {@link MineSweeperMatrix interface to
+ * the native library libmsm}). It maintains a timer that counts the elapsed
+ * playtime and records each game. A view class is responsible for loading and
+ * showing a replay.<br>
+ * A running game can be written to a compact binary {@link #snapshot()
+ * snapshot} (e.g. before the process is killed) and {@link #restore(byte[])
+ * restored} later without generating the board again or replaying the
+ * clicks. A {@link HintSolver} follows the changes of the board, so a
+ * {@link #hint() hint} is found without solving the whole board again. If
+ * there is none, the {@link #getProbabilities() probabilities} of the hidden
+ * fields help to guess.
  * <ul>
  * <li>Singleton: Use the public final INSTANCE member.</li>
  * </ul>
  * @author Moritz Nisblé moritz.nisble@gmx.de */
 public class Game implements MatrixObserver, TimerObserver {
 	private final String CLASSNAME = Game.class.getSimpleName();
+	/* "DSG3": Marks a snapshot of a game and its version */
+	private static final int SNAPSHOT_MAGIC = 0x44534733;
+	/* Time box of the exact probabilities in milliseconds */
+	private static final long EXACT_MILLIS = 20;
 
 	/** The instance. */
 	public static final Game INSTANCE = new Game();
@@ -39,14 +66,53 @@ public class Game implements MatrixObserver, TimerObserver {
 	private GameConfig mConfig = new GameConfig(Level.EASY);
 	private Timer mTimer = new Timer();
 	private Recorder mRecorder = new Recorder();
+	private HintSolver mHints = new HintSolver();
+	/* Kept across games and sessions */
+	private PatternCache mPatterns = new PatternCache();
+	private ProbabilitySolver mProbabilities = new ProbabilitySolver();
+	private ProbabilitySampler mSampler = new ProbabilitySampler();
 	private List<GameObserver> mObservers = new ArrayList<GameObserver>(2);
+	private Engine mEngine = null;
+	/* Draws the seeds of unseeded games */
+	private Random mSeeds = new Random();
+	/* Undo or redo was used in the current game */
+	private boolean mAssisted = false;
 
 	private Game() {
-		MineSweeperMatrix.INSTANCE.addMatrixObserver(this);
+		mTimer.addListener(this);
+		mHints.setPatterns(mPatterns);
+	}
+
+	/** Set the {@link Engine game engine} that implements the game logic.<br>
+	 * <b>Note:</b> This should be done once at startup before the first call to
+	 * {@link #start(GameConfig)}. If no engine is set, the
+	 * {@link EngineType#NATIVE native engine} is used. The game takes the
+	 * ownership of the engine. The previous engine is closed.
+	 * @param e The engine. */
+	public void setEngine(Engine e) {
+		if (mEngine == e)
+			return;
+
+		mTimer.stop();
+
+		if (mEngine != null) {
+			mEngine.removeObserver(this);
+			mEngine.removeObserver(mRecorder);
+			mEngine.removeObserver(mHints);
+			mEngine.close();
+		}
+
+		mEngine = e;
+
+		mEngine.addMatrixObserver(this);
 		// Add recorder as MatrixObserver
-		MineSweeperMatrix.INSTANCE.addMatrixObserver(mRecorder);
+		mEngine.addMatrixObserver(mRecorder);
+		mEngine.addMatrixObserver(mHints);
+	}
 
-		mTimer.addListener(this);
+	/** @return The current {@link Engine game engine}. */
+	public Engine getEngine() {
+		return mEngine;
 	}
 
 	/** Add an observer.
@@ -68,24 +134,39 @@ public class Game implements MatrixObserver, TimerObserver {
 		return mConfig;
 	}
 
+	/** Get a snapshot of the counters of the current game (status, bombs,
+	 * marks and hidden safe fields). Constant-time on boards of any size.
+	 * @return The counters or null if no game was started yet. */
+	public Counters getCounters() {
+		return (mEngine != null) ? mEngine.getCounters() : null;
+	}
+
 	/** This function only return true when a new game was created but not
 	 * started (i.e. no click was made).
 	 * @return True if the game is in {@link GameStatus#RUNNING} state. */
 	@Deprecated
 	public boolean isOrientationChangeable() {
-		return (MineSweeperMatrix.INSTANCE.isReady());
+		return (mEngine != null && mEngine.isReady());
 	}
 
 	/** Register a FieldListener.
 	 * @note This connects a FieldListener directly to a field object
-	 *       in the native libmsm.
+	 *       in the engine (e.g. the native libmsm). When the game has already
+	 *       been played (e.g. the grid was rebuilt) the current state of the
+	 *       field is pushed to the listener from the {@link Board}.
 	 * @param l Typically a widget that is able to represent a single field.
 	 * @throws Exception An IndexOutOfBoundsException when the coordinates
 	 *             that the given FieldListener returns from its getPosition()
 	 *             method is out of the bounds of the matrix in the GameConfig
 	 *             passed to start() before. */
 	public void setFieldListener(FieldListener l) throws Exception {
-		MineSweeperMatrix.INSTANCE.setFieldListener(l);
+		mEngine.setFieldListener(l);
+
+		Board board = mEngine.getBoard();
+		if (board.getGeneration() > 0) {
+			int i = board.index(l.getPosition());
+			l.onStatusChanged(board.getFieldStatus(i), board.getAdjacentBombs(i));
+		}
 	}
 
 	/* A click on the grid is only acceptable after initialization
@@ -105,8 +186,11 @@ public class Game implements MatrixObserver, TimerObserver {
 	 * for a click are performed by libmsm. The old status is used to
 	 * detect changes of the internal status. */
 	private void afterClick(GameStatus old, Position p) {
-		GameStatus newStatus = MineSweeperMatrix.INSTANCE.gameStatus();
+		GameStatus newStatus = mEngine.gameStatus();
 
+		// Known after the bombs are placed by the first click
+		mRecorder.setBoardHash(mEngine.boardHash());
+		mRecorder.setMetrics(mEngine.getMetrics());
 		mRecorder.finalizeStep(mTimer.getMilliseconds());
 
 		if (newStatus != old) {
@@ -131,7 +215,7 @@ public class Game implements MatrixObserver, TimerObserver {
 
 				boolean highscore = false;
 				try {
-					if (mConfig.LEVEL != Level.CUSTOM) {
+					if (mConfig.LEVEL != Level.CUSTOM && !mAssisted) {
 						highscore = DSDBAdapter.INSTANCE.isHighScore(mConfig.LEVEL, mTimer.getMilliseconds());
 					}
 
@@ -153,10 +237,10 @@ public class Game implements MatrixObserver, TimerObserver {
 	/** Reveal a field fields.
 	 * @param p The position. */
 	public void revealField(Position p) {
-		GameStatus oldStatus = MineSweeperMatrix.INSTANCE.gameStatus();
+		GameStatus oldStatus = mEngine.gameStatus();
 		if (isClickAcceptable(oldStatus)) {
 			beforeClick();
-			MineSweeperMatrix.INSTANCE.reveal(p);
+			mEngine.reveal(p);
 			afterClick(oldStatus, p);
 		}
 	}
@@ -165,11 +249,7 @@ public class Game implements MatrixObserver, TimerObserver {
 	 * <b>This may fire {@link GameObserver} events like
 	 * {@link GameObserver#onLost(long)}.</b> */
 	public void revealAll() {
-		for (int y = 0; y < mConfig.Y; ++y) {
-			for (int x = 0; x < mConfig.X; ++x) {
-				MineSweeperMatrix.INSTANCE.reveal(new Position(x, y));
-			}
-		}
+		mEngine.revealAll();
 	}
 
 	/** Cycle through marks of fields.<br>
@@ -181,14 +261,123 @@ public class Game implements MatrixObserver, TimerObserver {
 	 * library.
 	 * @param p The position. */
 	public void cycleMark(Position p) {
-		GameStatus oldStatus = MineSweeperMatrix.INSTANCE.gameStatus();
+		GameStatus oldStatus = mEngine.gameStatus();
 		if (isClickAcceptable(oldStatus)) {
 			beforeClick();
-			MineSweeperMatrix.INSTANCE.cycleMark(p);
+			mEngine.cycleMark(p);
+			afterClick(oldStatus, p);
+		}
+	}
+
+	/** Chord a revealed field.<br>
+	 * If the count of the marked adjacent fields equals the count of adjacent
+	 * bombs, all other adjacent fields are revealed. The engine does this in a
+	 * single call, so it is recorded as a single step.
+	 * @param p The position. */
+	public void chord(Position p) {
+		GameStatus oldStatus = mEngine.gameStatus();
+		if (GameStatus.RUNNING == oldStatus) {
+			beforeClick();
+			mEngine.chord(p);
 			afterClick(oldStatus, p);
 		}
 	}
 
+	/** Undo the last click (practice mode).<br>
+	 * Only possible if the engine {@link Engine#undo() supports} it. The
+	 * timer continues and the game is marked as {@link #isAssisted()
+	 * assisted}. A lost game can be continued: The reveal of all fields after
+	 * the loss is undone together with the losing click. The undo is recorded
+	 * as a single step. A won game stays won.
+	 * @return True if a click was undone. */
+	public boolean undo() {
+		if (null == mEngine || !mEngine.canUndo() || GameStatus.WON == mEngine.gameStatus())
+			return false;
+
+		boolean ended = GameStatus.LOST == mEngine.gameStatus();
+		if (ended)
+			mRecorder.reopen();
+
+		while (mEngine.undo() && !isClickAcceptable(mEngine.gameStatus()))
+			;
+
+		setAssisted();
+		if (ended && isClickAcceptable(mEngine.gameStatus()))
+			mTimer.proceed();
+		mRecorder.finalizeStep(mTimer.getMilliseconds());
+		return true;
+	}
+
+	/** Redo the last undone click. Like a click it may end the game.
+	 * @return True if a click was redone. */
+	public boolean redo() {
+		if (null == mEngine || !mEngine.canRedo())
+			return false;
+
+		GameStatus oldStatus = mEngine.gameStatus();
+		if (!isClickAcceptable(oldStatus))
+			return false;
+
+		setAssisted();
+		beforeClick();
+		mEngine.redo();
+		afterClick(oldStatus, null);
+		return true;
+	}
+
+	/** Get a hidden field that is proven to be safe by the revealed numbers.
+	 * If there is one, the game is marked as {@link #isAssisted() assisted}.
+	 * @return The field or null if the game isn't running or no field can be
+	 *         proven to be safe without guessing. */
+	public Position hint() {
+		if (null == mEngine || !mEngine.isRunning())
+			return null;
+
+		Position p = mHints.hint();
+		if (p != null)
+			setAssisted();
+		return p;
+	}
+
+	/** Get the probability of each hidden field to be a bomb. If the frontier
+	 * is too big to be solved exactly within 20 ms, the probabilities are
+	 * {@link ProbabilitySampler estimated} within
+	 * {@link ProbabilitySampler#DEFAULT_MILLIS}. So a call on the thread of the
+	 * user interface costs at most a few frames. If there are probabilities,
+	 * the game is marked as {@link #isAssisted() assisted}.
+	 * @return The probabilities or null if the game isn't running or they
+	 *         could not be estimated. */
+	public Probabilities getProbabilities() {
+		if (null == mEngine || !mEngine.isRunning())
+			return null;
+
+		Probabilities p = mProbabilities.solve(mHints, EXACT_MILLIS);
+		if (null == p)
+			p = mSampler.sample(mHints);
+		if (p != null)
+			setAssisted();
+		return p;
+	}
+
+	/** Get the cache of the local patterns of the hints (e.g. to persist it
+	 * across sessions).
+	 * @return The cache. */
+	public PatternCache getPatterns() {
+		return mPatterns;
+	}
+
+	/** @return True if undo, redo, a {@link #hint() hint} or the
+	 *         {@link #getProbabilities() probabilities} were used in the
+	 *         current game. Assisted games are no high scores. */
+	public boolean isAssisted() {
+		return mAssisted;
+	}
+
+	private void setAssisted() {
+		mAssisted = true;
+		mRecorder.setAssisted();
+	}
+
 	/** Start a new game with old {@link GameConfig}.
 	 * @see #start(GameConfig) */
 	public void start() {
@@ -204,17 +393,32 @@ public class Game implements MatrixObserver, TimerObserver {
 	 * The view should create the game grid from inside that callback. Each
 	 * field widget that is created in that process should be registered by a
 	 * call to {@link #setFieldListener(FieldListener)} for the native library
-	 * to ba able to inform the widget over changes in its state.
-	 * @param c A {@link GameConfig}. */
+	 * to ba able to inform the widget over changes in its state.<br>
+	 * A config without seed gets a random one, so each game is recorded with
+	 * the seed its board was generated from. The config returned by
+	 * {@link #getGameConfig()} stays unseeded, so {@link #start()} creates a
+	 * new board.
+	 * @param c A {@link GameConfig}.
+	 * @throws IllegalArgumentException on an {@link GameConfig#ENDLESS
+	 *             endless} config. There is no grid for unbounded boards yet. */
 	public void start(GameConfig c) {
+		if (c.ENDLESS)
+			throw new IllegalArgumentException("Endless games are not supported yet");
+
 		// Make an internal copy of the GameConfig.
 		mConfig = c;
+		GameConfig seeded = c.SEEDED ? c : c.withSeed(mSeeds.nextLong());
 
 		mTimer.stop();
-		mRecorder.newRecord(c);
+		mRecorder.newRecord(seeded);
+		mAssisted = false;
+
+		if (mEngine == null)
+			setEngine(EngineType.NATIVE.create());
 
 		// Create a new matrix
-		MineSweeperMatrix.INSTANCE.create(mConfig);
+		mEngine.create(seeded);
+		mHints.reset(seeded.X, seeded.Y, seeded.BOMBS);
 
 		// Update observers
 		for (GameObserver l : mObservers) {
@@ -224,6 +428,89 @@ public class Game implements MatrixObserver, TimerObserver {
 		}
 	}
 
+	/** Write the running game to a compact binary snapshot.<br>
+	 * The snapshot contains the {@link GameConfig}, the elapsed time, the
+	 * state of the engine and the record of the game so far. Should be called
+	 * between two clicks, typically after {@link #pause()}. The clicks that
+	 * could be undone are not part of the snapshot.
+	 * @return The snapshot or null if there is no running game or the engine
+	 *         doesn't {@link Engine#writeSnapshot(java.io.DataOutput)
+	 *         support} snapshots. */
+	public byte[] snapshot() {
+		if (null == mEngine || !mEngine.isRunning() || !mRecorder.isRecording())
+			return null;
+
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(SNAPSHOT_MAGIC);
+			mConfig.write(out);
+			out.writeLong(mTimer.getMilliseconds());
+			out.writeBoolean(mAssisted);
+			if (!mEngine.writeSnapshot(out))
+				return null;
+			mRecorder.writeSnapshot(out);
+			out.close();
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			LogDog.e(CLASSNAME, "Writing snapshot failed: " + e.getMessage(), e);
+			return null;
+		}
+	}
+
+	/** Continue a game from a {@link #snapshot() snapshot}.<br>
+	 * Works like {@link #start(GameConfig)}: The observers are asked to
+	 * {@link GameObserver#onBuildGrid(GameConfig) build} the grid and the
+	 * fields that are registered afterwards get their current state. The timer
+	 * is paused at the elapsed time of the snapshot and continues on
+	 * {@link #resume()}.
+	 * @param snapshot The snapshot.
+	 * @return False if the snapshot is corrupt or the current engine can't
+	 *         read it. The caller should {@link #start(GameConfig) start} a new
+	 *         game then. */
+	public boolean restore(byte[] snapshot) {
+		if (mEngine == null)
+			setEngine(EngineType.NATIVE.create());
+
+		mTimer.stop();
+
+		GameConfig c;
+		long milliseconds;
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot));
+			if (in.readInt() != SNAPSHOT_MAGIC)
+				return false;
+			c = new GameConfig(in);
+			// Like start(GameConfig)
+			if (c.ENDLESS)
+				return false;
+			milliseconds = in.readLong();
+			mAssisted = in.readBoolean();
+			if (!mEngine.readSnapshot(in))
+				return false;
+			mRecorder.readSnapshot(in);
+		} catch (IOException e) {
+			LogDog.w(CLASSNAME, "Restoring snapshot failed: " + e.getMessage());
+			return false;
+		} catch (RuntimeException e) {
+			// E.g. a negative size in a corrupt snapshot
+			LogDog.w(CLASSNAME, "Corrupt snapshot: " + e.getMessage());
+			return false;
+		}
+
+		mConfig = c;
+		mTimer.pauseAt(TIMER_PERIOD, milliseconds);
+		mHints.load(mEngine.getBoard(), c.BOMBS);
+
+		// Update observers
+		for (GameObserver l : mObservers) {
+			l.onBuildGrid(mConfig);
+			l.onTimeUpdate(mTimer.getMilliseconds());
+			l.onRemainingBombsChanged(mEngine.remainingBombs());
+		}
+		return true;
+	}
+
 	/** Stop the current game. */
 	public void stop() {
 		mTimer.stop();
@@ -232,7 +519,7 @@ public class Game implements MatrixObserver, TimerObserver {
 	/** Pause the current game.<br>
 	 * It can be resumed later by calling {@link #resume()}. */
 	public void pause() {
-		if (MineSweeperMatrix.INSTANCE.isRunning() && mTimer.isRunning()) {
+		if (mEngine != null && mEngine.isRunning() && mTimer.isRunning()) {
 			mTimer.pause();
 		}
 	}
@@ -240,7 +527,7 @@ public class Game implements MatrixObserver, TimerObserver {
 	/** Try to resume a running game or a replay.
 	 * @return True if there is a game or replay to resume, else false. */
 	public boolean resume() {
-		if (MineSweeperMatrix.INSTANCE.isRunning() && mTimer.isPaused()) {
+		if (mEngine != null && mEngine.isRunning() && mTimer.isPaused()) {
 			mTimer.resume();
 			return true;
 		}
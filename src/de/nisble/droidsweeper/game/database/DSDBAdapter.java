@@ -11,6 +11,7 @@ import android.database.sqlite.SQLiteDatabase;
 import de.nisble.droidsweeper.config.Constants;
 import de.nisble.droidsweeper.config.Level;
 import de.nisble.droidsweeper.game.database.DSDBContract.GameTable;
+import de.nisble.droidsweeper.game.engine.BoardMetrics;
 import de.nisble.droidsweeper.game.replay.Replay;
 import de.nisble.droidsweeper.utilities.LogDog;
 import static de.nisble.droidsweeper.game.database.DSDBContract.*;
@@ -63,7 +64,7 @@ public final class DSDBAdapter {
 					DSDBGameEntry entry = new DSDBGameEntry(c.getLong(c.getColumnIndexOrThrow(GamesView._ID)), level,
 							c.getString(c.getColumnIndexOrThrow(GamesView.CN_NAME)), c.getLong(c
 									.getColumnIndexOrThrow(GamesView.CN_TIME)), c.getLong(c
-									.getColumnIndexOrThrow(GamesView.CN_DATE)), null);
+									.getColumnIndexOrThrow(GamesView.CN_DATE)), null, null, null, metrics(c));
 
 					result.add(entry);
 					c.moveToNext();
@@ -92,7 +93,7 @@ public final class DSDBAdapter {
 						.getColumnIndexOrThrow(GamesView.CN_LEVEL))), c.getString(c
 						.getColumnIndexOrThrow(GamesView.CN_NAME)), c.getLong(c
 						.getColumnIndexOrThrow(GamesView.CN_TIME)), c.getLong(c
-						.getColumnIndexOrThrow(GamesView.CN_DATE)), null);
+						.getColumnIndexOrThrow(GamesView.CN_DATE)), null, null, null, metrics(c));
 			} else {
 				throw new IllegalArgumentException("Unable to query replay for ID " + gameID);
 			}
@@ -118,13 +119,17 @@ public final class DSDBAdapter {
 		SQLiteDatabase db = mHelper.getReadableDatabase();
 
 		/* ID is sufficient for where clause. */
-		Cursor c = db.query(GameTable.TABLE_NAME, new String[] { GameTable._ID, GameTable.CN_REPLAY }, GameTable._ID
-				+ "=?", new String[] { String.valueOf(entry.GAMEID) }, null, null, null);
+		Cursor c = db.query(GameTable.TABLE_NAME, new String[] { GameTable._ID, GameTable.CN_REPLAY,
+				GameTable.CN_SEED, GameTable.CN_BOARDHASH }, GameTable._ID + "=?", new String[] { String.valueOf(entry.GAMEID) }, null, null,
+				null);
 		try {
 			if (c.moveToFirst()) {
 				/* Create a new entry from the given one and add the replay */
+				int seed = c.getColumnIndex(GameTable.CN_SEED);
+				int hash = c.getColumnIndex(GameTable.CN_BOARDHASH);
 				result = new DSDBGameEntry(entry.GAMEID, entry.LEVEL, entry.NAME, entry.PLAYTIME, entry.EPOCHTIME,
-						c.getBlob(c.getColumnIndex(GameTable.CN_REPLAY)));
+						c.getBlob(c.getColumnIndex(GameTable.CN_REPLAY)), c.isNull(seed) ? null : c.getLong(seed),
+						c.isNull(hash) ? null : c.getLong(hash), entry.METRICS);
 			} else {
 				throw new IllegalArgumentException("Unable to query replay for ID " + entry.GAMEID);
 			}
@@ -135,6 +140,31 @@ public final class DSDBAdapter {
 		return result;
 	}
 
+	/* The metrics of the current row of a cursor over the GamesView or null
+	 * for games of older versions. */
+	private static BoardMetrics metrics(Cursor c) {
+		int bbbv = c.getColumnIndexOrThrow(GamesView.CN_BBBV);
+		if (c.isNull(bbbv))
+			return null;
+		return new BoardMetrics(c.getInt(bbbv), c.getInt(c.getColumnIndexOrThrow(GamesView.CN_OPENINGS)),
+				c.getInt(c.getColumnIndexOrThrow(GamesView.CN_ISLANDS)));
+	}
+
+	/** Count the stored games that were played on the same board (e.g. to
+	 * find duplicates).
+	 * @param boardHash The {@link Replay#getBoardHash() hash of the board}.
+	 * @return The count of games. */
+	public int countGames(long boardHash) {
+		SQLiteDatabase db = mHelper.getReadableDatabase();
+		Cursor c = db.rawQuery("SELECT COUNT(*) FROM " + GameTable.TABLE_NAME + " WHERE " + GameTable.CN_BOARDHASH
+				+ "=?", new String[] { String.valueOf(boardHash) });
+		try {
+			return c.moveToFirst() ? c.getInt(0) : 0;
+		} finally {
+			c.close();
+		}
+	}
+
 	/** Check if a time would be inserted or not. The database isn't changed.
 	 * @param difficulty The difficulty.
 	 * @param milliseconds The time in ms.
@@ -259,6 +289,15 @@ public final class DSDBAdapter {
 			values.put(GameTable.CN_TIME, replay.getPlayTime());
 			values.put(GameTable.CN_DATE, replay.getEpochTime());
 			values.put(GameTable.CN_REPLAY, replay.serializeTimeSteps());
+			if (replay.getGameConfig().SEEDED)
+				values.put(GameTable.CN_SEED, replay.getGameConfig().SEED);
+			if (replay.getBoardHash() != 0)
+				values.put(GameTable.CN_BOARDHASH, replay.getBoardHash());
+			if (replay.getMetrics() != null) {
+				values.put(GameTable.CN_BBBV, replay.getMetrics().BBBV);
+				values.put(GameTable.CN_OPENINGS, replay.getMetrics().OPENINGS);
+				values.put(GameTable.CN_ISLANDS, replay.getMetrics().ISLANDS);
+			}
 
 			gameID = db.insertOrThrow(GameTable.TABLE_NAME, null, values);
 
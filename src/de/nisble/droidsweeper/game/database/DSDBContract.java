@@ -7,7 +7,7 @@ final class DSDBContract {
 	// private static final String CLASSNAME =
 	// DSDBContract.class.getSimpleName();
 
-	static final int DB_VERSION = 4;
+	static final int DB_VERSION = 7;
 	static final String DB_NAME = "droidsweeper.sqlite";
 
 	DSDBContract() {
@@ -74,6 +74,11 @@ final class DSDBContract {
 		static final String CN_TIME = "time";
 		static final String CN_DATE = "date";
 		static final String CN_REPLAY = "replay";
+		static final String CN_SEED = "seed";
+		static final String CN_BOARDHASH = "boardhash";
+		static final String CN_BBBV = "bbbv";
+		static final String CN_OPENINGS = "openings";
+		static final String CN_ISLANDS = "islands";
 
 		//@formatter:off
 		static final String CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " ("
@@ -82,9 +87,22 @@ final class DSDBContract {
 				+ CN_GAMELEVEL + " REFERENCES " + LevelTable.TABLE_NAME + "(" + LevelTable.CN_LEVEL + "), "
 				+ CN_TIME + " INTEGER NOT NULL, "
 				+ CN_DATE + " DATETIME NOT NULL, "
-				+ CN_REPLAY + " BLOB)";
+				+ CN_REPLAY + " BLOB, "
+				+ CN_SEED + " INTEGER, "
+				+ CN_BOARDHASH + " INTEGER, "
+				+ CN_BBBV + " INTEGER, "
+				+ CN_OPENINGS + " INTEGER, "
+				+ CN_ISLANDS + " INTEGER)";
 		//@formatter:on
 		static final String DROP_TABLE = "DROP TABLE IF EXISTS " + TABLE_NAME;
+		// Upgrade from version 4
+		static final String ADD_SEED = "ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + CN_SEED + " INTEGER";
+		// Upgrade from version 5
+		static final String ADD_BOARDHASH = "ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + CN_BOARDHASH + " INTEGER";
+		// Upgrade from version 6
+		static final String ADD_BBBV = "ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + CN_BBBV + " INTEGER";
+		static final String ADD_OPENINGS = "ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + CN_OPENINGS + " INTEGER";
+		static final String ADD_ISLANDS = "ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + CN_ISLANDS + " INTEGER";
 
 		static String q(String column) {
 			return new String(TABLE_NAME + "." + column);
@@ -98,6 +116,9 @@ final class DSDBContract {
 		static final String CN_TIME = GameTable.CN_TIME;
 		static final String CN_DATE = GameTable.CN_DATE;
 		static final String CN_GAMEPLAYER = GameTable.CN_GAMEPLAYER;
+		static final String CN_BBBV = GameTable.CN_BBBV;
+		static final String CN_OPENINGS = GameTable.CN_OPENINGS;
+		static final String CN_ISLANDS = GameTable.CN_ISLANDS;
 
 		//@formatter:off
 		static final String CREATE_VIEW = "CREATE VIEW IF NOT EXISTS " + VIEW_NAME
@@ -106,7 +127,10 @@ final class DSDBContract {
 				+ CN_LEVEL + ", "
 				+ CN_TIME + ", "
 				+ CN_DATE + ", "
-				+ CN_GAMEPLAYER
+				+ CN_GAMEPLAYER + ", "
+				+ CN_BBBV + ", "
+				+ CN_OPENINGS + ", "
+				+ CN_ISLANDS
 				+ " FROM " + GameTable.TABLE_NAME + " JOIN " + LevelTable.TABLE_NAME
 				+ " ON " + LevelTable.CN_LEVEL + "=" + GameTable.CN_GAMELEVEL;
 		//@formatter:on
@@ -136,10 +160,13 @@ final class DSDBContract {
 		static final String CN_NAME = PlayerTable.CN_NAME;
 		static final String CN_TIME = GameTable.CN_TIME;
 		static final String CN_DATE = GameTable.CN_DATE;
+		static final String CN_BBBV = GameTable.CN_BBBV;
+		static final String CN_OPENINGS = GameTable.CN_OPENINGS;
+		static final String CN_ISLANDS = GameTable.CN_ISLANDS;
 
 		// CREATE VIEW IF NOT EXISTS games AS SELECT l4g._id AS _id, level,
-		// name, time, date FROM level4game l4g JOIN player4game p4g ON
-		// l4g._id=p4g._id;
+		// name, time, date, bbbv, openings, islands FROM level4game l4g JOIN
+		// player4game p4g ON l4g._id=p4g._id;
 
 		//@formatter:off
 		static final String CREATE_VIEW = "CREATE VIEW IF NOT EXISTS " + VIEW_NAME
@@ -148,7 +175,10 @@ final class DSDBContract {
 				+ CN_LEVEL + ", "
 				+ CN_NAME + ", "
 				+ CN_TIME + ", "
-				+ CN_DATE
+				+ CN_DATE + ", "
+				+ CN_BBBV + ", "
+				+ CN_OPENINGS + ", "
+				+ CN_ISLANDS
 				+ " FROM " + Level4GameView.VIEW_NAME + " l4g JOIN " + Player4GameView.VIEW_NAME + " p4g"
 				+ " ON l4g." + _ID + "=p4g." + _ID;
 		//@formatter:on
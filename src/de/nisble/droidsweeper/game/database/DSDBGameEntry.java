@@ -7,6 +7,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import de.nisble.droidsweeper.config.Level;
+import de.nisble.droidsweeper.config.Zobrist;
+import de.nisble.droidsweeper.game.engine.BoardMetrics;
 import de.nisble.droidsweeper.game.replay.TimeStep;
 
 /** Container class for holding database entries.<br>
@@ -32,6 +34,14 @@ public final class DSDBGameEntry {
 	public final long EPOCHTIME;
 	/** The replay as list of changes of the game at a specific time. */
 	public final List<TimeStep> TIMESTEPS;
+	/** The seed of the board. Only valid if {@link #SEEDED}. */
+	public final long SEED;
+	/** True if the seed of the board is known. */
+	public final boolean SEEDED;
+	/** The {@link Zobrist} hash of the board or 0 if unknown. */
+	public final long BOARDHASH;
+	/** The difficulty metrics of the board or null if unknown. */
+	public final BoardMetrics METRICS;
 
 	/** Initialize a game entry with the data from the database.
 	 * @param id The ID of the game.
@@ -44,11 +54,49 @@ public final class DSDBGameEntry {
 	 * @throws IOException On error in deserialisation of the replay. */
 	public DSDBGameEntry(long id, Level difficulty, String username, long playTime, long epochTime,
 			byte[] serializedTimeSteps) throws ClassNotFoundException, IOException {
+		this(id, difficulty, username, playTime, epochTime, serializedTimeSteps, null);
+	}
+
+	/** Initialize a game entry with the data from the database.
+	 * @param id The ID of the game.
+	 * @param difficulty The difficulty level.
+	 * @param username The name of the player.
+	 * @param playTime The reached time in milliseconds.
+	 * @param epochTime The data as epoch time.
+	 * @param serializedTimeSteps The serialized replay from the database.
+	 * @param seed The seed of the board or null if unknown.
+	 * @throws ClassNotFoundException On error in deserialisation of the replay.
+	 * @throws IOException On error in deserialisation of the replay. */
+	public DSDBGameEntry(long id, Level difficulty, String username, long playTime, long epochTime,
+			byte[] serializedTimeSteps, Long seed) throws ClassNotFoundException, IOException {
+		this(id, difficulty, username, playTime, epochTime, serializedTimeSteps, seed, null, null);
+	}
+
+	/** Initialize a game entry with the data from the database.
+	 * @param id The ID of the game.
+	 * @param difficulty The difficulty level.
+	 * @param username The name of the player.
+	 * @param playTime The reached time in milliseconds.
+	 * @param epochTime The data as epoch time.
+	 * @param serializedTimeSteps The serialized replay from the database.
+	 * @param seed The seed of the board or null if unknown.
+	 * @param boardHash The {@link Zobrist} hash of the board or null if
+	 *            unknown.
+	 * @param metrics The difficulty metrics of the board or null if unknown.
+	 * @throws ClassNotFoundException On error in deserialisation of the replay.
+	 * @throws IOException On error in deserialisation of the replay. */
+	public DSDBGameEntry(long id, Level difficulty, String username, long playTime, long epochTime,
+			byte[] serializedTimeSteps, Long seed, Long boardHash, BoardMetrics metrics)
+			throws ClassNotFoundException, IOException {
 		GAMEID = id;
 		LEVEL = difficulty;
 		NAME = username;
 		PLAYTIME = playTime;
 		EPOCHTIME = epochTime;
+		SEED = (seed != null) ? seed : 0;
+		SEEDED = (seed != null);
+		BOARDHASH = (boardHash != null) ? boardHash : 0;
+		METRICS = metrics;
 		if (serializedTimeSteps != null)
 			TIMESTEPS = deserializeTimeSteps(serializedTimeSteps);
 		else
@@ -33,6 +33,27 @@ final class DSDBHelper extends SQLiteOpenHelper {
 	@Override
 	public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
 		LogDog.i(CLASSNAME, "Updating database from " + oldVersion + " to " + newVersion);
+
+		if (oldVersion >= 4) {
+			/* Keep the games. Version 5 only adds the seed, 6 the board hash
+			 * and 7 the metrics of the board. */
+			if (oldVersion < 5)
+				db.execSQL(GameTable.ADD_SEED);
+			if (oldVersion < 6)
+				db.execSQL(GameTable.ADD_BOARDHASH);
+			if (oldVersion < 7) {
+				db.execSQL(GameTable.ADD_BBBV);
+				db.execSQL(GameTable.ADD_OPENINGS);
+				db.execSQL(GameTable.ADD_ISLANDS);
+				// The views show the metrics
+				db.execSQL(GamesView.DROP_VIEW);
+				db.execSQL(Level4GameView.DROP_VIEW);
+				db.execSQL(Level4GameView.CREATE_VIEW);
+				db.execSQL(GamesView.CREATE_VIEW);
+			}
+			return;
+		}
+
 		// Drop tables
 		db.execSQL(GameTable.DROP_TABLE);
 		db.execSQL(PlayerTable.DROP_TABLE);
@@ -0,0 +1,89 @@
+package de.nisble.droidsweeper.game.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.nisble.droidsweeper.game.Position;
+import de.nisble.droidsweeper.game.jni.FieldListener;
+import de.nisble.droidsweeper.game.jni.MatrixObserver;
+
+/** Base class of the {@link Engine engines}.<br>
+ * It holds the registered {@link MatrixObserver}S and {@link FieldListener}S
+ * and fans out the {@link ChangeList} of a click to them. So an engine only
+ * has to collect the changes of a click and pass them to
+ * {@link #dispatch(ChangeList)} after the click is processed.
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public abstract class AbstractEngine implements Engine {
+	private final List<MatrixObserver> mObservers = new ArrayList<MatrixObserver>();
+	private FieldListener[] mFieldListeners = new FieldListener[0];
+	private int mX = 0;
+	private int mY = 0;
+
+	@Override
+	public void setFieldListener(FieldListener l) throws Exception {
+		Position p = l.getPosition();
+		if (p.X < 0 || p.X >= mX || p.Y < 0 || p.Y >= mY)
+			throw new IndexOutOfBoundsException("Position out of bounds: X:" + p.X + " Y:" + p.Y);
+		mFieldListeners[p.Y * mX + p.X] = l;
+	}
+
+	@Override
+	public void addMatrixObserver(MatrixObserver l) {
+		if (!mObservers.contains(l))
+			mObservers.add(l);
+	}
+
+	@Override
+	public void removeObserver(MatrixObserver l) {
+		mObservers.remove(l);
+	}
+
+	/** Drop all registered {@link FieldListener}S and prepare for a matrix of
+	 * the given dimensions.
+	 * @param x The width of the matrix.
+	 * @param y The height of the matrix. */
+	protected void resetFieldListeners(int x, int y) {
+		mX = x;
+		mY = y;
+		mFieldListeners = new FieldListener[x * y];
+	}
+
+	/** Inform the {@link FieldListener}S and {@link MatrixObserver}S about the
+	 * changes of a click.<br>
+	 * For each changed field
+	 * {@link FieldListener#onStatusChanged(de.nisble.droidsweeper.game.jni.FieldStatus, int)}
+	 * is called before
+	 * {@link MatrixObserver#afterFieldStatusChanged(Position, de.nisble.droidsweeper.game.jni.FieldStatus, int)}
+	 * . Changes of the remaining bombs and the game status are reported after
+	 * the fields.
+	 * @param changes The changes. */
+	protected void dispatch(ChangeList changes) {
+		boolean observed = !mObservers.isEmpty();
+
+		for (int i = 0; i < changes.size(); ++i) {
+			int index = changes.getIndex(i);
+			FieldListener fl = mFieldListeners[index];
+			if (fl != null)
+				fl.onStatusChanged(changes.getFieldStatus(i), changes.getAdjacentBombs(i));
+
+			if (observed) {
+				Position p = new Position(index % mX, index / mX);
+				for (MatrixObserver l : mObservers) {
+					l.afterFieldStatusChanged(p, changes.getFieldStatus(i), changes.getAdjacentBombs(i));
+				}
+			}
+		}
+
+		if (changes.isRemainingBombsChanged()) {
+			for (MatrixObserver l : mObservers) {
+				l.onRemainingBombsChanged(changes.getRemainingBombs());
+			}
+		}
+
+		if (changes.isGameStatusChanged()) {
+			for (MatrixObserver l : mObservers) {
+				l.onGameStatusChanged(changes.getGameStatus());
+			}
+		}
+	}
+}
@@ -0,0 +1,826 @@
+package de.nisble.droidsweeper.game.engine;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.nisble.droidsweeper.config.GameConfig;
+import de.nisble.droidsweeper.config.Zobrist;
+import de.nisble.droidsweeper.game.Position;
+import de.nisble.droidsweeper.game.jni.FieldStatus;
+import de.nisble.droidsweeper.game.jni.GameStatus;
+import de.nisble.droidsweeper.game.jni.MineSweeperMatrix;
+
+/** Pure Java implementation of the game logic.<br>
+ * In contrast to {@link MineSweeperMatrix} this engine doesn't need the native
+ * library libmsm. The state of the game matrix is stored in packed bitsets
+ * (long[]) for bombs, revealed, marked and queried fields. A field is addressed
+ * by its index y * X + x. The counts of adjacent bombs and a
+ * {@link ZeroRegionIndex index of the openings} are computed when the bombs are
+ * placed. So revealing an opening writes its precomputed fields without a
+ * flood fill. On boards with at least {@link #PARALLEL_FIELDS} fields the index
+ * is built on tiles of rows by worker threads. They are started with the first
+ * big board and stopped by {@link #close()}. The bombs are placed on the first
+ * reveal, so the first revealed field and (if possible) its adjacent fields
+ * are never bombs. If the {@link GameConfig#NOGUESS no-guess} mode is requested,
+ * the bombs are placed from the seed that the {@link NoGuessGenerator} finds
+ * for the first revealed field. The search runs in parallel on worker threads
+ * that are started with the first no-guess game and stopped by
+ * {@link #close()}.<br>
+ * Boards with another {@link Topology} (e.g. a torus or a hexagonal grid) are
+ * created by {@link #create(Topology, int, long)}. Their adjacent bombs, flood
+ * fills and chords walk the neighbour table of the topology instead of the
+ * rectangular neighbourhood and the index of the openings.<br>
+ * Each click is logged in a bounded {@link DeltaLog}, so it can be
+ * {@link #undo() undone} and {@link #redo() redone}.<br>
+ * The {@link Zobrist} hash of the board is computed when the bombs are placed.
+ * The {@link BoardMetrics difficulty metrics} of the rectangular grid are
+ * taken from the index of the openings.
+ * The hash of the state of the fields is updated with each change.<br>
+ * A game on the rectangular grid can be written to a compact
+ * {@link #writeSnapshot(DataOutput) snapshot}: The seed, the counters and the
+ * four bitsets (a bit per field each). On {@link #readSnapshot(DataInput)
+ * restore} only the adjacent bombs are counted again. The index of the
+ * openings is built on the first reveal after the restore.<br>
+ * The changes of a click are
+ * collected in a {@link ChangeList}, written to the {@link Board} and reported
+ * after the click is processed.<br>
+ * This engine has no dependencies to Android at runtime. It can be used on a
+ * plain JVM (e.g. for benchmarks and simulations) and isn't limited in the size
+ * of the game matrix.
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class BitBoardEngine extends AbstractEngine {
+	/** Boards with at least this count of fields are indexed in parallel. */
+	public static final int PARALLEL_FIELDS = 1 << 18;
+	private static final int TILES_PER_WORKER = 4;
+	/* "BBE3": Marks a snapshot of this engine and its version */
+	private static final int SNAPSHOT_MAGIC = 0x42424533;
+
+	/* Draws the seeds of unseeded games */
+	private final Random mSeeds = new Random();
+	private final ChangeList mChanges = new ChangeList();
+	private final MineGenerator mGenerator = new MineGenerator();
+	private final ZeroRegionIndex mRegions = new ZeroRegionIndex();
+	private final DeltaLog mLog = new DeltaLog();
+	/* The status before the current click */
+	private GameStatus mBefore = GameStatus.READY;
+	/* Created with the first no-guess game */
+	private NoGuessGenerator mNoGuessGenerator = null;
+	/* Created with the first big board */
+	private ExecutorService mTileExecutor = null;
+	private final int mWorkers;
+	private Board mBoard = new Board(Board.allocate(0, 0));
+
+	private int mX = 0;
+	private int mY = 0;
+	private int mBombs = 0;
+	private long mSeed = 0;
+	private boolean mNoGuess = false;
+	/* Null on the rectangular grid of create(x, y, ...) */
+	private Topology mTopology = null;
+	/* Bombs are placed on the first reveal */
+	private boolean mPlaced = false;
+	/* The openings of a restored board are indexed on the first reveal */
+	private boolean mIndexed = false;
+
+	private long[] mBombSet = Bits.create(0);
+	private long[] mRevealedSet = Bits.create(0);
+	private long[] mMarkedSet = Bits.create(0);
+	private long[] mQueriedSet = Bits.create(0);
+	private byte[] mAdjacent = new byte[0];
+
+	/* The neighbours of a chorded field */
+	private final int[] mHood = new int[26];
+
+	/* Work stack for revealing adjacent fields. Each field is pushed at most
+	 * once, so the size of the matrix is sufficient. */
+	private int[] mStack = new int[0];
+
+	private GameStatus mStatus = GameStatus.READY;
+	private int mMarked = 0;
+	private int mHiddenSafe = 0;
+
+	/* Zobrist hashes */
+	private long mBoardHash = 0;
+	private long mStateHash = 0;
+	/* Null until indexed */
+	private BoardMetrics mMetrics = null;
+
+	/** Create an engine that indexes big boards on one worker per available
+	 * processor. On a single processor the index is built on the calling
+	 * thread. */
+	public BitBoardEngine() {
+		this((Runtime.getRuntime().availableProcessors() > 1) ? Runtime.getRuntime().availableProcessors() : 0);
+	}
+
+	/** Create an engine.
+	 * @param workers The count of worker threads that index boards with at
+	 *            least {@link #PARALLEL_FIELDS} fields. 0 to always index on
+	 *            the calling thread. */
+	public BitBoardEngine(int workers) {
+		if (workers < 0)
+			throw new IllegalArgumentException("Invalid count of workers: " + workers);
+		mWorkers = workers;
+	}
+
+	/* Public interface */
+
+	@Override
+	public void create(GameConfig c) {
+		create(c.X, c.Y, c.BOMBS, c.SEEDED ? c.SEED : mSeeds.nextLong(), c.NOGUESS);
+	}
+
+	/** Create a new game with a random board without the need for a
+	 * {@link GameConfig}.
+	 * @param x The width of the matrix.
+	 * @param y The height of the matrix.
+	 * @param bombs The count of bombs. Clamped to the count of fields. */
+	public void create(int x, int y, int bombs) {
+		create(x, y, bombs, mSeeds.nextLong());
+	}
+
+	/** Create a new game without the need for a {@link GameConfig}.
+	 * @param x The width of the matrix.
+	 * @param y The height of the matrix.
+	 * @param bombs The count of bombs. Clamped to the count of fields.
+	 * @param seed The seed of the bomb placement. Together with the first
+	 *            revealed field it defines the board. */
+	public void create(int x, int y, int bombs, long seed) {
+		create(x, y, bombs, seed, false);
+	}
+
+	/** Create a new game without the need for a {@link GameConfig}.
+	 * @param x The width of the matrix.
+	 * @param y The height of the matrix.
+	 * @param bombs The count of bombs. Clamped to the count of fields.
+	 * @param seed The seed of the bomb placement. Together with the first
+	 *            revealed field it defines the board.
+	 * @param noGuess True if the board must be solvable from the first
+	 *            revealed field without guessing. */
+	public void create(int x, int y, int bombs, long seed, boolean noGuess) {
+		if (x < 1 || y < 1)
+			throw new IllegalArgumentException("Invalid dimensions: X:" + x + " Y:" + y);
+
+		init(x, y, bombs, seed);
+		mNoGuess = noGuess;
+		mTopology = null;
+	}
+
+	/** Create a new game on a board with the given {@link Topology}.<br>
+	 * The {@link GameConfig#NOGUESS no-guess} mode isn't supported, because the
+	 * solver only knows the rectangular grid.
+	 * @param t The topology. Its X and Y are the dimensions of the matrix.
+	 * @param bombs The count of bombs. Clamped to the count of fields.
+	 * @param seed The seed of the bomb placement. Together with the first
+	 *            revealed field it defines the board. */
+	public void create(Topology t, int bombs, long seed) {
+		init(t.X, t.Y, bombs, seed);
+		mNoGuess = false;
+		mTopology = t;
+	}
+
+	private void init(int x, int y, int bombs, long seed) {
+		int size = x * y;
+		mX = x;
+		mY = y;
+		mBombs = Math.max(0, Math.min(bombs, size));
+
+		mBombSet = Bits.create(size);
+		mRevealedSet = Bits.create(size);
+		mMarkedSet = Bits.create(size);
+		mQueriedSet = Bits.create(size);
+		mAdjacent = new byte[size];
+		resetFieldListeners(x, y);
+		mStack = new int[size];
+
+		mStatus = GameStatus.READY;
+		mMarked = 0;
+		mHiddenSafe = size - mBombs;
+
+		mBoard = new Board(Board.allocate(x, y));
+		mBoard.setGameStatus(mStatus);
+		mBoard.setRemainingBombs(mBombs);
+
+		mSeed = seed;
+		mPlaced = false;
+		mIndexed = false;
+		mBoardHash = 0;
+		mStateHash = 0;
+		mMetrics = null;
+		mLog.clear();
+	}
+
+	@Override
+	public Board getBoard() {
+		return mBoard;
+	}
+
+	@Override
+	public GameStatus gameStatus() {
+		return mStatus;
+	}
+
+	@Override
+	public boolean isReady() {
+		return GameStatus.READY == mStatus;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return GameStatus.RUNNING == mStatus;
+	}
+
+	@Override
+	public boolean isLost() {
+		return GameStatus.LOST == mStatus;
+	}
+
+	@Override
+	public boolean isWon() {
+		return GameStatus.WON == mStatus;
+	}
+
+	@Override
+	public int remainingBombs() {
+		return mBombs - mMarked;
+	}
+
+	@Override
+	public Counters getCounters() {
+		return new Counters(mStatus, mBombs, mMarked, mHiddenSafe);
+	}
+
+	/** @return The metrics or null if the bombs are not placed yet or the
+	 *         board has another {@link Topology}. */
+	@Override
+	public BoardMetrics getMetrics() {
+		return mMetrics;
+	}
+
+	@Override
+	public long boardHash() {
+		return mBoardHash;
+	}
+
+	@Override
+	public long stateHash() {
+		return mStateHash;
+	}
+
+	@Override
+	public int reveal(Position p) throws IndexOutOfBoundsException {
+		int i = index(p);
+
+		if (Bits.get(mRevealedSet, i) || Bits.get(mMarkedSet, i) || GameStatus.WON == mStatus
+				|| GameStatus.LOST == mStatus)
+			return adjacentBombs(i);
+
+		begin();
+
+		if (GameStatus.READY == mStatus)
+			setStatus(GameStatus.RUNNING);
+
+		placeBombs(i);
+
+		if (Bits.get(mBombSet, i)) {
+			Bits.set(mRevealedSet, i);
+			Bits.clear(mQueriedSet, i);
+			mChanges.add(i, FieldStatus.BOMB, adjacentBombs(i));
+			if (GameStatus.RUNNING == mStatus)
+				setStatus(GameStatus.LOST);
+		} else {
+			revealSafe(i);
+			if (0 == mHiddenSafe && GameStatus.RUNNING == mStatus)
+				setStatus(GameStatus.WON);
+		}
+
+		mChanges.setResult(adjacentBombs(i));
+		publish();
+
+		return mChanges.getResult();
+	}
+
+	/** Reveal all fields that are neither revealed nor marked in one go.<br>
+	 * In contrast to {@link #reveal(Position)} this doesn't change the game
+	 * status. */
+	@Override
+	public void revealAll() {
+		begin();
+		placeBombs(-1);
+
+		for (int i = 0; i < mX * mY; ++i) {
+			if (Bits.get(mRevealedSet, i) || Bits.get(mMarkedSet, i))
+				continue;
+
+			Bits.set(mRevealedSet, i);
+			Bits.clear(mQueriedSet, i);
+			if (Bits.get(mBombSet, i)) {
+				mChanges.add(i, FieldStatus.BOMB, adjacentBombs(i));
+			} else {
+				--mHiddenSafe;
+				mChanges.add(i, FieldStatus.UNHIDDEN, adjacentBombs(i));
+			}
+		}
+
+		if (!mChanges.isEmpty()) {
+			publish();
+		}
+	}
+
+	@Override
+	public void cycleMark(Position p) throws IndexOutOfBoundsException {
+		int i = index(p);
+
+		if (Bits.get(mRevealedSet, i) || GameStatus.WON == mStatus || GameStatus.LOST == mStatus)
+			return;
+
+		begin();
+
+		if (GameStatus.READY == mStatus)
+			setStatus(GameStatus.RUNNING);
+
+		if (Bits.get(mMarkedSet, i)) {
+			Bits.clear(mMarkedSet, i);
+			Bits.set(mQueriedSet, i);
+			--mMarked;
+			mChanges.add(i, FieldStatus.QUERIED, 0);
+			mChanges.setRemainingBombs(remainingBombs());
+		} else if (Bits.get(mQueriedSet, i)) {
+			Bits.clear(mQueriedSet, i);
+			mChanges.add(i, FieldStatus.HIDDEN, 0);
+		} else {
+			Bits.set(mMarkedSet, i);
+			++mMarked;
+			mChanges.add(i, FieldStatus.MARKED, 0);
+			mChanges.setRemainingBombs(remainingBombs());
+		}
+
+		publish();
+	}
+
+	@Override
+	public void chord(Position p) throws IndexOutOfBoundsException {
+		int i = index(p);
+
+		if (!Bits.get(mRevealedSet, i) || Bits.get(mBombSet, i) || GameStatus.RUNNING != mStatus)
+			return;
+
+		int count = neighbours(i, mHood);
+		int marked = 0;
+		for (int k = 0; k < count; ++k) {
+			if (Bits.get(mMarkedSet, mHood[k]))
+				++marked;
+		}
+		if (marked != adjacentBombs(i))
+			return;
+
+		begin();
+
+		for (int k = 0; k < count; ++k) {
+			int n = mHood[k];
+			// A previous opening may have revealed it already
+			if (Bits.get(mRevealedSet, n) || Bits.get(mMarkedSet, n))
+				continue;
+
+			if (Bits.get(mBombSet, n)) {
+				Bits.set(mRevealedSet, n);
+				Bits.clear(mQueriedSet, n);
+				mChanges.add(n, FieldStatus.BOMB, adjacentBombs(n));
+				if (GameStatus.RUNNING == mStatus)
+					setStatus(GameStatus.LOST);
+			} else {
+				revealSafe(n);
+			}
+		}
+
+		if (0 == mHiddenSafe && GameStatus.RUNNING == mStatus)
+			setStatus(GameStatus.WON);
+
+		if (!mChanges.isEmpty()) {
+			publish();
+		}
+	}
+
+	@Override
+	public boolean canUndo() {
+		return mLog.canUndo();
+	}
+
+	@Override
+	public boolean canRedo() {
+		return mLog.canRedo();
+	}
+
+	/** Undo the last click. The bombs stay where they are, even if the first
+	 * click is undone. */
+	@Override
+	public boolean undo() {
+		mChanges.reset(mStatus, remainingBombs());
+		GameStatus status = mLog.undo(mChanges);
+		if (null == status)
+			return false;
+		restore(status);
+		return true;
+	}
+
+	@Override
+	public boolean redo() {
+		mChanges.reset(mStatus, remainingBombs());
+		GameStatus status = mLog.redo(mChanges);
+		if (null == status)
+			return false;
+		restore(status);
+		return true;
+	}
+
+	/** Write the current game to a snapshot.<br>
+	 * The size is about 4 bits per field plus a small header. Games on
+	 * another {@link Topology} are not supported. The clicks that could be
+	 * undone are not part of the snapshot.
+	 * @return False if the game isn't played on the rectangular grid. */
+	@Override
+	public boolean writeSnapshot(DataOutput out) throws IOException {
+		if (mTopology != null)
+			return false;
+
+		out.writeInt(SNAPSHOT_MAGIC);
+		out.writeInt(mX);
+		out.writeInt(mY);
+		out.writeInt(mBombs);
+		out.writeLong(mSeed);
+		out.writeBoolean(mNoGuess);
+		out.writeBoolean(mPlaced);
+		out.writeByte(mStatus.ordinal());
+		out.writeLong(mBoardHash);
+		out.writeLong(mStateHash);
+		out.writeBoolean(mMetrics != null);
+		if (mMetrics != null) {
+			out.writeInt(mMetrics.BBBV);
+			out.writeInt(mMetrics.OPENINGS);
+			out.writeInt(mMetrics.ISLANDS);
+		}
+		write(out, mBombSet);
+		write(out, mRevealedSet);
+		write(out, mMarkedSet);
+		write(out, mQueriedSet);
+		return true;
+	}
+
+	@Override
+	public boolean readSnapshot(DataInput in) throws IOException {
+		if (in.readInt() != SNAPSHOT_MAGIC)
+			throw new IOException("Not a snapshot of " + BitBoardEngine.class.getSimpleName());
+
+		int x = in.readInt();
+		int y = in.readInt();
+		int bombs = in.readInt();
+		long seed = in.readLong();
+		boolean noGuess = in.readBoolean();
+		boolean placed = in.readBoolean();
+		int status = in.readUnsignedByte();
+		long boardHash = in.readLong();
+		long stateHash = in.readLong();
+		BoardMetrics metrics = in.readBoolean() ? new BoardMetrics(in.readInt(), in.readInt(), in.readInt()) : null;
+		if (x < 1 || y < 1 || (long) x * y > Integer.MAX_VALUE || status >= GameStatus.values().length)
+			throw new IOException("Corrupt snapshot: X:" + x + " Y:" + y + " Status:" + status);
+
+		init(x, y, bombs, seed);
+		mNoGuess = noGuess;
+		mTopology = null;
+		mPlaced = placed;
+		mStatus = GameStatus.fromInt(status);
+		mBoardHash = boardHash;
+		mStateHash = stateHash;
+		mMetrics = metrics;
+		read(in, mBombSet);
+		read(in, mRevealedSet);
+		read(in, mMarkedSet);
+		read(in, mQueriedSet);
+
+		if (mPlaced)
+			countAdjacent();
+
+		// The counters follow from the bitsets
+		int revealedSafe = 0;
+		for (int w = 0; w < mRevealedSet.length; ++w)
+			revealedSafe += Long.bitCount(mRevealedSet[w] & ~mBombSet[w]);
+		mHiddenSafe = x * y - mBombs - revealedSafe;
+		mMarked = Bits.count(mMarkedSet);
+
+		mBoard.load(fields(), mStatus, remainingBombs());
+		return true;
+	}
+
+	/** Stop the workers of the no-guess search and of the index. Apart from
+	 * that the engine is garbage collected. */
+	@Override
+	public void close() {
+		if (mNoGuessGenerator != null) {
+			mNoGuessGenerator.close();
+			mNoGuessGenerator = null;
+		}
+		if (mTileExecutor != null) {
+			mTileExecutor.shutdownNow();
+			mTileExecutor = null;
+		}
+	}
+
+	/** @return The width of the current game matrix. */
+	public int getX() {
+		return mX;
+	}
+
+	/** @return The height of the current game matrix. */
+	public int getY() {
+		return mY;
+	}
+
+	/* Internals */
+
+	private int index(Position p) throws IndexOutOfBoundsException {
+		if (p.X < 0 || p.X >= mX || p.Y < 0 || p.Y >= mY)
+			throw new IndexOutOfBoundsException("Position out of bounds: X:" + p.X + " Y:" + p.Y);
+		return p.Y * mX + p.X;
+	}
+
+	/* Place the bombs if not done yet and index the board. The given field
+	 * is kept free. */
+	private void placeBombs(int safe) {
+		if (!mPlaced) {
+			if (mNoGuess && safe >= 0) {
+				if (null == mNoGuessGenerator)
+					mNoGuessGenerator = new NoGuessGenerator();
+				mSeed = mNoGuessGenerator.find(mX, mY, mBombs, safe, mSeed);
+			}
+			if (null == mTopology) {
+				mGenerator.place(mBombSet, mX, mY, mBombs, safe, new SplitMix64(mSeed));
+				index();
+			} else {
+				mGenerator.place(mBombSet, mTopology, mBombs, safe, new SplitMix64(mSeed));
+				countAdjacent();
+			}
+			mPlaced = true;
+
+			mBoardHash = Zobrist.dimensions(mX, mY);
+			for (int w = 0; w < mBombSet.length; ++w) {
+				for (long bits = mBombSet[w]; bits != 0; bits &= bits - 1)
+					mBoardHash ^= Zobrist.bomb((w << 6) + Long.numberOfTrailingZeros(bits));
+			}
+		}
+	}
+
+	/* Count the adjacent bombs, index the openings and measure the board */
+	private void index() {
+		mRegions.build(mBombSet, mAdjacent, mX, mY, tileExecutor(), TILES_PER_WORKER * mWorkers);
+		mMetrics = new BoardMetrics(mRegions.bbbv(), mRegions.regions(), mRegions.islands());
+		mIndexed = true;
+	}
+
+	/* The executor for the tiles of the index or null if the index should be
+	 * built on the calling thread */
+	private ExecutorService tileExecutor() {
+		if (0 == mWorkers || mX * mY < PARALLEL_FIELDS)
+			return null;
+		if (null == mTileExecutor)
+			mTileExecutor = Executors.newFixedThreadPool(mWorkers, new DaemonThreadFactory("Tiles"));
+		return mTileExecutor;
+	}
+
+	/* Write the neighbours of field i to hood and return their count */
+	private int neighbours(int i, int[] hood) {
+		if (mTopology != null) {
+			int count = mTopology.end(i) - mTopology.start(i);
+			System.arraycopy(mTopology.neighbours(), mTopology.start(i), hood, 0, count);
+			return count;
+		}
+
+		int x = i % mX;
+		int y = i / mX;
+		int count = 0;
+		for (int ny = Math.max(0, y - 1); ny <= Math.min(mY - 1, y + 1); ++ny) {
+			for (int nx = Math.max(0, x - 1); nx <= Math.min(mX - 1, x + 1); ++nx) {
+				if (ny * mX + nx != i)
+					hood[count++] = ny * mX + nx;
+			}
+		}
+		return count;
+	}
+
+	/* Count the adjacent bombs without indexing the openings. On another
+	 * topology from its neighbour table. Like on the grid a bomb counts
+	 * itself. */
+	private void countAdjacent() {
+		int[] neighbours = (mTopology != null) ? mTopology.neighbours() : null;
+		for (int w = 0; w < mBombSet.length; ++w) {
+			for (long bits = mBombSet[w]; bits != 0; bits &= bits - 1) {
+				int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+				if (null == neighbours) {
+					int x = i % mX;
+					int y = i / mX;
+					for (int ny = Math.max(0, y - 1); ny <= Math.min(mY - 1, y + 1); ++ny) {
+						for (int nx = Math.max(0, x - 1); nx <= Math.min(mX - 1, x + 1); ++nx)
+							++mAdjacent[ny * mX + nx];
+					}
+				} else {
+					++mAdjacent[i];
+					for (int k = mTopology.start(i); k < mTopology.end(i); ++k)
+						++mAdjacent[neighbours[k]];
+				}
+			}
+		}
+	}
+
+	private int adjacentBombs(int i) {
+		return mAdjacent[i];
+	}
+
+	/* Reveal a field that is not a bomb. If it has no adjacent bombs, its
+	 * opening is revealed from the index. If a field of the opening was marked
+	 * or revealed before, the opening may be split. Then the fields are
+	 * revealed by a flood fill, like before the index. */
+	private void revealSafe(int start) {
+		if (mTopology != null) {
+			floodFill(start);
+			return;
+		}
+		if (!mIndexed)
+			index();
+
+		int r = mRegions.regionOf(start);
+		if (r >= 0 && isUntouched(r)) {
+			revealRegion(r);
+		} else {
+			floodFill(start);
+		}
+	}
+
+	/* True if no field of the region without adjacent bombs is marked or
+	 * revealed. */
+	private boolean isUntouched(int r) {
+		int[] cells = mRegions.cells();
+		for (int k = mRegions.start(r); k < mRegions.end(r); ++k) {
+			int i = cells[k];
+			if (0 == mAdjacent[i] && (Bits.get(mRevealedSet, i) || Bits.get(mMarkedSet, i)))
+				return false;
+		}
+		return true;
+	}
+
+	private void revealRegion(int r) {
+		int[] cells = mRegions.cells();
+		for (int k = mRegions.start(r); k < mRegions.end(r); ++k) {
+			int i = cells[k];
+			if (Bits.get(mRevealedSet, i) || Bits.get(mMarkedSet, i))
+				continue;
+
+			Bits.set(mRevealedSet, i);
+			Bits.clear(mQueriedSet, i);
+			--mHiddenSafe;
+			mChanges.add(i, FieldStatus.UNHIDDEN, mAdjacent[i]);
+		}
+	}
+
+	/* Reveal a field that is not a bomb. If it has no adjacent bombs, all
+	 * adjacent fields that are not marked are revealed too. */
+	private void floodFill(int start) {
+		int top = 0;
+		mStack[top++] = start;
+		Bits.set(mRevealedSet, start);
+
+		while (top > 0) {
+			int i = mStack[--top];
+
+			Bits.clear(mQueriedSet, i);
+			--mHiddenSafe;
+
+			int adjacent = adjacentBombs(i);
+			mChanges.add(i, FieldStatus.UNHIDDEN, adjacent);
+
+			if (0 == adjacent && mTopology != null) {
+				int[] neighbours = mTopology.neighbours();
+				for (int k = mTopology.start(i); k < mTopology.end(i); ++k) {
+					int n = neighbours[k];
+					if (!Bits.get(mRevealedSet, n) && !Bits.get(mMarkedSet, n)) {
+						Bits.set(mRevealedSet, n);
+						mStack[top++] = n;
+					}
+				}
+			} else if (0 == adjacent) {
+				int x = i % mX;
+				int y = i / mX;
+				for (int ny = Math.max(0, y - 1); ny <= Math.min(mY - 1, y + 1); ++ny) {
+					for (int nx = Math.max(0, x - 1); nx <= Math.min(mX - 1, x + 1); ++nx) {
+						int n = ny * mX + nx;
+						if (!Bits.get(mRevealedSet, n) && !Bits.get(mMarkedSet, n)) {
+							Bits.set(mRevealedSet, n);
+							mStack[top++] = n;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/* The packed bytes of all fields for the board */
+	private byte[] fields() {
+		byte[] fields = new byte[mX * mY];
+		// HIDDEN is 0
+		for (int w = 0; w < mMarkedSet.length; ++w) {
+			for (long bits = mMarkedSet[w]; bits != 0; bits &= bits - 1)
+				fields[(w << 6) + Long.numberOfTrailingZeros(bits)] = Board.pack(FieldStatus.MARKED, 0);
+			for (long bits = mQueriedSet[w]; bits != 0; bits &= bits - 1)
+				fields[(w << 6) + Long.numberOfTrailingZeros(bits)] = Board.pack(FieldStatus.QUERIED, 0);
+			for (long bits = mRevealedSet[w]; bits != 0; bits &= bits - 1) {
+				int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+				fields[i] = Board.pack(Bits.get(mBombSet, i) ? FieldStatus.BOMB : FieldStatus.UNHIDDEN, mAdjacent[i]);
+			}
+		}
+		return fields;
+	}
+
+	private static void write(DataOutput out, long[] set) throws IOException {
+		for (long word : set)
+			out.writeLong(word);
+	}
+
+	private static void read(DataInput in, long[] set) throws IOException {
+		for (int w = 0; w < set.length; ++w)
+			set[w] = in.readLong();
+	}
+
+	private void begin() {
+		mBefore = mStatus;
+		mChanges.reset(mStatus, remainingBombs());
+	}
+
+	/* Log the changes of the click, write them to the board and report them */
+	private void publish() {
+		mLog.log(mChanges, mBoard, mBefore);
+		apply();
+		dispatch(mChanges);
+	}
+
+	/* Set the fields and counters to the states of the changes of an undo or
+	 * redo. The board still holds the current states. */
+	private void restore(GameStatus status) {
+		int marked = mMarked;
+		for (int k = 0; k < mChanges.size(); ++k) {
+			int i = mChanges.getIndex(k);
+			FieldStatus from = mBoard.getFieldStatus(i);
+			FieldStatus to = mChanges.getFieldStatus(k);
+
+			if (FieldStatus.UNHIDDEN == from)
+				++mHiddenSafe;
+			else if (FieldStatus.MARKED == from)
+				--mMarked;
+			if (FieldStatus.UNHIDDEN == to)
+				--mHiddenSafe;
+			else if (FieldStatus.MARKED == to)
+				++mMarked;
+
+			Bits.clear(mRevealedSet, i);
+			Bits.clear(mMarkedSet, i);
+			Bits.clear(mQueriedSet, i);
+			switch (to) {
+			case UNHIDDEN:
+			case BOMB:
+				Bits.set(mRevealedSet, i);
+				break;
+			case MARKED:
+				Bits.set(mMarkedSet, i);
+				break;
+			case QUERIED:
+				Bits.set(mQueriedSet, i);
+				break;
+			default:
+				break;
+			}
+		}
+
+		if (mMarked != marked)
+			mChanges.setRemainingBombs(remainingBombs());
+		if (status != mStatus)
+			setStatus(status);
+
+		apply();
+		dispatch(mChanges);
+	}
+
+	/* Update the state hash and write the changes to the board. The board
+	 * still holds the previous states. */
+	private void apply() {
+		for (int k = 0; k < mChanges.size(); ++k) {
+			int i = mChanges.getIndex(k);
+			mStateHash = Zobrist.update(mStateHash, i, mBoard.getFieldStatus(i), mChanges.getFieldStatus(k));
+		}
+		mBoard.apply(mChanges);
+	}
+
+	private void setStatus(GameStatus gs) {
+		mStatus = gs;
+		mChanges.setGameStatus(gs);
+	}
+}
@@ -0,0 +1,35 @@
+package de.nisble.droidsweeper.game.engine;
+
+/** Helpers for bitsets that are packed into a long[].<br>
+ * Bit i is stored in word i / 64 at bit position i % 64.
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+final class Bits {
+	private Bits() {
+	}
+
+	/** @param bits The count of bits.
+	 * @return A cleared bitset that is able to hold the given count of bits. */
+	static long[] create(int bits) {
+		return new long[(bits + 63) >>> 6];
+	}
+
+	static boolean get(long[] set, int i) {
+		return (set[i >>> 6] & (1L << i)) != 0;
+	}
+
+	static void set(long[] set, int i) {
+		set[i >>> 6] |= (1L << i);
+	}
+
+	static void clear(long[] set, int i) {
+		set[i >>> 6] &= ~(1L << i);
+	}
+
+	/** @return The count of set bits. */
+	static int count(long[] set) {
+		int c = 0;
+		for (long w : set)
+			c += Long.bitCount(w);
+		return c;
+	}
+}
@@ -0,0 +1,185 @@
+package de.nisble.droidsweeper.game.engine;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import de.nisble.droidsweeper.game.Position;
+import de.nisble.droidsweeper.game.jni.FieldStatus;
+import de.nisble.droidsweeper.game.jni.GameStatus;
+import de.nisble.droidsweeper.game.jni.MineSweeperMatrix;
+
+/** Mirror of the state of the game matrix in a ByteBuffer.<br>
+ * The buffer is written by the engine (by native code in case of
+ * {@link MineSweeperMatrix}) and can be read by everyone else without calling
+ * into the engine. After each click the engine increments the generation
+ * counter and publishes the range of the fields that have changed. The layout
+ * of the buffer (native byte order) is:
+ * <ul>
+ * <li>{@link #HEADER} bytes: Generation, {@link GameStatus}, remaining bombs,
+ * width, height and the dirty range [from, to) of the last click as int.</li>
+ * <li>One byte per field (index y * X + x): The ordinal of the
+ * {@link FieldStatus} in the upper 3 bits and the count of adjacent bombs in
+ * the lower 5 bits (a field of a {@link Topology} may have up to 26
+ * neighbours).</li>
+ * </ul>
+ * <b>Note:</b> The layout is shared with the native code in msm-jni.cpp. Keep
+ * both in sync!
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class Board {
+	/** Offset of the generation counter. */
+	public static final int GENERATION = 0;
+	/** Offset of the ordinal of the {@link GameStatus}. */
+	public static final int STATUS = 4;
+	/** Offset of the count of remaining bombs. */
+	public static final int BOMBS = 8;
+	/** Offset of the width. */
+	public static final int SIZE_X = 12;
+	/** Offset of the height. */
+	public static final int SIZE_Y = 16;
+	/** Offset of the first field that has changed in the last click. */
+	public static final int DIRTY_FROM = 20;
+	/** Offset of the field after the last one that has changed in the last
+	 * click. */
+	public static final int DIRTY_TO = 24;
+	/** Size of the header. */
+	public static final int HEADER = 32;
+
+	private final ByteBuffer mBuffer;
+
+	/** Allocate a direct buffer that is able to hold a game matrix of the
+	 * given dimensions.
+	 * @param x The width.
+	 * @param y The height.
+	 * @return The buffer in native byte order. */
+	public static ByteBuffer allocate(int x, int y) {
+		ByteBuffer b = ByteBuffer.allocateDirect(HEADER + x * y).order(ByteOrder.nativeOrder());
+		b.putInt(SIZE_X, x);
+		b.putInt(SIZE_Y, y);
+		return b;
+	}
+
+	/** Wrap a buffer that was {@link #allocate(int, int) allocated} before.
+	 * @param buffer The buffer. */
+	public Board(ByteBuffer buffer) {
+		mBuffer = buffer;
+	}
+
+	/** @return A read-only view to the underlying buffer. */
+	public ByteBuffer getBuffer() {
+		return mBuffer.asReadOnlyBuffer().order(mBuffer.order());
+	}
+
+	/** @return The generation. Incremented after each click that has changed
+	 *         the matrix. */
+	public int getGeneration() {
+		return mBuffer.getInt(GENERATION);
+	}
+
+	/** @return The current {@link GameStatus}. */
+	public GameStatus getGameStatus() {
+		return GameStatus.fromInt(mBuffer.getInt(STATUS));
+	}
+
+	/** @return The count of remaining bombs. */
+	public int getRemainingBombs() {
+		return mBuffer.getInt(BOMBS);
+	}
+
+	/** @return The width of the matrix. */
+	public int getX() {
+		return mBuffer.getInt(SIZE_X);
+	}
+
+	/** @return The height of the matrix. */
+	public int getY() {
+		return mBuffer.getInt(SIZE_Y);
+	}
+
+	/** @return The index of the first field that has changed in the last
+	 *         click. */
+	public int getDirtyFrom() {
+		return mBuffer.getInt(DIRTY_FROM);
+	}
+
+	/** @return The index after the last field that has changed in the last
+	 *         click. Equals {@link #getDirtyFrom()} if nothing has changed. */
+	public int getDirtyTo() {
+		return mBuffer.getInt(DIRTY_TO);
+	}
+
+	/** @param index The index of the field.
+	 * @return The {@link FieldStatus} of the field. */
+	public FieldStatus getFieldStatus(int index) {
+		return FieldStatus.fromInt((mBuffer.get(HEADER + index) >> 5) & 0x7);
+	}
+
+	/** @param index The index of the field.
+	 * @return The count of adjacent bombs of the field. Only valid for
+	 *         revealed fields. */
+	public int getAdjacentBombs(int index) {
+		return mBuffer.get(HEADER + index) & 0x1f;
+	}
+
+	/** @param p The position of the field.
+	 * @return The index of the field.
+	 * @throws IndexOutOfBoundsException on a position out of the bounds of the
+	 *             matrix. */
+	public int index(Position p) throws IndexOutOfBoundsException {
+		int x = getX();
+		if (p.X < 0 || p.X >= x || p.Y < 0 || p.Y >= getY())
+			throw new IndexOutOfBoundsException("Position out of bounds: X:" + p.X + " Y:" + p.Y);
+		return p.Y * x + p.X;
+	}
+
+	/* Writers for the Java engines. */
+
+	void setField(int index, FieldStatus status, int adjacentBombs) {
+		mBuffer.put(HEADER + index, pack(status, adjacentBombs));
+	}
+
+	/* The byte of a field */
+	static byte pack(FieldStatus status, int adjacentBombs) {
+		return (byte) ((status.ordinal() << 5) | adjacentBombs);
+	}
+
+	void setGameStatus(GameStatus status) {
+		mBuffer.putInt(STATUS, status.ordinal());
+	}
+
+	void setRemainingBombs(int remainingBombs) {
+		mBuffer.putInt(BOMBS, remainingBombs);
+	}
+
+	/* Write the changes of a click and publish them. */
+	void apply(ChangeList changes) {
+		int from = Integer.MAX_VALUE;
+		int to = 0;
+		for (int i = 0; i < changes.size(); ++i) {
+			int index = changes.getIndex(i);
+			setField(index, changes.getFieldStatus(i), changes.getAdjacentBombs(i));
+			from = Math.min(from, index);
+			to = Math.max(to, index + 1);
+		}
+		setGameStatus(changes.getGameStatus());
+		setRemainingBombs(changes.getRemainingBombs());
+		publish(Math.min(from, to), to);
+	}
+
+	/* Write the packed bytes of all fields at once and publish them as a
+	 * single change (e.g. of a restored game). */
+	void load(byte[] fields, GameStatus status, int remainingBombs) {
+		ByteBuffer b = mBuffer.duplicate();
+		b.position(HEADER);
+		b.put(fields, 0, fields.length);
+		setGameStatus(status);
+		setRemainingBombs(remainingBombs);
+		publish(0, fields.length);
+	}
+
+	/* Publish the changes of a click. */
+	void publish(int dirtyFrom, int dirtyTo) {
+		mBuffer.putInt(DIRTY_FROM, dirtyFrom);
+		mBuffer.putInt(DIRTY_TO, dirtyTo);
+		mBuffer.putInt(GENERATION, getGeneration() + 1);
+	}
+}
@@ -0,0 +1,43 @@
+package de.nisble.droidsweeper.game.engine;
+
+/** The standard difficulty metrics of a board.<br>
+ * They are computed together with the adjacent bombs and the index of the
+ * openings when the bombs are placed, so they are known without simulating a
+ * game.
+ * <ul>
+ * <li>Immutable: Members are public final and capitalized.</li>
+ * </ul>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class BoardMetrics {
+	/** The 3BV (Bechtel's Board Benchmark Value): The minimum count of clicks
+	 * to clear the board without marks. Each opening counts once, each safe
+	 * field that doesn't touch an opening counts once. */
+	public final int BBBV;
+	/** The count of openings: Connected regions of fields without adjacent
+	 * bombs. */
+	public final int OPENINGS;
+	/** The count of islands: Connected groups of safe fields with adjacent
+	 * bombs that don't touch an opening. */
+	public final int ISLANDS;
+
+	/** @param bbbv The 3BV.
+	 * @param openings The count of openings.
+	 * @param islands The count of islands. */
+	public BoardMetrics(int bbbv, int openings, int islands) {
+		BBBV = bbbv;
+		OPENINGS = openings;
+		ISLANDS = islands;
+	}
+
+	/** Get the efficiency of a game on the board.
+	 * @param milliseconds The play time.
+	 * @return The 3BV per second. */
+	public double perSecond(long milliseconds) {
+		return (milliseconds > 0) ? BBBV * 1000.0 / milliseconds : 0;
+	}
+
+	@Override
+	public String toString() {
+		return "BoardMetrics [BBBV=" + BBBV + ", OPENINGS=" + OPENINGS + ", ISLANDS=" + ISLANDS + "]";
+	}
+}
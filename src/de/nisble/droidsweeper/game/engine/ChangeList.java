@@ -0,0 +1,174 @@
+package de.nisble.droidsweeper.game.engine;
+
+import java.util.Arrays;
+
+import de.nisble.droidsweeper.game.jni.FieldStatus;
+import de.nisble.droidsweeper.game.jni.GameStatus;
+import de.nisble.droidsweeper.game.jni.MatrixObserver;
+
+/** All changes of the game matrix that were caused by a single click.<br>
+ * The changes are stored in a packed int[] to be able to pass them from native
+ * code to Java in a single JNI call. The layout of the array is:
+ * <ul>
+ * <li>{@link #HEADER} ints with the result of the call (the count of adjacent
+ * bombs of a revealed field), the current {@link GameStatus}, the remaining
+ * bombs and flags that signal a change of the status or the bomb count.</li>
+ * <li>{@link #ENTRY} ints per changed field: The index of the field (y * X +
+ * x), the ordinal of the new {@link FieldStatus} and the count of adjacent
+ * bombs.</li>
+ * </ul>
+ * Engines fan out a list to the {@link MatrixObserver}S by
+ * {@link AbstractEngine#dispatch(ChangeList)}.<br>
+ * <b>Note:</b> The layout is shared with the native code in msm-jni.cpp. Keep
+ * both in sync!
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class ChangeList {
+	/** Offset of the result of the call. */
+	public static final int RESULT = 0;
+	/** Offset of the ordinal of the current {@link GameStatus}. */
+	public static final int STATUS = 1;
+	/** Offset of the count of remaining bombs. */
+	public static final int BOMBS = 2;
+	/** Offset of the flags. */
+	public static final int FLAGS = 3;
+	/** Size of the header. */
+	public static final int HEADER = 4;
+	/** Size of an entry. */
+	public static final int ENTRY = 3;
+
+	/** Flag: The {@link GameStatus} has changed. */
+	public static final int FLAG_STATUS = 0x1;
+	/** Flag: The count of remaining bombs has changed. */
+	public static final int FLAG_BOMBS = 0x2;
+
+	private int[] mData;
+	private int mLength;
+
+	/** Create an empty list. */
+	public ChangeList() {
+		this(16);
+	}
+
+	/** Create an empty list.
+	 * @param capacity The initial count of entries the list can hold. */
+	public ChangeList(int capacity) {
+		mData = new int[HEADER + Math.max(1, capacity) * ENTRY];
+		mLength = HEADER;
+	}
+
+	/** Wrap a packed array (e.g. returned by native code).
+	 * @param packed The packed changes. The array is not copied. */
+	public ChangeList(int[] packed) {
+		if (packed.length < HEADER || (packed.length - HEADER) % ENTRY != 0)
+			throw new IllegalArgumentException("Invalid length of packed change list: " + packed.length);
+		mData = packed;
+		mLength = packed.length;
+	}
+
+	/** Remove all entries and reset the header.
+	 * @param status The current {@link GameStatus}.
+	 * @param remainingBombs The current count of remaining bombs. */
+	public void reset(GameStatus status, int remainingBombs) {
+		mLength = HEADER;
+		mData[RESULT] = 0;
+		mData[STATUS] = status.ordinal();
+		mData[BOMBS] = remainingBombs;
+		mData[FLAGS] = 0;
+	}
+
+	/** Append a changed field.
+	 * @param index The index of the field.
+	 * @param status The new status.
+	 * @param adjacentBombs The count of adjacent bombs. */
+	public void add(int index, FieldStatus status, int adjacentBombs) {
+		if (mLength + ENTRY > mData.length)
+			mData = Arrays.copyOf(mData, HEADER + 2 * (mData.length - HEADER) + ENTRY);
+		mData[mLength] = index;
+		mData[mLength + 1] = status.ordinal();
+		mData[mLength + 2] = adjacentBombs;
+		mLength += ENTRY;
+	}
+
+	/** @param result The result of the call. */
+	public void setResult(int result) {
+		mData[RESULT] = result;
+	}
+
+	/** @return The result of the call. */
+	public int getResult() {
+		return mData[RESULT];
+	}
+
+	/** Set the new {@link GameStatus} and flag it as changed.
+	 * @param status The new status. */
+	public void setGameStatus(GameStatus status) {
+		mData[STATUS] = status.ordinal();
+		mData[FLAGS] |= FLAG_STATUS;
+	}
+
+	/** @return The {@link GameStatus} after the call. */
+	public GameStatus getGameStatus() {
+		return GameStatus.fromInt(mData[STATUS]);
+	}
+
+	/** @return True if the {@link GameStatus} has changed. */
+	public boolean isGameStatusChanged() {
+		return (mData[FLAGS] & FLAG_STATUS) != 0;
+	}
+
+	/** Set the new count of remaining bombs and flag it as changed.
+	 * @param remainingBombs The new count. */
+	public void setRemainingBombs(int remainingBombs) {
+		mData[BOMBS] = remainingBombs;
+		mData[FLAGS] |= FLAG_BOMBS;
+	}
+
+	/** @return The count of remaining bombs after the call. */
+	public int getRemainingBombs() {
+		return mData[BOMBS];
+	}
+
+	/** @return True if the count of remaining bombs has changed. */
+	public boolean isRemainingBombsChanged() {
+		return (mData[FLAGS] & FLAG_BOMBS) != 0;
+	}
+
+	/** @return The count of changed fields. */
+	public int size() {
+		return (mLength - HEADER) / ENTRY;
+	}
+
+	/** @return True if no field has changed. */
+	public boolean isEmpty() {
+		return HEADER == mLength;
+	}
+
+	/** @param i The number of the entry.
+	 * @return The index of the changed field. */
+	public int getIndex(int i) {
+		return mData[HEADER + i * ENTRY];
+	}
+
+	/** @param i The number of the entry.
+	 * @return The new status of the changed field. */
+	public FieldStatus getFieldStatus(int i) {
+		return FieldStatus.fromInt(mData[HEADER + i * ENTRY + 1]);
+	}
+
+	/** @param i The number of the entry.
+	 * @return The count of adjacent bombs of the changed field. */
+	public int getAdjacentBombs(int i) {
+		return mData[HEADER + i * ENTRY + 2];
+	}
+
+	/** @return A copy of the packed changes. */
+	public int[] toArray() {
+		return Arrays.copyOf(mData, mLength);
+	}
+
+	@Override
+	public String toString() {
+		return "ChangeList [RESULT=" + getResult() + ", STATUS=" + getGameStatus() + ", BOMBS="
+				+ getRemainingBombs() + ", FLAGS=" + mData[FLAGS] + ", size=" + size() + "]";
+	}
+}
@@ -0,0 +1,657 @@
+package de.nisble.droidsweeper.game.engine;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import de.nisble.droidsweeper.config.GameConfig;
+import de.nisble.droidsweeper.game.Position;
+import de.nisble.droidsweeper.game.jni.FieldListener;
+import de.nisble.droidsweeper.game.jni.FieldStatus;
+import de.nisble.droidsweeper.game.jni.GameStatus;
+import de.nisble.droidsweeper.game.jni.MatrixObserver;
+
+/** Engine of the {@link GameConfig#ENDLESS endless} mode.<br>
+ * The board is an unbounded map of chunks. The size of a chunk and its count of
+ * bombs are taken from the X, Y and BOMBS of the {@link GameConfig}. A field
+ * is addressed by its global coordinates, which may be negative. The bombs of
+ * a chunk are a pure function of the seed, the chunk coordinates and the first
+ * revealed field (which is kept free like in the {@link BitBoardEngine}). So a
+ * chunk is generated on demand and doesn't need to be stored as long as
+ * nothing in it was revealed or marked.<br>
+ * The last recently used {@link #HOT_CHUNKS} chunks are kept unpacked with
+ * their bombs. Older chunks are evicted: Untouched chunks are dropped, touched
+ * ones are packed into the revealed bitset followed by the indices of the
+ * marked and queried fields. The bombs are generated again when a packed chunk
+ * is used. So the memory stays proportional to the explored area.<br>
+ * Since an opening may be unbounded, the cascade of a reveal stops
+ * {@link #CASCADE_RADIUS} chunks away from the chunk of the click. Revealing an
+ * already revealed field without adjacent bombs continues the cascade from
+ * there.<br>
+ * The game can only be lost. There is no count of bombs, so
+ * {@link #remainingBombs()} is the negative count of the marked fields. There is
+ * no dense {@link Board} either: {@link #getBoard()} returns an empty board and
+ * {@link #setFieldListener(FieldListener)} pushes the state of the field
+ * itself. Undo isn't supported.
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class ChunkedEngine implements Engine {
+	/** Count of chunks that are kept unpacked. */
+	public static final int HOT_CHUNKS = 64;
+	/** Distance in chunks from the clicked chunk a cascade can reach. */
+	public static final int CASCADE_RADIUS = 2;
+
+	/* State of a chunk. The bombs are generated on first use. */
+	private static final class Chunk {
+		long[] bombs;
+		final long[] revealed;
+		final long[] marked;
+		final long[] queried;
+		boolean touched;
+
+		Chunk(int size) {
+			revealed = Bits.create(size);
+			marked = Bits.create(size);
+			queried = Bits.create(size);
+		}
+	}
+
+	private final List<MatrixObserver> mObservers = new ArrayList<MatrixObserver>();
+	private final Map<Position, FieldListener> mFieldListeners = new HashMap<Position, FieldListener>();
+	/* Draws the seeds of unseeded games */
+	private final Random mSeeds = new Random();
+	private final MineGenerator mGenerator = new MineGenerator();
+	private final Board mBoard = new Board(Board.allocate(0, 0));
+
+	private int mChunkX = 1;
+	private int mChunkY = 1;
+	private int mChunkBombs = 0;
+	private long mSeed = 0;
+
+	/* The first revealed field. Its chunk keeps it free. */
+	private boolean mStarted = false;
+	private int mFirstX = 0;
+	private int mFirstY = 0;
+
+	private final LinkedHashMap<Long, Chunk> mHot = new LinkedHashMap<Long, Chunk>(2 * HOT_CHUNKS, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest) {
+			if (size() <= HOT_CHUNKS)
+				return false;
+			if (eldest.getValue().touched)
+				mCold.put(eldest.getKey(), pack(eldest.getValue()));
+			if (eldest.getValue() == mLast)
+				mLast = null;
+			return true;
+		}
+	};
+	private final Map<Long, long[]> mCold = new HashMap<Long, long[]>();
+	/* The last used chunk */
+	private Chunk mLast = null;
+	private long mLastKey = 0;
+
+	private GameStatus mStatus = GameStatus.READY;
+	private int mMarked = 0;
+
+	/* Changes of the current click: x, y, status, adjacent bombs */
+	private int[] mChanges = new int[64];
+	private int mChangeCount = 0;
+	private boolean mMarkedChanged = false;
+	private boolean mStatusChanged = false;
+
+	/* Work stack of the cascade with packed coordinates */
+	private long[] mStack = new long[64];
+
+	/* Public interface */
+
+	@Override
+	public void setFieldListener(FieldListener l) {
+		Position p = l.getPosition();
+		mFieldListeners.put(p, l);
+
+		Chunk c = peek(p.X, p.Y);
+		if (c != null) {
+			int i = local(p.X, p.Y);
+			if (Bits.get(c.revealed, i))
+				l.onStatusChanged(isBomb(p.X, p.Y) ? FieldStatus.BOMB : FieldStatus.UNHIDDEN, adjacentBombs(p.X, p.Y));
+			else if (Bits.get(c.marked, i))
+				l.onStatusChanged(FieldStatus.MARKED, 0);
+			else if (Bits.get(c.queried, i))
+				l.onStatusChanged(FieldStatus.QUERIED, 0);
+		}
+	}
+
+	/** Drop all registered {@link FieldListener}S, e.g. when the view scrolled
+	 * to another part of the board. */
+	public void clearFieldListeners() {
+		mFieldListeners.clear();
+	}
+
+	@Override
+	public void addMatrixObserver(MatrixObserver l) {
+		if (!mObservers.contains(l))
+			mObservers.add(l);
+	}
+
+	@Override
+	public void removeObserver(MatrixObserver l) {
+		mObservers.remove(l);
+	}
+
+	/** Create a new endless game. The config is always played endless.
+	 * @param c The {@link GameConfig}. X, Y and BOMBS define the chunks. */
+	@Override
+	public void create(GameConfig c) {
+		create(c.X, c.Y, c.BOMBS, c.SEEDED ? c.SEED : mSeeds.nextLong());
+	}
+
+	/** Create a new endless game without the need for a {@link GameConfig}.
+	 * @param chunkX The width of a chunk.
+	 * @param chunkY The height of a chunk.
+	 * @param chunkBombs The count of bombs per chunk. Clamped to the count of
+	 *            fields of a chunk.
+	 * @param seed The seed of the board. */
+	public void create(int chunkX, int chunkY, int chunkBombs, long seed) {
+		if (chunkX < 1 || chunkY < 1)
+			throw new IllegalArgumentException("Invalid chunk dimensions: X:" + chunkX + " Y:" + chunkY);
+
+		mChunkX = chunkX;
+		mChunkY = chunkY;
+		mChunkBombs = Math.max(0, Math.min(chunkBombs, chunkX * chunkY));
+		mSeed = seed;
+		mStarted = false;
+
+		mHot.clear();
+		mCold.clear();
+		mLast = null;
+		mFieldListeners.clear();
+
+		mStatus = GameStatus.READY;
+		mMarked = 0;
+	}
+
+	/** An endless board has no dense mirror.
+	 * @return An empty board. */
+	@Override
+	public Board getBoard() {
+		return mBoard;
+	}
+
+	@Override
+	public GameStatus gameStatus() {
+		return mStatus;
+	}
+
+	@Override
+	public boolean isReady() {
+		return GameStatus.READY == mStatus;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return GameStatus.RUNNING == mStatus;
+	}
+
+	@Override
+	public boolean isLost() {
+		return GameStatus.LOST == mStatus;
+	}
+
+	/** An endless game can't be won.
+	 * @return false */
+	@Override
+	public boolean isWon() {
+		return false;
+	}
+
+	/** @return The negative count of marked fields. */
+	@Override
+	public int remainingBombs() {
+		return -mMarked;
+	}
+
+	/** @return The counters. There are neither bombs nor hidden safe fields to
+	 *         count on an unbounded board. */
+	@Override
+	public Counters getCounters() {
+		return new Counters(mStatus, 0, mMarked, -1);
+	}
+
+	@Override
+	public int reveal(Position p) {
+		int x = p.X;
+		int y = p.Y;
+
+		Chunk c = chunk(x, y);
+		int i = local(x, y);
+		if (Bits.get(c.marked, i))
+			return mStarted ? adjacentBombs(x, y) : 0;
+
+		if (!mStarted) {
+			mStarted = true;
+			mFirstX = x;
+			mFirstY = y;
+		}
+
+		beginChanges();
+		if (GameStatus.READY == mStatus)
+			setStatus(GameStatus.RUNNING);
+
+		if (Bits.get(c.revealed, i)) {
+			// Continue a cascade that was stopped at this field
+			if (0 == adjacentBombs(x, y))
+				cascade(x, y, false);
+		} else if (isBomb(x, y)) {
+			setRevealed(x, y);
+			addChange(x, y, FieldStatus.BOMB, adjacentBombs(x, y));
+			if (GameStatus.RUNNING == mStatus)
+				setStatus(GameStatus.LOST);
+		} else {
+			cascade(x, y, true);
+		}
+
+		dispatch();
+		return adjacentBombs(x, y);
+	}
+
+	/** Reveal all fields of the explored chunks that are neither revealed nor
+	 * marked. */
+	@Override
+	public void revealAll() {
+		beginChanges();
+
+		List<Long> keys = new ArrayList<Long>(mCold.keySet());
+		for (Map.Entry<Long, Chunk> e : mHot.entrySet()) {
+			if (e.getValue().touched)
+				keys.add(e.getKey());
+		}
+
+		for (long key : keys) {
+			int ox = (int) (key >> 32) * mChunkX;
+			int oy = (int) key * mChunkY;
+			for (int ly = 0; ly < mChunkY; ++ly) {
+				for (int lx = 0; lx < mChunkX; ++lx) {
+					int x = ox + lx;
+					int y = oy + ly;
+					Chunk c = chunk(x, y);
+					int i = ly * mChunkX + lx;
+					if (Bits.get(c.revealed, i) || Bits.get(c.marked, i))
+						continue;
+					setRevealed(x, y);
+					addChange(x, y, isBomb(x, y) ? FieldStatus.BOMB : FieldStatus.UNHIDDEN, adjacentBombs(x, y));
+				}
+			}
+		}
+
+		if (mChangeCount > 0)
+			dispatch();
+	}
+
+	@Override
+	public void cycleMark(Position p) {
+		int x = p.X;
+		int y = p.Y;
+		Chunk c = chunk(x, y);
+		int i = local(x, y);
+
+		if (Bits.get(c.revealed, i) || GameStatus.LOST == mStatus)
+			return;
+
+		beginChanges();
+		if (GameStatus.READY == mStatus)
+			setStatus(GameStatus.RUNNING);
+
+		c.touched = true;
+		if (Bits.get(c.marked, i)) {
+			Bits.clear(c.marked, i);
+			Bits.set(c.queried, i);
+			--mMarked;
+			mMarkedChanged = true;
+			addChange(x, y, FieldStatus.QUERIED, 0);
+		} else if (Bits.get(c.queried, i)) {
+			Bits.clear(c.queried, i);
+			addChange(x, y, FieldStatus.HIDDEN, 0);
+		} else {
+			Bits.set(c.marked, i);
+			++mMarked;
+			mMarkedChanged = true;
+			addChange(x, y, FieldStatus.MARKED, 0);
+		}
+
+		dispatch();
+	}
+
+	/** Chord a field. The openings of the revealed adjacent fields cascade like
+	 * on a reveal. */
+	@Override
+	public void chord(Position p) {
+		int x = p.X;
+		int y = p.Y;
+		Chunk c = chunk(x, y);
+		int i = local(x, y);
+
+		if (!Bits.get(c.revealed, i) || GameStatus.RUNNING != mStatus || isBomb(x, y))
+			return;
+
+		int marked = 0;
+		for (int ny = y - 1; ny <= y + 1; ++ny) {
+			for (int nx = x - 1; nx <= x + 1; ++nx) {
+				if (Bits.get(chunk(nx, ny).marked, local(nx, ny)))
+					++marked;
+			}
+		}
+		if (marked != adjacentBombs(x, y))
+			return;
+
+		beginChanges();
+		for (int ny = y - 1; ny <= y + 1; ++ny) {
+			for (int nx = x - 1; nx <= x + 1; ++nx) {
+				Chunk n = chunk(nx, ny);
+				int k = local(nx, ny);
+				// A previous opening may have revealed it already
+				if (Bits.get(n.revealed, k) || Bits.get(n.marked, k))
+					continue;
+
+				if (isBomb(nx, ny)) {
+					setRevealed(nx, ny);
+					addChange(nx, ny, FieldStatus.BOMB, adjacentBombs(nx, ny));
+					if (GameStatus.RUNNING == mStatus)
+						setStatus(GameStatus.LOST);
+				} else {
+					cascade(nx, ny, true);
+				}
+			}
+		}
+
+		if (mChangeCount > 0)
+			dispatch();
+	}
+
+	/** Not supported.
+	 * @return null */
+	@Override
+	public BoardMetrics getMetrics() {
+		return null;
+	}
+
+	/** Not supported.
+	 * @return 0 */
+	@Override
+	public long boardHash() {
+		return 0;
+	}
+
+	/** Not supported.
+	 * @return 0 */
+	@Override
+	public long stateHash() {
+		return 0;
+	}
+
+	/** Not supported. */
+	@Override
+	public boolean canUndo() {
+		return false;
+	}
+
+	/** Not supported. */
+	@Override
+	public boolean canRedo() {
+		return false;
+	}
+
+	/** Not supported.
+	 * @return false */
+	@Override
+	public boolean undo() {
+		return false;
+	}
+
+	/** Not supported.
+	 * @return false */
+	@Override
+	public boolean redo() {
+		return false;
+	}
+
+	/** Not supported.
+	 * @return false */
+	@Override
+	public boolean writeSnapshot(DataOutput out) {
+		return false;
+	}
+
+	/** Not supported.
+	 * @return false */
+	@Override
+	public boolean readSnapshot(DataInput in) {
+		return false;
+	}
+
+	/** Nothing to release. The engine is garbage collected. */
+	@Override
+	public void close() {
+	}
+
+	/** @return The count of unpacked chunks. */
+	public int getHotChunks() {
+		return mHot.size();
+	}
+
+	/** @return The count of packed chunks. */
+	public int getColdChunks() {
+		return mCold.size();
+	}
+
+	/* Internals */
+
+	/* Reveal a safe field and all fields that are reachable over fields
+	 * without adjacent bombs. The cascade doesn't leave the chunks around the
+	 * start. */
+	private void cascade(int startX, int startY, boolean reveal) {
+		int minCX = floorDiv(startX, mChunkX) - CASCADE_RADIUS;
+		int maxCX = minCX + 2 * CASCADE_RADIUS;
+		int minCY = floorDiv(startY, mChunkY) - CASCADE_RADIUS;
+		int maxCY = minCY + 2 * CASCADE_RADIUS;
+
+		int top = 0;
+		if (reveal) {
+			setRevealed(startX, startY);
+			addChange(startX, startY, FieldStatus.UNHIDDEN, adjacentBombs(startX, startY));
+		}
+		mStack[top++] = pack(startX, startY);
+
+		while (top > 0) {
+			long xy = mStack[--top];
+			int x = (int) (xy >> 32);
+			int y = (int) xy;
+			if (0 != adjacentBombs(x, y))
+				continue;
+
+			for (int ny = y - 1; ny <= y + 1; ++ny) {
+				int cy = floorDiv(ny, mChunkY);
+				if (cy < minCY || cy > maxCY)
+					continue;
+				for (int nx = x - 1; nx <= x + 1; ++nx) {
+					int cx = floorDiv(nx, mChunkX);
+					if (cx < minCX || cx > maxCX)
+						continue;
+					Chunk c = chunk(nx, ny);
+					int i = local(nx, ny);
+					if (Bits.get(c.revealed, i) || Bits.get(c.marked, i))
+						continue;
+
+					setRevealed(nx, ny);
+					addChange(nx, ny, FieldStatus.UNHIDDEN, adjacentBombs(nx, ny));
+					if (top == mStack.length)
+						mStack = Arrays.copyOf(mStack, top * 2);
+					mStack[top++] = pack(nx, ny);
+				}
+			}
+		}
+	}
+
+	private void setRevealed(int x, int y) {
+		Chunk c = chunk(x, y);
+		int i = local(x, y);
+		Bits.set(c.revealed, i);
+		Bits.clear(c.queried, i);
+		c.touched = true;
+	}
+
+	private boolean isBomb(int x, int y) {
+		Chunk c = chunk(x, y);
+		if (null == c.bombs)
+			c.bombs = generate(floorDiv(x, mChunkX), floorDiv(y, mChunkY));
+		return Bits.get(c.bombs, local(x, y));
+	}
+
+	private int adjacentBombs(int x, int y) {
+		int count = 0;
+		for (int ny = y - 1; ny <= y + 1; ++ny) {
+			for (int nx = x - 1; nx <= x + 1; ++nx) {
+				if (isBomb(nx, ny))
+					++count;
+			}
+		}
+		return count;
+	}
+
+	/* Generate the bombs of a chunk. The chunk of the first revealed field
+	 * keeps it free. */
+	private long[] generate(int cx, int cy) {
+		long[] bombs = Bits.create(mChunkX * mChunkY);
+		int safe = -1;
+		if (mStarted && floorDiv(mFirstX, mChunkX) == cx && floorDiv(mFirstY, mChunkY) == cy)
+			safe = local(mFirstX, mFirstY);
+		mGenerator.place(bombs, mChunkX, mChunkY, mChunkBombs, safe, new SplitMix64(SplitMix64.nth(mSeed,
+				pack(cx, cy))));
+		return bombs;
+	}
+
+	/* Get the chunk of a field. Packed chunks are unpacked and missing ones
+	 * are created. */
+	private Chunk chunk(int x, int y) {
+		long key = pack(floorDiv(x, mChunkX), floorDiv(y, mChunkY));
+		if (mLast != null && mLastKey == key)
+			return mLast;
+
+		Chunk c = mHot.get(key);
+		if (null == c) {
+			c = new Chunk(mChunkX * mChunkY);
+			long[] packed = mCold.remove(key);
+			if (packed != null)
+				unpack(packed, c);
+			mHot.put(key, c);
+		}
+
+		mLast = c;
+		mLastKey = key;
+		return c;
+	}
+
+	/* Get the chunk of a field without creating it or null. */
+	private Chunk peek(int x, int y) {
+		long key = pack(floorDiv(x, mChunkX), floorDiv(y, mChunkY));
+		if (mHot.containsKey(key) || mCold.containsKey(key))
+			return chunk(x, y);
+		return null;
+	}
+
+	/* Packed form: The revealed bitset followed by one word per marked or
+	 * queried field (index << 1 | queried). */
+	private long[] pack(Chunk c) {
+		int marks = Bits.count(c.marked) + Bits.count(c.queried);
+		long[] packed = Arrays.copyOf(c.revealed, c.revealed.length + marks);
+		int k = c.revealed.length;
+		for (int i = 0; i < mChunkX * mChunkY; ++i) {
+			if (Bits.get(c.marked, i))
+				packed[k++] = (long) i << 1;
+			else if (Bits.get(c.queried, i))
+				packed[k++] = ((long) i << 1) | 1;
+		}
+		return packed;
+	}
+
+	private static void unpack(long[] packed, Chunk c) {
+		int words = c.revealed.length;
+		System.arraycopy(packed, 0, c.revealed, 0, words);
+		for (int k = words; k < packed.length; ++k) {
+			int i = (int) (packed[k] >>> 1);
+			if (0 == (packed[k] & 1))
+				Bits.set(c.marked, i);
+			else
+				Bits.set(c.queried, i);
+		}
+		c.touched = true;
+	}
+
+	private int local(int x, int y) {
+		return (y - floorDiv(y, mChunkY) * mChunkY) * mChunkX + (x - floorDiv(x, mChunkX) * mChunkX);
+	}
+
+	private static long pack(int x, int y) {
+		return ((long) x << 32) | (y & 0xffffffffL);
+	}
+
+	private static int floorDiv(int a, int b) {
+		int q = a / b;
+		if ((a % b != 0) && ((a ^ b) < 0))
+			--q;
+		return q;
+	}
+
+	/* Changes */
+
+	private void beginChanges() {
+		mChangeCount = 0;
+		mMarkedChanged = false;
+		mStatusChanged = false;
+	}
+
+	private void addChange(int x, int y, FieldStatus fs, int adjacentBombs) {
+		int k = 4 * mChangeCount;
+		if (k + 4 > mChanges.length)
+			mChanges = Arrays.copyOf(mChanges, mChanges.length * 2);
+		mChanges[k] = x;
+		mChanges[k + 1] = y;
+		mChanges[k + 2] = fs.ordinal();
+		mChanges[k + 3] = adjacentBombs;
+		++mChangeCount;
+	}
+
+	private void setStatus(GameStatus gs) {
+		mStatus = gs;
+		mStatusChanged = true;
+	}
+
+	/* Same order as AbstractEngine: The fields, then the bombs, then the
+	 * status. */
+	private void dispatch() {
+		for (int n = 0; n < mChangeCount; ++n) {
+			int k = 4 * n;
+			Position p = new Position(mChanges[k], mChanges[k + 1]);
+			FieldStatus fs = FieldStatus.fromInt(mChanges[k + 2]);
+			FieldListener fl = mFieldListeners.get(p);
+			if (fl != null)
+				fl.onStatusChanged(fs, mChanges[k + 3]);
+			for (MatrixObserver l : mObservers)
+				l.afterFieldStatusChanged(p, fs, mChanges[k + 3]);
+		}
+		if (mMarkedChanged) {
+			for (MatrixObserver l : mObservers)
+				l.onRemainingBombsChanged(remainingBombs());
+		}
+		if (mStatusChanged) {
+			for (MatrixObserver l : mObservers)
+				l.onGameStatusChanged(mStatus);
+		}
+	}
+}
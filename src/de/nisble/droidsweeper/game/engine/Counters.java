@@ -0,0 +1,48 @@
+package de.nisble.droidsweeper.game.engine;
+
+import de.nisble.droidsweeper.game.jni.GameStatus;
+
+/** Snapshot of the counters of a game.<br>
+ * The engines update these counters incrementally on each click, so a snapshot
+ * is taken in constant time on boards of any size. The game is won when
+ * {@link #HIDDEN_SAFE} drops to 0.
+ * <ul>
+ * <li>Immutable: Members are public final and capitalized.</li>
+ * </ul>
+ * @author Moritz Nisblé moritz.nisble@gmx.de
+ * @see Engine#getCounters() */
+public final class Counters {
+	/** The {@link GameStatus}. */
+	public final GameStatus STATUS;
+	/** The count of bombs on the board. 0 on an unbounded board. */
+	public final int BOMBS;
+	/** The count of marked fields. */
+	public final int MARKED;
+	/** The count of fields that are neither bombs nor revealed. -1 on an
+	 * unbounded board. */
+	public final int HIDDEN_SAFE;
+
+	/** Create a snapshot.
+	 * @param status The {@link GameStatus}.
+	 * @param bombs The count of bombs.
+	 * @param marked The count of marked fields.
+	 * @param hiddenSafe The count of safe fields that are not revealed. */
+	public Counters(GameStatus status, int bombs, int marked, int hiddenSafe) {
+		STATUS = status;
+		BOMBS = bombs;
+		MARKED = marked;
+		HIDDEN_SAFE = hiddenSafe;
+	}
+
+	/** @return The count of remaining bombs. Negative if more fields are marked
+	 *         than bombs are present. */
+	public int remainingBombs() {
+		return BOMBS - MARKED;
+	}
+
+	@Override
+	public String toString() {
+		return "Counters [STATUS=" + STATUS + ", BOMBS=" + BOMBS + ", MARKED=" + MARKED + ", HIDDEN_SAFE="
+				+ HIDDEN_SAFE + "]";
+	}
+}
@@ -0,0 +1,25 @@
+package de.nisble.droidsweeper.game.engine;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Creates the numbered daemon threads of the worker pools of the engines.<br>
+ * Daemon threads don't keep the process alive, so a pool that was not closed
+ * doesn't block the exit of a plain JVM.
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+final class DaemonThreadFactory implements ThreadFactory {
+	private final String mName;
+	private final AtomicInteger mCount = new AtomicInteger();
+
+	/** @param name The prefix of the thread names. */
+	DaemonThreadFactory(String name) {
+		mName = name;
+	}
+
+	@Override
+	public Thread newThread(Runnable r) {
+		Thread t = new Thread(r, mName + "-" + mCount.incrementAndGet());
+		t.setDaemon(true);
+		return t;
+	}
+}
@@ -0,0 +1,157 @@
+package de.nisble.droidsweeper.game.engine;
+
+import java.util.Arrays;
+
+import de.nisble.droidsweeper.game.jni.FieldStatus;
+import de.nisble.droidsweeper.game.jni.GameStatus;
+
+/** Undo log of the clicks of a game.<br>
+ * Each click is logged as a step: Its {@link ChangeList} together with the
+ * previous state of each changed field and the game status before and after
+ * the click. A changed field is packed into a single long (index, old and new
+ * state), so the log is a primitive array without an object per change. A step
+ * can be undone and redone in O(changes) without regenerating or copying the
+ * board.<br>
+ * The log is bounded by a maximum count of changes. When a new step doesn't
+ * fit, the oldest steps are dropped (and can't be undone anymore). Logging a
+ * new step drops all steps that could be redone.
+ * <ul>
+ * <li>Not thread-safe.</li>
+ * </ul>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+final class DeltaLog {
+	/** Default maximum count of logged changes (512 KiB). */
+	static final int DEFAULT_CHANGES = 1 << 16;
+
+	private final int mCapacity;
+
+	/* Changes: index << 32 | old state << 16 | new state. A state is the
+	 * ordinal of the FieldStatus << 8 | adjacent bombs. */
+	private long[] mChanges = new long[64];
+	/* Per step: The end of its changes and the game status before << 8 | after */
+	private int[] mEnds = new int[16];
+	private int[] mStatus = new int[16];
+	/* Count of logged steps and count of steps that are done */
+	private int mSteps = 0;
+	private int mDone = 0;
+
+	/** Create a log with {@link #DEFAULT_CHANGES}. */
+	DeltaLog() {
+		this(DEFAULT_CHANGES);
+	}
+
+	/** @param capacity The maximum count of logged changes. */
+	DeltaLog(int capacity) {
+		mCapacity = capacity;
+	}
+
+	/** Drop all steps. */
+	void clear() {
+		mSteps = 0;
+		mDone = 0;
+	}
+
+	/** Log a click. Must be called before the changes are applied to the
+	 * board.
+	 * @param changes The changes of the click.
+	 * @param board The board with the state before the click.
+	 * @param before The game status before the click. */
+	void log(ChangeList changes, Board board, GameStatus before) {
+		mSteps = mDone;
+		int size = changes.size();
+		if (size > mCapacity) {
+			// Too big to be undone at all
+			clear();
+			return;
+		}
+
+		int used = (0 == mSteps) ? 0 : mEnds[mSteps - 1];
+		if (used + size > mCapacity)
+			used = drop(used + size - mCapacity);
+
+		if (used + size > mChanges.length)
+			mChanges = Arrays.copyOf(mChanges, Math.min(mCapacity, Math.max(2 * mChanges.length, used + size)));
+		if (mSteps == mEnds.length) {
+			mEnds = Arrays.copyOf(mEnds, 2 * mSteps);
+			mStatus = Arrays.copyOf(mStatus, 2 * mSteps);
+		}
+
+		for (int k = 0; k < size; ++k) {
+			int i = changes.getIndex(k);
+			int old = state(board.getFieldStatus(i), board.getAdjacentBombs(i));
+			int now = state(changes.getFieldStatus(k), changes.getAdjacentBombs(k));
+			mChanges[used + k] = ((long) i << 32) | ((long) old << 16) | now;
+		}
+		mEnds[mSteps] = used + size;
+		mStatus[mSteps] = (before.ordinal() << 8) | changes.getGameStatus().ordinal();
+		mDone = ++mSteps;
+	}
+
+	/** @return True if there is a step to undo. */
+	boolean canUndo() {
+		return mDone > 0;
+	}
+
+	/** @return True if there is a step to redo. */
+	boolean canRedo() {
+		return mDone < mSteps;
+	}
+
+	/** Undo the last done step.
+	 * @param changes Receives the changes that restore the previous state.
+	 *            The fields are listed in reverse order of the click.
+	 * @return The game status before the step or null if there was nothing to
+	 *         undo. */
+	GameStatus undo(ChangeList changes) {
+		if (!canUndo())
+			return null;
+
+		--mDone;
+		int from = (0 == mDone) ? 0 : mEnds[mDone - 1];
+		for (int k = mEnds[mDone] - 1; k >= from; --k)
+			add(changes, (int) (mChanges[k] >>> 32), (int) (mChanges[k] >>> 16) & 0xffff);
+		return GameStatus.fromInt(mStatus[mDone] >>> 8);
+	}
+
+	/** Redo the next undone step.
+	 * @param changes Receives the changes of the step.
+	 * @return The game status after the step or null if there was nothing to
+	 *         redo. */
+	GameStatus redo(ChangeList changes) {
+		if (!canRedo())
+			return null;
+
+		int from = (0 == mDone) ? 0 : mEnds[mDone - 1];
+		for (int k = from; k < mEnds[mDone]; ++k)
+			add(changes, (int) (mChanges[k] >>> 32), (int) mChanges[k] & 0xffff);
+		return GameStatus.fromInt(mStatus[mDone++] & 0xff);
+	}
+
+	/* Drop the oldest steps until at least count changes are free. Returns
+	 * the count of changes that are still used. */
+	private int drop(int count) {
+		int steps = 0;
+		while (steps < mSteps && mEnds[steps] < count)
+			++steps;
+		// The step that frees enough is dropped too
+		int freed = mEnds[steps++];
+
+		int used = mEnds[mSteps - 1] - freed;
+		System.arraycopy(mChanges, freed, mChanges, 0, used);
+		for (int s = steps; s < mSteps; ++s) {
+			mEnds[s - steps] = mEnds[s] - freed;
+			mStatus[s - steps] = mStatus[s];
+		}
+		mSteps -= steps;
+		mDone = mSteps;
+		return used;
+	}
+
+	private static int state(FieldStatus status, int adjacentBombs) {
+		return (status.ordinal() << 8) | adjacentBombs;
+	}
+
+	private static void add(ChangeList changes, int index, int state) {
+		changes.add(index, FieldStatus.fromInt(state >>> 8), state & 0xff);
+	}
+}
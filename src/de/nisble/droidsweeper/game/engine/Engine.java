@@ -0,0 +1,184 @@
+package de.nisble.droidsweeper.game.engine;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import de.nisble.droidsweeper.config.GameConfig;
+import de.nisble.droidsweeper.config.Zobrist;
+import de.nisble.droidsweeper.game.Game;
+import de.nisble.droidsweeper.game.Position;
+import de.nisble.droidsweeper.game.jni.FieldListener;
+import de.nisble.droidsweeper.game.jni.FieldStatus;
+import de.nisble.droidsweeper.game.jni.GameStatus;
+import de.nisble.droidsweeper.game.jni.MatrixObserver;
+import de.nisble.droidsweeper.game.jni.MineSweeperMatrix;
+
+/** Interface of a game engine that implements the game logic.<br>
+ * There are two implementations of bounded boards: The {@link MineSweeperMatrix
+ * binding to the native library libmsm} and the pure Java
+ * {@link BitBoardEngine}. The {@link ChunkedEngine} plays unbounded boards
+ * (the {@link GameConfig#ENDLESS endless} mode). All of them report
+ * changes of the game matrix through the {@link MatrixObserver} and
+ * {@link FieldListener} interfaces, so {@link Game} and the view don't care
+ * which one is used. Use {@link EngineType} to choose one at startup.<br>
+ * The game status and the counts of bombs, marks and hidden safe fields are
+ * kept as counters that are updated on each click. So all status queries
+ * (including {@link #getCounters()}) are constant-time and never scan the
+ * matrix.<br>
+ * Engines are independent of each other. An engine must be {@link #close()
+ * closed} when it isn't needed anymore.
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public interface Engine extends Closeable {
+	/** Set the field callback for to a given widget.
+	 * @param l A field implementing the FieldListener interface.
+	 * @throws Exception An IndexOutOfBoundsException when the position of the
+	 *             listener is out of the bounds of the current game matrix. */
+	void setFieldListener(FieldListener l) throws Exception;
+
+	/** Add a matrix observer.
+	 * @param l A matrix observer. */
+	void addMatrixObserver(MatrixObserver l);
+
+	/** Remove a matrix observer.
+	 * @param l The observer to remove. */
+	void removeObserver(MatrixObserver l);
+
+	/** Create a new game with the given config.<br>
+	 * If the config is {@link GameConfig#SEEDED seeded}, engines that support
+	 * seeding produce the same board for the same seed. Engines may delay the
+	 * placement of the bombs to the first reveal to keep the first revealed
+	 * field free of bombs.
+	 * @param c The {@link GameConfig}. */
+	void create(GameConfig c);
+
+	/** Get the {@link Board} that mirrors the state of the current game matrix.
+	 * The returned object is replaced on each call to
+	 * {@link #create(GameConfig)}.
+	 * @return The board. */
+	Board getBoard();
+
+	/** Get the current game status.
+	 * @return The current GameStatus. */
+	GameStatus gameStatus();
+
+	/** Is the engine initialized and ready for a new game.
+	 * @return true on ready. */
+	boolean isReady();
+
+	/** Is currently a game running?
+	 * @return true on running game. */
+	boolean isRunning();
+
+	/** Game lost?
+	 * @return true on lost. */
+	boolean isLost();
+
+	/** Game won?
+	 * @return true on won. */
+	boolean isWon();
+
+	/** Get the count of the remaining bombs on the grid.
+	 * This number can also be negative when the player has marked more field
+	 * than bombs are present.
+	 * @return The count of remaining bombs. */
+	int remainingBombs();
+
+	/** Get a snapshot of the counters of the current game.
+	 * @return The counters. */
+	Counters getCounters();
+
+	/** Get the {@link Zobrist} hash of the board (the mine layout and the
+	 * dimensions).
+	 * @return The hash or 0 if the bombs are not placed yet or the engine
+	 *         doesn't support hashing. */
+	long boardHash();
+
+	/** Get the {@link Zobrist} hash of the current state of the fields. It is
+	 * updated with each change of a field.
+	 * @return The hash or 0 if the engine doesn't support hashing. */
+	long stateHash();
+
+	/** Get the difficulty {@link BoardMetrics metrics} of the board.
+	 * @return The metrics or null if the bombs are not placed yet or the
+	 *         engine doesn't compute them. */
+	BoardMetrics getMetrics();
+
+	/** Reveal a field.
+	 * @param p The position.
+	 * @return The count of the adjacent bombs.
+	 * @throws IndexOutOfBoundsException on coordinates of the position out of
+	 *             the bound of the configured game matrix. */
+	int reveal(Position p) throws IndexOutOfBoundsException;
+
+	/** Reveal all fields that are neither revealed nor marked in one go.<br>
+	 * Intended to show the whole matrix after a game is ended. All changes are
+	 * reported as a single batch (like a single click).
+	 * @see Board */
+	void revealAll();
+
+	/** Cycle through the sequence of marks of a field.
+	 * {@link FieldStatus#MARKED Marked} (not revealable),
+	 * {@link FieldStatus#QUERIED Queried} (revealable),
+	 * {@link FieldStatus#HIDDEN Hidden} (revealable)
+	 * @param p The position.
+	 * @throws IndexOutOfBoundsException on coordinates of the position out of
+	 *             the bound of the configured game matrix. */
+	void cycleMark(Position p) throws IndexOutOfBoundsException;
+
+	/** Chord a field: Reveal all adjacent fields that are not marked in one go.
+	 * <br>
+	 * This only happens if the field is revealed and the count of its marked
+	 * adjacent fields equals the count of its adjacent bombs. Else the call
+	 * does nothing. If a mark is wrong, a bomb is revealed and the game is
+	 * lost. All changes are reported as a single batch (like a single click).
+	 * @param p The position.
+	 * @throws IndexOutOfBoundsException on coordinates of the position out of
+	 *             the bound of the configured game matrix. */
+	void chord(Position p) throws IndexOutOfBoundsException;
+
+	/** @return True if there is a click that can be {@link #undo() undone}. */
+	boolean canUndo();
+
+	/** @return True if there is an undone click that can be {@link #redo()
+	 *         redone}. */
+	boolean canRedo();
+
+	/** Undo the last click.<br>
+	 * The fields, the counters and the game status are restored to the state
+	 * before the click. The restored fields are reported as a single batch
+	 * (like a single click). Engines that don't support undo return false.
+	 * @return False if there was nothing to undo. */
+	boolean undo();
+
+	/** Redo the last undone click. A new click drops the undone clicks.
+	 * @return False if there was nothing to redo. */
+	boolean redo();
+
+	/** Write the complete state of the current game to a compact binary
+	 * snapshot. The snapshot contains everything that is needed to
+	 * {@link #readSnapshot(DataInput) continue} the game, but not the
+	 * clicks that could be undone.
+	 * @param out The destination.
+	 * @return False if the engine doesn't support snapshots. Nothing was
+	 *         written then.
+	 * @throws IOException on errors of the destination. */
+	boolean writeSnapshot(DataOutput out) throws IOException;
+
+	/** Replace the current game with the game of a snapshot that was written
+	 * by {@link #writeSnapshot(DataOutput)} of the same engine type.<br>
+	 * The state is read as it is: The board isn't generated again and no
+	 * click is replayed. The restored {@link Board} is published as a single
+	 * change of all fields. Nothing is reported to the observers.
+	 * @param in The source.
+	 * @return False if the engine doesn't support snapshots.
+	 * @throws IOException on errors of the source or a corrupt snapshot. The
+	 *             state of the engine is undefined then, so a new game must
+	 *             be {@link #create(GameConfig) created}. */
+	boolean readSnapshot(DataInput in) throws IOException;
+
+	/** Release all resources held by this engine. */
+	@Override
+	void close();
+}
@@ -0,0 +1,40 @@
+package de.nisble.droidsweeper.game.engine;
+
+import de.nisble.droidsweeper.game.jni.MineSweeperMatrix;
+
+/** Available {@link Engine game engines}.
+ * <ul>
+ * <li>Serializable: Do not change the order of the constants! The ordinal is
+ * stored in the preferences.</li>
+ * </ul>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public enum EngineType {
+	/** The binding to the native library libmsm ({@link MineSweeperMatrix}). */
+	NATIVE,
+	/** The pure Java {@link BitBoardEngine}. */
+	JAVA;
+
+	/** Create a new engine of this type.<br>
+	 * <b>Note:</b> The caller owns the engine and has to {@link Engine#close()
+	 * close} it. Creating the native engine loads libmsm.
+	 * @return The engine. */
+	public Engine create() {
+		switch (this) {
+		case JAVA:
+			return new BitBoardEngine();
+		case NATIVE:
+		default:
+			return new MineSweeperMatrix();
+		}
+	}
+
+	/** Get the engine type for the corresponding integer.<br>
+	 * The type defaults to {@link #NATIVE} when the given number is invalid.
+	 * @param i The value.
+	 * @return The corresponding type. */
+	public static EngineType fromInt(int i) {
+		if (i < 0 || i >= values().length)
+			return NATIVE;
+		return values()[i];
+	}
+}
@@ -0,0 +1,558 @@
+package de.nisble.droidsweeper.game.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.nisble.droidsweeper.game.Position;
+import de.nisble.droidsweeper.game.jni.FieldStatus;
+import de.nisble.droidsweeper.game.jni.GameStatus;
+import de.nisble.droidsweeper.game.jni.MatrixObserver;
+
+/** Incremental solver that proves hidden fields of a running game to be safe
+ * or bombs (e.g. for a hint).<br>
+ * In contrast to the {@link Solver} this class doesn't know the bombs. It only
+ * sees what the player sees: It is registered as {@link MatrixObserver} like
+ * the {@link de.nisble.droidsweeper.game.replay.Recorder Recorder} and mirrors
+ * the changes of each click. Marks of the player are not trusted, they are
+ * hidden fields like all others.<br>
+ * Each field is either revealed, unknown, proven safe or proven to be a bomb.
+ * For each field the counts of unknown and of proven bomb neighbours are kept
+ * up to date when a neighbour changes. The frontier are the revealed numbers
+ * with unknown neighbours. It is updated together with the counts, so a click
+ * costs O(changed fields * neighbours) and not O(fields). The numbers whose
+ * neighbourhood changed are kept on a work stack. On a query the stack is
+ * processed by these rules until nothing more can be proven:
+ * <ul>
+ * <li>Single field: If a number is satisfied by its proven bomb neighbours,
+ * all its unknown neighbours are safe. If it needs all of its unknown
+ * neighbours, they are bombs.</li>
+ * <li>Subset: If the unknown neighbours of a number A are a subset of the
+ * unknown neighbours of a number B, the difference holds exactly the bombs B
+ * needs beyond A. If that is none, the difference is safe, if it is all, the
+ * difference is bombs. The pairs are only searched for numbers on the stack,
+ * from their unknown neighbours.</li>
+ * <li>Pattern: On a rectangular board with a {@link PatternCache}, the
+ * window of 5x5 fields around a number is solved by all its numbers together
+ * (e.g. 1-2-1). Recurring windows are answered by the cache. A change
+ * queues the numbers of all windows that contain it.</li>
+ * <li>Bomb count: If the proven bombs are all bombs of the board, all unknown
+ * fields are safe. If the remaining bombs equal the unknown fields, they are
+ * all bombs. Checked in constant time, applied at most once per game.</li>
+ * </ul>
+ * A revealed field that gets hidden again (i.e. an
+ * {@link Engine#undo() undo}) invalidates the proofs. The solver is rebuilt
+ * from its mirror on the next query then.<br>
+ * The neighbourhood is taken from a {@link Topology}, so any board of the
+ * {@link BitBoardEngine} is supported.
+ * <ul>
+ * <li>Not thread-safe: Use it on the thread of the game.</li>
+ * </ul>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class HintSolver implements MatrixObserver {
+	/* Knowledge of a field */
+	static final byte UNKNOWN = 0;
+	static final byte SAFE = 1;
+	static final byte MINE = 2;
+	static final byte OPEN = 3;
+
+	/* Most neighbours of a field (layered topology) */
+	private static final int HOOD = 26;
+
+	private static final FieldStatus[] STATUS = FieldStatus.values();
+
+	/* Null without a board */
+	private Topology mTopology = null;
+	private int mBombs = -1;
+
+	/* Mirror of the board: Status and adjacent bombs per field */
+	private byte[] mStatus = new byte[0];
+	private byte[] mAdjacent = new byte[0];
+
+	/* Knowledge and the counts of unknown and mine neighbours per field */
+	private byte[] mState = new byte[0];
+	private byte[] mUnknown = new byte[0];
+	private byte[] mMines = new byte[0];
+	private int mUnknownTotal;
+	private int mMinesTotal;
+
+	/* The frontier and the slot of each field in it or -1 */
+	private int[] mFrontier = new int[0];
+	private int[] mSlot = new int[0];
+	private int mFrontierSize;
+
+	/* Numbers whose neighbourhood changed */
+	private int[] mWork = new int[0];
+	private long[] mQueued = new long[0];
+	private int mTop;
+
+	/* Proven safe fields and bombs in the order of their proofs. Each field is
+	 * proven once, safe fields that were revealed afterwards are skipped. */
+	private int[] mSafe = new int[0];
+	private int mSafeSize;
+	private int[] mMine = new int[0];
+	private int mMineSize;
+	private int mProofs;
+
+	/* A revealed field was hidden again */
+	private boolean mRebuild;
+
+	/* Scratch of the subset rule */
+	private final int[] mA = new int[HOOD];
+	private final int[] mB = new int[HOOD];
+	private final int[] mPairs = new int[HOOD * HOOD];
+
+	/* Null without pattern rule */
+	private PatternCache mPatterns = null;
+	private final int[] mWindow = new int[PatternCache.SIDE * PatternCache.SIDE];
+
+	/** Start over on a rectangular board without revealed fields.
+	 * @param x The width.
+	 * @param y The height.
+	 * @param bombs The count of bombs or -1 if it is unknown. */
+	public void reset(int x, int y, int bombs) {
+		Topology t = mTopology;
+		if (null == t || t.KIND != Topology.Kind.GRID || t.X != x || t.Y != y)
+			t = Topology.grid(x, y);
+		reset(t, bombs);
+	}
+
+	/** Stop to follow the changes (e.g. for an endless board). All queries
+	 * return no proofs until the next reset. */
+	public void disable() {
+		mTopology = null;
+		mSafeSize = 0;
+		mMineSize = 0;
+		mFrontierSize = 0;
+		mTop = 0;
+		mRebuild = false;
+	}
+
+	/** Start over on a board of the given {@link Topology} without revealed
+	 * fields.
+	 * @param t The topology.
+	 * @param bombs The count of bombs or -1 if it is unknown. */
+	public void reset(Topology t, int bombs) {
+		int size = t.size();
+		mTopology = t;
+		mBombs = bombs;
+		if (mState.length < size) {
+			mStatus = new byte[size];
+			mAdjacent = new byte[size];
+			mState = new byte[size];
+			mUnknown = new byte[size];
+			mMines = new byte[size];
+			mFrontier = new int[size];
+			mSlot = new int[size];
+			mWork = new int[size];
+			mQueued = Bits.create(size);
+			mSafe = new int[size];
+			mMine = new int[size];
+		}
+		Arrays.fill(mStatus, 0, size, (byte) FieldStatus.HIDDEN.ordinal());
+		Arrays.fill(mAdjacent, 0, size, (byte) 0);
+		clear();
+	}
+
+	/** Start over on the current state of a rectangular board (e.g. after a
+	 * game was {@link Engine#readSnapshot(java.io.DataInput) restored}).
+	 * @param board The board.
+	 * @param bombs The count of bombs or -1 if it is unknown. */
+	public void load(Board board, int bombs) {
+		int x = board.getX();
+		int size = x * board.getY();
+		reset(x, board.getY(), bombs);
+		for (int i = 0; i < size; ++i) {
+			mStatus[i] = (byte) board.getFieldStatus(i).ordinal();
+			mAdjacent[i] = (byte) board.getAdjacentBombs(i);
+		}
+		mRebuild = true;
+	}
+
+	/** Use a cache of local patterns as additional rule. It is kept across
+	 * resets, so it may be shared by the games of a session.
+	 * @param cache The cache or null to stop to use the rule. */
+	public void setPatterns(PatternCache cache) {
+		mPatterns = cache;
+	}
+
+	/** Get a hidden field that is proven to be safe.
+	 * @return The field that was proven last or null if no hidden field is
+	 *         proven to be safe. */
+	public Position hint() {
+		update();
+		// Drop the proofs that were revealed meanwhile
+		while (mSafeSize > 0 && OPEN == mState[mSafe[mSafeSize - 1]])
+			--mSafeSize;
+		return (mSafeSize > 0) ? position(mSafe[mSafeSize - 1]) : null;
+	}
+
+	/** @return All hidden fields that are proven to be safe. */
+	public List<Position> getSafeFields() {
+		update();
+		return collect(mSafe, mSafeSize, SAFE);
+	}
+
+	/** @return All hidden fields that are proven to be bombs. */
+	public List<Position> getMineFields() {
+		update();
+		return collect(mMine, mMineSize, MINE);
+	}
+
+	/** @param p A position.
+	 * @return True if the field is hidden and proven to be safe. */
+	public boolean isSafe(Position p) {
+		update();
+		return null != mTopology && SAFE == mState[mTopology.index(p)];
+	}
+
+	/** @param p A position.
+	 * @return True if the field is hidden and proven to be a bomb. */
+	public boolean isMine(Position p) {
+		update();
+		return null != mTopology && MINE == mState[mTopology.index(p)];
+	}
+
+	/** @return The count of revealed numbers with unknown neighbours. */
+	public int frontierSize() {
+		update();
+		return mFrontierSize;
+	}
+
+	/** Apply the rules to all numbers whose neighbourhood changed since the
+	 * last call. Done by each query, so there's no need to call it directly.
+	 * @return The count of fields that were proven by this call. */
+	public int update() {
+		if (null == mTopology)
+			return 0;
+
+		int before = mProofs;
+		if (mRebuild)
+			rebuild();
+
+		for (;;) {
+			while (mTop > 0) {
+				int i = mWork[--mTop];
+				Bits.clear(mQueued, i);
+				if (OPEN == mState[i] && mUnknown[i] > 0 && !single(i) && !subset(i))
+					pattern(i);
+			}
+			if (!count())
+				break;
+		}
+		return mProofs - before;
+	}
+
+	/* Accessors of the probability solvers */
+
+	Topology topology() {
+		return mTopology;
+	}
+
+	int bombs() {
+		return mBombs;
+	}
+
+	int unknownTotal() {
+		return mUnknownTotal;
+	}
+
+	int minesTotal() {
+		return mMinesTotal;
+	}
+
+	int frontier(int k) {
+		return mFrontier[k];
+	}
+
+	byte state(int i) {
+		return mState[i];
+	}
+
+	boolean isFrontier(int i) {
+		return mSlot[i] >= 0;
+	}
+
+	/** @return The count of bombs among the unknown neighbours of the
+	 *         revealed field i. */
+	int need(int i) {
+		return mAdjacent[i] - mMines[i];
+	}
+
+	@Override
+	public void onGameStatusChanged(GameStatus newStatus) {
+	}
+
+	@Override
+	public void onRemainingBombsChanged(int remainingBombs) {
+		/* Counts the marks of the player, which are not trusted */
+	}
+
+	@Override
+	public void afterFieldStatusChanged(Position p, FieldStatus fs, int adjacentBombs) {
+		Topology t = mTopology;
+		if (null == t || p.X < 0 || p.X >= t.X || p.Y < 0 || p.Y >= t.Y)
+			return;
+
+		int i = p.Y * t.X + p.X;
+		boolean wasVisible = visible(STATUS[mStatus[i]]);
+		mStatus[i] = (byte) fs.ordinal();
+		mAdjacent[i] = (byte) adjacentBombs;
+
+		if (wasVisible && !visible(fs)) {
+			mRebuild = true;
+		} else if (!mRebuild) {
+			if (FieldStatus.UNHIDDEN == fs)
+				setState(i, OPEN);
+			else if (FieldStatus.BOMB == fs)
+				setState(i, MINE);
+		}
+	}
+
+	private static boolean visible(FieldStatus fs) {
+		return FieldStatus.UNHIDDEN == fs || FieldStatus.BOMB == fs;
+	}
+
+	/* Forget all proofs. The mirror is kept. */
+	private void clear() {
+		int size = mTopology.size();
+		Arrays.fill(mState, 0, size, UNKNOWN);
+		Arrays.fill(mMines, 0, size, (byte) 0);
+		for (int i = 0; i < size; ++i)
+			mUnknown[i] = (byte) (mTopology.end(i) - mTopology.start(i));
+		Arrays.fill(mSlot, 0, size, -1);
+		Arrays.fill(mQueued, 0);
+		mUnknownTotal = size;
+		mMinesTotal = 0;
+		mFrontierSize = 0;
+		mTop = 0;
+		mSafeSize = 0;
+		mMineSize = 0;
+		mRebuild = false;
+	}
+
+	/* Derive the knowledge from the mirror again. */
+	private void rebuild() {
+		clear();
+		for (int i = 0; i < mTopology.size(); ++i) {
+			if (FieldStatus.UNHIDDEN.ordinal() == mStatus[i])
+				setState(i, OPEN);
+			else if (FieldStatus.BOMB.ordinal() == mStatus[i])
+				setState(i, MINE);
+		}
+	}
+
+	/* Single field rule for the number at i. True if all its unknown
+	 * neighbours were proven. */
+	private boolean single(int i) {
+		int need = need(i);
+		int unknown = mUnknown[i];
+		if (0 != need && need != unknown)
+			return false;
+
+		byte s = (0 == need) ? SAFE : MINE;
+		int[] neighbours = mTopology.neighbours();
+		for (int k = mTopology.start(i); k < mTopology.end(i); ++k) {
+			if (UNKNOWN == mState[neighbours[k]])
+				prove(neighbours[k], s);
+		}
+		return true;
+	}
+
+	/* Subset rule for the number at i and the numbers that share an unknown
+	 * neighbour with it. Stops at the first deduction, because the unknown
+	 * neighbours of i may have changed. True if fields were proven. */
+	private boolean subset(int a) {
+		int na = unknownNeighbours(a, mA);
+		int needA = need(a);
+
+		int[] neighbours = mTopology.neighbours();
+		int pairs = 0;
+		for (int k = 0; k < na; ++k) {
+			int u = mA[k];
+			for (int j = mTopology.start(u); j < mTopology.end(u); ++j) {
+				int b = neighbours[j];
+				if (b == a || OPEN != mState[b] || 0 == mUnknown[b] || IntLists.contains(mPairs, pairs, b))
+					continue;
+				mPairs[pairs++] = b;
+
+				int nb = unknownNeighbours(b, mB);
+				int needB = need(b);
+				if (nb > na && IntLists.contains(mB, nb, mA, na)) {
+					if (difference(mB, nb, mA, na, needB - needA))
+						return true;
+				} else if (na > nb && IntLists.contains(mA, na, mB, nb)) {
+					if (difference(mA, na, mB, nb, needA - needB))
+						return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/* Pattern rule for the window around the number at i. Numbers next to
+	 * the centre are constraints, the outer fields are only unknown or
+	 * fixed. */
+	private void pattern(int i) {
+		Topology t = mTopology;
+		if (null == mPatterns || t.KIND != Topology.Kind.GRID)
+			return;
+
+		int side = PatternCache.SIDE;
+		int half = side / 2;
+		int x = i % t.X;
+		int y = i / t.X;
+		for (int r = 0; r < side; ++r) {
+			for (int c = 0; c < side; ++c) {
+				int fx = x + c - half;
+				int fy = y + r - half;
+				int code = PatternCache.FIXED;
+				if (fx >= 0 && fx < t.X && fy >= 0 && fy < t.Y) {
+					int f = fy * t.X + fx;
+					boolean inner = Math.abs(c - half) <= 1 && Math.abs(r - half) <= 1;
+					if (UNKNOWN == mState[f])
+						code = PatternCache.UNKNOWN;
+					else if (inner && OPEN == mState[f] && mUnknown[f] > 0)
+						code = PatternCache.NUMBER + need(f);
+				}
+				mWindow[r * side + c] = code;
+			}
+		}
+
+		long deductions = mPatterns.deductions(mWindow);
+		for (int k = 0; deductions != 0 && k < 2 * side * side; ++k) {
+			if (0 == ((deductions >>> k) & 1))
+				continue;
+			int w = k % (side * side);
+			int f = (y + w / side - half) * t.X + (x + w % side - half);
+			if (UNKNOWN == mState[f])
+				prove(f, (k < side * side) ? SAFE : MINE);
+		}
+	}
+
+	/* The ascending list b contains the ascending list a. The difference holds
+	 * need bombs. Prove it if that is none or all. */
+	private boolean difference(int[] b, int nb, int[] a, int na, int need) {
+		if (0 != need && nb - na != need)
+			return false;
+
+		byte s = (0 == need) ? SAFE : MINE;
+		for (int k = 0, j = 0; k < nb; ++k) {
+			if (j < na && a[j] == b[k])
+				++j;
+			else
+				prove(b[k], s);
+		}
+		return true;
+	}
+
+	/* Bomb count rule. True if fields were proven. */
+	private boolean count() {
+		if (mBombs < 0 || 0 == mUnknownTotal)
+			return false;
+
+		int left = mBombs - mMinesTotal;
+		if (0 != left && left != mUnknownTotal)
+			return false;
+
+		byte s = (0 == left) ? SAFE : MINE;
+		for (int i = 0; i < mTopology.size(); ++i) {
+			if (UNKNOWN == mState[i])
+				prove(i, s);
+		}
+		return true;
+	}
+
+	private void prove(int i, byte s) {
+		setState(i, s);
+		if (SAFE == s)
+			mSafe[mSafeSize++] = i;
+		else
+			mMine[mMineSize++] = i;
+		++mProofs;
+	}
+
+	/* Change the knowledge of field i and update the counts and the frontier
+	 * of it and its neighbours. */
+	private void setState(int i, byte s) {
+		byte old = mState[i];
+		if (old == s)
+			return;
+		mState[i] = s;
+
+		int du = ((UNKNOWN == s) ? 1 : 0) - ((UNKNOWN == old) ? 1 : 0);
+		int dm = ((MINE == s) ? 1 : 0) - ((MINE == old) ? 1 : 0);
+		mUnknownTotal += du;
+		mMinesTotal += dm;
+
+		int[] neighbours = mTopology.neighbours();
+		for (int k = mTopology.start(i); k < mTopology.end(i); ++k) {
+			int n = neighbours[k];
+			mUnknown[n] += du;
+			mMines[n] += dm;
+			if (OPEN == mState[n])
+				touch(n);
+		}
+		touch(i);
+		if (null != mPatterns && mTopology.KIND == Topology.Kind.GRID)
+			touchWindow(i);
+	}
+
+	/* Queue the revealed numbers whose window contains the field at i. */
+	private void touchWindow(int i) {
+		Topology t = mTopology;
+		int half = PatternCache.SIDE / 2;
+		int x = i % t.X;
+		int y = i / t.X;
+		for (int fy = Math.max(0, y - half); fy <= Math.min(t.Y - 1, y + half); ++fy) {
+			for (int fx = Math.max(0, x - half); fx <= Math.min(t.X - 1, x + half); ++fx) {
+				int f = fy * t.X + fx;
+				if (OPEN == mState[f])
+					touch(f);
+			}
+		}
+	}
+
+	/* Queue the revealed number at i and update its place in the frontier. */
+	private void touch(int i) {
+		boolean member = OPEN == mState[i] && mAdjacent[i] > 0 && mUnknown[i] > 0;
+		if (member && mSlot[i] < 0) {
+			mSlot[i] = mFrontierSize;
+			mFrontier[mFrontierSize++] = i;
+		} else if (!member && mSlot[i] >= 0) {
+			int last = mFrontier[--mFrontierSize];
+			mFrontier[mSlot[i]] = last;
+			mSlot[last] = mSlot[i];
+			mSlot[i] = -1;
+		}
+
+		if (member && !Bits.get(mQueued, i)) {
+			Bits.set(mQueued, i);
+			mWork[mTop++] = i;
+		}
+	}
+
+	/* Collect the unknown neighbours of i in ascending order. */
+	private int unknownNeighbours(int i, int[] out) {
+		int[] neighbours = mTopology.neighbours();
+		int count = 0;
+		for (int k = mTopology.start(i); k < mTopology.end(i); ++k) {
+			if (UNKNOWN == mState[neighbours[k]])
+				out[count++] = neighbours[k];
+		}
+		return count;
+	}
+
+	private List<Position> collect(int[] proofs, int length, byte s) {
+		List<Position> fields = new ArrayList<Position>();
+		for (int k = 0; k < length; ++k) {
+			if (s == mState[proofs[k]])
+				fields.add(position(proofs[k]));
+		}
+		return fields;
+	}
+
+	private Position position(int i) {
+		return new Position(i % mTopology.X, i / mTopology.X);
+	}
+}
@@ -0,0 +1,37 @@
+package de.nisble.droidsweeper.game.engine;
+
+/** Helpers for lists of ints that are stored in the first elements of a
+ * primitive array (e.g. the neighbours of a field).
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+final class IntLists {
+	private IntLists() {
+	}
+
+	/** @param a The list.
+	 * @param length The length of the list.
+	 * @param value The value.
+	 * @return True if the value is in the list. */
+	static boolean contains(int[] a, int length, int value) {
+		for (int k = 0; k < length; ++k) {
+			if (a[k] == value)
+				return true;
+		}
+		return false;
+	}
+
+	/** @param b An ascending list.
+	 * @param nb The length of b.
+	 * @param a An ascending list.
+	 * @param na The length of a.
+	 * @return True if all of a is in b. */
+	static boolean contains(int[] b, int nb, int[] a, int na) {
+		int j = 0;
+		for (int k = 0; k < nb && j < na; ++k) {
+			if (b[k] == a[j])
+				++j;
+			else if (b[k] > a[j])
+				return false;
+		}
+		return j == na;
+	}
+}
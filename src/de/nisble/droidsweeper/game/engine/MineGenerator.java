@@ -0,0 +1,222 @@
+package de.nisble.droidsweeper.game.engine;
+
+import java.util.Arrays;
+
+/** Placement of the bombs of the Java engines.<br>
+ * All randomness comes from a {@link SplitMix64} generator, so the same seed
+ * (and the same safe field) always produces the same bomb layout.<br>
+ * Up to a density of 50% the bombs are drawn, above it the safe fields are
+ * drawn instead and all other candidates become bombs. So only
+ * min(bombs, safe fields) fields are drawn, but that is still half of the
+ * fields at a density of 50%. The cost peaks there and is O(min(bombs, safe
+ * fields)) plus a word-wise fill of the bitset. How the fields are drawn
+ * depends on their share of the candidates:
+ * <ul>
+ * <li>Up to a third: Rejection sampling on the bitset. A random field is
+ * drawn again if it is drawn already or excluded (the excluded fields are
+ * marked in the bitset while drawing). At most a third of the draws is
+ * rejected on average and it needs no other memory, so it is the fastest at
+ * low (and high) densities.</li>
+ * <li>Above a third: A partial Fisher-Yates shuffle over a primitive array of
+ * the indices of the fields, that needs no retries. The excluded fields are
+ * swapped to the tail of the array, so the shuffle runs over the candidates
+ * only. The array is kept between the calls in identity order: After the
+ * fields are drawn, all swaps are undone in reverse order. So apart from the
+ * first call for a board size, it doesn't allocate per field. It has a
+ * higher constant cost than the rejection sampling, but doesn't degrade
+ * towards 50%.</li>
+ * </ul>
+ * The bitsets are packed into a long[]: Field i is stored in word i / 64 at
+ * bit position i % 64.
+ * <ul>
+ * <li>Not thread-safe: Use one instance per thread.</li>
+ * </ul>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class MineGenerator {
+	private static final int[] NONE = new int[0];
+
+	/* Indices of the candidates in identity order between calls */
+	private int[] mIndices = new int[0];
+	/* Swap partners of the current shuffle */
+	private int[] mSwaps = new int[0];
+
+	/** Place bombs at random fields.
+	 * @param bombSet The bitset of x * y fields to set the bombs in. Must be
+	 *            empty.
+	 * @param x The width of the matrix.
+	 * @param y The height of the matrix.
+	 * @param bombs The count of bombs. Must not be greater than x * y.
+	 * @param safe The index of a field that must not be a bomb (the first
+	 *            click) or -1. If possible its adjacent fields are kept free of
+	 *            bombs too. If there are too many bombs for that, only the field
+	 *            itself is kept free or, as last resort, nothing.
+	 * @param random The generator. */
+	public void place(long[] bombSet, int x, int y, int bombs, int safe, SplitMix64 random) {
+		place(bombSet, x * y, bombs, excluded(x, y, bombs, safe), random);
+	}
+
+	/** Place bombs at random fields of a board with the given
+	 * {@link Topology}.
+	 * @param bombSet The bitset of the fields to set the bombs in. Must be
+	 *            empty.
+	 * @param t The topology.
+	 * @param bombs The count of bombs. Must not be greater than the count of
+	 *            fields.
+	 * @param safe The index of a field that must not be a bomb or -1. Like in
+	 *            {@link #place(long[], int, int, int, int, SplitMix64)} its
+	 *            neighbours are kept free if possible.
+	 * @param random The generator. */
+	public void place(long[] bombSet, Topology t, int bombs, int safe, SplitMix64 random) {
+		place(bombSet, t.size(), bombs, excluded(t, bombs, safe), random);
+	}
+
+	private void place(long[] bombSet, int size, int bombs, int[] excluded, SplitMix64 random) {
+		int n = size - excluded.length;
+		boolean value = bombs <= n / 2;
+		int count = value ? bombs : n - bombs;
+
+		if (!value) {
+			// Complement: All candidates are bombs except the drawn ones
+			Arrays.fill(bombSet, 0, size >>> 6, -1L);
+			if ((size & 63) != 0)
+				bombSet[size >>> 6] = (1L << size) - 1;
+			for (int e : excluded)
+				Bits.clear(bombSet, e);
+		}
+
+		if (count <= n / 3)
+			reject(bombSet, count, size, excluded, random, value);
+		else
+			draw(bombSet, count, n, excluded, random, value);
+	}
+
+	/* Draw count of the candidates by rejection sampling and set or clear
+	 * them. A field is drawn again while its bit has the value already
+	 * (flipped, the bit has to be 0 before a draw). The
+	 * excluded fields get the value in the meantime, so they are rejected too.
+	 * On clearing they have it already. */
+	private static void reject(long[] set, int count, int size, int[] excluded, SplitMix64 random, boolean value) {
+		if (value) {
+			for (int e : excluded)
+				Bits.set(set, e);
+		}
+
+		long flip = value ? 0 : -1L;
+		for (int drawn = 0; drawn < count;) {
+			int i = random.nextInt(size);
+			long word = set[i >>> 6];
+			if (((word ^ flip) & (1L << i)) == 0) {
+				set[i >>> 6] = word ^ (1L << i);
+				++drawn;
+			}
+		}
+
+		if (value) {
+			for (int e : excluded)
+				Bits.clear(set, e);
+		}
+	}
+
+	/* Draw count of the n candidates by a partial Fisher-Yates shuffle and set
+	 * or clear them. */
+	private void draw(long[] set, int count, int n, int[] excluded, SplitMix64 random, boolean value) {
+		int size = n + excluded.length;
+		if (mIndices.length < size) {
+			mIndices = new int[size];
+			for (int i = 0; i < size; ++i)
+				mIndices[i] = i;
+		}
+		if (mSwaps.length < count)
+			mSwaps = new int[count];
+
+		int[] indices = mIndices;
+
+		/* Move the excluded fields to the tail [n, size). Each excluded field
+		 * in front of the tail is swapped with a tail field that isn't
+		 * excluded. */
+		int[] moved = new int[2 * excluded.length];
+		int m = 0;
+		int tail = n;
+		for (int e : excluded) {
+			if (e >= n)
+				break;
+			while (Arrays.binarySearch(excluded, tail) >= 0)
+				++tail;
+			swap(indices, e, tail);
+			moved[m++] = e;
+			moved[m++] = tail++;
+		}
+
+		for (int i = 0; i < count; ++i) {
+			int j = i + random.nextInt(n - i);
+			int picked = indices[j];
+			indices[j] = indices[i];
+			indices[i] = picked;
+			mSwaps[i] = j;
+
+			if (value)
+				Bits.set(set, picked);
+			else
+				Bits.clear(set, picked);
+		}
+
+		// Restore the identity order
+		for (int i = count - 1; i >= 0; --i)
+			swap(indices, i, mSwaps[i]);
+		for (int i = m - 2; i >= 0; i -= 2)
+			swap(indices, moved[i], moved[i + 1]);
+	}
+
+	private static void swap(int[] a, int i, int j) {
+		int tmp = a[i];
+		a[i] = a[j];
+		a[j] = tmp;
+	}
+
+	/* Get the fields that must not be bombs in ascending order. */
+	private static int[] excluded(int x, int y, int bombs, int safe) {
+		int size = x * y;
+		if (safe < 0 || bombs >= size)
+			return NONE;
+
+		int sx = safe % x;
+		int sy = safe / x;
+		int[] hood = new int[9];
+		int count = 0;
+		for (int ny = Math.max(0, sy - 1); ny <= Math.min(y - 1, sy + 1); ++ny) {
+			for (int nx = Math.max(0, sx - 1); nx <= Math.min(x - 1, sx + 1); ++nx) {
+				hood[count++] = ny * x + nx;
+			}
+		}
+
+		if (size - count >= bombs)
+			return Arrays.copyOf(hood, count);
+		return new int[] { safe };
+	}
+
+	/* Get the fields that must not be bombs in ascending order. */
+	private static int[] excluded(Topology t, int bombs, int safe) {
+		int size = t.size();
+		if (safe < 0 || bombs >= size)
+			return NONE;
+
+		int count = t.end(safe) - t.start(safe) + 1;
+		if (size - count < bombs)
+			return new int[] { safe };
+
+		int[] hood = new int[count];
+		int k = 0;
+		boolean added = false;
+		for (int j = t.start(safe); j < t.end(safe); ++j) {
+			int n = t.neighbours()[j];
+			if (!added && safe < n) {
+				hood[k++] = safe;
+				added = true;
+			}
+			hood[k++] = n;
+		}
+		if (!added)
+			hood[k] = safe;
+		return hood;
+	}
+}
@@ -0,0 +1,125 @@
+package de.nisble.droidsweeper.game.engine;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Search for boards that can be cleared without guessing.<br>
+ * The candidates of a search are numbered. Candidate 0 is the board of the
+ * given seed itself, candidate k > 0 is the board of the k-th value of the
+ * {@link SplitMix64} sequence of that seed. Each candidate is placed by the
+ * {@link MineGenerator} and played by the {@link Solver} from the first
+ * click.<br>
+ * The candidates are evaluated in parallel: Each worker takes the next
+ * candidate number from a shared counter. When a candidate is accepted, all
+ * workers stop taking candidates with a higher number. Workers that are busy
+ * with a lower number still finish it, so the result is always the accepted
+ * candidate with the lowest number. This makes the search deterministic: The
+ * same seed and first click always lead to the same board, no matter how many
+ * workers there are or how the threads are scheduled.<br>
+ * The workers run on an {@link ExecutorService} of daemon threads that lives
+ * as long as the generator.
+ * <ul>
+ * <li>Thread-safe: But the searches of concurrent calls share the
+ * workers.</li>
+ * </ul>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class NoGuessGenerator implements Closeable {
+	/** Default count of candidates after which a search gives up. */
+	public static final int DEFAULT_CANDIDATES = 20000;
+
+	private final ExecutorService mExecutor;
+	private final int mWorkers;
+	private final int mCandidates;
+
+	/** Create a generator with one worker per available processor and
+	 * {@link #DEFAULT_CANDIDATES}. */
+	public NoGuessGenerator() {
+		this(Runtime.getRuntime().availableProcessors(), DEFAULT_CANDIDATES);
+	}
+
+	/** Create a generator.
+	 * @param workers The count of worker threads. At least 1.
+	 * @param candidates The count of candidates after which a search gives
+	 *            up. */
+	public NoGuessGenerator(int workers, int candidates) {
+		if (workers < 1 || candidates < 1)
+			throw new IllegalArgumentException("Invalid arguments: workers:" + workers + " candidates:" + candidates);
+
+		mWorkers = workers;
+		mCandidates = candidates;
+		mExecutor = Executors.newFixedThreadPool(workers, new DaemonThreadFactory("NoGuess"));
+	}
+
+	/** Get the seed of a board that can be cleared without guessing.<br>
+	 * Blocks until the search is done. If no candidate is accepted within the
+	 * limit of candidates, the given seed is returned, so the board is simply
+	 * random.
+	 * @param x The width of the matrix.
+	 * @param y The height of the matrix.
+	 * @param bombs The count of bombs.
+	 * @param safe The index of the first revealed field.
+	 * @param seed The seed of the search.
+	 * @return The seed of the accepted board for
+	 *         {@link MineGenerator#place(long[], int, int, int, int, SplitMix64)}
+	 *         with the same safe field. */
+	public long find(final int x, final int y, final int bombs, final int safe, final long seed) {
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger best = new AtomicInteger(mCandidates);
+
+		List<Future<?>> futures = new ArrayList<Future<?>>(mWorkers);
+		for (int w = 0; w < mWorkers; ++w) {
+			futures.add(mExecutor.submit(new Runnable() {
+				@Override
+				public void run() {
+					MineGenerator generator = new MineGenerator();
+					Solver solver = new Solver();
+					long[] bombSet = Bits.create(x * y);
+
+					for (int k = next.getAndIncrement(); k < best.get(); k = next.getAndIncrement()) {
+						Arrays.fill(bombSet, 0);
+						generator.place(bombSet, x, y, bombs, safe, new SplitMix64(candidate(seed, k)));
+						if (solver.solve(bombSet, x, y, bombs, safe)) {
+							int b;
+							do {
+								b = best.get();
+							} while (k < b && !best.compareAndSet(b, k));
+							return;
+						}
+					}
+				}
+			}));
+		}
+
+		try {
+			for (Future<?> f : futures)
+				f.get();
+		} catch (InterruptedException e) {
+			// Stop the workers and keep the random board
+			best.set(0);
+			Thread.currentThread().interrupt();
+			return seed;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("No-guess search failed", e.getCause());
+		}
+
+		int k = best.get();
+		return (k < mCandidates) ? candidate(seed, k) : seed;
+	}
+
+	/** Stop the workers. The generator can't be used afterwards. */
+	@Override
+	public void close() {
+		mExecutor.shutdownNow();
+	}
+
+	private static long candidate(long seed, int k) {
+		return (0 == k) ? seed : SplitMix64.nth(seed, k - 1);
+	}
+}
@@ -0,0 +1,348 @@
+package de.nisble.droidsweeper.game.engine;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Bounded cache of the deductions of local patterns on rectangular boards
+ * (e.g. 1-2-1 or 1-2-2-1 at a wall).<br>
+ * A pattern is the window of 5x5 fields around a revealed number. The numbers
+ * of the inner 3x3 fields are the constraints, because all their neighbours
+ * are inside the window. The other fields are unknown or fixed (revealed,
+ * proven or outside of the board). Each number is stored by the bombs it
+ * needs beyond its proven bomb neighbours. So a window packs into 52 bits: 4
+ * bits per inner field and 1 bit per outer field.<br>
+ * The 8 rotations and reflections of a window are the same pattern. The
+ * smallest packed form is its key. On a miss, all assignments of the unknown
+ * fields that satisfy the numbers are enumerated. The fields that are safe
+ * in all of them or bombs in all of them are stored with the key, also if
+ * there are none. So a recurring pattern costs a lookup.<br>
+ * The least recently used patterns are dropped at the capacity. The cache
+ * doesn't depend on a game, so it is kept across games and can be
+ * {@link #write(DataOutput) written} to a file and {@link #read(DataInput)
+ * read} at the next start.
+ * <ul>
+ * <li>Not thread-safe: Use it on the thread of the game.</li>
+ * </ul>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class PatternCache {
+	/** Default count of patterns. */
+	public static final int DEFAULT_CAPACITY = 16384;
+
+	/* "DSP1": Marks a written cache and its version */
+	private static final int MAGIC = 0x44535031;
+
+	/* Side of a window */
+	static final int SIDE = 5;
+	/* Codes of the fields of a window. Numbers are NUMBER + the bombs they
+	 * need. */
+	static final int FIXED = 0;
+	static final int UNKNOWN = 1;
+	static final int NUMBER = 2;
+
+	private static final int FIELDS = SIDE * SIDE;
+	/* Fields of a window by rotation or reflection */
+	private static final int[][] SYMMETRIES = symmetries();
+	/* Neighbours of the inner fields of a window */
+	private static final int[][] HOOD = hood();
+
+	private final int mCapacity;
+	private final Map<Long, Long> mEntries;
+	private long mHits = 0;
+	private long mMisses = 0;
+
+	/* Scratch of the enumeration */
+	private final int[] mVar = new int[FIELDS];
+	private final int[] mCell = new int[FIELDS];
+	private final int[] mNeed = new int[FIELDS];
+	private final int[] mMines = new int[FIELDS];
+	private final int[] mLeft = new int[FIELDS];
+	private final int[][] mOf = new int[FIELDS][9];
+	private final int[] mOfSize = new int[FIELDS];
+	private final byte[] mValue = new byte[FIELDS];
+	private int mVars;
+	private int mEver0;
+	private int mEver1;
+
+	/** Create a cache of {@link #DEFAULT_CAPACITY} patterns. */
+	public PatternCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/** Create a cache.
+	 * @param capacity The count of patterns. */
+	public PatternCache(final int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		mCapacity = capacity;
+		mEntries = new LinkedHashMap<Long, Long>(capacity * 4 / 3 + 1, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/* Get the deductions of a window.
+	 * @param window The codes of the fields of the window row by row. Outer
+	 * fields are FIXED or UNKNOWN.
+	 * @return The safe fields in the bits 0 to 24 and the bombs in the bits
+	 * 25 to 49 by index in the window. */
+	long deductions(int[] window) {
+		long key = Long.MAX_VALUE;
+		int symmetry = 0;
+		for (int s = 0; s < SYMMETRIES.length; ++s) {
+			long k = pack(window, SYMMETRIES[s]);
+			if (k < key) {
+				key = k;
+				symmetry = s;
+			}
+		}
+		int[] map = SYMMETRIES[symmetry];
+
+		Long cached = mEntries.get(key);
+		if (cached != null) {
+			++mHits;
+			return transform(cached, map, true);
+		}
+
+		++mMisses;
+		long found = solve(window);
+		mEntries.put(key, transform(found, map, false));
+		return found;
+	}
+
+	/** @return The count of lookups that were answered by the cache. */
+	public long getHits() {
+		return mHits;
+	}
+
+	/** @return The count of lookups that had to be solved. */
+	public long getMisses() {
+		return mMisses;
+	}
+
+	/** @return The share of the lookups that were answered by the cache or 0
+	 *         if there were none. */
+	public double getHitRate() {
+		long lookups = mHits + mMisses;
+		return (0 == lookups) ? 0 : (double) mHits / lookups;
+	}
+
+	/** @return The count of cached patterns. */
+	public int size() {
+		return mEntries.size();
+	}
+
+	/** @return The most patterns that are cached. */
+	public int capacity() {
+		return mCapacity;
+	}
+
+	/** Remove all patterns and reset the statistics. */
+	public void clear() {
+		mEntries.clear();
+		mHits = 0;
+		mMisses = 0;
+	}
+
+	/** Write the patterns from the least to the most recently used, 16 bytes
+	 * each.
+	 * @param out The output.
+	 * @throws IOException on a failed write. */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(mEntries.size());
+		for (Map.Entry<Long, Long> e : mEntries.entrySet()) {
+			out.writeLong(e.getKey());
+			out.writeLong(e.getValue());
+		}
+	}
+
+	/** Add the patterns of a {@link #write(DataOutput) written} cache. If it
+	 * holds more patterns than the capacity, the least recently used ones are
+	 * dropped.
+	 * @param in The input.
+	 * @return False if the input is no cache. Patterns read up to then are
+	 *         kept.
+	 * @throws IOException on a failed read. */
+	public boolean read(DataInput in) throws IOException {
+		if (in.readInt() != MAGIC)
+			return false;
+		int count = in.readInt();
+		if (count < 0)
+			return false;
+		for (int i = 0; i < count; ++i) {
+			long key = in.readLong();
+			long value = in.readLong();
+			if (key >>> 52 != 0 || value >>> (2 * FIELDS) != 0)
+				return false;
+			mEntries.put(key, value);
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "PatternCache [size=" + mEntries.size() + ", capacity=" + mCapacity + ", hits=" + mHits + ", misses="
+				+ mMisses + ", hitRate=" + String.format("%.3f", getHitRate()) + "]";
+	}
+
+	/* Pack the window as seen through a symmetry */
+	private static long pack(int[] window, int[] map) {
+		long key = 0;
+		for (int k = 0; k < FIELDS; ++k) {
+			if (inner(k))
+				key = (key << 4) | window[map[k]];
+			else
+				key = (key << 1) | window[map[k]];
+		}
+		return key;
+	}
+
+	/* Map deductions between the window (canonical false) and its key
+	 * (canonical true) */
+	private static long transform(long deductions, int[] map, boolean canonical) {
+		long result = 0;
+		for (int k = 0; k < FIELDS; ++k) {
+			int from = canonical ? k : map[k];
+			int to = canonical ? map[k] : k;
+			result |= ((deductions >>> from) & 1L) << to;
+			result |= ((deductions >>> (FIELDS + from)) & 1L) << (FIELDS + to);
+		}
+		return result;
+	}
+
+	/* Enumerate the assignments of the unknown fields next to the numbers */
+	private long solve(int[] window) {
+		mVars = 0;
+		for (int k = 0; k < FIELDS; ++k)
+			mVar[k] = -1;
+
+		int constraints = 0;
+		for (int k = 0; k < FIELDS; ++k) {
+			if (!inner(k) || window[k] < NUMBER)
+				continue;
+			int c = constraints++;
+			mNeed[c] = window[k] - NUMBER;
+			mMines[c] = 0;
+			mLeft[c] = 0;
+			for (int n : HOOD[k]) {
+				if (UNKNOWN != window[n])
+					continue;
+				if (mVar[n] < 0) {
+					mVar[n] = mVars;
+					mCell[mVars] = n;
+					mOfSize[mVars] = 0;
+					++mVars;
+				}
+				int v = mVar[n];
+				mOf[v][mOfSize[v]++] = c;
+				++mLeft[c];
+			}
+			if (mNeed[c] > mLeft[c])
+				return 0;
+		}
+		if (0 == mVars)
+			return 0;
+
+		mEver0 = 0;
+		mEver1 = 0;
+		search(0);
+
+		long result = 0;
+		int all = (1 << mVars) - 1;
+		// No assignment: Nothing is proven
+		if (0 == (mEver0 | mEver1))
+			return 0;
+		for (int v = 0; v < mVars; ++v) {
+			if (0 == ((mEver1 >>> v) & 1))
+				result |= 1L << mCell[v];
+			else if (0 == ((mEver0 >>> v) & 1))
+				result |= 1L << (FIELDS + mCell[v]);
+		}
+		return (mEver0 == all && mEver1 == all) ? 0 : result;
+	}
+
+	/* Depth first search over the variables from v. Stops when each variable
+	 * was seen with both values. */
+	private void search(int v) {
+		if (v == mVars) {
+			for (int i = 0; i < mVars; ++i) {
+				if (0 == mValue[i])
+					mEver0 |= 1 << i;
+				else
+					mEver1 |= 1 << i;
+			}
+			return;
+		}
+
+		int all = (1 << mVars) - 1;
+		for (byte x = 0; x <= 1 && (mEver0 != all || mEver1 != all); ++x) {
+			boolean valid = true;
+			for (int k = 0; k < mOfSize[v]; ++k) {
+				int c = mOf[v][k];
+				mMines[c] += x;
+				--mLeft[c];
+				if (mMines[c] > mNeed[c] || mMines[c] + mLeft[c] < mNeed[c])
+					valid = false;
+			}
+			if (valid) {
+				mValue[v] = x;
+				search(v + 1);
+			}
+			for (int k = 0; k < mOfSize[v]; ++k) {
+				int c = mOf[v][k];
+				mMines[c] -= x;
+				++mLeft[c];
+			}
+		}
+	}
+
+	private static boolean inner(int k) {
+		int r = k / SIDE;
+		int c = k % SIDE;
+		return r > 0 && r < SIDE - 1 && c > 0 && c < SIDE - 1;
+	}
+
+	/* map[k] is the field of the window that is at k after the symmetry */
+	private static int[][] symmetries() {
+		int m = SIDE - 1;
+		int[][] s = new int[8][FIELDS];
+		for (int r = 0; r < SIDE; ++r) {
+			for (int c = 0; c < SIDE; ++c) {
+				int k = r * SIDE + c;
+				s[0][k] = r * SIDE + c;
+				s[1][k] = c * SIDE + (m - r);
+				s[2][k] = (m - r) * SIDE + (m - c);
+				s[3][k] = (m - c) * SIDE + r;
+				s[4][k] = r * SIDE + (m - c);
+				s[5][k] = c * SIDE + r;
+				s[6][k] = (m - r) * SIDE + c;
+				s[7][k] = (m - c) * SIDE + (m - r);
+			}
+		}
+		return s;
+	}
+
+	private static int[][] hood() {
+		int[][] hood = new int[FIELDS][];
+		for (int k = 0; k < FIELDS; ++k) {
+			if (!inner(k))
+				continue;
+			hood[k] = new int[8];
+			int n = 0;
+			for (int dr = -1; dr <= 1; ++dr) {
+				for (int dc = -1; dc <= 1; ++dc) {
+					if (dr != 0 || dc != 0)
+						hood[k][n++] = k + dr * SIDE + dc;
+				}
+			}
+		}
+		return hood;
+	}
+}
@@ -0,0 +1,69 @@
+package de.nisble.droidsweeper.game.engine;
+
+import de.nisble.droidsweeper.game.Position;
+
+/** The probability of each field of a board to be a bomb, as seen by the
+ * player.<br>
+ * Revealed fields have no probability (NaN). Hidden fields that are proven to
+ * be safe have 0, the ones that are proven to be bombs have 1. The result of
+ * the {@link ProbabilitySolver exact solver} and of an approximation look the
+ * same, so a view doesn't care which one produced it.
+ * <ul>
+ * <li>Immutable: Members are public final and capitalized.</li>
+ * </ul>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class Probabilities {
+	/** True if the probabilities are exact, false if they are estimated. */
+	public final boolean EXACT;
+	/** The width of the board. */
+	public final int X;
+	/** The height of the board. */
+	public final int Y;
+
+	private final float[] mMine;
+
+	/* Takes the ownership of the array */
+	Probabilities(int x, int y, float[] mine, boolean exact) {
+		X = x;
+		Y = y;
+		mMine = mine;
+		EXACT = exact;
+	}
+
+	/** @param p The position of a field.
+	 * @return The probability of the field to be a bomb or NaN if it is
+	 *         revealed.
+	 * @throws IndexOutOfBoundsException on a position out of the bounds of the
+	 *             board. */
+	public double get(Position p) throws IndexOutOfBoundsException {
+		if (p.X < 0 || p.X >= X || p.Y < 0 || p.Y >= Y)
+			throw new IndexOutOfBoundsException("Position out of bounds: X:" + p.X + " Y:" + p.Y);
+		return mMine[p.Y * X + p.X];
+	}
+
+	/** @param index The index y * X + x of a field.
+	 * @return The probability of the field to be a bomb or NaN if it is
+	 *         revealed. */
+	public double get(int index) {
+		return mMine[index];
+	}
+
+	/** Get the hidden field with the lowest probability to be a bomb. Of equal
+	 * fields the first one is returned.
+	 * @return The field or null if there is no hidden field that might be
+	 *         safe. */
+	public Position safest() {
+		int best = -1;
+		for (int i = 0; i < mMine.length; ++i) {
+			// NaN fails each comparison
+			if (mMine[i] < 1 && (best < 0 || mMine[i] < mMine[best]))
+				best = i;
+		}
+		return (best < 0) ? null : new Position(best % X, best / X);
+	}
+
+	@Override
+	public String toString() {
+		return "Probabilities [EXACT=" + EXACT + ", X=" + X + ", Y=" + Y + "]";
+	}
+}
@@ -0,0 +1,818 @@
+package de.nisble.droidsweeper.game.engine;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Estimates the probability of each hidden field to be a bomb by sampling
+ * within a time box (e.g. for frontiers that are too big for the
+ * {@link ProbabilitySolver}).<br>
+ * The frontier of a {@link HintSolver} is split into independent components
+ * like the exact solver does. Instead of enumerating all assignments of a
+ * component, random assignments are drawn: The fields are visited in the
+ * order of the search. Each field gets a value that keeps all its numbers
+ * satisfiable. If both values do, a bomb is drawn with the share of the
+ * completions of its numbers (counted over their open fields) that have one.
+ * A field of more than 8 numbers combines the odds r / (l - r) of each number
+ * that needs r bombs on l open fields instead. The assignment is weighted by 1 / the probability to draw it, so the
+ * weighted counts estimate the counts of the exact enumeration without bias
+ * (sequential importance sampling). A draw that runs into a dead end has the
+ * weight 0.<br>
+ * Along a long component the weights still spread over many orders of
+ * magnitude, until a few draws dominate. So a run draws a batch of
+ * assignments side by side and resamples them by their weights once they
+ * spread too far (sequential Monte Carlo). The run counts by the product of
+ * the mean weights, kept in the log, so long components don't overflow. Each
+ * assignment is also weighted by the odds of the density of the remaining
+ * bombs per bomb, which is taken out of the counts at the end. So the draws
+ * follow the counts of bombs that matter for the combination.<br>
+ * The runs of a component are independent, so the effective sample size (sum
+ * of the weights)^2 / (sum of the squared weights) of the runs is tracked per
+ * component. Once each component had a run, the time goes to the component
+ * where it is smallest. If it is below {@link #MIN_EFFECTIVE} for a
+ * component, there is no estimate.<br>
+ * The estimated counts of the components are combined like the exact ones.
+ * If that is too expensive (i.e. thousands of components), the remaining
+ * bombs are assumed to be spread with the density of the unknown fields, so
+ * each component is weighted on its own by the odds of that density.<br>
+ * The workers take the first run of each component from a shared counter.
+ * Each worker has its own {@link SplitMix64} and adds the weights to its own
+ * arrays, which are added up at the end. So the count of draws grows linearly
+ * with the count of workers.
+ * <ul>
+ * <li>Not thread-safe: Use one instance per thread. The workers are owned by
+ * the instance.</li>
+ * </ul>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class ProbabilitySampler implements Closeable {
+	/** Default time box of a call in milliseconds. */
+	public static final long DEFAULT_MILLIS = 30;
+
+	/** Least effective count of runs of each component. Below that the
+	 * estimate isn't trusted. */
+	public static final double MIN_EFFECTIVE = 8;
+
+	/* Draws of a run of a component */
+	private static final int BATCH = 512;
+	/* Weights are moved into the log once they grow beyond */
+	private static final double FOLD = 1e150;
+	/* Most numbers of a field whose completions are counted for its draw */
+	private static final int LOOKAHEAD = 8;
+
+	private final int mWorkers;
+	private ExecutorService mExecutor = null;
+	private final SplitMix64 mRandom;
+	private long mDraws = 0;
+	private double mEffective = 0;
+
+	/** Create a sampler that samples on one worker per available processor.
+	 * On a single processor it samples on the calling thread. */
+	public ProbabilitySampler() {
+		this((Runtime.getRuntime().availableProcessors() > 1) ? Runtime.getRuntime().availableProcessors() : 0,
+				System.nanoTime());
+	}
+
+	/** Create a sampler.
+	 * @param workers The count of worker threads. 0 to sample on the calling
+	 *            thread.
+	 * @param seed The seed of the generators of the workers. */
+	public ProbabilitySampler(int workers, long seed) {
+		if (workers < 0)
+			throw new IllegalArgumentException("Invalid count of workers: " + workers);
+		mWorkers = workers;
+		mRandom = new SplitMix64(seed);
+	}
+
+	/** Estimate the probabilities of the current state of a game within
+	 * {@link #DEFAULT_MILLIS}.
+	 * @see #sample(HintSolver, long) */
+	public Probabilities sample(HintSolver hints) {
+		return sample(hints, DEFAULT_MILLIS);
+	}
+
+	/** Estimate the probabilities of the current state of a game.<br>
+	 * Blocks for about the given time and returns the estimate of all draws
+	 * until then.
+	 * @param hints The hint solver that follows the game. Its proofs are
+	 *            brought up to date first.
+	 * @param milliseconds The time box.
+	 * @return The estimated probabilities or null if the count of bombs is
+	 *         unknown or a component got less than {@link #MIN_EFFECTIVE}
+	 *         effective runs in time. */
+	public Probabilities sample(HintSolver hints, long milliseconds) {
+		final long deadline = System.nanoTime() + milliseconds * 1000000L;
+		mDraws = 0;
+		mEffective = 0;
+
+		hints.update();
+		Topology t = hints.topology();
+		if (null == t || hints.bombs() < 0)
+			return null;
+
+		final Frontier f = new Frontier(hints, t);
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger draws = new AtomicInteger();
+		// The draws are weighted by the odds of the density per bomb
+		int remaining = hints.bombs() - hints.minesTotal();
+		int unknown = hints.unknownTotal();
+		final double odds = (remaining > 0 && remaining < unknown) ? (double) remaining / (unknown - remaining) : 1;
+
+		int chains = Math.max(1, mWorkers);
+		List<Callable<Worker>> tasks = new ArrayList<Callable<Worker>>(chains);
+		for (int w = 0; w < chains; ++w) {
+			final SplitMix64 random = mRandom.split();
+			tasks.add(new Callable<Worker>() {
+				@Override
+				public Worker call() {
+					Worker worker = new Worker(f, random, odds);
+					worker.run(deadline, next, draws);
+					return worker;
+				}
+			});
+		}
+		List<Worker> workers = (f.COMPONENTS > 0) ? run(tasks) : new ArrayList<Worker>();
+		mDraws = draws.get() * (long) BATCH;
+
+		// Add up the weights of the workers relative to the biggest one
+		int n = f.COMPONENTS;
+		int[][] cells = new int[n][];
+		double[][] ways = new double[n][];
+		double[][][] cellWays = new double[n][][];
+		double tilt = Math.log(odds);
+		mEffective = Double.POSITIVE_INFINITY;
+		for (int c = 0; c < n; ++c) {
+			int from = f.START[c];
+			int length = f.START[c + 1] - from;
+			int bombs = f.MOST[c] + 1;
+			double scale = Double.NEGATIVE_INFINITY;
+			for (Worker w : workers)
+				scale = Math.max(scale, w.mScale[c]);
+			if (Double.NEGATIVE_INFINITY == scale) {
+				mEffective = 0;
+				return null;
+			}
+
+			cells[c] = Arrays.copyOfRange(f.CELLS, from, from + length);
+			ways[c] = new double[bombs];
+			cellWays[c] = new double[length][bombs];
+			double sum = 0;
+			double squares = 0;
+			for (Worker w : workers) {
+				if (Double.NEGATIVE_INFINITY == w.mScale[c])
+					continue;
+				double k = Math.exp(w.mScale[c] - scale);
+				sum += k * w.mSum[c];
+				squares += k * k * w.mSquares[c];
+				for (int m = 0; m < bombs; ++m)
+					ways[c][m] += k * w.mCounts[f.OFFSET[c] + m];
+				for (int i = 0; i < length; ++i) {
+					for (int m = 0; m < bombs; ++m)
+						cellWays[c][i][m] += k * w.mCounts[f.OFFSET[c] + (i + 1) * bombs + m];
+				}
+			}
+			mEffective = Math.min(mEffective, sum * sum / squares);
+
+			// Take the odds of the density back out of the counts
+			double[] log = new double[bombs];
+			double max = Double.NEGATIVE_INFINITY;
+			for (int m = 0; m < bombs; ++m) {
+				log[m] = Math.log(ways[c][m]) - m * tilt;
+				max = Math.max(max, log[m]);
+			}
+			for (int m = 0; m < bombs; ++m) {
+				double k = (ways[c][m] > 0) ? Math.exp(log[m] - max) / ways[c][m] : 0;
+				ways[c][m] *= k;
+				for (int i = 0; i < length; ++i)
+					cellWays[c][i][m] *= k;
+			}
+		}
+		if (mEffective < MIN_EFFECTIVE)
+			return null;
+
+		Probabilities p = ProbabilitySolver.combine(hints, t, cells, ways, cellWays, false);
+		return (p != null) ? p : spread(hints, t, cells, ways, cellWays);
+	}
+
+	/** @return The count of draws of the last call. */
+	public long getDraws() {
+		return mDraws;
+	}
+
+	/** @return The effective sample size of the last call: (sum of the
+	 *         weights)^2 / (sum of the squared weights) of the runs of the
+	 *         component where it is smallest. Infinite without components. */
+	public double getEffectiveSamples() {
+		return mEffective;
+	}
+
+	/** Stop the workers. The sampler can't be used afterwards. */
+	@Override
+	public void close() {
+		if (mExecutor != null) {
+			mExecutor.shutdownNow();
+			mExecutor = null;
+		}
+	}
+
+	/* Weight each component on its own by the odds of the density of the
+	 * remaining bombs on the unknown fields. At a density of 0 or 1 the odds
+	 * are infinite: All unknown fields are safe or all are bombs, so only the
+	 * count of 0 or of all bombs of a component has weight. */
+	private static Probabilities spread(HintSolver hints, Topology t, int[][] cells, double[][] ways,
+			double[][][] cellWays) {
+		int remaining = hints.bombs() - hints.minesTotal();
+		int unknown = hints.unknownTotal();
+		if (remaining < 0 || remaining > unknown)
+			return null;
+		boolean none = 0 == remaining;
+		boolean all = remaining == unknown;
+		double odds = (none || all) ? 0 : Math.log((double) remaining / (unknown - remaining));
+
+		double frontier = 0;
+		int interior = unknown;
+		float[][] estimates = new float[cells.length][];
+		for (int c = 0; c < cells.length; ++c) {
+			interior -= cells[c].length;
+			double[] w = new double[ways[c].length];
+			double max = Double.NEGATIVE_INFINITY;
+			for (int m = 0; m < w.length; ++m) {
+				if (none)
+					w[m] = (0 == m) ? 0 : Double.NEGATIVE_INFINITY;
+				else if (all)
+					w[m] = (cells[c].length == m) ? 0 : Double.NEGATIVE_INFINITY;
+				else
+					w[m] = m * odds;
+				max = Math.max(max, w[m]);
+			}
+			if (Double.NEGATIVE_INFINITY == max)
+				return null;
+			double z = 0;
+			double bombs = 0;
+			for (int m = 0; m < w.length; ++m) {
+				w[m] = ways[c][m] * Math.exp(w[m] - max);
+				z += w[m];
+				bombs += m * w[m];
+			}
+			if (!(z > 0))
+				return null;
+			frontier += bombs / z;
+
+			estimates[c] = new float[cells[c].length];
+			for (int i = 0; i < cells[c].length; ++i) {
+				double p = 0;
+				for (int m = 0; m < w.length; ++m)
+					p += cellWays[c][i][m] * w[m];
+				estimates[c][i] = (float) (p / z);
+			}
+		}
+
+		float inner = (interior > 0) ? (float) Math.min(1, Math.max(0, (remaining - frontier) / interior)) : 0;
+		float[] mine = ProbabilitySolver.fill(hints, t, inner);
+		for (int c = 0; c < cells.length; ++c) {
+			for (int i = 0; i < cells[c].length; ++i)
+				mine[cells[c][i]] = estimates[c][i];
+		}
+		return new Probabilities(t.X, t.Y, mine, false);
+	}
+
+	private List<Worker> run(List<Callable<Worker>> tasks) {
+		List<Worker> workers = new ArrayList<Worker>(tasks.size());
+		if (0 == mWorkers) {
+			for (Callable<Worker> c : tasks) {
+				try {
+					workers.add(c.call());
+				} catch (Exception e) {
+					throw new IllegalStateException("Sampling failed", e);
+				}
+			}
+			return workers;
+		}
+
+		if (null == mExecutor)
+			mExecutor = Executors.newFixedThreadPool(mWorkers, new DaemonThreadFactory("Sampler"));
+		try {
+			for (Future<Worker> f : mExecutor.invokeAll(tasks))
+				workers.add(f.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while sampling", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Sampling failed", e.getCause());
+		}
+		return workers;
+	}
+
+	/* The components of the frontier. Read only, shared by the workers. */
+	private static final class Frontier {
+		/* The unknown fields, the ones of a component in a row in
+		 * breadth-first order */
+		final int[] CELLS;
+		/* The fields of each number as indices into CELLS */
+		final int[][] CONSTRAINTS;
+		final int[] NEED;
+		/* The numbers of each field */
+		final int[][] OF;
+
+		final int COMPONENTS;
+		/* The first field of each component and the end of the last */
+		final int[] START;
+		/* The first number of each component and the end of the last */
+		final int[] NUMBERS;
+		/* The most bombs of each component */
+		final int[] MOST;
+		/* The first count of each component. The counts of a component are
+		 * (fields + 1) * (MOST + 1): By count of bombs in total, then per
+		 * field. */
+		final int[] OFFSET;
+		final int COUNTS;
+		/* The fields whose draw counts the completions of their numbers and
+		 * the most fields of these numbers */
+		final boolean[] COUNTED;
+		final int WINDOW;
+
+		Frontier(HintSolver hints, Topology t) {
+			int size = t.size();
+			int[] neighbours = t.neighbours();
+			int[] local = new int[size];
+			Arrays.fill(local, -1);
+			boolean[] seen = new boolean[size];
+			int[] cells = new int[size];
+			int[] numbers = new int[hints.frontierSize()];
+			int[] start = new int[numbers.length + 1];
+			int[] first = new int[numbers.length + 1];
+			int[] most = new int[numbers.length];
+			int cellCount = 0;
+			int numberCount = 0;
+			int components = 0;
+
+			for (int k = 0; k < numbers.length; ++k) {
+				int f = hints.frontier(k);
+				if (seen[f])
+					continue;
+				seen[f] = true;
+				start[components] = cellCount;
+				first[components] = numberCount;
+				int q = numberCount;
+				numbers[numberCount++] = f;
+				int need = 0;
+				for (; q < numberCount; ++q) {
+					int a = numbers[q];
+					need += hints.need(a);
+					for (int j = t.start(a); j < t.end(a); ++j) {
+						int u = neighbours[j];
+						if (HintSolver.UNKNOWN != hints.state(u) || local[u] >= 0)
+							continue;
+						local[u] = cellCount;
+						cells[cellCount++] = u;
+						for (int l = t.start(u); l < t.end(u); ++l) {
+							int b = neighbours[l];
+							if (!seen[b] && hints.isFrontier(b)) {
+								seen[b] = true;
+								numbers[numberCount++] = b;
+							}
+						}
+					}
+				}
+				most[components] = Math.min(need, cellCount - start[components]);
+				++components;
+			}
+			start[components] = cellCount;
+			first[components] = numberCount;
+
+			COMPONENTS = components;
+			START = Arrays.copyOf(start, components + 1);
+			NUMBERS = Arrays.copyOf(first, components + 1);
+			MOST = Arrays.copyOf(most, components);
+			OFFSET = new int[components];
+			int counts = 0;
+			for (int c = 0; c < components; ++c) {
+				OFFSET[c] = counts;
+				counts += (START[c + 1] - START[c] + 1) * (MOST[c] + 1);
+			}
+			COUNTS = counts;
+
+			CELLS = Arrays.copyOf(cells, cellCount);
+			CONSTRAINTS = new int[numberCount][];
+			NEED = new int[numberCount];
+			int[] of = new int[cellCount];
+			int[] hood = new int[t.end(0) - t.start(0) + 32];
+			for (int c = 0; c < numberCount; ++c) {
+				int a = numbers[c];
+				int n = 0;
+				for (int j = t.start(a); j < t.end(a); ++j) {
+					if (HintSolver.UNKNOWN == hints.state(neighbours[j])) {
+						if (n == hood.length)
+							hood = Arrays.copyOf(hood, n * 2);
+						hood[n++] = local[neighbours[j]];
+					}
+				}
+				CONSTRAINTS[c] = Arrays.copyOf(hood, n);
+				NEED[c] = hints.need(a);
+				for (int k = 0; k < n; ++k)
+					++of[hood[k]];
+			}
+
+			OF = new int[cellCount][];
+			for (int i = 0; i < cellCount; ++i)
+				OF[i] = new int[of[i]];
+			Arrays.fill(of, 0);
+			for (int c = 0; c < numberCount; ++c) {
+				for (int i : CONSTRAINTS[c])
+					OF[i][of[i]++] = c;
+			}
+
+			// The needs of the numbers must fit the keys of the proposals
+			COUNTED = new boolean[cellCount];
+			int window = 0;
+			for (int i = 0; i < cellCount; ++i) {
+				if (OF[i].length < 2 || OF[i].length > LOOKAHEAD)
+					continue;
+				int fields = 0;
+				boolean fits = true;
+				for (int a : OF[i]) {
+					fields += CONSTRAINTS[a].length;
+					fits &= CONSTRAINTS[a].length < 16;
+				}
+				COUNTED[i] = fits;
+				if (fits)
+					window = Math.max(window, fields);
+			}
+			WINDOW = window;
+		}
+	}
+
+	/* Runs of a worker */
+	private static final class Worker {
+		private final Frontier mFrontier;
+		private final SplitMix64 mRandom;
+		/* Odds of the density and of a field by its count of numbers */
+		private final double mOdds;
+		private final double[] mTilt;
+
+		/* Weighted counts like the ones of the exact solver. The weights of a
+		 * component are relative to exp(mScale), the biggest log weight of
+		 * its runs. mSum and mSquares add up the weights of the runs. */
+		final double[] mCounts;
+		final double[] mScale;
+		final double[] mSum;
+		final double[] mSquares;
+
+		private final int[] mLeft;
+		/* The draws of the current run and the ones they are resampled into:
+		 * The mines of the numbers and the values of the fields by draw */
+		private byte[] mMines;
+		private byte[] mValue;
+		private int[] mBombs;
+		private byte[] mNextMines;
+		private byte[] mNextValue;
+		private int[] mNextBombs;
+		private final double[] mWeight = new double[BATCH];
+
+		/* Proposals by field and needs of its numbers (open addressing, the
+		 * keys are + 1 so 0 is free) */
+		private long[] mKeys = new long[1 << 10];
+		private double[] mProposals = new double[1 << 10];
+		private int mProposed = 0;
+		/* Scratch of the counting: the open fields of the numbers of a field,
+		 * which of the numbers they belong to, the needs and the open fields
+		 * left per number and the weights of safe and bomb */
+		private final int[] mWindow;
+		private final int[] mMask;
+		private final int[] mNeed = new int[LOOKAHEAD];
+		private final int[] mOpen = new int[LOOKAHEAD];
+		private final double[] mCompletions = new double[2];
+
+		Worker(Frontier f, SplitMix64 random, double odds) {
+			mFrontier = f;
+			mRandom = random;
+			mOdds = odds;
+			int most = 0;
+			for (int[] of : f.OF)
+				most = Math.max(most, of.length);
+			mTilt = new double[most + 1];
+			for (int k = 0; k <= most; ++k)
+				mTilt[k] = Math.pow(odds, 1 - k);
+			mCounts = new double[f.COUNTS];
+			mScale = new double[f.COMPONENTS];
+			Arrays.fill(mScale, Double.NEGATIVE_INFINITY);
+			mSum = new double[f.COMPONENTS];
+			mSquares = new double[f.COMPONENTS];
+
+			int length = 0;
+			int numbers = 0;
+			for (int c = 0; c < f.COMPONENTS; ++c) {
+				length = Math.max(length, f.START[c + 1] - f.START[c]);
+				numbers = Math.max(numbers, f.NUMBERS[c + 1] - f.NUMBERS[c]);
+			}
+			mLeft = new int[f.NEED.length];
+			mMines = new byte[BATCH * numbers];
+			mValue = new byte[BATCH * length];
+			mBombs = new int[BATCH];
+			mNextMines = new byte[BATCH * numbers];
+			mNextValue = new byte[BATCH * length];
+			mNextBombs = new int[BATCH];
+			mWindow = new int[f.WINDOW];
+			mMask = new int[f.WINDOW];
+		}
+
+		void run(long deadline, AtomicInteger next, AtomicInteger draws) {
+			Frontier f = mFrontier;
+			// At least one run of each component
+			for (int c = next.getAndIncrement(); c < f.COMPONENTS; c = next.getAndIncrement()) {
+				run(c);
+				draws.incrementAndGet();
+			}
+			// Then the one with the least effective draws so far
+			while (System.nanoTime() < deadline) {
+				int worst = 0;
+				double least = Double.POSITIVE_INFINITY;
+				for (int c = 0; c < f.COMPONENTS; ++c) {
+					double effective = (mSum[c] > 0) ? mSum[c] * mSum[c] / mSquares[c] : 0;
+					if (effective < least) {
+						least = effective;
+						worst = c;
+					}
+				}
+				run(worst);
+				draws.incrementAndGet();
+			}
+		}
+
+		/* Draw BATCH assignments of component c side by side, field by field.
+		 * If both values of a field keep its numbers satisfiable, a bomb is
+		 * drawn with the probability of the completions of its numbers that
+		 * have it, each weighted by the odds of the density per bomb. A draw
+		 * is weighted by its odds of the density per bomb / the probability
+		 * to draw it. Once the weights spread too far, the draws are
+		 * resampled by their weights. The run is counted by the mean weight
+		 * of the draws times the means at the resamplings. */
+		private void run(int c) {
+			Frontier f = mFrontier;
+			int from = f.START[c];
+			int length = f.START[c + 1] - from;
+			int first = f.NUMBERS[c];
+			int numbers = f.NUMBERS[c + 1] - first;
+			for (int a = first; a < first + numbers; ++a)
+				mLeft[a] = f.CONSTRAINTS[a].length;
+			Arrays.fill(mMines, 0, BATCH * numbers, (byte) 0);
+			Arrays.fill(mBombs, 0);
+			Arrays.fill(mWeight, 1);
+
+			double log = 0;
+			double sum = 0;
+			for (int j = 0; j < length; ++j) {
+				int i = from + j;
+				int[] of = f.OF[i];
+				double squares = 0;
+				sum = 0;
+				for (int d = 0; d < BATCH; ++d) {
+					double weight = mWeight[d];
+					if (0 == weight)
+						continue;
+
+					int mines = d * numbers - first;
+					boolean safe = true;
+					boolean bomb = true;
+					double odds = mTilt[of.length];
+					for (int a : of) {
+						int need = f.NEED[a] - mMines[mines + a];
+						if (need > mLeft[a] - 1)
+							safe = false;
+						if (need < 1)
+							bomb = false;
+						odds *= (double) need / (mLeft[a] - need);
+					}
+
+					int v;
+					if (safe && bomb) {
+						double q = f.COUNTED[i] ? propose(i, of, mines) : odds / (1 + odds);
+						if (q < 0) {
+							// No completion
+							mWeight[d] = 0;
+							continue;
+						}
+						if ((mRandom.nextLong() >>> 11) * 0x1.0p-53 < q) {
+							v = 1;
+							weight *= mOdds / q;
+						} else {
+							v = 0;
+							weight /= 1 - q;
+						}
+					} else if (safe || bomb) {
+						v = bomb ? 1 : 0;
+						if (bomb)
+							weight *= mOdds;
+					} else {
+						// Dead end
+						mWeight[d] = 0;
+						continue;
+					}
+
+					mValue[d * length + j] = (byte) v;
+					if (1 == v) {
+						++mBombs[d];
+						for (int a : of)
+							++mMines[mines + a];
+					}
+					mWeight[d] = weight;
+					sum += weight;
+					squares += weight * weight;
+				}
+				for (int a : of)
+					--mLeft[a];
+
+				if (0 == sum)
+					return;
+				if (j + 1 < length && 2 * sum * sum < BATCH * squares) {
+					log += Math.log(sum / BATCH);
+					resample(sum, j + 1, length, numbers);
+				} else if (sum > FOLD) {
+					log += Math.log(sum / BATCH);
+					for (int d = 0; d < BATCH; ++d)
+						mWeight[d] *= BATCH / sum;
+					sum = BATCH;
+				}
+			}
+			log += Math.log(sum / BATCH);
+
+			int most = f.MOST[c] + 1;
+			int offset = f.OFFSET[c];
+			if (log > mScale[c]) {
+				// Relative to the new biggest weight
+				double k = (Double.NEGATIVE_INFINITY == mScale[c]) ? 0 : Math.exp(mScale[c] - log);
+				for (int n = offset; n < offset + (length + 1) * most; ++n)
+					mCounts[n] *= k;
+				mSum[c] *= k;
+				mSquares[c] *= k * k;
+				mScale[c] = log;
+			}
+			double z = Math.exp(log - mScale[c]);
+			mSum[c] += z;
+			mSquares[c] += z * z;
+			for (int d = 0; d < BATCH; ++d) {
+				if (0 == mWeight[d])
+					continue;
+				double w = z * mWeight[d] / sum;
+				int bombs = mBombs[d];
+				mCounts[offset + bombs] += w;
+				for (int j = 0; j < length; ++j) {
+					if (1 == mValue[d * length + j])
+						mCounts[offset + (j + 1) * most + bombs] += w;
+				}
+			}
+		}
+
+		/* The probability to draw a bomb on field i: The share of the
+		 * completions of its numbers that have one. Cached by the needs of
+		 * the numbers, as the open fields only depend on i. -1 if there is no
+		 * completion. */
+		private double propose(int i, int[] of, int mines) {
+			Frontier f = mFrontier;
+			long key = i;
+			for (int k = 0; k < of.length; ++k)
+				key = key << 4 | (f.NEED[of[k]] - mMines[mines + of[k]]);
+			key = (key << 4 * (LOOKAHEAD - of.length)) + 1;
+			int mask = mKeys.length - 1;
+			int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 40) & mask;
+			while (mKeys[slot] != 0) {
+				if (mKeys[slot] == key)
+					return mProposals[slot];
+				slot = (slot + 1) & mask;
+			}
+
+			// The open fields of the numbers, field i first
+			int n = 1;
+			mWindow[0] = i;
+			mMask[0] = 0;
+			for (int k = 0; k < of.length; ++k) {
+				mNeed[k] = f.NEED[of[k]] - mMines[mines + of[k]];
+				mOpen[k] = 0;
+				for (int u : f.CONSTRAINTS[of[k]]) {
+					if (u < i)
+						continue;
+					int w = 0;
+					while (w < n && mWindow[w] != u)
+						++w;
+					if (w == n) {
+						mWindow[n] = u;
+						mMask[n++] = 0;
+					}
+					mMask[w] |= 1 << k;
+					++mOpen[k];
+				}
+			}
+			mCompletions[0] = 0;
+			mCompletions[1] = 0;
+			count(0, n, of.length, 0, 1);
+			double total = mCompletions[0] + mCompletions[1];
+			double q = (total > 0) ? mCompletions[1] / total : -1;
+
+			mKeys[slot] = key;
+			mProposals[slot] = q;
+			if (++mProposed * 2 > mKeys.length)
+				grow();
+			return q;
+		}
+
+		/* Add the weights of the completions of the window from field w on
+		 * that meet the needs of the k numbers to mCompletions by the value
+		 * of the first field. */
+		private void count(int w, int n, int k, int value, double weight) {
+			if (w == n) {
+				for (int a = 0; a < k; ++a) {
+					if (mNeed[a] != 0)
+						return;
+				}
+				mCompletions[value] += weight;
+				return;
+			}
+
+			int mask = mMask[w];
+			boolean safe = true;
+			boolean bomb = true;
+			for (int a = 0; a < k; ++a) {
+				if (0 == (mask & 1 << a))
+					continue;
+				--mOpen[a];
+				if (mNeed[a] > mOpen[a])
+					safe = false;
+				if (mNeed[a] < 1)
+					bomb = false;
+			}
+			if (safe)
+				count(w + 1, n, k, (0 == w) ? 0 : value, weight);
+			if (bomb) {
+				for (int a = 0; a < k; ++a) {
+					if (0 != (mask & 1 << a))
+						--mNeed[a];
+				}
+				count(w + 1, n, k, (0 == w) ? 1 : value, weight * mOdds);
+				for (int a = 0; a < k; ++a) {
+					if (0 != (mask & 1 << a))
+						++mNeed[a];
+				}
+			}
+			for (int a = 0; a < k; ++a) {
+				if (0 != (mask & 1 << a))
+					++mOpen[a];
+			}
+		}
+
+		/* Double the table of the proposals */
+		private void grow() {
+			long[] keys = mKeys;
+			double[] proposals = mProposals;
+			mKeys = new long[keys.length * 2];
+			mProposals = new double[keys.length * 2];
+			int mask = mKeys.length - 1;
+			for (int s = 0; s < keys.length; ++s) {
+				if (0 == keys[s])
+					continue;
+				int slot = (int) (keys[s] * 0x9E3779B97F4A7C15L >>> 40) & mask;
+				while (mKeys[slot] != 0)
+					slot = (slot + 1) & mask;
+				mKeys[slot] = keys[s];
+				mProposals[slot] = proposals[s];
+			}
+		}
+
+		/* Draw BATCH times from the draws by their weights (systematic
+		 * resampling). Each new draw has the weight 1. */
+		private void resample(double sum, int drawn, int length, int numbers) {
+			double step = sum / BATCH;
+			double r = (mRandom.nextLong() >>> 11) * 0x1.0p-53;
+			// Rounding must not end on a dead end
+			int last = BATCH - 1;
+			while (0 == mWeight[last])
+				--last;
+			double cumulative = mWeight[0];
+			int d = 0;
+			for (int n = 0; n < BATCH; ++n) {
+				double u = (r + n) * step;
+				while (cumulative <= u && d < last)
+					cumulative += mWeight[++d];
+				System.arraycopy(mValue, d * length, mNextValue, n * length, drawn);
+				System.arraycopy(mMines, d * numbers, mNextMines, n * numbers, numbers);
+				mNextBombs[n] = mBombs[d];
+			}
+
+			byte[] b = mValue;
+			mValue = mNextValue;
+			mNextValue = b;
+			b = mMines;
+			mMines = mNextMines;
+			mNextMines = b;
+			int[] i = mBombs;
+			mBombs = mNextBombs;
+			mNextBombs = i;
+			Arrays.fill(mWeight, 1);
+		}
+	}
+}
@@ -0,0 +1,590 @@
+package de.nisble.droidsweeper.game.engine;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Exact solver of the probability of each hidden field to be a bomb.<br>
+ * It takes the frontier of a {@link HintSolver}: The revealed numbers with
+ * unknown neighbours. Their unknown neighbours are split into independent
+ * components: Two fields are in the same component if they are (indirectly)
+ * connected by numbers. Each component is enumerated on its own: All
+ * assignments of bombs to its fields that satisfy its numbers are counted by
+ * the count of bombs they use, in total and per field. The components are
+ * enumerated in parallel.<br>
+ * The remaining bombs couple the components: The bombs that are not on the
+ * frontier are spread over the other unknown fields (the interior). So an
+ * assignment with k bombs on the frontier has C(interior, remaining - k)
+ * completions. The counts of the components are convolved and weighted by
+ * these binomials. This gives the exact probability of each frontier field
+ * and of the interior fields (which are all equal).<br>
+ * A click changes only the components around it. The components of the last
+ * call are kept with their counts and reused if their fields and numbers are
+ * unchanged.<br>
+ * The enumeration is exponential in the size of a component. Components that
+ * need more than {@link #MAX_NODES} search nodes and frontiers whose
+ * combination needs more than {@link #MAX_COMBINE} operations are not solved
+ * (e.g. huge custom boards). They need an approximation.<br>
+ * On the thread of the user interface the solver should be
+ * {@link #solve(HintSolver, long) time boxed}, because the node limit alone
+ * allows seconds on a slow device. A component that runs out of time is
+ * enumerated again by the next call.
+ * <ul>
+ * <li>Not thread-safe: Use one instance per thread. The workers are owned by
+ * the instance.</li>
+ * </ul>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class ProbabilitySolver implements Closeable {
+	/** Count of search nodes after which the enumeration of a component gives
+	 * up. */
+	public static final int MAX_NODES = 1 << 22;
+	/** Count of operations after which the combination of the components
+	 * gives up. */
+	public static final long MAX_COMBINE = 1L << 26;
+	/* Most counts per field and count of bombs of a component (2 MB) */
+	private static final int MAX_COUNTS = 1 << 18;
+	/* Search nodes between two looks at the clock */
+	private static final int CLOCK_NODES = 1 << 12;
+
+	private final int mWorkers;
+	private ExecutorService mExecutor = null;
+
+	/* The components of the last call */
+	private Map<Key, Component> mMemo = new HashMap<Key, Component>();
+	private long mHits = 0;
+	private long mMisses = 0;
+
+	/* Scratch: Stamps of the fields and numbers that are part of a component */
+	private int[] mCellStamp = new int[0];
+	private int[] mNumberStamp = new int[0];
+	private int mStamp = 0;
+	private int[] mCells = new int[0];
+	private int[] mNumbers = new int[0];
+	private int[] mLocal = new int[0];
+
+	/** Create a solver that enumerates on one worker per available processor.
+	 * On a single processor it enumerates on the calling thread. */
+	public ProbabilitySolver() {
+		this((Runtime.getRuntime().availableProcessors() > 1) ? Runtime.getRuntime().availableProcessors() : 0);
+	}
+
+	/** Create a solver.
+	 * @param workers The count of worker threads that enumerate the
+	 *            components. 0 to enumerate on the calling thread. */
+	public ProbabilitySolver(int workers) {
+		if (workers < 0)
+			throw new IllegalArgumentException("Invalid count of workers: " + workers);
+		mWorkers = workers;
+	}
+
+	/** Solve the current state of a game.
+	 * @param hints The hint solver that follows the game. Its proofs are
+	 *            brought up to date first.
+	 * @return The exact probabilities or null if the count of bombs is
+	 *         unknown, the frontier is too big or the revealed numbers
+	 *         contradict each other. */
+	public Probabilities solve(HintSolver hints) {
+		return solve(hints, false, 0);
+	}
+
+	/** Solve the current state of a game within a time box.<br>
+	 * The combination of the components is bounded by {@link #MAX_COMBINE}
+	 * and not time boxed.
+	 * @param hints The hint solver that follows the game. Its proofs are
+	 *            brought up to date first.
+	 * @param milliseconds The time box of the enumeration.
+	 * @return The exact probabilities or null if the count of bombs is
+	 *         unknown, the frontier is too big, the time is over or the
+	 *         revealed numbers contradict each other. */
+	public Probabilities solve(HintSolver hints, long milliseconds) {
+		return solve(hints, true, System.nanoTime() + milliseconds * 1000000L);
+	}
+
+	private Probabilities solve(HintSolver hints, boolean timed, long deadline) {
+		hints.update();
+		Topology t = hints.topology();
+		if (null == t || hints.bombs() < 0)
+			return null;
+
+		int size = t.size();
+		if (mCellStamp.length < size) {
+			mCellStamp = new int[size];
+			mNumberStamp = new int[size];
+			mCells = new int[size];
+			mNumbers = new int[size];
+			mLocal = new int[size];
+			mStamp = 0;
+		}
+		if (Integer.MAX_VALUE == mStamp) {
+			Arrays.fill(mCellStamp, 0);
+			Arrays.fill(mNumberStamp, 0);
+			mStamp = 0;
+		}
+		++mStamp;
+
+		List<Component> components = collect(hints, t);
+		if (!enumerate(components, timed, deadline))
+			return null;
+		int n = components.size();
+		int[][] cells = new int[n][];
+		double[][] ways = new double[n][];
+		double[][][] cellWays = new double[n][][];
+		for (int i = 0; i < n; ++i) {
+			Component c = components.get(i);
+			cells[i] = c.CELLS;
+			ways[i] = c.mWays;
+			cellWays[i] = c.mCellWays;
+		}
+		return combine(hints, t, cells, ways, cellWays, true);
+	}
+
+	/** @return The count of components that were reused from the last call
+	 *         since the solver was created. */
+	public long getHits() {
+		return mHits;
+	}
+
+	/** @return The count of components that were enumerated since the solver
+	 *         was created. */
+	public long getMisses() {
+		return mMisses;
+	}
+
+	/** Forget the components of the last call, so the next call enumerates
+	 * all components. */
+	public void clear() {
+		mMemo.clear();
+	}
+
+	/** Stop the workers. The solver can't be used afterwards. */
+	@Override
+	public void close() {
+		if (mExecutor != null) {
+			mExecutor.shutdownNow();
+			mExecutor = null;
+		}
+	}
+
+	/* Split the frontier into components. Components of the last call are
+	 * reused. */
+	private List<Component> collect(HintSolver hints, Topology t) {
+		int[] neighbours = t.neighbours();
+		Map<Key, Component> memo = new HashMap<Key, Component>();
+		List<Component> components = new ArrayList<Component>();
+
+		for (int k = 0; k < hints.frontierSize(); ++k) {
+			int f = hints.frontier(k);
+			if (mNumberStamp[f] == mStamp)
+				continue;
+
+			// Breadth-first search over the numbers and their unknown neighbours
+			int numbers = 0;
+			int cells = 0;
+			mNumberStamp[f] = mStamp;
+			mNumbers[numbers++] = f;
+			for (int q = 0; q < numbers; ++q) {
+				int a = mNumbers[q];
+				for (int j = t.start(a); j < t.end(a); ++j) {
+					int u = neighbours[j];
+					if (HintSolver.UNKNOWN != hints.state(u) || mCellStamp[u] == mStamp)
+						continue;
+					mCellStamp[u] = mStamp;
+					mCells[cells++] = u;
+					for (int l = t.start(u); l < t.end(u); ++l) {
+						int b = neighbours[l];
+						if (mNumberStamp[b] != mStamp && hints.isFrontier(b)) {
+							mNumberStamp[b] = mStamp;
+							mNumbers[numbers++] = b;
+						}
+					}
+				}
+			}
+
+			Component c = new Component(hints, t, Arrays.copyOf(mCells, cells), Arrays.copyOf(mNumbers, numbers),
+					mLocal);
+			Component old = mMemo.get(c.KEY);
+			if (old != null) {
+				c = old;
+				++mHits;
+			} else {
+				++mMisses;
+			}
+			memo.put(c.KEY, c);
+			components.add(c);
+		}
+
+		mMemo = memo;
+		return components;
+	}
+
+	/* Enumerate the new components. False if one of them gave up or ran out
+	 * of time. */
+	private boolean enumerate(List<Component> components, boolean timed, long deadline) {
+		List<Component> tasks = new ArrayList<Component>();
+		for (Component c : components) {
+			if (null == c.mWays && !c.mAborted) {
+				c.mTimed = timed;
+				c.mDeadline = deadline;
+				tasks.add(c);
+			}
+		}
+
+		if (0 == mWorkers || tasks.size() < 2) {
+			for (Component c : tasks)
+				c.call();
+		} else {
+			if (null == mExecutor)
+				mExecutor = Executors.newFixedThreadPool(mWorkers, new DaemonThreadFactory("Probabilities"));
+			try {
+				for (Future<Component> f : mExecutor.invokeAll(tasks))
+					f.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while enumerating", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Enumeration failed", e.getCause());
+			}
+		}
+
+		for (Component c : components) {
+			if (null == c.mWays)
+				return false;
+		}
+		return true;
+	}
+
+	/* Weight the components by the binomials of the interior. Component i
+	 * has the fields cells[i] and the counts of its assignments by count of
+	 * bombs ways[i] and per field cellWays[i]. Null if the combination is too
+	 * expensive or the counts contradict the remaining bombs. */
+	static Probabilities combine(HintSolver hints, Topology t, int[][] cells, double[][] ways, double[][][] cellWays,
+			boolean exact) {
+		int remaining = hints.bombs() - hints.minesTotal();
+		int interior = hints.unknownTotal();
+		int span = 0;
+		for (int i = 0; i < cells.length; ++i) {
+			interior -= cells[i].length;
+			span += ways[i].length - 1;
+		}
+		if (remaining < 0)
+			return null;
+
+		int n = cells.length;
+		int length = Math.min(span, remaining) + 1;
+		if ((long) n * length * length > MAX_COMBINE)
+			return null;
+
+		// Convolutions of the first i components
+		double[][] prefix = new double[n + 1][];
+		prefix[0] = new double[] { 1 };
+		for (int i = 0; i < n; ++i)
+			prefix[i + 1] = convolve(prefix[i], ways[i], remaining + 1);
+
+		// Completions of the interior for remaining - k bombs on the frontier
+		int low = Math.max(0, remaining - span);
+		double[] binomials = binomials(interior, remaining, low);
+
+		double[] total = prefix[n];
+		double z = 0;
+		double expected = 0;
+		for (int k = 0; k < total.length; ++k) {
+			double w = total[k] * binomials[remaining - k - low];
+			z += w;
+			expected += w * (remaining - k);
+		}
+		if (!(z > 0))
+			return null;
+
+		float[] mine = fill(hints, t, (interior > 0) ? (float) (expected / z / interior) : 0);
+
+		// Each component is weighted by the convolution of all others
+		double[] suffix = new double[] { 1 };
+		for (int i = n - 1; i >= 0; --i) {
+			double[] others = convolve(prefix[i], suffix, remaining + 1);
+
+			double[] g = new double[ways[i].length];
+			double zc = 0;
+			for (int m = 0; m < g.length; ++m) {
+				for (int k = 0; k < others.length && remaining - m - k >= low; ++k)
+					g[m] += others[k] * binomials[remaining - m - k - low];
+				zc += ways[i][m] * g[m];
+			}
+			if (!(zc > 0))
+				return null;
+
+			for (int j = 0; j < cells[i].length; ++j) {
+				double p = 0;
+				for (int m = 0; m < g.length; ++m)
+					p += cellWays[i][j][m] * g[m];
+				mine[cells[i][j]] = (float) (p / zc);
+			}
+
+			suffix = convolve(suffix, ways[i], remaining + 1);
+		}
+
+		return new Probabilities(t.X, t.Y, mine, exact);
+	}
+
+	/* The probabilities of the known fields. Unknown fields get the
+	 * probability of the interior. */
+	static float[] fill(HintSolver hints, Topology t, float interior) {
+		float[] mine = new float[t.size()];
+		for (int i = 0; i < mine.length; ++i) {
+			switch (hints.state(i)) {
+			case HintSolver.OPEN:
+				mine[i] = Float.NaN;
+				break;
+			case HintSolver.SAFE:
+				mine[i] = 0;
+				break;
+			case HintSolver.MINE:
+				mine[i] = 1;
+				break;
+			default:
+				mine[i] = interior;
+				break;
+			}
+		}
+		return mine;
+	}
+
+	/* The binomials C(fields, b) for b = low to high, relative to the biggest
+	 * one. */
+	static double[] binomials(int fields, int high, int low) {
+		double[] logs = new double[high - low + 1];
+		Arrays.fill(logs, Double.NEGATIVE_INFINITY);
+		int top = Math.min(high, fields);
+		if (top >= low) {
+			logs[top - low] = 0;
+			// C(f, b - 1) = C(f, b) * b / (f - b + 1)
+			for (int b = top; b > low; --b)
+				logs[b - 1 - low] = logs[b - low] + Math.log((double) b / (fields - b + 1));
+		}
+
+		double max = Double.NEGATIVE_INFINITY;
+		for (double l : logs)
+			max = Math.max(max, l);
+		double[] binomials = new double[logs.length];
+		for (int k = 0; k < logs.length; ++k)
+			binomials[k] = (max > Double.NEGATIVE_INFINITY) ? Math.exp(logs[k] - max) : 0;
+		return binomials;
+	}
+
+	/* Convolve a and b up to the given length. The result is scaled to a
+	 * maximum of 1, because only the ratios matter. */
+	private static double[] convolve(double[] a, double[] b, int limit) {
+		double[] c = new double[Math.min(a.length + b.length - 1, limit)];
+		for (int i = 0; i < a.length && i < c.length; ++i) {
+			if (0 == a[i])
+				continue;
+			for (int j = 0; j < b.length && i + j < c.length; ++j)
+				c[i + j] += a[i] * b[j];
+		}
+		scale(c, 1);
+		return c;
+	}
+
+	/* Scale v to a maximum of 1. Returns the divisor. */
+	private static double scale(double[] v, double fallback) {
+		double max = 0;
+		for (double d : v)
+			max = Math.max(max, d);
+		if (0 == max)
+			return fallback;
+		for (int i = 0; i < v.length; ++i)
+			v[i] /= max;
+		return max;
+	}
+
+	/* Identity of a component: Its sorted fields and its sorted numbers with
+	 * the bombs they need. */
+	private static final class Key {
+		private final int[] mValues;
+		private final int mHash;
+
+		Key(int[] values) {
+			mValues = values;
+			mHash = Arrays.hashCode(values);
+		}
+
+		@Override
+		public int hashCode() {
+			return mHash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			return mHash == ((Key) obj).mHash && Arrays.equals(mValues, ((Key) obj).mValues);
+		}
+	}
+
+	/* Independent part of the frontier and the counts of its assignments */
+	private static final class Component implements Callable<Component> {
+		/* The unknown fields in the order of the search */
+		final int[] CELLS;
+		/* The fields of each number as indices into CELLS */
+		final int[][] CONSTRAINTS;
+		/* The bombs each number needs among its unknown fields */
+		final int[] NEED;
+		final Key KEY;
+
+		/* Assignments by count of bombs, in total and per field with a bomb.
+		 * Null until enumerated. */
+		double[] mWays = null;
+		double[][] mCellWays = null;
+		/* Too big for the limits. Out of time leaves it unenumerated. */
+		boolean mAborted = false;
+		boolean mTimed = false;
+		long mDeadline = 0;
+
+		Component(HintSolver hints, Topology t, int[] cells, int[] numbers, int[] local) {
+			CELLS = cells;
+			CONSTRAINTS = new int[numbers.length][];
+			NEED = new int[numbers.length];
+
+			for (int i = 0; i < cells.length; ++i)
+				local[cells[i]] = i;
+
+			int[] neighbours = t.neighbours();
+			Arrays.sort(numbers);
+			for (int c = 0; c < numbers.length; ++c) {
+				int a = numbers[c];
+				int count = 0;
+				for (int j = t.start(a); j < t.end(a); ++j) {
+					if (HintSolver.UNKNOWN == hints.state(neighbours[j]))
+						++count;
+				}
+				CONSTRAINTS[c] = new int[count];
+				count = 0;
+				for (int j = t.start(a); j < t.end(a); ++j) {
+					if (HintSolver.UNKNOWN == hints.state(neighbours[j]))
+						CONSTRAINTS[c][count++] = local[neighbours[j]];
+				}
+				NEED[c] = hints.need(a);
+			}
+
+			int[] sorted = cells.clone();
+			Arrays.sort(sorted);
+			int[] key = new int[1 + sorted.length + 2 * numbers.length];
+			key[0] = sorted.length;
+			System.arraycopy(sorted, 0, key, 1, sorted.length);
+			for (int c = 0; c < numbers.length; ++c) {
+				key[1 + sorted.length + 2 * c] = numbers[c];
+				key[2 + sorted.length + 2 * c] = NEED[c];
+			}
+			KEY = new Key(key);
+		}
+
+		/* Count the assignments by a depth-first search over the fields. A
+		 * field is set to no bomb, then to a bomb. A branch is cut as soon as
+		 * a number has too many bombs or can't get enough anymore. */
+		@Override
+		public Component call() {
+			int n = CELLS.length;
+			int most = 0;
+			for (int need : NEED)
+				most += need;
+			most = Math.min(n, most);
+			if ((long) n * (most + 1) > MAX_COUNTS) {
+				mAborted = true;
+				return this;
+			}
+
+			// The numbers of each field
+			int[] counts = new int[n];
+			for (int[] c : CONSTRAINTS) {
+				for (int i : c)
+					++counts[i];
+			}
+			int[][] of = new int[n][];
+			for (int i = 0; i < n; ++i)
+				of[i] = new int[counts[i]];
+			Arrays.fill(counts, 0);
+			for (int c = 0; c < CONSTRAINTS.length; ++c) {
+				for (int i : CONSTRAINTS[c])
+					of[i][counts[i]++] = c;
+			}
+
+			int[] mines = new int[NEED.length];
+			int[] left = new int[NEED.length];
+			for (int c = 0; c < NEED.length; ++c)
+				left[c] = CONSTRAINTS[c].length;
+
+			double[] ways = new double[most + 1];
+			double[][] cellWays = new double[n][most + 1];
+			byte[] value = new byte[n];
+			Arrays.fill(value, (byte) -1);
+
+			int depth = 0;
+			int bombs = 0;
+			int nodes = 0;
+			while (depth >= 0) {
+				if (depth == n) {
+					ways[bombs] += 1;
+					for (int i = 0; i < n; ++i) {
+						if (1 == value[i])
+							cellWays[i][bombs] += 1;
+					}
+					--depth;
+					continue;
+				}
+
+				// Take back the last value of the field
+				int v = value[depth];
+				if (v >= 0) {
+					for (int c : of[depth]) {
+						++left[c];
+						mines[c] -= v;
+					}
+					bombs -= v;
+				}
+				if (2 == ++v) {
+					value[depth] = -1;
+					--depth;
+					continue;
+				}
+
+				if (++nodes > MAX_NODES) {
+					mAborted = true;
+					return this;
+				}
+				if (mTimed && 0 == nodes % CLOCK_NODES && System.nanoTime() - mDeadline > 0)
+					return this;
+
+				value[depth] = (byte) v;
+				bombs += v;
+				boolean feasible = true;
+				for (int c : of[depth]) {
+					--left[c];
+					mines[c] += v;
+					if (mines[c] > NEED[c] || mines[c] + left[c] < NEED[c])
+						feasible = false;
+				}
+				if (feasible)
+					++depth;
+			}
+
+			// Only the ratios matter
+			double max = scale(ways, 1);
+			for (double[] w : cellWays) {
+				for (int m = 0; m < w.length; ++m)
+					w[m] /= max;
+			}
+			mCellWays = cellWays;
+			mWays = ways;
+			return this;
+		}
+	}
+}
@@ -0,0 +1,286 @@
+package de.nisble.droidsweeper.game.engine;
+
+import java.util.Arrays;
+
+/** Logical solver that decides whether a board can be cleared without
+ * guessing.<br>
+ * The solver plays the board from the first click like a careful player: It
+ * only reveals fields that are proven safe and only marks fields that are
+ * proven to be bombs. The proofs are drawn from the revealed numbers by these
+ * rules:
+ * <ul>
+ * <li>Single field: If a number is satisfied by its marked neighbours, all
+ * other hidden neighbours are safe. If it needs all of its hidden neighbours,
+ * they are bombs.</li>
+ * <li>Subset: If the hidden neighbours of a number A are a subset of the hidden
+ * neighbours of a number B, the difference holds exactly the bombs B needs
+ * beyond A. If that is none, the difference is safe, if it is all, the
+ * difference is bombs.</li>
+ * <li>Bomb count: If no bombs remain, all hidden fields are safe. If the
+ * remaining bombs equal the hidden fields, they are all bombs.</li>
+ * </ul>
+ * Numbers whose neighbourhood changed are kept on a work stack, so the cheap
+ * single field rule runs incrementally. The more expensive rules run only when
+ * the stack is empty. The board is solved when all safe fields are
+ * revealed.<br>
+ * Since the solver knows the bomb layout, the numbers are read from the bomb
+ * bitset. Each deduction is sound, so a bomb is never revealed.
+ * <ul>
+ * <li>Not thread-safe: Use one instance per thread. The buffers are reused
+ * between calls.</li>
+ * </ul>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class Solver {
+	private static final byte HIDDEN = 0;
+	private static final byte SAFE = 1;
+	private static final byte BOMB = 2;
+
+	private long[] mBombSet;
+	private int mX;
+	private int mY;
+
+	/* State and count of adjacent bombs per field */
+	private byte[] mState = new byte[0];
+	private byte[] mAdjacent = new byte[0];
+
+	/* Numbers whose hidden neighbours changed */
+	private int[] mWork = new int[0];
+	private long[] mQueued = new long[0];
+	private int mTop;
+	/* Stack of the flood fill */
+	private int[] mFlood = new int[0];
+
+	private int mHidden;
+	private int mHiddenSafe;
+	private int mBombsLeft;
+
+	/* Hidden neighbours of the numbers of the subset rule */
+	private final int[] mA = new int[8];
+	private final int[] mB = new int[8];
+
+	/** Check whether a board can be cleared without guessing.
+	 * @param bombSet The bitset of x * y fields with the bombs.
+	 * @param x The width of the matrix.
+	 * @param y The height of the matrix.
+	 * @param bombs The count of bombs in the bitset.
+	 * @param start The index of the first revealed field.
+	 * @return True if all safe fields are revealed by logic alone. False if a
+	 *         guess is needed or the start field is a bomb. */
+	public boolean solve(long[] bombSet, int x, int y, int bombs, int start) {
+		int size = x * y;
+		if (mState.length < size) {
+			mState = new byte[size];
+			mAdjacent = new byte[size];
+			mWork = new int[size];
+			mFlood = new int[size];
+			mQueued = Bits.create(size);
+		} else {
+			Arrays.fill(mState, 0, size, HIDDEN);
+			Arrays.fill(mQueued, 0);
+		}
+
+		mBombSet = bombSet;
+		mX = x;
+		mY = y;
+		mTop = 0;
+		mHidden = size;
+		mHiddenSafe = size - bombs;
+		mBombsLeft = bombs;
+
+		if (Bits.get(bombSet, start))
+			return false;
+
+		open(start);
+
+		while (mHiddenSafe > 0) {
+			while (mTop > 0) {
+				int i = mWork[--mTop];
+				Bits.clear(mQueued, i);
+				single(i);
+			}
+			if (mHiddenSafe == 0 || subset() || count())
+				continue;
+			return false;
+		}
+
+		return true;
+	}
+
+	/* Single field rule for the number at i. */
+	private void single(int i) {
+		int n = hiddenNeighbours(i, mA);
+		if (0 == n)
+			return;
+
+		int need = mAdjacent[i] - bombNeighbours(i);
+		if (0 == need) {
+			for (int k = 0; k < n; ++k)
+				open(mA[k]);
+		} else if (need == n) {
+			for (int k = 0; k < n; ++k)
+				mark(mA[k]);
+		}
+	}
+
+	/* Subset rule for all pairs of numbers that are at most 2 fields apart.
+	 * Stops at the first deduction. */
+	private boolean subset() {
+		for (int a = 0; a < mX * mY; ++a) {
+			if (SAFE != mState[a] || 0 == mAdjacent[a])
+				continue;
+			int na = hiddenNeighbours(a, mA);
+			if (0 == na)
+				continue;
+			int needA = mAdjacent[a] - bombNeighbours(a);
+
+			int ax = a % mX;
+			int ay = a / mX;
+			for (int by = Math.max(0, ay - 2); by <= Math.min(mY - 1, ay + 2); ++by) {
+				for (int bx = Math.max(0, ax - 2); bx <= Math.min(mX - 1, ax + 2); ++bx) {
+					int b = by * mX + bx;
+					if (b == a || SAFE != mState[b] || 0 == mAdjacent[b])
+						continue;
+					int nb = hiddenNeighbours(b, mB);
+					if (nb <= na || !IntLists.contains(mB, nb, mA, na))
+						continue;
+
+					int need = mAdjacent[b] - bombNeighbours(b) - needA;
+					int diff = nb - na;
+					if (0 != need && diff != need)
+						continue;
+
+					/* Both lists are ascending, so the difference is every
+					 * entry of B that is not in A. */
+					for (int k = 0, j = 0; k < nb; ++k) {
+						if (j < na && mA[j] == mB[k]) {
+							++j;
+						} else if (0 == need) {
+							open(mB[k]);
+						} else {
+							mark(mB[k]);
+						}
+					}
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/* Bomb count rule. */
+	private boolean count() {
+		if (0 == mHidden || (0 != mBombsLeft && mBombsLeft != mHidden))
+			return false;
+
+		boolean safe = (0 == mBombsLeft);
+		for (int i = 0; i < mX * mY; ++i) {
+			if (HIDDEN != mState[i])
+				continue;
+			if (safe)
+				open(i);
+			else
+				mark(i);
+		}
+		return true;
+	}
+
+	/* Reveal a safe field. Fields without adjacent bombs open their
+	 * neighbours like in the game. */
+	private void open(int start) {
+		if (HIDDEN != mState[start])
+			return;
+
+		int top = 0;
+		reveal(start);
+		mFlood[top++] = start;
+
+		while (top > 0) {
+			int i = mFlood[--top];
+			if (0 != mAdjacent[i])
+				continue;
+
+			int x = i % mX;
+			int y = i / mX;
+			for (int ny = Math.max(0, y - 1); ny <= Math.min(mY - 1, y + 1); ++ny) {
+				for (int nx = Math.max(0, x - 1); nx <= Math.min(mX - 1, x + 1); ++nx) {
+					int n = ny * mX + nx;
+					if (HIDDEN == mState[n]) {
+						reveal(n);
+						mFlood[top++] = n;
+					}
+				}
+			}
+		}
+	}
+
+	private void reveal(int i) {
+		mState[i] = SAFE;
+		--mHidden;
+		--mHiddenSafe;
+
+		int x = i % mX;
+		int y = i / mX;
+		int count = 0;
+		for (int ny = Math.max(0, y - 1); ny <= Math.min(mY - 1, y + 1); ++ny) {
+			for (int nx = Math.max(0, x - 1); nx <= Math.min(mX - 1, x + 1); ++nx) {
+				if (Bits.get(mBombSet, ny * mX + nx))
+					++count;
+			}
+		}
+		mAdjacent[i] = (byte) count;
+
+		touch(i);
+	}
+
+	private void mark(int i) {
+		if (HIDDEN != mState[i])
+			return;
+		mState[i] = BOMB;
+		--mHidden;
+		--mBombsLeft;
+		touch(i);
+	}
+
+	/* Queue the field and its revealed neighbours that carry a number. */
+	private void touch(int i) {
+		int x = i % mX;
+		int y = i / mX;
+		for (int ny = Math.max(0, y - 1); ny <= Math.min(mY - 1, y + 1); ++ny) {
+			for (int nx = Math.max(0, x - 1); nx <= Math.min(mX - 1, x + 1); ++nx) {
+				int n = ny * mX + nx;
+				if (SAFE == mState[n] && 0 != mAdjacent[n] && !Bits.get(mQueued, n)) {
+					Bits.set(mQueued, n);
+					mWork[mTop++] = n;
+				}
+			}
+		}
+	}
+
+	/* Collect the hidden neighbours of i in ascending order. */
+	private int hiddenNeighbours(int i, int[] out) {
+		int x = i % mX;
+		int y = i / mX;
+		int count = 0;
+		for (int ny = Math.max(0, y - 1); ny <= Math.min(mY - 1, y + 1); ++ny) {
+			for (int nx = Math.max(0, x - 1); nx <= Math.min(mX - 1, x + 1); ++nx) {
+				int n = ny * mX + nx;
+				if (HIDDEN == mState[n])
+					out[count++] = n;
+			}
+		}
+		return count;
+	}
+
+	private int bombNeighbours(int i) {
+		int x = i % mX;
+		int y = i / mX;
+		int count = 0;
+		for (int ny = Math.max(0, y - 1); ny <= Math.min(mY - 1, y + 1); ++ny) {
+			for (int nx = Math.max(0, x - 1); nx <= Math.min(mX - 1, x + 1); ++nx) {
+				if (BOMB == mState[ny * mX + nx])
+					++count;
+			}
+		}
+		return count;
+	}
+}
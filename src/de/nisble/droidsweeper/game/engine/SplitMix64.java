@@ -0,0 +1,67 @@
+package de.nisble.droidsweeper.game.engine;
+
+/** Fast splittable pseudo random number generator (SplitMix64).<br>
+ * The whole state is a single long, so a generator is fully defined by its
+ * seed. The same seed always produces the same sequence on every platform. This
+ * is what makes seeded boards reproducible.
+ * <ul>
+ * <li>Not thread-safe: Use {@link #split()} to get an independent generator for
+ * another thread.</li>
+ * </ul>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class SplitMix64 {
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private long mState;
+
+	/** Create a generator.
+	 * @param seed The seed. */
+	public SplitMix64(long seed) {
+		mState = seed;
+	}
+
+	/** @return The next 64 random bits. */
+	public long nextLong() {
+		return mix(mState += GOLDEN_GAMMA);
+	}
+
+	/** Get a uniformly distributed int in the range [0, bound).
+	 * @param bound The upper bound (exclusive). Must be positive.
+	 * @return The random number. */
+	public int nextInt(int bound) {
+		if (bound <= 0)
+			throw new IllegalArgumentException("Bound must be positive: " + bound);
+
+		/* Multiply the upper 32 bits with the bound and reject the few values
+		 * that would bias the result (Lemire). */
+		long m = (nextLong() >>> 32) * bound;
+		if ((m & 0xffffffffL) < bound) {
+			long threshold = (0x100000000L - bound) % bound;
+			while ((m & 0xffffffffL) < threshold)
+				m = (nextLong() >>> 32) * bound;
+		}
+		return (int) (m >>> 32);
+	}
+
+	/** Get a value of the sequence of a seed without stepping through it.
+	 * @param seed The seed of the sequence.
+	 * @param k The position in the sequence (0 based).
+	 * @return The value of the (k + 1)-th call to {@link #nextLong()} of a
+	 *         generator with the given seed. */
+	public static long nth(long seed, long k) {
+		return mix(seed + (k + 1) * GOLDEN_GAMMA);
+	}
+
+	/** Create a new generator that is statistically independent of this one.
+	 * Advances the state of this generator.
+	 * @return The new generator. */
+	public SplitMix64 split() {
+		return new SplitMix64(nextLong());
+	}
+
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,196 @@
+package de.nisble.droidsweeper.game.engine;
+
+import java.util.Arrays;
+
+import de.nisble.droidsweeper.game.Position;
+
+/** Precomputed neighbourhood of the fields of a board.<br>
+ * A topology maps the {@link Position}S of a board of {@link #X} * {@link #Y}
+ * fields to the indices y * X + x and stores the neighbours of each field in
+ * one primitive array (like a CSR matrix): The neighbours of field i are
+ * {@link #neighbours()}[{@link #start(int) start(i)}] to
+ * {@link #neighbours()}[{@link #end(int) end(i)} - 1]. So the inner loops of
+ * the engine walk a table without coordinate arithmetic and bounds checks, no
+ * matter how the board is connected. The table is built once per topology
+ * and can be shared by any count of games.<br>
+ * A 3D board with several {@link Kind#LAYERED layers} is mapped to a 2D
+ * {@link Position} by stacking the layers vertically: Layer z occupies the
+ * rows z * height to (z + 1) * height - 1.
+ * <ul>
+ * <li>Immutable: Members are public final and capitalized.</li>
+ * </ul>
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+public final class Topology {
+	/** The kinds of topologies. */
+	public enum Kind {
+		/** Rectangular grid. Each field has up to 8 neighbours. */
+		GRID,
+		/** Rectangular grid whose edges wrap around. Each field has 8
+		 * neighbours (less on boards smaller than 3x3). */
+		TORUS,
+		/** Hexagonal grid in offset coordinates. The odd rows are shifted
+		 * right by half a field. Each field has up to 6 neighbours. */
+		HEX,
+		/** Stack of rectangular grids. Each field has up to 26 neighbours in
+		 * its own and the adjacent layers. */
+		LAYERED
+	}
+
+	/** The kind of this topology. */
+	public final Kind KIND;
+	/** The width of the board. */
+	public final int X;
+	/** The height of the board (of all layers). */
+	public final int Y;
+	/** The count of layers. 1 if the board isn't {@link Kind#LAYERED
+	 * layered}. */
+	public final int LAYERS;
+
+	private final int[] mStart;
+	private final int[] mNeighbours;
+
+	/** Create a rectangular grid.
+	 * @param x The width.
+	 * @param y The height.
+	 * @return The topology. */
+	public static Topology grid(int x, int y) {
+		return new Topology(Kind.GRID, x, y, 1);
+	}
+
+	/** Create a rectangular grid whose edges wrap around.
+	 * @param x The width.
+	 * @param y The height.
+	 * @return The topology. */
+	public static Topology torus(int x, int y) {
+		return new Topology(Kind.TORUS, x, y, 1);
+	}
+
+	/** Create a hexagonal grid.
+	 * @param x The width.
+	 * @param y The height.
+	 * @return The topology. */
+	public static Topology hex(int x, int y) {
+		return new Topology(Kind.HEX, x, y, 1);
+	}
+
+	/** Create a stack of rectangular grids.
+	 * @param x The width of a layer.
+	 * @param y The height of a layer.
+	 * @param layers The count of layers.
+	 * @return The topology. */
+	public static Topology layered(int x, int y, int layers) {
+		return new Topology(Kind.LAYERED, x, y, layers);
+	}
+
+	private Topology(Kind kind, int x, int y, int layers) {
+		if (x < 1 || y < 1 || layers < 1 || (long) x * y * layers > Integer.MAX_VALUE / 26)
+			throw new IllegalArgumentException("Invalid dimensions: X:" + x + " Y:" + y + " Layers:" + layers);
+
+		KIND = kind;
+		X = x;
+		Y = y * layers;
+		LAYERS = layers;
+
+		int size = X * Y;
+		int[] hood = new int[26];
+		mStart = new int[size + 1];
+		for (int i = 0; i < size; ++i)
+			mStart[i + 1] = mStart[i] + collect(i, y, hood);
+
+		mNeighbours = new int[mStart[size]];
+		for (int i = 0; i < size; ++i)
+			System.arraycopy(hood, 0, mNeighbours, mStart[i], collect(i, y, hood));
+	}
+
+	/** @return The count of fields. */
+	public int size() {
+		return X * Y;
+	}
+
+	/** @param p A position.
+	 * @return The index of the field.
+	 * @throws IndexOutOfBoundsException on coordinates of the position out of
+	 *             the bounds of the board. */
+	public int index(Position p) throws IndexOutOfBoundsException {
+		if (p.X < 0 || p.X >= X || p.Y < 0 || p.Y >= Y)
+			throw new IndexOutOfBoundsException("Position out of bounds: X:" + p.X + " Y:" + p.Y);
+		return p.Y * X + p.X;
+	}
+
+	/** @param i The index of a field.
+	 * @return The offset of its first neighbour in {@link #neighbours()}. */
+	public int start(int i) {
+		return mStart[i];
+	}
+
+	/** @param i The index of a field.
+	 * @return The offset behind its last neighbour in {@link #neighbours()}. */
+	public int end(int i) {
+		return mStart[i + 1];
+	}
+
+	/** @return The neighbours of all fields. Do not modify! */
+	public int[] neighbours() {
+		return mNeighbours;
+	}
+
+	@Override
+	public String toString() {
+		return "Topology [KIND=" + KIND + ", X=" + X + ", Y=" + Y + ", LAYERS=" + LAYERS + "]";
+	}
+
+	/* Write the neighbours of field i to hood in ascending order and return
+	 * their count. height is the height of a layer. */
+	private int collect(int i, int height, int[] hood) {
+		int cx = i % X;
+		int cy = i / X;
+		int count = 0;
+
+		switch (KIND) {
+		case TORUS:
+			for (int dy = -1; dy <= 1; ++dy) {
+				for (int dx = -1; dx <= 1; ++dx) {
+					int n = ((cy + dy + Y) % Y) * X + (cx + dx + X) % X;
+					// Small boards wrap onto the field itself or twice onto a neighbour
+					if (n != i && !IntLists.contains(hood, count, n))
+						hood[count++] = n;
+				}
+			}
+			break;
+		case HEX:
+			// The odd rows are shifted right, so their diagonals lean right
+			int shift = cy & 1;
+			for (int dy = -1; dy <= 1; ++dy) {
+				int ny = cy + dy;
+				if (ny < 0 || ny >= Y)
+					continue;
+				int from = (0 == dy) ? cx - 1 : cx - 1 + shift;
+				int to = (0 == dy) ? cx + 1 : cx + shift;
+				for (int nx = Math.max(0, from); nx <= Math.min(X - 1, to); ++nx) {
+					if (0 != dy || nx != cx)
+						hood[count++] = ny * X + nx;
+				}
+			}
+			break;
+		case LAYERED:
+		case GRID:
+		default:
+			int layer = cy / height;
+			int ly = cy % height;
+			for (int nz = Math.max(0, layer - 1); nz <= Math.min(LAYERS - 1, layer + 1); ++nz) {
+				for (int ny = Math.max(0, ly - 1); ny <= Math.min(height - 1, ly + 1); ++ny) {
+					for (int nx = Math.max(0, cx - 1); nx <= Math.min(X - 1, cx + 1); ++nx) {
+						int n = (nz * height + ny) * X + nx;
+						if (n != i)
+							hood[count++] = n;
+					}
+				}
+			}
+			break;
+		}
+
+		if (KIND == Kind.TORUS)
+			Arrays.sort(hood, 0, count);
+		return count;
+	}
+}
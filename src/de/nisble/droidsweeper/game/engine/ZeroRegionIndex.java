@@ -0,0 +1,390 @@
+package de.nisble.droidsweeper.game.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/** Index of the openings of a board.<br>
+ * An opening is a connected (8-neighbourhood) region of safe fields without
+ * adjacent bombs. Revealing any of its fields reveals the whole region and its
+ * border, i.e. the fields with adjacent bombs that touch the region. The index
+ * is built once after the bombs are placed:
+ * <ul>
+ * <li>The adjacent bombs of all fields are counted.</li>
+ * <li>A union-find pass over the fields without adjacent bombs labels the
+ * regions. Each field is only united with its already visited neighbours (N,
+ * W, NW, NE). On big boards this runs on tiles of rows in parallel and the
+ * tiles are stitched together afterwards.</li>
+ * <li>The fields of each region are bucketed by a counting sort and stored
+ * together with the border fields in one primitive array (like a CSR matrix):
+ * The fields of region r are {@link #cells()}[{@link #start(int) start(r)}] to
+ * {@link #cells()}[{@link #end(int) end(r)} - 1]. A border field that touches
+ * several regions is stored once per region.</li>
+ * <li>The difficulty of the board is measured on the way: Each opening needs
+ * one click. Each safe field that is neither part of an opening nor of its
+ * border needs one click too. Such fields form the islands. The borders are
+ * marked in a bitset while they are stored, so the fields of the islands are
+ * found word by word and labeled by a union-find pass like the openings.</li>
+ * </ul>
+ * So revealing an opening costs O(region size) without any search. The arrays
+ * are reused between boards.
+ * @author Moritz Nisblé moritz.nisble@gmx.de */
+final class ZeroRegionIndex {
+	/* Stamp of a visited field of an island */
+	private static final int ISLAND = -2;
+
+	/* Region of each field or -1 */
+	private int[] mRegionOf = new int[0];
+	private int[] mStart = new int[1];
+	private int[] mCells = new int[0];
+	private int mRegions = 0;
+	private int mBBBV = 0;
+	private int mIslands = 0;
+
+	/* Scratch: The union-find forest, later the fields sorted by region */
+	private int[] mParent = new int[0];
+	/* Scratch: The last region a field was stored for, later ISLAND */
+	private int[] mStamp = new int[0];
+	/* The fields of the openings and their borders */
+	private long[] mTouched = Bits.create(0);
+
+	/** Count the adjacent bombs, build the index and measure the board on the
+	 * calling thread.
+	 * @param bombSet The bitset with the bombs.
+	 * @param adjacent Receives the count of adjacent bombs of each field.
+	 * @param x The width of the matrix.
+	 * @param y The height of the matrix. */
+	void build(long[] bombSet, byte[] adjacent, int x, int y) {
+		build(bombSet, adjacent, x, y, null, 1);
+	}
+
+	/** Count the adjacent bombs, build the index and measure the board.<br>
+	 * The matrix is split into tiles of whole rows. The bombs are counted and
+	 * the regions are labeled per tile in parallel. Then the regions that
+	 * cross the borders of the tiles are stitched together and the labels are
+	 * resolved per tile in parallel. The result doesn't depend on the count of
+	 * tiles.
+	 * @param bombSet The bitset with the bombs.
+	 * @param adjacent Receives the count of adjacent bombs of each field.
+	 * @param x The width of the matrix.
+	 * @param y The height of the matrix.
+	 * @param executor The executor of the tiles or null to build on the
+	 *            calling thread.
+	 * @param tiles The count of tiles. */
+	void build(final long[] bombSet, final byte[] adjacent, final int x, int y, ExecutorService executor, int tiles) {
+		int size = x * y;
+		if (mRegionOf.length < size) {
+			mRegionOf = new int[size];
+			mParent = new int[size];
+			mStamp = new int[size];
+			mTouched = Bits.create(size);
+		}
+
+		if (null == executor)
+			tiles = 1;
+		tiles = Math.max(1, Math.min(tiles, y));
+		int[] rows = new int[tiles + 1];
+		for (int t = 0; t <= tiles; ++t)
+			rows[t] = (int) ((long) y * t / tiles);
+
+		int zeros = 0;
+		if (1 == tiles) {
+			zeros = label(bombSet, adjacent, x, y, 0, y);
+		} else {
+			List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>(tiles);
+			for (int t = 0; t < tiles; ++t) {
+				final int y0 = rows[t];
+				final int y1 = rows[t + 1];
+				final int height = y;
+				tasks.add(new Callable<Integer>() {
+					@Override
+					public Integer call() {
+						return label(bombSet, adjacent, x, height, y0, y1);
+					}
+				});
+			}
+			zeros = run(executor, tasks);
+
+			for (int t = 1; t < tiles; ++t)
+				stitch(x, rows[t]);
+		}
+
+		// Number the regions in the order of their roots (the smallest field)
+		mRegions = 0;
+		for (int i = 0; i < size; ++i) {
+			if (mParent[i] == i)
+				mRegionOf[i] = mRegions++;
+		}
+
+		if (1 == tiles) {
+			resolve(0, size);
+		} else {
+			List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>(tiles);
+			for (int t = 0; t < tiles; ++t) {
+				final int from = rows[t] * x;
+				final int to = rows[t + 1] * x;
+				tasks.add(new Callable<Integer>() {
+					@Override
+					public Integer call() {
+						resolve(from, to);
+						return 0;
+					}
+				});
+			}
+			run(executor, tasks);
+		}
+
+		// Bucket the fields by region
+		if (mStart.length < mRegions + 1)
+			mStart = new int[mRegions + 1];
+		Arrays.fill(mStart, 0, mRegions + 1, 0);
+		for (int i = 0; i < size; ++i) {
+			if (mRegionOf[i] >= 0)
+				++mStart[mRegionOf[i] + 1];
+		}
+		for (int r = 0; r < mRegions; ++r)
+			mStart[r + 1] += mStart[r];
+
+		int[] sorted = mParent;
+		int[] fill = mStamp;
+		System.arraycopy(mStart, 0, fill, 0, mRegions);
+		for (int i = 0; i < size; ++i) {
+			if (mRegionOf[i] >= 0)
+				sorted[fill[mRegionOf[i]]++] = i;
+		}
+
+		// Add the borders
+		if (mCells.length < zeros * 2)
+			mCells = new int[zeros * 2];
+		Arrays.fill(mStamp, 0, size, -1);
+		Arrays.fill(mTouched, 0, (size + 63) >>> 6, 0);
+		int length = 0;
+		int from = 0;
+		for (int r = 0; r < mRegions; ++r) {
+			int to = mStart[r + 1];
+			mStart[r] = length;
+			for (int k = from; k < to; ++k) {
+				int i = sorted[k];
+				int cx = i % x;
+				int cy = i / x;
+				for (int ny = Math.max(0, cy - 1); ny <= Math.min(y - 1, cy + 1); ++ny) {
+					for (int nx = Math.max(0, cx - 1); nx <= Math.min(x - 1, cx + 1); ++nx) {
+						int n = ny * x + nx;
+						if (mStamp[n] == r)
+							continue;
+						mStamp[n] = r;
+						Bits.set(mTouched, n);
+						if (length == mCells.length)
+							mCells = Arrays.copyOf(mCells, length * 2);
+						mCells[length++] = n;
+					}
+				}
+			}
+			from = to;
+		}
+		mStart[mRegions] = length;
+
+		measure(bombSet, x, y);
+	}
+
+	/* Count the clicks of the openings and label the islands. The fields of
+	 * the islands are visited in order and stamped, so like in label() a union
+	 * with N covers W, NW and NE. The forest of the openings isn't needed
+	 * anymore. */
+	private void measure(long[] bombSet, int x, int y) {
+		int size = x * y;
+		int words = (size + 63) >>> 6;
+		mBBBV = mRegions;
+		mIslands = 0;
+		for (int w = 0; w < words; ++w) {
+			long bits = ~(mTouched[w] | bombSet[w]);
+			if (w == words - 1 && (size & 63) != 0)
+				bits &= (1L << size) - 1;
+
+			for (; bits != 0; bits &= bits - 1) {
+				int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+				int cx = i % x;
+				int cy = i / x;
+
+				mStamp[i] = ISLAND;
+				mParent[i] = i;
+				++mBBBV;
+				++mIslands;
+				if (cy > 0 && ISLAND == mStamp[i - x]) {
+					join(i, i - x);
+				} else {
+					if (cx > 0 && ISLAND == mStamp[i - 1])
+						join(i, i - 1);
+					else if (cx > 0 && cy > 0 && ISLAND == mStamp[i - x - 1])
+						join(i, i - x - 1);
+					if (cy > 0 && cx < x - 1 && ISLAND == mStamp[i - x + 1])
+						join(i, i - x + 1);
+				}
+			}
+		}
+	}
+
+	/** @return The 3BV of the last indexed board: The minimum count of clicks
+	 *         to clear it. */
+	int bbbv() {
+		return mBBBV;
+	}
+
+	/** @return The count of islands of the last indexed board: Connected
+	 *         groups of safe fields that don't touch an opening. */
+	int islands() {
+		return mIslands;
+	}
+
+	/** @return The count of regions. */
+	int regions() {
+		return mRegions;
+	}
+
+	/** @param i The index of a field.
+	 * @return The region of the field or -1 if the field has adjacent bombs or
+	 *         is a bomb. */
+	int regionOf(int i) {
+		return mRegionOf[i];
+	}
+
+	/** @param r A region.
+	 * @return The offset of the first field of the region in {@link #cells()}. */
+	int start(int r) {
+		return mStart[r];
+	}
+
+	/** @param r A region.
+	 * @return The offset behind the last field of the region in
+	 *         {@link #cells()}. */
+	int end(int r) {
+		return mStart[r + 1];
+	}
+
+	/** @return The fields of all regions and their borders. Do not modify! */
+	int[] cells() {
+		return mCells;
+	}
+
+	/* Count the adjacent bombs of the rows [y0, y1) and label the regions
+	 * inside of them. N, W and NW are neighbours of each other, as are N and
+	 * NE. So a union with N covers all of them and NE is only needed when N
+	 * isn't part of a region. Returns the count of fields without adjacent
+	 * bombs. */
+	private int label(long[] bombSet, byte[] adjacent, int x, int y, int y0, int y1) {
+		Arrays.fill(adjacent, y0 * x, y1 * x, (byte) 0);
+		int from = Math.max(0, y0 - 1) * x;
+		int to = Math.min(y, y1 + 1) * x;
+		for (int w = from >>> 6; w < (to + 63) >>> 6; ++w) {
+			for (long bits = bombSet[w]; bits != 0; bits &= bits - 1) {
+				int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+				if (i < from || i >= to)
+					continue;
+				int bx = i % x;
+				int by = i / x;
+				for (int ny = Math.max(y0, by - 1); ny <= Math.min(y1 - 1, by + 1); ++ny) {
+					for (int nx = Math.max(0, bx - 1); nx <= Math.min(x - 1, bx + 1); ++nx) {
+						++adjacent[ny * x + nx];
+					}
+				}
+			}
+		}
+
+		int zeros = 0;
+		for (int cy = y0, i = y0 * x; cy < y1; ++cy) {
+			for (int cx = 0; cx < x; ++cx, ++i) {
+				mRegionOf[i] = -1;
+				if (0 != adjacent[i] || Bits.get(bombSet, i)) {
+					mParent[i] = -1;
+					continue;
+				}
+
+				mParent[i] = i;
+				++zeros;
+				if (cy > y0 && mParent[i - x] >= 0) {
+					union(i, i - x);
+				} else {
+					if (cx > 0 && mParent[i - 1] >= 0)
+						union(i, i - 1);
+					else if (cx > 0 && cy > y0 && mParent[i - x - 1] >= 0)
+						union(i, i - x - 1);
+					if (cy > y0 && cx < x - 1 && mParent[i - x + 1] >= 0)
+						union(i, i - x + 1);
+				}
+			}
+		}
+		return zeros;
+	}
+
+	/* Unite the regions of row y0 with the regions of the row above. */
+	private void stitch(int x, int y0) {
+		for (int cx = 0, i = y0 * x; cx < x; ++cx, ++i) {
+			if (mParent[i] < 0)
+				continue;
+			for (int n = i - x - Math.min(1, cx); n <= i - x + Math.min(1, x - 1 - cx); ++n) {
+				if (mParent[n] >= 0)
+					union(i, n);
+			}
+		}
+	}
+
+	/* Copy the label of the root to the fields [from, to). The forest is only
+	 * read, so the tiles can be resolved in parallel. */
+	private void resolve(int from, int to) {
+		for (int i = from; i < to; ++i) {
+			int root = mParent[i];
+			if (root < 0 || root == i)
+				continue;
+			while (mParent[root] != root)
+				root = mParent[root];
+			mRegionOf[i] = mRegionOf[root];
+		}
+	}
+
+	/* Run the tasks and sum up their results. */
+	private static int run(ExecutorService executor, List<Callable<Integer>> tasks) {
+		try {
+			int sum = 0;
+			for (Future<Integer> f : executor.invokeAll(tasks))
+				sum += f.get();
+			return sum;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while building the index", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Building the index failed", e.getCause());
+		}
+	}
+
+	private int find(int i) {
+		while (mParent[i] != i) {
+			// Path halving
+			mParent[i] = mParent[mParent[i]];
+			i = mParent[i];
+		}
+		return i;
+	}
+
+	/* Unite the island of field a with the one of the visited field b. */
+	private void join(int a, int b) {
+		int ra = find(a);
+		int rb = find(b);
+		if (ra != rb) {
+			mParent[Math.max(ra, rb)] = Math.min(ra, rb);
+			--mIslands;
+		}
+	}
+
+	private void union(int a, int b) {
+		int ra = find(a);
+		int rb = find(b);
+		if (ra < rb)
+			mParent[rb] = ra;
+		else if (rb < ra)
+			mParent[ra] = rb;
+	}
+}
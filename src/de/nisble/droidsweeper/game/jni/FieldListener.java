@@ -3,12 +3,13 @@ package de.nisble.droidsweeper.game.jni;
 import de.nisble.droidsweeper.game.Position;
 
 /** Interface that should be implemented by field widgets.<br>
- * This interface enables the native library to directly call widgets in the
+ * This interface enables the game engine to directly call widgets in the
  * view and specifically update their {@link FieldStatus state}.
  *
  * @author Moritz Nisblé moritz.nisble@gmx.de */
 public interface FieldListener {
-	/** Called by the native library libmsm when the widget should change its
+	/** Called by the game engine (e.g. after the native library libmsm has
+	 * returned the changes of a click) when the widget should change its
 	 * status.
 	 * @param status The new status of the field.
 	 * @param adjacentBombs The cound of adjacent bombs. */
@@ -21,18 +21,18 @@ public enum FieldStatus {
 
 	private static final String CLASSNAME = FieldStatus.class.getSimpleName();
 
+	/* values() returns a new copy on each call. */
+	private static final FieldStatus[] VALUES = values();
+
 	/** Transform a integer to its corresponding status value.<br>
 	 * The status defaults to HIDDEN when the given number is invalid.
 	 * @param i The value.
 	 * @return The corresponding status. */
 	public static FieldStatus fromInt(int i) {
-		FieldStatus temp;
-		try {
-			temp = values()[i];
-		} catch (Exception e) {
-			LogDog.e(CLASSNAME, "IndexOutOfBoundsException: " + e.getMessage(), e);
-			temp = values()[0];
+		if (i < 0 || i >= VALUES.length) {
+			LogDog.e(CLASSNAME, "Invalid FieldStatus: " + i);
+			return VALUES[0];
 		}
-		return temp;
+		return VALUES[i];
 	}
 }
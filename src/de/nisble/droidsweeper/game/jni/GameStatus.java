@@ -21,6 +21,9 @@ public enum GameStatus {
 
 	private static final String CLASSNAME = GameStatus.class.getSimpleName();
 
+	/* values() returns a new copy on each call. */
+	private static final GameStatus[] VALUES = values();
+
 	private GameStatus(int v) {
 		value = v;
 	}
@@ -30,13 +33,10 @@ public enum GameStatus {
 	 * @param i The value.
 	 * @return The corresponding status. */
 	public static GameStatus fromInt(int i) {
-		GameStatus temp;
-		try {
-			temp = values()[i];
-		} catch (Exception e) {
-			LogDog.e(CLASSNAME, "IndexOutOfBoundsException: " + e.getMessage(), e);
-			temp = values()[0];
+		if (i < 0 || i >= VALUES.length) {
+			LogDog.e(CLASSNAME, "Invalid GameStatus: " + i);
+			return VALUES[0];
 		}
-		return temp;
+		return VALUES[i];
 	}
 }
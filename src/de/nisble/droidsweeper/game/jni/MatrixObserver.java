@@ -2,23 +2,24 @@ package de.nisble.droidsweeper.game.jni;
 
 import de.nisble.droidsweeper.game.Position;
 
-/** Interface that is used to observe changes in the matrix of the native
- * library.
+/** Interface that is used to observe changes in the matrix of the
+ * {@link de.nisble.droidsweeper.game.engine.Engine game engine} (e.g. the
+ * native library).
  * @author Moritz Nisblé moritz.nisble@gmx.de */
 public interface MatrixObserver {
-	/** Called from native code via {@link MineSweeperMatrix} when the internal
+	/** Called by the engine (e.g. {@link MineSweeperMatrix}) when the internal
 	 * {@link GameStatus
 	 * status} of the
 	 * game has changed.
 	 * @param newStatus The new status. */
 	void onGameStatusChanged(GameStatus newStatus);
 
-	/** Called from native code via {@link MineSweeperMatrix} when the count of
+	/** Called by the engine (e.g. {@link MineSweeperMatrix}) when the count of
 	 * the remaining bombs has changed because the user has marked some fields.
 	 * @param remainingBombs The new count of remaining bombs. */
 	void onRemainingBombsChanged(int remainingBombs);
 
-	/** Called from native code via {@link MineSweeperMatrix} after the
+	/** Called by the engine (e.g. {@link MineSweeperMatrix}) after the
 	 * {@link FieldStatus status} of a field has changed.<br>
 	 * In contrast to {@link FieldListener#onStatusChanged(FieldStatus, int)}
 	 * this function is commonly called for status changes of fields.
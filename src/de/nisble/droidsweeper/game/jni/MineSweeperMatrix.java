@@ -1,155 +1,289 @@
 package de.nisble.droidsweeper.game.jni;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.nio.ByteBuffer;
 
 import de.nisble.droidsweeper.config.GameConfig;
 import de.nisble.droidsweeper.game.Position;
-
-/** Abstraction of the native library libmsm that implements the game logic.
+import de.nisble.droidsweeper.game.engine.AbstractEngine;
+import de.nisble.droidsweeper.game.engine.Board;
+import de.nisble.droidsweeper.game.engine.BoardMetrics;
+import de.nisble.droidsweeper.game.engine.ChangeList;
+import de.nisble.droidsweeper.game.engine.Counters;
+import de.nisble.droidsweeper.utilities.LogDog;
+
+/** Abstraction of the native library libmsm that implements the game logic.<br>
+ * The native library doesn't call back into Java for each changed field.
+ * Instead {@link #reveal(Position)} and {@link #cycleMark(Position)} return all
+ * changes of a click in a single packed {@link ChangeList} that is fanned out
+ * to the {@link FieldListener}S and {@link MatrixObserver}S in Java.<br>
+ * The native library also mirrors the state of the matrix into the direct
+ * buffer of the {@link Board}. So the game status and the remaining bombs are
+ * read from Java memory without crossing the JNI boundary. The count of hidden
+ * safe fields is kept in Java and updated from the change lists.
  * <ul>
- * <li>Singleton: Use the public INSTANCE member.</li>
+ * <li>Each instance owns its own native matrix. Distinct instances can be used
+ * concurrently from different threads, a single instance must not.</li>
+ * <li>The native resources must be released by calling {@link #close()}. As a
+ * safety net they are released on finalization too.</li>
  * </ul>
  * @author Moritz Nisblé moritz.nisble@gmx.de */
-public final class MineSweeperMatrix {
+public final class MineSweeperMatrix extends AbstractEngine {
 	private static final String CLASSNAME = MineSweeperMatrix.class.getSimpleName();
 
-	/** Get the one and only instance of this class. */
-	public static final MineSweeperMatrix INSTANCE = new MineSweeperMatrix();
+	static {
+		System.loadLibrary("msm");
+	}
 
-	private List<MatrixObserver> observer = new ArrayList<MatrixObserver>();
+	/* Address of the native engine. 0 when closed. */
+	private long mHandle;
+	private Board mBoard = new Board(Board.allocate(0, 0));
+	private int mBombs = 0;
+	private int mHiddenSafe = 0;
 
-	private MineSweeperMatrix() {
-		System.loadLibrary("msm");
-		init();
+	/** Create a new engine with its own native matrix.
+	 * @throws UnsatisfiedLinkError when libmsm can't be loaded. */
+	public MineSweeperMatrix() {
+		mHandle = nativeInit();
 	}
 
-	// TODO: Find another solution!
+	/** Release the native resources of this engine. Calling any other method
+	 * afterwards throws an IllegalStateException. Closing twice is harmless. */
 	@Override
-	protected void finalize() throws Throwable {
-		free();
-		super.finalize();
+	public synchronized void close() {
+		if (mHandle != 0) {
+			nativeFree(mHandle);
+			mHandle = 0;
+		}
 	}
 
-	/* Native methods. */
-
-	private native void init();
+	/* Safety net only. Engines should be closed explicitly. */
+	@Override
+	protected void finalize() throws Throwable {
+		try {
+			if (mHandle != 0) {
+				LogDog.w(CLASSNAME, "Engine was not closed");
+				close();
+			}
+		} finally {
+			super.finalize();
+		}
+	}
 
-	private native void free();
+	private long handle() {
+		if (0 == mHandle)
+			throw new IllegalStateException("Engine is closed");
+		return mHandle;
+	}
 
-	private native void nativeSetFieldListener(Object obj, int x, int y) throws Exception;
+	/* Native methods. */
 
-	private native void nativeCreate(int size_x, int size_y, int bombs);
+	private static native long nativeInit();
 
-	private native int nativeGameStatus();
+	private static native void nativeFree(long handle);
 
-	private native int nativeRemainingBombs();
+	/* The board must be a direct buffer allocated by Board.allocate(). The
+	 * native code holds a global reference until the next call. */
+	private static native void nativeCreate(long handle, int size_x, int size_y, int bombs, ByteBuffer board);
 
-	private native int nativeReveal(int x, int y) throws IndexOutOfBoundsException;
+	/* Returns a packed ChangeList */
+	private static native int[] nativeReveal(long handle, int x, int y) throws IndexOutOfBoundsException;
 
-	private native void nativeCycleMark(int x, int y) throws IndexOutOfBoundsException;
+	/* Returns a packed ChangeList */
+	private static native int[] nativeRevealAll(long handle);
 
-	// Called from native code after game status has changed
-	private void onGameStatusChanged(GameStatus gs) {
-		for (MatrixObserver l : observer) {
-			l.onGameStatusChanged(gs);
-		}
-	}
+	/* Returns a packed ChangeList */
+	private static native int[] nativeCycleMark(long handle, int x, int y) throws IndexOutOfBoundsException;
 
-	// Called from native code when remaining bomb count has changed
-	private void onRemainingBombsChanged(int remainingBombs) {
-		for (MatrixObserver l : observer) {
-			l.onRemainingBombsChanged(remainingBombs);
-		}
-	}
-
-	// Called from native code after a field was altered
-	private void afterFieldStatusChanged(int x, int y, int adjacentBombs, FieldStatus fs) {
-		for (MatrixObserver l : observer) {
-			l.afterFieldStatusChanged(new Position(x, y), fs, adjacentBombs);
-		}
-	}
+	/* Returns a packed ChangeList */
+	private static native int[] nativeChord(long handle, int x, int y) throws IndexOutOfBoundsException;
 
 	/* Public interface */
 
-	/** Set the field callback for to a given widget.
-	 * @param l A field implementing the FieldListener interface. */
-	public void setFieldListener(FieldListener l) throws Exception {
-		nativeSetFieldListener((Object) l, l.getPosition().X, l.getPosition().Y);
-	}
-
-	/** Add a matrix observer.
-	 * @param l A matrix observer. */
-	public void addMatrixObserver(MatrixObserver l) {
-		if (!observer.contains(l))
-			observer.add(l);
-	}
-
-	/** Remove a matrix observer.
-	 * @param l The observer to remove. */
-	public void removeObserver(MatrixObserver l) {
-		observer.remove(l);
+	/** Create a new game with the given config.<br>
+	 * <b>Note:</b> The {@link GameConfig#SEED seed} is ignored. libmsm places
+	 * the bombs with its own random number generator that can't be controlled
+	 * from here. It also places them on creation, so the first click isn't
+	 * guaranteed to be safe. For the same reason the
+	 * {@link GameConfig#NOGUESS no-guess} mode isn't supported.
+	 * @param c The {@link GameConfig}. */
+	@Override
+	public void create(GameConfig c) {
+		resetFieldListeners(c.X, c.Y);
+		ByteBuffer b = Board.allocate(c.X, c.Y);
+		nativeCreate(handle(), c.X, c.Y, c.BOMBS, b);
+		mBoard = new Board(b);
+		mBombs = c.BOMBS;
+		mHiddenSafe = c.X * c.Y - c.BOMBS;
 	}
 
-	/** Create a new game with the given config.
-	 * @param prefs */
-	public void create(GameConfig c) {
-		nativeCreate(c.X, c.Y, c.BOMBS);
+	@Override
+	public Board getBoard() {
+		return mBoard;
 	}
 
 	/** Get the current game status.
 	 * @return The current GameStatus. */
+	@Override
 	public GameStatus gameStatus() {
-		return GameStatus.fromInt(nativeGameStatus());
+		return mBoard.getGameStatus();
 	}
 
 	/** Is libmsm initialized and ready for a new game.
 	 * @return true on ready. */
+	@Override
 	public boolean isReady() {
-		return GameStatus.READY == GameStatus.fromInt(nativeGameStatus());
+		return GameStatus.READY == mBoard.getGameStatus();
 	}
 
 	/** Is currently a game running?
 	 * @return true on running game. */
+	@Override
 	public boolean isRunning() {
-		return GameStatus.RUNNING == GameStatus.fromInt(nativeGameStatus());
+		return GameStatus.RUNNING == mBoard.getGameStatus();
 	}
 
 	/** Game lost?
 	 * @return true on lost. */
+	@Override
 	public boolean isLost() {
-		return GameStatus.LOST == GameStatus.fromInt(nativeGameStatus());
+		return GameStatus.LOST == mBoard.getGameStatus();
 	}
 
 	/** Game won?
 	 * @return true on won. */
+	@Override
 	public boolean isWon() {
-		return GameStatus.WON == GameStatus.fromInt(nativeGameStatus());
+		return GameStatus.WON == mBoard.getGameStatus();
 	}
 
 	/** Get the count of the remaining bombs on the grid.
 	 * This number can also be negative when the player has marked more field
 	 * than bombs are present.
 	 * @return The count of remaining bombs. */
+	@Override
 	public int remainingBombs() {
-		return nativeRemainingBombs();
+		return mBoard.getRemainingBombs();
+	}
+
+	@Override
+	public Counters getCounters() {
+		return new Counters(gameStatus(), mBombs, mBombs - remainingBombs(), mHiddenSafe);
 	}
 
 	/** Reveal a field.
 	 * @param p The position.
 	 * @return The count of the adjacent bombs.
-	 * @throws NullPointerException on coordinates of the position out of the
+	 * @throws IndexOutOfBoundsException on coordinates of the position out of the
 	 *             bound of the configured game matrix. */
+	@Override
 	public int reveal(Position p) throws IndexOutOfBoundsException {
-		return nativeReveal(p.X, p.Y);
+		ChangeList changes = new ChangeList(nativeReveal(handle(), p.X, p.Y));
+		count(changes);
+		dispatch(changes);
+		return changes.getResult();
+	}
+
+	/** Reveal all fields that are neither revealed nor marked in one go.<br>
+	 * libmsm reveals the whole matrix within a single JNI call and returns the
+	 * changes as one {@link ChangeList}. */
+	@Override
+	public void revealAll() {
+		ChangeList changes = new ChangeList(nativeRevealAll(handle()));
+		count(changes);
+		dispatch(changes);
 	}
 
 	/** Cycle through the sequence of marks of a field.
 	 * Marked (not revealable), Queried (revealable), Hidden (revealable)
 	 * @param p The position.
-	 * @throws NullPointerException on coordinates of the position out of the
+	 * @throws IndexOutOfBoundsException on coordinates of the position out of the
 	 *             bound of the configured game matrix. */
+	@Override
 	public void cycleMark(Position p) throws IndexOutOfBoundsException {
-		nativeCycleMark(p.X, p.Y);
+		dispatch(new ChangeList(nativeCycleMark(handle(), p.X, p.Y)));
+	}
+
+	/** Chord a field.<br>
+	 * libmsm has no chord operation. The native code reads the marks from the
+	 * board mirror and reveals the adjacent fields within a single JNI call.
+	 * @param p The position.
+	 * @throws IndexOutOfBoundsException on coordinates of the position out of the
+	 *             bound of the configured game matrix. */
+	@Override
+	public void chord(Position p) throws IndexOutOfBoundsException {
+		ChangeList changes = new ChangeList(nativeChord(handle(), p.X, p.Y));
+		count(changes);
+		dispatch(changes);
+	}
+
+	/** Not supported by libmsm.
+	 * @return null */
+	@Override
+	public BoardMetrics getMetrics() {
+		return null;
+	}
+
+	/** Not supported by libmsm.
+	 * @return 0 */
+	@Override
+	public long boardHash() {
+		return 0;
+	}
+
+	/** Not supported by libmsm.
+	 * @return 0 */
+	@Override
+	public long stateHash() {
+		return 0;
+	}
+
+	/** Not supported by libmsm. */
+	@Override
+	public boolean canUndo() {
+		return false;
+	}
+
+	/** Not supported by libmsm. */
+	@Override
+	public boolean canRedo() {
+		return false;
+	}
+
+	/** Not supported by libmsm.
+	 * @return false */
+	@Override
+	public boolean undo() {
+		return false;
+	}
+
+	/** Not supported by libmsm.
+	 * @return false */
+	@Override
+	public boolean redo() {
+		return false;
+	}
+
+	/** Not supported by libmsm.
+	 * @return false */
+	@Override
+	public boolean writeSnapshot(DataOutput out) {
+		return false;
+	}
+
+	/** Not supported by libmsm.
+	 * @return false */
+	@Override
+	public boolean readSnapshot(DataInput in) {
+		return false;
+	}
+
+	/* Each safe field is revealed once */
+	private void count(ChangeList changes) {
+		for (int i = 0; i < changes.size(); ++i) {
+			if (FieldStatus.UNHIDDEN == changes.getFieldStatus(i))
+				--mHiddenSafe;
+		}
 	}
 }
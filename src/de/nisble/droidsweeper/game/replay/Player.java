@@ -3,12 +3,15 @@ package de.nisble.droidsweeper.game.replay;
 import static de.nisble.droidsweeper.config.Constants.TIMER_PERIOD;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 
 import de.nisble.droidsweeper.config.GameConfig;
 import de.nisble.droidsweeper.game.Field;
 import de.nisble.droidsweeper.game.Game;
+import de.nisble.droidsweeper.game.Position;
 import de.nisble.droidsweeper.game.database.DSDBAdapter;
 import de.nisble.droidsweeper.game.jni.FieldListener;
 import de.nisble.droidsweeper.game.jni.FieldStatus;
@@ -33,7 +36,11 @@ import de.nisble.droidsweeper.utilities.Timer.TimerObserver;
  * interface method {@link PlayerObserver#onBuildGrid(GameConfig)} is invoked.
  * Inside this method the view should create the game grid just as if the call
  * comes from {@link Game}. But rather than registering the field widgets in the
- * Game, the widgets should be registered here.
+ * Game, the widgets should be registered here.<br>
+ * A replay of an {@link GameConfig#ENDLESS endless} game has no bounds. Its
+ * field widgets are looked up by position instead and changes of fields
+ * without a widget (i.e. outside of the visible part of the board) are
+ * skipped.
  * @author Moritz Nisblé moritz.nisble@gmx.de
  * @see {@link Recorder} for how to record a replay. */
 public class Player implements TimerObserver {
@@ -52,6 +59,8 @@ public class Player implements TimerObserver {
 
 	private ListIterator<TimeStep> mTsIter;
 	private FieldListener[][] mFlMatrix;
+	/* The widgets of an endless replay */
+	private Map<Position, FieldListener> mFlMap = new HashMap<Position, FieldListener>();
 
 	/** Instantiate and initialize a new replay player. */
 	public Player() {
@@ -78,9 +87,13 @@ public class Player implements TimerObserver {
 	 *            interface.
 	 * @throws ArrayIndexOutOfBoundsException If a coordinate that the widget
 	 *             returns in its {@link FieldListener#getPosition()} method is
-	 *             out of the bounds of the current {@link GameConfig}. */
+	 *             out of the bounds of the current {@link GameConfig}. Never
+	 *             thrown for an endless replay. */
 	public void setFieldListener(FieldListener l) throws ArrayIndexOutOfBoundsException {
-		mFlMatrix[l.getPosition().X][l.getPosition().Y] = l;
+		if (mReplay.getGameConfig().ENDLESS)
+			mFlMap.put(l.getPosition(), l);
+		else
+			mFlMatrix[l.getPosition().X][l.getPosition().Y] = l;
 	}
 
 	/** Load a {@link Replay} by its game ID directly from the database.
@@ -94,7 +107,7 @@ public class Player implements TimerObserver {
 
 		mReplay = new Replay(DSDBAdapter.INSTANCE.getReplay(gameID));
 
-		mFlMatrix = new FieldListener[mReplay.getGameConfig().X][mReplay.getGameConfig().Y];
+		resetFieldListeners();
 	}
 
 	/** Load the given {@link Replay}.
@@ -107,7 +120,16 @@ public class Player implements TimerObserver {
 		// Make an internal copy
 		mReplay = new Replay(replay);
 
-		mFlMatrix = new FieldListener[mReplay.getGameConfig().X][mReplay.getGameConfig().Y];
+		resetFieldListeners();
+	}
+
+	/* The dense matrix can only hold the widgets of a bounded replay */
+	private void resetFieldListeners() {
+		mFlMap.clear();
+		if (mReplay.getGameConfig().ENDLESS)
+			mFlMatrix = null;
+		else
+			mFlMatrix = new FieldListener[mReplay.getGameConfig().X][mReplay.getGameConfig().Y];
 	}
 
 	/** Play a previously loaded {@link Replay}.<br>
@@ -124,7 +146,7 @@ public class Player implements TimerObserver {
 
 			for (PlayerObserver l : mObservers) {
 				l.onTimeUpdate(0);
-				l.onRemainingBombsChanged(mReplay.getGameConfig().BOMBS);
+				l.onRemainingBombsChanged(mReplay.getGameConfig().ENDLESS ? 0 : mReplay.getGameConfig().BOMBS);
 
 				/* Let the view build the game grid. */
 				l.onBuildGrid(mReplay.getGameConfig());
@@ -175,6 +197,13 @@ public class Player implements TimerObserver {
 					// " Y:" + f.POSITION.Y + " ("
 					// + f.ADJACENT_BOMBS + ") to " + f.STATUS.toString());
 
+					if (mFlMatrix == null) {
+						FieldListener fl = mFlMap.get(f.POSITION);
+						if (fl != null)
+							fl.onStatusChanged(f.STATUS, f.ADJACENT_BOMBS);
+						continue;
+					}
+
 					try {
 						mFlMatrix[f.POSITION.X][f.POSITION.Y].onStatusChanged(f.STATUS, f.ADJACENT_BOMBS);
 					} catch (ArrayIndexOutOfBoundsException e) {
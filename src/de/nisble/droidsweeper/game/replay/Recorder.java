@@ -1,11 +1,15 @@
 package de.nisble.droidsweeper.game.replay;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import de.nisble.droidsweeper.config.GameConfig;
 import de.nisble.droidsweeper.game.Field;
 import de.nisble.droidsweeper.game.Position;
+import de.nisble.droidsweeper.game.engine.BoardMetrics;
 import de.nisble.droidsweeper.game.jni.FieldStatus;
 import de.nisble.droidsweeper.game.jni.GameStatus;
 import de.nisble.droidsweeper.game.jni.MatrixObserver;
@@ -61,7 +65,8 @@ public class Recorder implements MatrixObserver {
 		/* Reset internal state */
 		mStepBuffer.clear();
 		mGameStatus = GameStatus.READY;
-		mRemainingBombs = c.BOMBS;
+		// An endless game counts the marks down from 0
+		mRemainingBombs = c.ENDLESS ? 0 : c.BOMBS;
 	}
 
 	/** Finalize a step.
@@ -106,6 +111,103 @@ public class Recorder implements MatrixObserver {
 		}
 	}
 
+	/** Continue the record of a game that was ended by a step that is undone
+	 * afterwards. The recorded steps are kept and the undo is recorded as the
+	 * next step. */
+	public void reopen() {
+		mRecordFlag = true;
+	}
+
+	/** Set the {@link Replay#getBoardHash() hash of the board} of the current
+	 * record.
+	 * @param boardHash The hash. */
+	public void setBoardHash(long boardHash) {
+		mCurrent.setBoardHash(boardHash);
+	}
+
+	/** Set the {@link Replay#getMetrics() difficulty metrics} of the board of
+	 * the current record.
+	 * @param metrics The metrics. */
+	public void setMetrics(BoardMetrics metrics) {
+		mCurrent.setMetrics(metrics);
+	}
+
+	/** Mark the current record as {@link Replay#isAssisted() assisted}. */
+	public void setAssisted() {
+		mCurrent.setAssisted(true);
+	}
+
+	/** Write the record of the running game to a compact binary snapshot.
+	 * Should be called between two clicks (i.e. after
+	 * {@link #finalizeStep(long)}), because changes that are not finalized
+	 * are not written.
+	 * @param out The destination.
+	 * @throws IOException on errors of the destination. */
+	public void writeSnapshot(DataOutput out) throws IOException {
+		mCurrent.getGameConfig().write(out);
+		out.writeLong(mCurrent.getEpochTime());
+		out.writeBoolean(mCurrent.isAssisted());
+		out.writeLong(mCurrent.getBoardHash());
+		BoardMetrics m = mCurrent.getMetrics();
+		out.writeBoolean(m != null);
+		if (m != null) {
+			out.writeInt(m.BBBV);
+			out.writeInt(m.OPENINGS);
+			out.writeInt(m.ISLANDS);
+		}
+		out.writeByte(mGameStatus.ordinal());
+		out.writeInt(mRemainingBombs);
+
+		List<TimeStep> steps = mCurrent.getTimeSteps();
+		out.writeInt(steps.size());
+		for (TimeStep s : steps) {
+			out.writeLong(s.TIME);
+			out.writeByte(s.GAMESTATUS);
+			out.writeInt(s.BOMBS);
+			out.writeInt(s.STEPS.length);
+			for (Field f : s.STEPS) {
+				out.writeInt(f.POSITION.X);
+				out.writeInt(f.POSITION.Y);
+				out.writeByte(f.STATUS.ordinal());
+				out.writeByte(f.ADJACENT_BOMBS);
+			}
+		}
+	}
+
+	/** Continue the record of a game from a snapshot that was written by
+	 * {@link #writeSnapshot(DataOutput)}.
+	 * @param in The source.
+	 * @throws IOException on errors of the source. */
+	public void readSnapshot(DataInput in) throws IOException {
+		Replay r = new Replay();
+		r.setGameConfig(new GameConfig(in));
+		r.setEpochTime(in.readLong());
+		r.setAssisted(in.readBoolean());
+		r.setBoardHash(in.readLong());
+		if (in.readBoolean())
+			r.setMetrics(new BoardMetrics(in.readInt(), in.readInt(), in.readInt()));
+		GameStatus gameStatus = GameStatus.fromInt(in.readUnsignedByte());
+		int remainingBombs = in.readInt();
+
+		for (int count = in.readInt(); count > 0; --count) {
+			long time = in.readLong();
+			int status = in.readUnsignedByte();
+			int bombs = in.readInt();
+			Field[] fields = new Field[in.readInt()];
+			for (int k = 0; k < fields.length; ++k) {
+				Position p = new Position(in.readInt(), in.readInt());
+				fields[k] = new Field(p, FieldStatus.fromInt(in.readUnsignedByte()), in.readUnsignedByte());
+			}
+			r.addTimeStep(new TimeStep(time, status, bombs, fields));
+		}
+
+		mCurrent = r;
+		mStepBuffer.clear();
+		mGameStatus = gameStatus;
+		mRemainingBombs = remainingBombs;
+		mRecordFlag = true;
+	}
+
 	/** Get a deep copy of the last completed {@link Replay}.<br>
 	 * Note that its not possible to get the replay while currently recording.
 	 * So the replay may be empty when the first game is running when you call
@@ -8,10 +8,12 @@ import java.util.List;
 
 import de.nisble.droidsweeper.config.GameConfig;
 import de.nisble.droidsweeper.config.Level;
+import de.nisble.droidsweeper.config.Zobrist;
 import de.nisble.droidsweeper.game.Field;
 import de.nisble.droidsweeper.game.Position;
 import de.nisble.droidsweeper.game.database.DSDBAdapter;
 import de.nisble.droidsweeper.game.database.DSDBGameEntry;
+import de.nisble.droidsweeper.game.engine.BoardMetrics;
 import de.nisble.droidsweeper.game.jni.FieldStatus;
 import de.nisble.droidsweeper.game.jni.GameStatus;
 
@@ -35,7 +37,9 @@ import de.nisble.droidsweeper.game.jni.GameStatus;
  * to record, not at each time step.</li>
  * <li>{@link Replay} (this class): This class holds a series of TimeStepS and
  * adds the date (as epoch time), the overall play time, the dimensions of the
- * game matrix (as {@link GameConfig}) and the name of the player.</li>
+ * game matrix and the seed of the board (as {@link GameConfig}), the
+ * {@link Zobrist} hash and the {@link BoardMetrics difficulty metrics} of the
+ * board and the name of the player.</li>
  * </ul>
  * The replay can than be stored in the database by
  * {@link #serializeTimeSteps() serializing} the list of TimeStepS. The
@@ -51,6 +55,12 @@ public class Replay {
 	private String mName = new String();
 	private long mPlayTime = 0;
 	private long mEpochTime = 0;
+	/* Undo or redo was used */
+	private boolean mAssisted = false;
+	/* Zobrist hash of the board or 0 */
+	private long mBoardHash = 0;
+	/* BoardMetrics are immutable. Null if unknown. */
+	private BoardMetrics mMetrics = null;
 	/* TimeStepS are immutable */
 	private List<TimeStep> mTimeSteps = new ArrayList<TimeStep>();
 
@@ -65,6 +75,9 @@ public class Replay {
 		mName = r.mName;
 		mPlayTime = r.mPlayTime;
 		mEpochTime = r.mEpochTime;
+		mAssisted = r.mAssisted;
+		mBoardHash = r.mBoardHash;
+		mMetrics = r.mMetrics;
 		mTimeSteps = new ArrayList<TimeStep>(r.mTimeSteps);
 	}
 
@@ -72,10 +85,12 @@ public class Replay {
 	 * This leads always to a standard difficulty level.
 	 * @param ge A database entry. */
 	public Replay(DSDBGameEntry ge) {
-		mGameConfig = new GameConfig(ge.LEVEL);
+		mGameConfig = ge.SEEDED ? new GameConfig(ge.LEVEL).withSeed(ge.SEED) : new GameConfig(ge.LEVEL);
 		mName = ge.NAME;
 		mPlayTime = ge.PLAYTIME;
 		mEpochTime = ge.EPOCHTIME;
+		mBoardHash = ge.BOARDHASH;
+		mMetrics = ge.METRICS;
 		mTimeSteps = ge.TIMESTEPS;
 	}
 
@@ -123,6 +138,44 @@ public class Replay {
 		mEpochTime = epochTime;
 	}
 
+	/** @return True if the player used undo, redo, a hint or the
+	 *         probabilities of the fields. The undone clicks and the restored
+	 *         fields are part of the replay. */
+	public boolean isAssisted() {
+		return mAssisted;
+	}
+
+	/** Mark the game as assisted by undo, redo, a hint or the probabilities
+	 * of the fields.
+	 * @param assisted True if assisted. */
+	public void setAssisted(boolean assisted) {
+		mAssisted = assisted;
+	}
+
+	/** @return The {@link Zobrist} hash of the board or 0 if unknown. Replays
+	 *         of the same board have the same hash. */
+	public long getBoardHash() {
+		return mBoardHash;
+	}
+
+	/** Set the {@link Zobrist} hash of the board.
+	 * @param boardHash The hash. */
+	public void setBoardHash(long boardHash) {
+		mBoardHash = boardHash;
+	}
+
+	/** @return The difficulty {@link BoardMetrics metrics} of the board or
+	 *         null if unknown. */
+	public BoardMetrics getMetrics() {
+		return mMetrics;
+	}
+
+	/** Set the difficulty {@link BoardMetrics metrics} of the board.
+	 * @param metrics The metrics. */
+	public void setMetrics(BoardMetrics metrics) {
+		mMetrics = metrics;
+	}
+
 	/** Push {@link TimeStep steps} to the interal list.
 	 * @param steps The {@link TimeStep steps} to add. */
 	public void addTimeStep(TimeStep steps) {
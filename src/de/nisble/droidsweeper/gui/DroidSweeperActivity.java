@@ -1,5 +1,17 @@
 package de.nisble.droidsweeper.gui;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.Dialog;
@@ -27,7 +39,11 @@ import de.nisble.droidsweeper.config.Level;
 import de.nisble.droidsweeper.config.ApplicationConfig;
 import de.nisble.droidsweeper.game.Game;
 import de.nisble.droidsweeper.game.GameObserver;
+import de.nisble.droidsweeper.game.Position;
 import de.nisble.droidsweeper.game.database.DSDBAdapter;
+import de.nisble.droidsweeper.game.engine.PatternCache;
+import de.nisble.droidsweeper.game.engine.Probabilities;
+import de.nisble.droidsweeper.game.jni.FieldStatus;
 import de.nisble.droidsweeper.game.replay.Player;
 import de.nisble.droidsweeper.game.replay.PlayerObserver;
 import de.nisble.droidsweeper.game.replay.Replay;
@@ -54,6 +70,14 @@ public class DroidSweeperActivity extends Activity {
 	private static final int REPLAY_AGAIN_DIALOG = 2;
 	private static final int FIRSTSTART_DIALOG = 3;
 
+	/* The snapshot of the running game in the private files directory */
+	private static final String SNAPSHOT_FILE = "game.snapshot";
+	/* The cache of the hint patterns in the private files directory */
+	private static final String PATTERN_FILE = "hint.patterns";
+	/* Reads and writes the files off the UI thread one after the other, so a
+	 * new activity reads what the last one has written */
+	private static final ExecutorService FILE_IO = Executors.newSingleThreadExecutor();
+
 	// Replay player
 	private Player mPlayer = new Player();
 
@@ -83,6 +107,8 @@ public class DroidSweeperActivity extends Activity {
 		GameConfig c = ApplicationConfig.INSTANCE.init(this).load();
 		LogDog.i(CLASSNAME, "ApplicationConfig loaded: " + ApplicationConfig.INSTANCE.toString());
 
+		// Use the engine that was chosen in the settings
+		Game.INSTANCE.setEngine(ApplicationConfig.INSTANCE.getEngineType().create());
 		Game.INSTANCE.addObserver(mGameObserver);
 
 		if (ApplicationConfig.INSTANCE.isShowInstructions() == true)
@@ -90,8 +116,16 @@ public class DroidSweeperActivity extends Activity {
 
 		mPlayer.addObserver(mReplayObserver);
 
-		// Start game with the GameConfig loaded from persistent memory
-		Game.INSTANCE.start(c);
+		// Once per process, later activities share the cache of the game
+		PatternCache patterns = Game.INSTANCE.getPatterns();
+		if (0 == patterns.size())
+			loadPatterns(patterns);
+
+		// Continue the game of the last session or start a game with the
+		// GameConfig loaded from persistent memory
+		byte[] snapshot = load(SNAPSHOT_FILE);
+		if (null == snapshot || !Game.INSTANCE.restore(snapshot))
+			Game.INSTANCE.start(c);
 	}
 
 	@Override
@@ -107,6 +141,9 @@ public class DroidSweeperActivity extends Activity {
 		Game.INSTANCE.pause();
 
 		ApplicationConfig.INSTANCE.store(Game.INSTANCE.getGameConfig());
+		// The process may be killed while paused
+		store(SNAPSHOT_FILE, Game.INSTANCE.snapshot());
+		storePatterns(Game.INSTANCE.getPatterns());
 
 		super.onPause();
 	}
@@ -164,6 +201,28 @@ public class DroidSweeperActivity extends Activity {
 
 			startActivityForResult(intent, INTENTREQUEST_SETTINGS);
 			break;
+		case R.id.mm_undo:
+			// Does nothing if the engine doesn't support undo. Continues a lost game.
+			if (Game.INSTANCE.undo() && Game.INSTANCE.getEngine().isRunning())
+				mGameGrid.hideOverlay();
+			break;
+		case R.id.mm_redo:
+			Game.INSTANCE.redo();
+			break;
+		case R.id.mm_hint:
+			// Reveal a field that is proven to be safe
+			Position hint = Game.INSTANCE.hint();
+			if (hint != null) {
+				Game.INSTANCE.revealField(hint);
+			} else {
+				// Else tell the risk of the best guess
+				Probabilities p = Game.INSTANCE.getProbabilities();
+				Position guess = (p != null) ? p.safest() : null;
+				String msg = (guess != null) ? getString(R.string.bestGuessMsg, guess.X + 1, guess.Y + 1,
+						Math.round(100 * p.get(guess))) : getString(R.string.noHintMsg);
+				Toast.makeText(getApplicationContext(), msg, Toast.LENGTH_LONG).show();
+			}
+			break;
 		case R.id.mm_highscores:
 			intent = new Intent(getApplicationContext(), HighScoreActivity.class);
 
@@ -427,10 +486,106 @@ public class DroidSweeperActivity extends Activity {
 		}
 	}
 
+	/* Write the cache of the hint patterns and log its statistics */
+	private void storePatterns(PatternCache patterns) {
+		LogDog.i(CLASSNAME, "Storing " + patterns.toString());
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 + 16 * patterns.size());
+			DataOutputStream out = new DataOutputStream(bytes);
+			patterns.write(out);
+			out.close();
+			store(PATTERN_FILE, bytes.toByteArray());
+		} catch (IOException e) {
+			LogDog.e(CLASSNAME, "Writing patterns failed: " + e.getMessage(), e);
+		}
+	}
+
+	/* Read the cache of the hint patterns of the last session, if any */
+	private void loadPatterns(PatternCache patterns) {
+		byte[] bytes = load(PATTERN_FILE);
+		if (null == bytes)
+			return;
+		try {
+			if (!patterns.read(new DataInputStream(new ByteArrayInputStream(bytes))))
+				LogDog.w(CLASSNAME, "Corrupt " + PATTERN_FILE);
+		} catch (IOException e) {
+			LogDog.w(CLASSNAME, "Reading patterns failed: " + e.getMessage());
+		}
+		LogDog.i(CLASSNAME, "Loaded " + patterns.toString());
+	}
+
+	/* Write a file in the background. Without data (null) the old file is
+	 * deleted (e.g. the snapshot without a running game). The file is replaced
+	 * atomically, so it is never read half written. */
+	private void store(String name, final byte[] data) {
+		final File file = new File(getFilesDir(), name);
+		FILE_IO.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (null == data) {
+					file.delete();
+					return;
+				}
+
+				File temp = new File(file.getPath() + ".tmp");
+				FileOutputStream out = null;
+				try {
+					out = new FileOutputStream(temp);
+					out.write(data);
+					out.getFD().sync();
+					out.close();
+					out = null;
+					if (!temp.renameTo(file))
+						LogDog.e(CLASSNAME, "Unable to replace " + file);
+				} catch (IOException e) {
+					LogDog.e(CLASSNAME, "Writing " + file + " failed: " + e.getMessage(), e);
+				} finally {
+					if (out != null) {
+						try {
+							out.close();
+						} catch (IOException e) {
+						}
+					}
+				}
+			}
+		});
+	}
+
+	/* Read a file of the last session in a single read (e.g. the snapshot).
+	 * Waits for a pending write. Returns null if there is none. */
+	private byte[] load(String name) {
+		final File file = new File(getFilesDir(), name);
+		try {
+			return FILE_IO.submit(new Callable<byte[]>() {
+				@Override
+				public byte[] call() throws IOException {
+					if (!file.exists())
+						return null;
+
+					byte[] data = new byte[(int) file.length()];
+					DataInputStream in = new DataInputStream(new FileInputStream(file));
+					try {
+						in.readFully(data);
+					} finally {
+						in.close();
+					}
+					return data;
+				}
+			}).get();
+		} catch (Exception e) {
+			LogDog.e(CLASSNAME, "Reading " + name + " failed: " + e.getMessage(), e);
+			return null;
+		}
+	}
+
 	private final GameGridView.FieldClickListener mFieldClickListener = new GameGridView.FieldClickListener() {
 		@Override
 		public void onClick(FieldView field) {
-			Game.INSTANCE.revealField(field.getPosition());
+			// A click on a revealed number chords it
+			if (FieldStatus.UNHIDDEN == field.getFieldStatus())
+				Game.INSTANCE.chord(field.getPosition());
+			else
+				Game.INSTANCE.revealField(field.getPosition());
 		}
 
 		@Override
@@ -13,6 +13,7 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 import de.nisble.droidsweeper.R;
 import de.nisble.droidsweeper.game.database.DSDBGameEntry;
+import de.nisble.droidsweeper.game.engine.BoardMetrics;
 
 /** High score list adapter.
  * @author Moritz Nisblé moritz.nisble@gmx.de */
@@ -69,6 +70,11 @@ public class HighScoreListAdapter extends BaseAdapter {
 		((TextView) view.findViewById(R.id.tvTimeListItem_Time)).setText(DateFormat.format("mm:ss",
 				mEntries.get(position).PLAYTIME).toString());
 
+		// Efficiency (3BV/s) of games that were stored with the metrics
+		BoardMetrics metrics = mEntries.get(position).METRICS;
+		((TextView) view.findViewById(R.id.tvTimeListItem_Efficiency)).setText((metrics != null) ? String.format(
+				"%.2f", metrics.perSecond(mEntries.get(position).PLAYTIME)) : "-");
+
 		// Localize epoch time and display date and time
 		Date date = new Date(mEntries.get(position).EPOCHTIME);
 		((TextView) view.findViewById(R.id.tvTimeListItem_Date)).setText(mDateFormat.format(date) + " "
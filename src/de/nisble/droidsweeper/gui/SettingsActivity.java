@@ -18,6 +18,7 @@ import static de.nisble.droidsweeper.config.Constants.*;
 import de.nisble.droidsweeper.config.GameConfig;
 import de.nisble.droidsweeper.config.Level;
 import de.nisble.droidsweeper.config.ApplicationConfig;
+import de.nisble.droidsweeper.game.engine.EngineType;
 import de.nisble.droidsweeper.utilities.LogDog;
 
 /** Settings activity.
@@ -31,6 +32,8 @@ public class SettingsActivity extends Activity {
 	private NumberPicker mNpHeight;
 	private NumberPicker mNpBombs;
 	private CheckBox mCbShowReplayOnLost;
+	private CheckBox mCbJavaEngine;
+	private CheckBox mCbNoGuess;
 
 	private GameConfig mPassedConfig = null;
 	private GameConfig mCurrentConfig = null;
@@ -58,6 +61,8 @@ public class SettingsActivity extends Activity {
 		mNpHeight = (NumberPicker) findViewById(R.id.npHeight);
 		mNpBombs = (NumberPicker) findViewById(R.id.npBombs);
 		mCbShowReplayOnLost = (CheckBox) findViewById(R.id.cbShowReplayOnLost);
+		mCbJavaEngine = (CheckBox) findViewById(R.id.cbJavaEngine);
+		mCbNoGuess = (CheckBox) findViewById(R.id.cbNoGuess);
 
 		mSpinDifficulty.setSelection(mPassedConfig.LEVEL.ordinal());
 
@@ -72,6 +77,11 @@ public class SettingsActivity extends Activity {
 		mCbShowReplayOnLost.setChecked(ApplicationConfig.INSTANCE.isReplayOnLost());
 		mCbShowReplayOnLost.setOnCheckedChangeListener(onShowOnLostCheckedChanged);
 
+		mCbJavaEngine.setChecked(EngineType.JAVA == ApplicationConfig.INSTANCE.getEngineType());
+		mCbJavaEngine.setOnCheckedChangeListener(onJavaEngineCheckedChanged);
+
+		mCbNoGuess.setChecked(mPassedConfig.NOGUESS);
+
 		mNpWidth.setOnTouchListener(onNumberPickerTouchListener);
 		mNpHeight.setOnTouchListener(onNumberPickerTouchListener);
 		mNpBombs.setOnTouchListener(onNumberPickerTouchListener);
@@ -90,6 +100,7 @@ public class SettingsActivity extends Activity {
 		} else {
 			mCurrentConfig = new GameConfig(level);
 		}
+		mCurrentConfig = mCurrentConfig.withNoGuess(mCbNoGuess.isChecked());
 
 		if (mCurrentConfig.equals(mPassedConfig)) {
 			setResult(RESULT_CANCELED);
@@ -171,4 +182,11 @@ public class SettingsActivity extends Activity {
 			ApplicationConfig.INSTANCE.setShowReplayOnLost(isChecked);
 		}
 	};
-}
+
+	protected OnCheckedChangeListener onJavaEngineCheckedChanged = new OnCheckedChangeListener() {
+		@Override
+		public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+			ApplicationConfig.INSTANCE.setEngineType(isChecked ? EngineType.JAVA : EngineType.NATIVE);
+		}
+	};
+}
\ No newline at end of file
@@ -117,6 +117,39 @@ public class Timer {
 		LogDog.d(CLASSNAME, "Timer stopped");
 	}
 
+	/** Continue a stopped timer without resetting the elapsed time. */
+	public void proceed() {
+		if (STATUS.STOPPED == mStatus) {
+			mStatus = STATUS.RUNNING;
+			handler.postDelayed(run, this.mPeriod);
+
+			LogDog.d(CLASSNAME, "Proceeding timer");
+		} else {
+			LogDog.d(CLASSNAME, "Unable to proceed timer: status=" + mStatus);
+		}
+	}
+
+	/** Set a stopped timer to the given elapsed time and pause it. It starts
+	 * ticking on {@link #resume()} (e.g. to continue a restored game).
+	 * @param period The tick period in ms.
+	 * @param milliseconds The elapsed milliseconds. */
+	public void pauseAt(long period, long milliseconds) {
+		if (STATUS.STOPPED == mStatus) {
+			// Ensure a minimum period time of 10ms
+			this.mPeriod = (period >= 10) ? period : 10;
+
+			mTicks = milliseconds / this.mPeriod;
+			mMilliseconds = mTicks * this.mPeriod;
+			mSeconds = mMilliseconds / 1000;
+
+			mStatus = STATUS.PAUSED;
+
+			LogDog.d(CLASSNAME, "Timer paused at " + mMilliseconds + "ms");
+		} else {
+			LogDog.d(CLASSNAME, "Unable to pause timer at " + milliseconds + "ms: status=" + mStatus);
+		}
+	}
+
 	/** Pause the timer. */
 	public void pause() {
 		mStatus = STATUS.PAUSED;